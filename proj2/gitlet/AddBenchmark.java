@@ -0,0 +1,130 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** Compares staging many files one add at a time with staging them in a
+ *  single bulk add (see BulkAdd), sequentially and in parallel.  Usage,
+ *  from an empty directory:
+ *
+ *      java gitlet.AddBenchmark [FILES [SIZE [THREADS]]]
+ *
+ *  writes FILES files (by default 10000) of about SIZE bytes (by default
+ *  8192) of text into a directory "data", spread over a hundred
+ *  subdirectories.  It then stages them in a new repository three ways:
+ *  with one add per file, each its own transaction rewriting the
+ *  staging area (which still saves the JVM start of each separate
+ *  command; see DaemonBenchmark for that); with one add of "data" on a
+ *  single thread; and with one add of "data" on a pool of THREADS
+ *  workers (by default, one per processor).  Prints the time taken by
+ *  each, and the rates in files/s and MB/s.
+ */
+public class AddBenchmark {
+
+    /** Number of subdirectories of "data". */
+    private static final int DIRS = 100;
+    /** Words from which files are made. */
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf",
+        "hotel", "india", "juliet", "kilo", "lima", "mike", "november",
+    };
+
+    /** Run the benchmark as described in the class comment, using ARGS. */
+    public static void main(String... args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 8192;
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+            : Runtime.getRuntime().availableProcessors();
+        File data = join(Repository.CWD, "data");
+        if (Repository.GITLET_DIR.exists() || data.exists()) {
+            throw error("Run AddBenchmark in an empty directory.");
+        }
+        Random random = new Random(0);
+        long total = 0;
+        String[] names = new String[files];
+        for (int k = 0; k < files; k += 1) {
+            File dir = join(data, String.format("d%02d", k % DIRS));
+            dir.mkdirs();
+            names[k] = String.format("data/d%02d/file%05d.txt", k % DIRS, k);
+            byte[] contents = text(k, size, random);
+            writeContents(join(Repository.CWD, names[k]), (Object) contents);
+            total += contents.length;
+        }
+        System.out.printf("%d files, %d bytes%n", files, total);
+
+        System.out.printf("%-18s %10s %10s %10s%n", "add", "s", "files/s",
+                          "MB/s");
+        System.out.printf("-------------------------------------------------"
+                          + "-%n");
+        freshRepository();
+        long start = System.nanoTime();
+        for (String name : names) {
+            Journal.local().atomically(() -> BulkAdd.add(List.of(name)));
+        }
+        report("one per file", start, files, total);
+        check(files);
+
+        for (int n : new int[] { 1, threads }) {
+            freshRepository();
+            WorkingTree.setParallelism(n);
+            start = System.nanoTime();
+            Journal.local().atomically(() -> BulkAdd.add(List.of("data")));
+            report(String.format("bulk, %d thread%s", n, n == 1 ? "" : "s"),
+                   start, files, total);
+            check(files);
+        }
+    }
+
+    /** Return about SIZE bytes of lines of words chosen using RANDOM,
+     *  starting with the number K so that every file differs. */
+    private static byte[] text(int k, int size, Random random) {
+        StringBuilder result = new StringBuilder(String.format("%d%n", k));
+        while (result.length() < size) {
+            for (int i = 0; i < 8; i += 1) {
+                result.append(WORDS[random.nextInt(WORDS.length)])
+                    .append(' ');
+            }
+            result.append('\n');
+        }
+        return result.toString().getBytes();
+    }
+
+    /** Replace the repository with an empty one. */
+    private static void freshRepository() {
+        delete(Repository.GITLET_DIR);
+        Repository.GITLET_DIR.mkdirs();
+        Repository.resetCaches();
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Print the rates at which FILES files of TOTAL bytes were added,
+     *  since START, labelled LABEL. */
+    private static void report(String label, long start, int files,
+                               long total) {
+        double time = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-18s %10.2f %10.0f %10.1f%n", label, time,
+                          files / time, total / time / 1e6);
+    }
+
+    /** Check that exactly FILES files are staged. */
+    private static void check(int files) {
+        int staged = StagingArea.load().added().size();
+        if (staged != files) {
+            throw new IllegalStateException(
+                String.format("%d files staged, expected %d", staged, files));
+        }
+    }
+}
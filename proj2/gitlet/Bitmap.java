@@ -0,0 +1,362 @@
+package gitlet;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/** A compressed set of non-negative ints, in the manner of a Roaring
+ *  bitmap.  The values are grouped by their upper 16 bits into blocks
+ *  of 2**16 consecutive values, and each nonempty block is a container
+ *  holding the lower 16 bits of its values: as a sorted array of chars
+ *  if it has at most ARRAY_MAX values, and otherwise as a bitset of
+ *  2**16 bits.  A sparse block thus takes two bytes per value and a
+ *  dense one at most 8 KiB, and unions and differences combine the
+ *  containers of matching blocks pairwise.  The encoded form (see write)
+ *  is
+ *
+ *      number of containers (4 bytes)
+ *      for each container, in increasing order of block:
+ *          block (2 bytes)  number of values (4 bytes)
+ *          values as 2-byte chars, or 1024 8-byte words if more than
+ *          ARRAY_MAX
+ */
+class Bitmap {
+
+    /** Largest number of values kept in an array container. */
+    static final int ARRAY_MAX = 4096;
+    /** Number of words in a bitset container. */
+    private static final int WORDS = (1 << 16) / Long.SIZE;
+
+    /** Add X to this set, returning true iff it was absent. */
+    boolean add(int x) {
+        int key = x >>> 16;
+        char low = (char) x;
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new char[] { low }, 1);
+            return true;
+        }
+        if (_containers[i] instanceof long[]) {
+            long[] bits = (long[]) _containers[i];
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) != 0) {
+                return false;
+            }
+            bits[low >>> 6] |= mask;
+            _cards[i] += 1;
+            return true;
+        }
+        char[] values = (char[]) _containers[i];
+        int k = Arrays.binarySearch(values, 0, _cards[i], low);
+        if (k >= 0) {
+            return false;
+        }
+        k = -k - 1;
+        if (_cards[i] == ARRAY_MAX) {
+            long[] bits = toBits(values, _cards[i]);
+            bits[low >>> 6] |= 1L << low;
+            _containers[i] = bits;
+        } else {
+            if (_cards[i] == values.length) {
+                values = Arrays.copyOf(values,
+                                       Math.min(2 * values.length,
+                                                ARRAY_MAX));
+                _containers[i] = values;
+            }
+            System.arraycopy(values, k, values, k + 1, _cards[i] - k);
+            values[k] = low;
+        }
+        _cards[i] += 1;
+        return true;
+    }
+
+    /** Return true iff X is in this set. */
+    boolean contains(int x) {
+        int i = find(x >>> 16);
+        return i >= 0 && contains(i, (char) x);
+    }
+
+    /** Return the number of values in this set. */
+    int cardinality() {
+        int result = 0;
+        for (int i = 0; i < _size; i += 1) {
+            result += _cards[i];
+        }
+        return result;
+    }
+
+    /** Add every value in OTHER to this set. */
+    void or(Bitmap other) {
+        for (int j = 0; j < other._size; j += 1) {
+            int i = find(other._keys[j]);
+            if (i < 0) {
+                i = -i - 1;
+                Object c = other._containers[j];
+                insert(i, other._keys[j],
+                       c instanceof long[] ? ((long[]) c).clone()
+                       : Arrays.copyOf((char[]) c, other._cards[j]),
+                       other._cards[j]);
+            } else if (_containers[i] instanceof char[]
+                       && other._containers[j] instanceof char[]
+                       && _cards[i] + other._cards[j] <= ARRAY_MAX) {
+                mergeArrays(i, (char[]) other._containers[j],
+                            other._cards[j]);
+            } else {
+                long[] bits = bits(i);
+                Object c = other._containers[j];
+                if (c instanceof long[]) {
+                    long[] theirs = (long[]) c;
+                    for (int w = 0; w < WORDS; w += 1) {
+                        bits[w] |= theirs[w];
+                    }
+                } else {
+                    char[] values = (char[]) c;
+                    for (int k = 0; k < other._cards[j]; k += 1) {
+                        bits[values[k] >>> 6] |= 1L << values[k];
+                    }
+                }
+                setBits(i, bits);
+            }
+        }
+    }
+
+    /** Remove every value in OTHER from this set. */
+    void andNot(Bitmap other) {
+        int n = 0;
+        for (int i = 0; i < _size; i += 1) {
+            int j = other.find(_keys[i]);
+            if (j >= 0) {
+                if (_containers[i] instanceof long[]) {
+                    long[] bits = (long[]) _containers[i];
+                    Object c = other._containers[j];
+                    if (c instanceof long[]) {
+                        long[] theirs = (long[]) c;
+                        for (int w = 0; w < WORDS; w += 1) {
+                            bits[w] &= ~theirs[w];
+                        }
+                    } else {
+                        char[] values = (char[]) c;
+                        for (int k = 0; k < other._cards[j]; k += 1) {
+                            bits[values[k] >>> 6] &= ~(1L << values[k]);
+                        }
+                    }
+                    setBits(i, bits);
+                } else {
+                    char[] values = (char[]) _containers[i];
+                    int m = 0;
+                    for (int k = 0; k < _cards[i]; k += 1) {
+                        if (!other.contains(j, values[k])) {
+                            values[m] = values[k];
+                            m += 1;
+                        }
+                    }
+                    _cards[i] = m;
+                }
+            }
+            if (_cards[i] > 0) {
+                _keys[n] = _keys[i];
+                _containers[n] = _containers[i];
+                _cards[n] = _cards[i];
+                n += 1;
+            }
+        }
+        Arrays.fill(_containers, n, _size, null);
+        _size = n;
+    }
+
+    /** Call ACTION on each value in this set, in increasing order. */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < _size; i += 1) {
+            int high = _keys[i] << 16;
+            if (_containers[i] instanceof long[]) {
+                long[] bits = (long[]) _containers[i];
+                for (int w = 0; w < WORDS; w += 1) {
+                    for (long word = bits[w]; word != 0;
+                         word &= word - 1) {
+                        action.accept(high | (w << 6)
+                                      | Long.numberOfTrailingZeros(word));
+                    }
+                }
+            } else {
+                char[] values = (char[]) _containers[i];
+                for (int k = 0; k < _cards[i]; k += 1) {
+                    action.accept(high | values[k]);
+                }
+            }
+        }
+    }
+
+    /** Write the encoded form of this set, described in the class
+     *  comment, to OUT. */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(_size);
+        for (int i = 0; i < _size; i += 1) {
+            out.writeChar(_keys[i]);
+            out.writeInt(_cards[i]);
+            if (_containers[i] instanceof long[]) {
+                for (long word : (long[]) _containers[i]) {
+                    out.writeLong(word);
+                }
+            } else {
+                char[] values = (char[]) _containers[i];
+                for (int k = 0; k < _cards[i]; k += 1) {
+                    out.writeChar(values[k]);
+                }
+            }
+        }
+    }
+
+    /** Return the set encoded at the position of IN, advancing past it.
+     *  Throws IllegalArgumentException if the encoding is malformed. */
+    static Bitmap read(ByteBuffer in) {
+        Bitmap result = new Bitmap();
+        int n = in.getInt();
+        if (n < 0 || n > 1 << 16) {
+            throw new IllegalArgumentException("corrupt bitmap");
+        }
+        for (int i = 0; i < n; i += 1) {
+            int key = in.getChar();
+            int card = in.getInt();
+            if (card <= 0 || card > 1 << 16
+                || (i > 0 && key <= result._keys[i - 1])) {
+                throw new IllegalArgumentException("corrupt bitmap");
+            }
+            Object container;
+            if (card > ARRAY_MAX) {
+                long[] bits = new long[WORDS];
+                in.asLongBuffer().get(bits);
+                in.position(in.position() + WORDS * Long.BYTES);
+                container = bits;
+            } else {
+                char[] values = new char[card];
+                in.asCharBuffer().get(values);
+                in.position(in.position() + card * Character.BYTES);
+                container = values;
+            }
+            result.insert(i, key, container, card);
+        }
+        return result;
+    }
+
+    /** Return the index of the container for block KEY, or -(I + 1) if
+     *  there is none and it would be inserted at I. */
+    private int find(int key) {
+        int lo = 0, hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_keys[mid] < key) {
+                lo = mid + 1;
+            } else if (_keys[mid] > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    /** Return true iff container I holds the lower bits LOW. */
+    private boolean contains(int i, char low) {
+        if (_containers[i] instanceof long[]) {
+            return (((long[]) _containers[i])[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) _containers[i], 0, _cards[i],
+                                   low) >= 0;
+    }
+
+    /** Insert CONTAINER, holding CARD values, for block KEY at index I. */
+    private void insert(int i, int key, Object container, int card) {
+        if (_size == _keys.length) {
+            int n = Math.max(4, 2 * _size);
+            _keys = Arrays.copyOf(_keys, n);
+            _containers = Arrays.copyOf(_containers, n);
+            _cards = Arrays.copyOf(_cards, n);
+        }
+        System.arraycopy(_keys, i, _keys, i + 1, _size - i);
+        System.arraycopy(_containers, i, _containers, i + 1, _size - i);
+        System.arraycopy(_cards, i, _cards, i + 1, _size - i);
+        _keys[i] = key;
+        _containers[i] = container;
+        _cards[i] = card;
+        _size += 1;
+    }
+
+    /** Merge the first N of the sorted VALUES into array container I,
+     *  whose combined size is known to be at most ARRAY_MAX. */
+    private void mergeArrays(int i, char[] values, int n) {
+        char[] mine = (char[]) _containers[i];
+        char[] result = new char[_cards[i] + n];
+        int a = 0, b = 0, m = 0;
+        while (a < _cards[i] || b < n) {
+            if (b == n || (a < _cards[i] && mine[a] < values[b])) {
+                result[m] = mine[a];
+                a += 1;
+            } else if (a == _cards[i] || values[b] < mine[a]) {
+                result[m] = values[b];
+                b += 1;
+            } else {
+                result[m] = mine[a];
+                a += 1;
+                b += 1;
+            }
+            m += 1;
+        }
+        _containers[i] = result;
+        _cards[i] = m;
+    }
+
+    /** Return container I as a bitset, which is the container itself if
+     *  it is already one. */
+    private long[] bits(int i) {
+        if (_containers[i] instanceof long[]) {
+            return (long[]) _containers[i];
+        }
+        return toBits((char[]) _containers[i], _cards[i]);
+    }
+
+    /** Make BITS the contents of container I, converting it to an array
+     *  if it holds few enough values. */
+    private void setBits(int i, long[] bits) {
+        int card = 0;
+        for (long word : bits) {
+            card += Long.bitCount(word);
+        }
+        _cards[i] = card;
+        if (card > ARRAY_MAX) {
+            _containers[i] = bits;
+            return;
+        }
+        char[] values = new char[card];
+        int k = 0;
+        for (int w = 0; w < WORDS; w += 1) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                values[k] = (char) ((w << 6)
+                                    | Long.numberOfTrailingZeros(word));
+                k += 1;
+            }
+        }
+        _containers[i] = values;
+    }
+
+    /** Return a bitset holding the first N of VALUES. */
+    private static long[] toBits(char[] values, int n) {
+        long[] result = new long[WORDS];
+        for (int k = 0; k < n; k += 1) {
+            result[values[k] >>> 6] |= 1L << values[k];
+        }
+        return result;
+    }
+
+    /** Blocks of the containers, in increasing order. */
+    private int[] _keys = new int[0];
+    /** The containers: each a char[] of sorted values, possibly with
+     *  unused space at the end, or a long[] bitset. */
+    private Object[] _containers = new Object[0];
+    /** Numbers of values in the containers. */
+    private int[] _cards = new int[0];
+    /** Number of containers. */
+    private int _size;
+}
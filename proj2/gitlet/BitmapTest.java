@@ -0,0 +1,122 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of compressed sets of ints (see Bitmap), checked against
+ *  TreeSets. */
+public class BitmapTest {
+
+    /** Return a set of values made using RANDOM: a few sparse ones,
+     *  scattered over several blocks, and a dense run in one block. */
+    private static TreeSet<Integer> randomSet(Random random) {
+        TreeSet<Integer> result = new TreeSet<>();
+        for (int k = random.nextInt(3000); k > 0; k -= 1) {
+            result.add(random.nextInt(1 << 20));
+        }
+        if (random.nextBoolean()) {
+            int start = random.nextInt(8) << 16;
+            for (int k = random.nextInt(40000); k > 0; k -= 1) {
+                result.add(start + random.nextInt(1 << 16));
+            }
+        }
+        return result;
+    }
+
+    /** Return a Bitmap holding VALUES. */
+    private static Bitmap bitmap(TreeSet<Integer> values) {
+        Bitmap result = new Bitmap();
+        for (int x : values) {
+            assertTrue(result.add(x));
+            assertFalse(result.add(x));
+        }
+        return result;
+    }
+
+    /** Check that BITMAP holds exactly EXPECTED. */
+    private static void checkBitmap(Bitmap bitmap,
+                                    TreeSet<Integer> expected) {
+        assertEquals(expected.size(), bitmap.cardinality());
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        assertEquals(new ArrayList<>(expected), values);
+        for (int x : expected) {
+            assertTrue(bitmap.contains(x));
+        }
+        assertFalse(bitmap.contains(1 << 21));
+    }
+
+    /** Return the encoding of BITMAP. */
+    private static byte[] encode(Bitmap bitmap) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Random random = new Random(16);
+        for (int trial = 0; trial < 30; trial += 1) {
+            TreeSet<Integer> values = randomSet(random);
+            byte[] encoded = encode(bitmap(values));
+            ByteBuffer in = ByteBuffer.wrap(encoded);
+            checkBitmap(Bitmap.read(in), values);
+            assertFalse(in.hasRemaining());
+        }
+        checkBitmap(Bitmap.read(ByteBuffer.wrap(encode(new Bitmap()))),
+                    new TreeSet<>());
+    }
+
+    @Test
+    public void unionAndDifference() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 30; trial += 1) {
+            TreeSet<Integer> a = randomSet(random), b = randomSet(random);
+            Bitmap union = bitmap(a);
+            union.or(bitmap(b));
+            TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.addAll(b);
+            checkBitmap(union, expected);
+
+            Bitmap difference = bitmap(a);
+            difference.andNot(bitmap(b));
+            expected = new TreeSet<>(a);
+            expected.removeAll(b);
+            checkBitmap(difference, expected);
+        }
+    }
+
+    /** A container count or order that no encoding has is rejected. */
+    @Test
+    public void damagedEncodings() throws IOException {
+        Bitmap bitmap = new Bitmap();
+        bitmap.add(1);
+        bitmap.add(1 << 16);
+        byte[] encoded = encode(bitmap);
+        byte[] badCount = encoded.clone();
+        badCount[0] = -1;
+        assertRejected(badCount);
+        byte[] badOrder = encoded.clone();
+        badOrder[5] = 2;
+        assertRejected(badOrder);
+    }
+
+    /** Check that reading ENCODED throws IllegalArgumentException. */
+    private static void assertRejected(byte[] encoded) {
+        try {
+            Bitmap.read(ByteBuffer.wrap(encoded));
+            fail("read a damaged bitmap");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+}
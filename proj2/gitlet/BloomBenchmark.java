@@ -0,0 +1,140 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** Measures path-limited history queries with and without changed-path
+ *  filters (see ChangedPaths) on a synthetic history.  Usage, from an
+ *  empty directory:
+ *
+ *      java gitlet.BloomBenchmark [N [FILES [QUERIES]]]
+ *
+ *  creates a repository with a linear history of N commits (by default
+ *  100000) over FILES files (by default 64), each commit changing one to
+ *  three of them, and then asks for the history of QUERIES (by default
+ *  20) randomly chosen files.  Each query is answered using the filters;
+ *  the first few are also answered by reading every commit, as without
+ *  filters.  Prints the time per query, the commits read, and the
+ *  filters' observed false-positive rate.
+ */
+public class BloomBenchmark {
+
+    /** Number of queries also answered without filters. */
+    private static final int UNFILTERED = 3;
+
+    /** Run the benchmark as described in the class comment, using ARGS. */
+    public static void main(String... args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        if (Repository.GITLET_DIR.exists()) {
+            throw error("Run BloomBenchmark in an empty directory.");
+        }
+        Repository.GITLET_DIR.mkdirs();
+        Random random = new Random(0);
+
+        long start = System.nanoTime();
+        ObjectId head = build(n, files, random);
+        System.out.printf("built %d commits in %.1f s%n", n,
+                          (System.nanoTime() - start) / 1e9);
+
+        CommitGraph graph = CommitGraph.local();
+        ChangedPaths filters = graph.changedPaths();
+        double filtered = 0, unfiltered = 0;
+        long found = 0;
+        for (int q = 0; q < queries; q += 1) {
+            String path = fileName(random.nextInt(files));
+            long t0 = System.nanoTime();
+            List<ObjectId> hits = filters.history(graph, head, path);
+            filtered += System.nanoTime() - t0;
+            found += hits.size();
+            if (q < UNFILTERED) {
+                t0 = System.nanoTime();
+                List<ObjectId> expected = unfilteredHistory(graph, head, path);
+                unfiltered += System.nanoTime() - t0;
+                if (!expected.equals(hits)) {
+                    throw new IllegalStateException("wrong history for "
+                                                    + path);
+                }
+            }
+        }
+
+        System.out.printf("%-24s %14s%n", "mode", "ms/query");
+        System.out.printf("--------------------------------------%n");
+        System.out.printf("%-24s %14.1f%n", "without filters",
+                          unfiltered / Math.min(queries, UNFILTERED) / 1e6);
+        System.out.printf("%-24s %14.1f%n", "with filters",
+                          filtered / queries / 1e6);
+        System.out.printf("commits changing the path: %.1f per query%n",
+                          (double) found / queries);
+        System.out.println(filters.report());
+    }
+
+    /** Create a linear history of N commits over FILES files using
+     *  RANDOM, returning the UID of the last. */
+    private static ObjectId build(int n, int files, Random random) {
+        TreeSet<String> present = new TreeSet<>();
+        ObjectId parent = null, tree = null;
+        for (int i = 0; i < n; i += 1) {
+            TreeMap<String, ObjectId> puts = new TreeMap<>();
+            TreeSet<String> removes = new TreeSet<>();
+            for (int k = 1 + random.nextInt(3); k > 0; k -= 1) {
+                String name = fileName(random.nextInt(files));
+                if (present.contains(name) && random.nextInt(10) == 0) {
+                    present.remove(name);
+                    puts.remove(name);
+                    removes.add(name);
+                } else {
+                    String uid = sha1(name, Integer.toString(i));
+                    present.add(name);
+                    puts.put(name, ObjectId.fromHex(uid));
+                    removes.remove(name);
+                }
+            }
+            tree = FileMap.update(ObjectStore.local(), tree, puts, removes);
+            Commit commit =
+                new Commit("commit " + i, new Date(1000L * i),
+                           parent == null ? List.of() : List.of(parent),
+                           tree);
+            ObjectId uid = ObjectStore.local().write(Codecs.encode(commit));
+            CommitGraph.local().add(uid, commit);
+            parent = uid;
+        }
+        return parent;
+    }
+
+    /** Return the UIDs of the commits, newest first, among HEAD and its
+     *  first-parent ancestors in GRAPH that change PATH, reading every
+     *  commit. */
+    private static List<ObjectId> unfilteredHistory(CommitGraph graph,
+                                                    ObjectId head,
+                                                    String path) {
+        List<ObjectId> result = new ArrayList<>();
+        int pos = graph.position(head);
+        Commit commit = Commit.load(head);
+        while (pos >= 0) {
+            int[] parents = graph.parents(pos);
+            int parent = parents.length == 0 ? -1 : parents[0];
+            Commit before =
+                parent < 0 ? null : Commit.load(graph.uid(parent));
+            if (ChangedPaths.changed(ObjectStore.local(), commit, before)
+                .contains(path)) {
+                result.add(graph.uid(pos));
+            }
+            commit = before;
+            pos = parent;
+        }
+        return result;
+    }
+
+    /** Return the name of synthetic file number K. */
+    private static String fileName(int k) {
+        return String.format("src/file%04d.txt", k);
+    }
+}
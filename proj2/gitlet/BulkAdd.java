@@ -0,0 +1,233 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static gitlet.Utils.*;
+
+/** Staging of many files at once, as by "add FILE...".  Each argument
+ *  is a file or a directory, whose files are added recursively (except
+ *  those in any .gitlet directory), under names relative to the
+ *  working directory with '/' separating components.
+ *
+ *  Files whose sizes and modification times match those recorded in
+ *  the repository's StatCache, and whose blobs are already stored, are
+ *  staged without being read.  When the whole working directory is
+ *  added in a process with an active Watcher (as in a Daemon with
+ *  daemon.watch set), the UIDs of the files directly within it come
+ *  instead from a scan (see WorkingTree.scan), which examines only the
+ *  files changed since the previous one.  The UIDs of the files that
+ *  are read are recorded in the StatCache, which is saved with the
+ *  staging area.
+ *
+ *  The files that must be read are staged in a pipeline.  A bounded
+ *  pool of workers reads, hashes, and compresses them (see
+ *  ObjectStore.prepareBlob), at most IN_FLIGHT files per worker ahead
+ *  of the calling thread, which takes each prepared blob as it
+ *  completes and stores it through the Journal (see ObjectStore.store),
+ *  so that hashing and compression overlap with one another and with
+ *  the writes.  Memory use is bounded: at most IN_FLIGHT prepared blobs
+ *  per worker are held at once, and the Journal holds no more than its
+ *  limit of pending writes in memory, putting the rest in temporary
+ *  files until the transaction commits.  The staging area is then read,
+ *  updated, and saved just once.  The number of workers is that used to
+ *  scan the working directory (see WorkingTree.parallelism); with one,
+ *  all is done on the calling thread.
+ *
+ *  If the repository's add.report setting is true, the number of files
+ *  added and of bytes read, and the rates at which they were added in
+ *  files/s and MB/s, are printed to the standard error.
+ */
+class BulkAdd {
+
+    /** Number of files each worker may prepare ahead of the staging
+     *  thread. */
+    private static final int IN_FLIGHT = 4;
+
+    /** Stage the files named by PATHS, as described in the class
+     *  comment.  A file identical to its version in the current commit
+     *  is instead removed from the staging area.  Throws a
+     *  GitletException, before staging anything, if some path does not
+     *  name an existing file or directory in the working directory, or
+     *  names one in a .gitlet directory, such as the repository's
+     *  own. */
+    static void add(List<String> paths) {
+        long start = System.nanoTime();
+        List<String> names = new ArrayList<>();
+        boolean whole = false;
+        for (String path : paths) {
+            File file = join(Repository.CWD, path);
+            Path name = Repository.CWD.toPath().toAbsolutePath().normalize()
+                .relativize(file.toPath().toAbsolutePath().normalize());
+            for (Path component : name) {
+                if (component.toString().equals(".gitlet")) {
+                    throw error("Cannot add files in a .gitlet "
+                                + "directory.");
+                }
+            }
+            if (!file.exists() || name.startsWith("..")) {
+                throw error("File does not exist.");
+            }
+            collect(file, name.toString().replace(File.separatorChar, '/'),
+                    names);
+            whole |= name.toString().isEmpty();
+        }
+
+        ObjectStore store = ObjectStore.local();
+        StatCache cache = StatCache.load();
+        Map<String, ObjectId> scanned =
+            whole && Watcher.active() != null ? WorkingTree.scan(cache)
+            : Map.of();
+        TreeMap<String, ObjectId> added = new TreeMap<>();
+        long bytes = 0;
+        int workers = WorkingTree.parallelism();
+        if (workers <= 1) {
+            for (String name : names) {
+                Prepared result =
+                    prepare(name, scanned.get(name), store, cache);
+                added.put(name, result.store(store));
+                bytes += result.length();
+            }
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(workers);
+            try {
+                CompletionService<Prepared> done =
+                    new ExecutorCompletionService<>(pool);
+                int next = 0, pending = 0;
+                while (next < names.size() || pending > 0) {
+                    while (next < names.size()
+                           && pending < workers * IN_FLIGHT) {
+                        String name = names.get(next);
+                        ObjectId known = scanned.get(name);
+                        done.submit(() -> prepare(name, known, store, cache));
+                        next += 1;
+                        pending += 1;
+                    }
+                    Prepared result = take(done);
+                    pending -= 1;
+                    added.put(result.name, result.store(store));
+                    bytes += result.length();
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        Refs refs = Refs.local();
+        ObjectId headUid = refs.head() == null ? null
+            : refs.get(refs.head());
+        Commit head = headUid == null ? null : Commit.load(headUid);
+        StagingArea stage = StagingArea.load();
+        for (String name : added.keySet()) {
+            ObjectId uid = added.get(name);
+            if (head != null && uid.equals(head.getBlob(name))) {
+                stage.unstage(name);
+            } else {
+                stage.add(name, uid);
+            }
+        }
+        stage.save();
+        cache.save();
+
+        if (Config.getBoolean("add.report", false)) {
+            double time = (System.nanoTime() - start) / 1e9;
+            System.err.printf("add: %d files, %d bytes in %.2f s "
+                              + "(%.0f files/s, %.1f MB/s)%n",
+                              added.size(), bytes, time,
+                              added.size() / time, bytes / time / 1e6);
+        }
+    }
+
+    /** Add to NAMES the name of FILE, whose name is NAME, if it is a plain
+     *  file, or if it is a directory other than a .gitlet directory, the
+     *  names of the files within it, in lexicographic order. */
+    private static void collect(File file, String name, List<String> names) {
+        if (file.isFile()) {
+            names.add(name);
+        } else if (file.isDirectory() && !file.getName().equals(".gitlet")) {
+            String[] children = file.list();
+            LISTINGS.add(1);
+            if (children == null) {
+                return;
+            }
+            Arrays.sort(children);
+            for (String child : children) {
+                collect(new File(file, child),
+                        name.isEmpty() ? child : name + "/" + child, names);
+            }
+        }
+    }
+
+    /** Return the working file NAME prepared for staging in STORE: its
+     *  UID, which is KNOWN if that is not null, and is otherwise taken
+     *  from CACHE if it is up to date there; and unless its blob is
+     *  already in STORE, the blob, ready to be stored.  May be called
+     *  from several threads at once. */
+    private static Prepared prepare(String name, ObjectId known,
+                                    ObjectStore store, StatCache cache) {
+        Prepared result = new Prepared(name);
+        if (known != null) {
+            result.uid = known;
+        } else {
+            result.uid = cache.uidOf(name, file -> {
+                result.blob = store.prepareBlob(file);
+                return result.blob.uid();
+            });
+        }
+        if (result.blob == null && !store.onDisk(result.uid)) {
+            result.blob = store.prepareBlob(join(Repository.CWD, name));
+        }
+        return result;
+    }
+
+    /** Return the next result completed by DONE, rethrowing any exception
+     *  with which its task failed. */
+    private static Prepared take(CompletionService<Prepared> done) {
+        try {
+            return done.take().get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException("interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalArgumentException(excp.getCause());
+        }
+    }
+
+    /** A working file prepared for staging by prepare. */
+    private static class Prepared {
+        /** The working file NAME, not yet prepared. */
+        Prepared(String name) {
+            this.name = name;
+        }
+
+        /** Store my blob in STORE, if it was read, and return its UID. */
+        ObjectId store(ObjectStore store) {
+            return blob == null ? uid : store.store(blob);
+        }
+
+        /** Return the number of bytes read from the file. */
+        long length() {
+            return blob == null ? 0 : blob.length();
+        }
+
+        /** The name of the file. */
+        private final String name;
+        /** The UID of its contents. */
+        private ObjectId uid;
+        /** Its blob, or null if the blob is already stored. */
+        private ObjectStore.PreparedBlob blob;
+    }
+}
@@ -0,0 +1,142 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the staging of many files at once (see BulkAdd).  Since a
+ *  command acts on the repository in its current directory, each is run
+ *  by a separate process in a temporary directory. */
+public class BulkAddTest {
+
+    /** The working directory of the current test. */
+    private File _dir;
+
+    @Before
+    public void makeRepository() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-add").toFile();
+        assertEquals("", gitlet(1, "init"));
+    }
+
+    @After
+    public void removeRepository() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Run gitlet.Main with arguments ARGS in _dir, using WORKERS threads
+     *  to add files, and return what it printed. */
+    private String gitlet(int workers, String... args)
+        throws IOException, InterruptedException {
+        List<String> argv = new ArrayList<>();
+        argv.add(System.getProperty("java.home") + File.separator + "bin"
+                 + File.separator + "java");
+        argv.add("-cp");
+        argv.add(System.getProperty("java.class.path"));
+        argv.add("gitlet.Main");
+        argv.addAll(List.of(args));
+        ProcessBuilder builder = new ProcessBuilder(argv);
+        builder.directory(_dir);
+        builder.redirectErrorStream(true);
+        builder.environment().remove("GITLET_DAEMON");
+        builder.environment().remove("GITLET_SEQUENTIAL");
+        builder.environment().put("GITLET_PARALLELISM", "" + workers);
+        Process process = builder.start();
+        String output = new String(process.getInputStream().readAllBytes(),
+                                   StandardCharsets.UTF_8);
+        assertEquals(output, 0, process.waitFor());
+        return output;
+    }
+
+    /** Return the files staged for addition in _dir's repository. */
+    private Map<String, ObjectId> staged() {
+        File staging = join(_dir, ".gitlet", "staging");
+        if (!staging.isFile()) {
+            return Map.of();
+        }
+        return Codecs.decode(readContents(staging), StagingArea.class)
+            .added();
+    }
+
+    /** Write working file NAME with CONTENTS, returning the UID of its
+     *  blob. */
+    private ObjectId write(String name, String contents) {
+        File file = join(_dir, name);
+        file.getParentFile().mkdirs();
+        writeContents(file, contents);
+        return ObjectId.of(contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Files added through the pipeline are staged under their names,
+     *  with their contents' UIDs, whatever the number of workers, and
+     *  adding them again, or through several arguments, stages each
+     *  once. */
+    @Test
+    public void pipeline() throws IOException, InterruptedException {
+        TreeMap<String, ObjectId> expected = new TreeMap<>();
+        for (int k = 0; k < 60; k += 1) {
+            String name = (k % 3 == 0 ? "a/" : k % 3 == 1 ? "b/c/" : "")
+                + "f" + k + ".txt";
+            expected.put(name, write(name, "contents " + (k % 7)));
+        }
+        assertEquals("", gitlet(4, "add", "b", "."));
+        assertEquals(expected, staged());
+        assertEquals(new ArrayList<>(expected.keySet()),
+                     new ArrayList<>(staged().keySet()));
+
+        expected.put("f2.txt", write("f2.txt", "changed"));
+        assertEquals("", gitlet(1, "add", "f2.txt", "a", "f2.txt"));
+        assertEquals(expected, staged());
+        assertEquals("", gitlet(4, "add", "."));
+        assertEquals(expected, staged());
+    }
+
+    /** A missing file is reported before anything is staged. */
+    @Test
+    public void missingFile() throws IOException, InterruptedException {
+        write("f.txt", "one");
+        assertEquals("File does not exist." + System.lineSeparator(),
+                     gitlet(4, "add", "f.txt", "g.txt"));
+        assertEquals(Map.of(), staged());
+        assertEquals("File does not exist." + System.lineSeparator(),
+                     gitlet(4, "add", "../" + _dir.getName() + "x"));
+    }
+
+    /** Paths in the repository's .gitlet directory are refused, however
+     *  they are written, and skipped when adding a directory. */
+    @Test
+    public void gitletDirectory() throws IOException, InterruptedException {
+        ObjectId uid = write("f.txt", "one");
+        String refused = "Cannot add files in a .gitlet directory."
+            + System.lineSeparator();
+        assertEquals(refused, gitlet(1, "add", ".gitlet/HEAD"));
+        assertEquals(refused, gitlet(1, "add", ".gitlet"));
+        assertEquals(refused, gitlet(1, "add", "f.txt", "a/../.gitlet/HEAD"));
+        assertEquals(refused, gitlet(1, "add", "./.gitlet/staging"));
+        assertEquals(Map.of(), staged());
+        assertEquals("", gitlet(1, "add", "."));
+        assertEquals(Map.of("f.txt", uid), staged());
+    }
+}
@@ -0,0 +1,233 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** Bloom filters of the paths changed by each commit, kept in the side
+ *  file .gitlet/commit-graph.bloom parallel to the CommitGraph: the
+ *  FILTER-byte filter for the commit with record number P is at offset
+ *  P * FILTER.  A commit's changed paths are those whose blobs differ
+ *  from its first parent's, including added and removed files.  Each
+ *  path sets HASHES bits, chosen by double hashing a 64-bit hash of its
+ *  name, which for up to about 25 changed paths gives a false-positive
+ *  rate near 1%.  A commit that changes more than MAX_PATHS paths, or
+ *  that was added to the graph before filters existed, has a filter
+ *  with every bit set, which rules nothing out.
+ *
+ *  A query for the history of a path (see history) thus needs to read
+ *  only the commits whose filters might contain it.  The query counts
+ *  how often filters rule commits out and how often they fail to,
+ *  which gives the observed false-positive rate (see report).
+ */
+class ChangedPaths {
+
+    /** Length of a filter. */
+    static final int FILTER = 32;
+    /** Number of bits set per path. */
+    private static final int HASHES = 7;
+    /** Number of changed paths beyond which a filter is saturated. */
+    static final int MAX_PATHS = 64;
+
+    /** The filters of the repository whose metadata is in GITLETDIR and
+     *  whose objects are in STORE. */
+    ChangedPaths(File gitletDir, ObjectStore store) {
+        _file = join(gitletDir, "commit-graph.bloom");
+        _store = store;
+    }
+
+    /** Return the set of paths that COMMIT, whose FileMap is in STORE,
+     *  changes relative to PARENT, which is null for a commit without
+     *  parents. */
+    static TreeSet<String> changed(ObjectStore store, Commit commit,
+                                   Commit parent) {
+        if (commit.getTree() != null
+            && (parent == null || parent.getTree() != null)) {
+            return FileMap.changed(store,
+                                   parent == null ? null : parent.getTree(),
+                                   commit.getTree());
+        }
+        TreeSet<String> result = new TreeSet<>();
+        Map<String, ObjectId> now = commit.getBlobs();
+        Map<String, ObjectId> before =
+            parent == null ? Map.of() : parent.getBlobs();
+        for (Map.Entry<String, ObjectId> e : now.entrySet()) {
+            if (!e.getValue().equals(before.get(e.getKey()))) {
+                result.add(e.getKey());
+            }
+        }
+        for (String name : before.keySet()) {
+            if (!now.containsKey(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** Return the filter of the paths that COMMIT, whose FileMap is in
+     *  STORE, changes relative to PARENT, which is null for a commit
+     *  without parents. */
+    static byte[] filter(ObjectStore store, Commit commit, Commit parent) {
+        TreeSet<String> paths = changed(store, commit, parent);
+        byte[] result = new byte[FILTER];
+        if (paths.size() > MAX_PATHS) {
+            Arrays.fill(result, (byte) -1);
+            return result;
+        }
+        for (String path : paths) {
+            long h = hash(path);
+            int h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+            for (int i = 0; i < HASHES; i += 1) {
+                int bit = (h1 + i * h2) & (FILTER * 8 - 1);
+                result[bit >>> 3] |= 1 << (bit & 7);
+            }
+        }
+        return result;
+    }
+
+    /** Store FILTERS as the filters of the commits with record numbers
+     *  FIRST, FIRST + 1, ....  Any commits before FIRST that lack filters
+     *  are given saturated ones. */
+    void append(int first, List<byte[]> filters) {
+        try (FileChannel out =
+             FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE)) {
+            long at = Math.min(out.size() / FILTER, first) * FILTER;
+            ByteBuffer buf =
+                ByteBuffer.allocate((int) ((long) first * FILTER - at
+                                           + (long) filters.size() * FILTER));
+            while (at + buf.position() < (long) first * FILTER) {
+                buf.put((byte) -1);
+            }
+            for (byte[] filter : filters) {
+                buf.put(filter);
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                at += out.write(buf, at);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _map = null;
+    }
+
+    /** Remove all filters, so that they may be rebuilt. */
+    void clear() {
+        _file.delete();
+        _map = null;
+    }
+
+    /** Return false if the commit with record number POS certainly does
+     *  not change PATH, and true if it might. */
+    boolean mightChange(int pos, String path) {
+        load();
+        if ((long) (pos + 1) * FILTER > _map.limit()) {
+            return true;
+        }
+        long h = hash(path);
+        int h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = (h1 + i * h2) & (FILTER * 8 - 1);
+            if ((_map.get(pos * FILTER + (bit >>> 3)) & (1 << (bit & 7)))
+                == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the UIDs of the commits, newest first, that change PATH
+     *  among HEAD and its first-parent ancestors in GRAPH, reading only
+     *  those commits whose filters might contain PATH. */
+    List<ObjectId> history(CommitGraph graph, ObjectId head,
+                           String path) {
+        List<ObjectId> result = new ArrayList<>();
+        int pos = graph.position(head);
+        while (pos >= 0) {
+            int[] parents = graph.parents(pos);
+            int parent = parents.length == 0 ? -1 : parents[0];
+            if (!mightChange(pos, path)) {
+                _ruledOut += 1;
+            } else {
+                ObjectId uid = graph.uid(pos);
+                Commit commit = _store.decode(uid, Commit.class);
+                Commit before = parent < 0 ? null
+                    : _store.decode(graph.uid(parent), Commit.class);
+                if (changed(_store, commit, before).contains(path)) {
+                    result.add(uid);
+                } else {
+                    _falsePositives += 1;
+                }
+            }
+            pos = parent;
+        }
+        return result;
+    }
+
+    /** Return a description of the queries made by history: the commits
+     *  ruled out by their filters, the false positives, and the
+     *  resulting false-positive rate. */
+    String report() {
+        long negatives = _ruledOut + _falsePositives;
+        return String.format("bloom: %d commits ruled out, %d false "
+                             + "positives, false-positive rate %.4f",
+                             _ruledOut, _falsePositives,
+                             negatives == 0 ? 0.0
+                             : (double) _falsePositives / negatives);
+    }
+
+    /** Return a 64-bit hash of PATH: FNV-1a over its UTF-8 encoding,
+     *  followed by the MurmurHash3 finalizer. */
+    static long hash(String path) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Map the filter file, if not already done. */
+    private void load() {
+        if (_map != null) {
+            return;
+        }
+        _map = ByteBuffer.allocate(0);
+        if (_file.isFile()) {
+            try (FileChannel ch = FileChannel.open(_file.toPath())) {
+                _map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** The filter file. */
+    private final File _file;
+    /** The objects of the repository, holding its commits. */
+    private final ObjectStore _store;
+    /** The mapped contents of _file, or null if not yet loaded. */
+    private ByteBuffer _map;
+    /** Number of commits that history skipped because of their
+     *  filters. */
+    private long _ruledOut;
+    /** Number of commits that history read because of their filters,
+     *  but that did not change the path sought. */
+    private long _falsePositives;
+}
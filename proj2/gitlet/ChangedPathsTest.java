@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the changed-path filters (see ChangedPaths), checked against
+ *  the files of commits made in a temporary repository. */
+public class ChangedPathsTest {
+
+    /** Number of commits made. */
+    private static final int COMMITS = 300;
+    /** Number of distinct file names used. */
+    private static final int NAMES = 40;
+
+    /** The commits made, oldest first. */
+    private final List<ObjectId> _commits = new ArrayList<>();
+    /** The files of each commit made, mapping names to contents. */
+    private final Map<ObjectId, Map<String, String>> _files = new HashMap<>();
+    /** The first parent of each commit made, or null for none. */
+    private final Map<ObjectId, ObjectId> _firstParents = new HashMap<>();
+
+    /** The repository directory of the current test. */
+    private File _dir;
+    /** The objects of the repository. */
+    private ObjectStore _store;
+    /** The commit graph of the repository, to which commits are added
+     *  as they are made. */
+    private CommitGraph _graph;
+
+    @Before
+    public void makeRepository() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-paths").toFile();
+        _store = new ObjectStore(_dir);
+        _graph = new CommitGraph(_dir, _store);
+    }
+
+    @After
+    public void removeRepository() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Return a commit with parents PARENTS, holding FILES, a mapping of
+     *  file names to their contents, without adding it to the graph. */
+    private Commit makeCommit(List<ObjectId> parents,
+                              Map<String, String> files) {
+        TreeMap<String, ObjectId> blobs = new TreeMap<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            blobs.put(file.getKey(), _store.write(file.getValue().getBytes()));
+        }
+        return new Commit("commit " + _commits.size(),
+                          new Date(1000L * _commits.size()), parents,
+                          FileMap.write(_store, blobs));
+    }
+
+    /** Make a commit with parents PARENTS, holding FILES, a mapping of
+     *  file names to their contents, and add it to the graph.  Returns
+     *  its UID. */
+    private ObjectId commit(List<ObjectId> parents,
+                            Map<String, String> files) {
+        ObjectId uid = _store.write(Codecs.encode(makeCommit(parents, files)));
+        _graph.add(uid, _store.decode(uid, Commit.class));
+        _commits.add(uid);
+        _files.put(uid, files);
+        _firstParents.put(uid, parents.isEmpty() ? null : parents.get(0));
+        return uid;
+    }
+
+    /** Make COMMITS commits, each adding, changing, or removing a few of
+     *  NAMES files, with occasional merges, using RANDOM. */
+    private void makeHistory(Random random) {
+        Map<String, String> files = new TreeMap<>();
+        for (int k = 0; k < COMMITS; k += 1) {
+            files = new TreeMap<>(files);
+            for (int n = random.nextInt(4); n >= 0; n -= 1) {
+                String name = "dir" + random.nextInt(4) + "/f"
+                    + random.nextInt(NAMES);
+                if (random.nextInt(5) == 0) {
+                    files.remove(name);
+                } else {
+                    files.put(name, "version " + k);
+                }
+            }
+            List<ObjectId> parents = new ArrayList<>();
+            if (k > 0) {
+                parents.add(_commits.get(k - 1));
+            }
+            if (k > 5 && k % 20 == 0) {
+                parents.add(_commits.get(k - 5));
+            }
+            commit(parents, files);
+        }
+    }
+
+    /** Return the names of the files whose contents differ between
+     *  commits A and B, either of which may be null for no files. */
+    private Set<String> changed(ObjectId a, ObjectId b) {
+        Map<String, String> before = a == null ? Map.of() : _files.get(a),
+            after = b == null ? Map.of() : _files.get(b);
+        Set<String> result = new HashSet<>();
+        for (String name : before.keySet()) {
+            if (!before.get(name).equals(after.get(name))) {
+                result.add(name);
+            }
+        }
+        for (String name : after.keySet()) {
+            if (!after.get(name).equals(before.get(name))) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** Every path that a commit changes, including removed files, passes
+     *  its filter, and few others do. */
+    @Test
+    public void noFalseNegatives() {
+        makeHistory(new Random(30));
+        ChangedPaths filters = new CommitGraph(_dir, _store).changedPaths();
+        int positives = 0, trials = 0;
+        for (ObjectId uid : _commits) {
+            int pos = _graph.position(uid);
+            Set<String> changed = changed(_firstParents.get(uid), uid);
+            for (String name : changed) {
+                assertTrue(name, filters.mightChange(pos, name));
+            }
+            for (int n = 0; n < NAMES; n += 1) {
+                String name = "other/f" + n;
+                trials += 1;
+                if (filters.mightChange(pos, name)) {
+                    positives += 1;
+                }
+            }
+        }
+        assertTrue(positives < trials / 20);
+    }
+
+    /** A commit that changes more than MAX_PATHS paths has a filter with
+     *  every bit set; one that changes exactly MAX_PATHS does not. */
+    @Test
+    public void saturation() {
+        byte[] full = new byte[ChangedPaths.FILTER];
+        Arrays.fill(full, (byte) -1);
+        Map<String, String> files = new TreeMap<>();
+        for (int n = 0; n < ChangedPaths.MAX_PATHS; n += 1) {
+            files.put("f" + n, "contents " + n);
+        }
+        Commit atLimit = makeCommit(List.of(), files);
+        assertFalse(Arrays.equals(full,
+                                  ChangedPaths.filter(_store, atLimit, null)));
+        files.put("one more", "contents");
+        Commit overLimit = makeCommit(List.of(), files);
+        assertArrayEquals(full, ChangedPaths.filter(_store, overLimit, null));
+
+        ObjectId uid = commit(List.of(), files);
+        ChangedPaths filters = _graph.changedPaths();
+        assertTrue(filters.mightChange(_graph.position(uid), "anything"));
+    }
+
+    /** The history of a path found through the filters is that found by
+     *  walking the first-parent chain and comparing files, for each
+     *  path, and for paths that never existed. */
+    @Test
+    public void historyMatchesWalk() {
+        makeHistory(new Random(31));
+        CommitGraph graph = new CommitGraph(_dir, _store);
+        ChangedPaths filters = graph.changedPaths();
+        ObjectId head = _commits.get(COMMITS - 1);
+        List<String> names = new ArrayList<>();
+        for (int d = 0; d < 4; d += 1) {
+            for (int n = 0; n < NAMES; n += 1) {
+                names.add("dir" + d + "/f" + n);
+            }
+        }
+        names.add("no/such/file");
+        for (String name : names) {
+            List<ObjectId> expected = new ArrayList<>();
+            for (ObjectId uid = head; uid != null;
+                 uid = _firstParents.get(uid)) {
+                if (changed(_firstParents.get(uid), uid).contains(name)) {
+                    expected.add(uid);
+                }
+            }
+            assertEquals(name, expected, filters.history(graph, head, name));
+        }
+    }
+}
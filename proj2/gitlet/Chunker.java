@@ -0,0 +1,100 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/** Content-defined chunking of a stream of bytes, in the manner of
+ *  FastCDC.  A Gear rolling hash is computed over the stream, and a
+ *  chunk ends wherever the hash's top MASK_BITS bits are all zero
+ *  (subject to a minimum and maximum chunk size).  Because chunk
+ *  boundaries depend only on nearby content, an insertion or deletion
+ *  changes only the chunks around it, so that successive versions of a
+ *  file share most of their chunks.
+ */
+class Chunker {
+
+    /** Smallest chunk produced, except at the end of the stream. */
+    static final int MIN_SIZE = 2 * 1024;
+    /** Largest chunk produced. */
+    static final int MAX_SIZE = 64 * 1024;
+    /** Number of hash bits that must be zero at a boundary, giving an
+     *  average chunk size of about 2 ** MASK_BITS + MIN_SIZE. */
+    private static final int MASK_BITS = 13;
+    /** Mask selecting the bits tested for a boundary. */
+    private static final long MASK = -1L << (64 - MASK_BITS);
+
+    /** Random values for each byte value.  These must never change, since
+     *  they determine the chunks of every chunked blob. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        long x = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < GEAR.length; i += 1) {
+            /* SplitMix64. */
+            x += 0x9E3779B97F4A7C15L;
+            long z = x;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    /** A chunker for the contents of IN. */
+    Chunker(InputStream in) {
+        _in = in;
+    }
+
+    /** Return the next chunk of the stream, or null if it is exhausted. */
+    byte[] next() throws IOException {
+        if (_eof && _start == _end) {
+            return null;
+        }
+        fill();
+        int limit = Math.min(_end, _start + MAX_SIZE);
+        int cut = limit;
+        long hash = 0;
+        for (int i = _start + MIN_SIZE; i < limit; i += 1) {
+            hash = (hash << 1) + GEAR[_buffer[i] & 0xff];
+            if ((hash & MASK) == 0) {
+                cut = i + 1;
+                break;
+            }
+        }
+        if (cut == _start) {
+            return null;
+        }
+        byte[] chunk = Arrays.copyOfRange(_buffer, _start, cut);
+        _start = cut;
+        return chunk;
+    }
+
+    /** Ensure that the buffer holds at least MAX_SIZE bytes beyond _start,
+     *  or all the rest of the stream. */
+    private void fill() throws IOException {
+        if (_end - _start >= MAX_SIZE || _eof) {
+            return;
+        }
+        System.arraycopy(_buffer, _start, _buffer, 0, _end - _start);
+        _end -= _start;
+        _start = 0;
+        while (_end < _buffer.length) {
+            int n = _in.read(_buffer, _end, _buffer.length - _end);
+            if (n < 0) {
+                _eof = true;
+                break;
+            }
+            _end += n;
+        }
+    }
+
+    /** The source of bytes. */
+    private final InputStream _in;
+    /** Buffered bytes from _in, of which those in [_start, _end) are not
+     *  yet returned. */
+    private final byte[] _buffer = new byte[2 * MAX_SIZE];
+    /** Bounds of the unconsumed bytes in _buffer. */
+    private int _start, _end;
+    /** True iff _in is exhausted. */
+    private boolean _eof;
+}
@@ -0,0 +1,25 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/** A compact, hand-written binary encoding for objects of type T, used in
+ *  place of Java serialization for Gitlet's own persistent classes.  Each
+ *  encoding is versioned, so that a Codec can continue to read objects
+ *  written by older versions of itself.  Codecs are registered with the
+ *  Codecs class, which frames their output with a header identifying
+ *  the codec and version.
+ */
+interface Codec<T extends Dumpable> {
+
+    /** Return the version of the encoding produced by write. */
+    int version();
+
+    /** Write the encoding of OBJ to OUT. */
+    void write(T obj, DataOutputStream out) throws IOException;
+
+    /** Return an object read from IN, which contains an encoding with
+     *  version number VERSION (at most version()). */
+    T read(DataInputStream in, int version) throws IOException;
+}
@@ -0,0 +1,206 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import static gitlet.Utils.*;
+
+/** The registry of Codecs for Gitlet's persistent classes, and the
+ *  framing of their encodings.  An encoded object consists of
+ *
+ *      'g' 'l'  tag (1 byte)  version (1 byte)  body
+ *
+ *  where tag identifies the class (and hence its Codec) and version,
+ *  an unsigned byte, is that of the Codec that wrote body.  Data written
+ *  by Java serialization begins instead with the bytes 0xAC 0xED, which
+ *  decode also accepts, so that objects serialized before their class
+ *  had a Codec are read as before, and are re-encoded the next time
+ *  they are written.  (Commits, being named by the hash of their
+ *  contents, are never rewritten.)  Java serialization checks the
+ *  class's serialVersionUID, so this holds only for classes that fix it,
+ *  as Commit and StagingArea do; the default is recomputed whenever the
+ *  class changes.
+ */
+class Codecs {
+
+    /** First byte of an encoded object. */
+    private static final int MAGIC0 = 'g';
+    /** Second byte of an encoded object. */
+    private static final int MAGIC1 = 'l';
+    /** Length of the header of an encoded object. */
+    private static final int HEADER = 4;
+
+    /** Time spent encoding objects, whether by Codecs or by Java
+     *  serialization (see Utils.serialize). */
+    static final Metrics.Timer ENCODE_TIMER =
+        Metrics.timer("serialize.encode");
+    /** Time spent decoding objects. */
+    static final Metrics.Timer DECODE_TIMER =
+        Metrics.timer("serialize.decode");
+
+    /** Codecs indexed by class. */
+    private static final HashMap<Class<?>, Codec<?>> BY_CLASS =
+        new HashMap<>();
+    /** Tags indexed by class. */
+    private static final HashMap<Class<?>, Integer> TAGS = new HashMap<>();
+    /** Codecs indexed by tag. */
+    private static final HashMap<Integer, Codec<?>> BY_TAG = new HashMap<>();
+
+    static {
+        register(Commit.class, 1, Commit.CODEC);
+        register(StagingArea.class, 2, StagingArea.CODEC);
+        register(StatCache.class, 3, StatCache.CODEC);
+        register(FileMap.class, 4, FileMap.CODEC);
+    }
+
+    /** Register CODEC as the codec for CLS, with tag TAG. */
+    private static <T extends Dumpable> void register(Class<T> cls, int tag,
+                                                      Codec<T> codec) {
+        BY_CLASS.put(cls, codec);
+        TAGS.put(cls, tag);
+        BY_TAG.put(tag, codec);
+    }
+
+    /** Return true iff OBJ's class has a registered Codec. */
+    static boolean hasCodec(Object obj) {
+        return BY_CLASS.containsKey(obj.getClass());
+    }
+
+    /** Return true iff DATA was produced by encode. */
+    static boolean isEncoded(byte[] data) {
+        return data.length >= HEADER && data[0] == MAGIC0
+            && data[1] == MAGIC1;
+    }
+
+    /** Return the encoding of OBJ, whose class must have a Codec. */
+    @SuppressWarnings("unchecked")
+    static <T extends Dumpable> byte[] encode(T obj) {
+        Codec<T> codec = (Codec<T>) BY_CLASS.get(obj.getClass());
+        if (codec == null) {
+            throw new IllegalArgumentException("no codec for "
+                                               + obj.getClass().getName());
+        }
+        long start = ENCODE_TIMER.start();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC0);
+            out.write(MAGIC1);
+            out.write(TAGS.get(obj.getClass()));
+            out.write(codec.version());
+            codec.write(obj, out);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw error("Internal error encoding %s.",
+                        obj.getClass().getSimpleName());
+        } finally {
+            ENCODE_TIMER.stop(start);
+        }
+    }
+
+    /** Return the object encoded in DATA, which may be either the result
+     *  of encode or of Java serialization, casting it to EXPECTEDCLASS.
+     *  Throws IllegalArgumentException in case of problems. */
+    static <T extends Serializable> T decode(byte[] data,
+                                             Class<T> expectedClass) {
+        long start = DECODE_TIMER.start();
+        try {
+            if (!isEncoded(data)) {
+                ObjectInputStream in =
+                    new ObjectInputStream(new ByteArrayInputStream(data));
+                T result = expectedClass.cast(in.readObject());
+                in.close();
+                return result;
+            }
+            int version = data[3] & 0xff;
+            Codec<?> codec = BY_TAG.get(data[2] & 0xff);
+            if (codec == null || version > codec.version()) {
+                throw new IllegalArgumentException("unknown object format");
+            }
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(data, HEADER,
+                                                             data.length
+                                                             - HEADER));
+            return expectedClass.cast(codec.read(in, version));
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            DECODE_TIMER.stop(start);
+        }
+    }
+
+    /* HELPERS FOR CODECS */
+
+    /** Write the non-negative VAL to OUT as a varint. */
+    static void writeVarint(DataOutputStream out, long val)
+        throws IOException {
+        while (val >= 0x80) {
+            out.write((int) (val & 0x7f) | 0x80);
+            val >>>= 7;
+        }
+        out.write((int) val);
+    }
+
+    /** Return a varint read from IN.  Throws IOException if it does not
+     *  fit in a long. */
+    static long readVarint(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 63) {
+                throw new IOException("malformed varint");
+            }
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return result;
+            }
+        }
+    }
+
+    /** Write S to OUT as a varint length followed by its UTF-8 bytes. */
+    static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return a string written by writeString from IN.  Throws
+     *  IOException if the string's length is negative or exceeds what IN
+     *  holds; the string is read in pieces, so that a damaged length
+     *  cannot make it allocate more than IN holds. */
+    static String readString(DataInputStream in) throws IOException {
+        long length = readVarint(in);
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException("bad string length");
+        }
+        byte[] bytes = in.readNBytes((int) length);
+        if (bytes.length != length) {
+            throw new EOFException("short string");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Write the 20 bytes of ID to OUT. */
+    static void writeUid(DataOutputStream out, ObjectId id)
+        throws IOException {
+        out.write(id.bytes());
+    }
+
+    /** Return an ObjectId written by writeUid from IN. */
+    static ObjectId readUid(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[ObjectId.LENGTH];
+        in.readFully(bytes);
+        return ObjectId.fromBytes(bytes, 0);
+    }
+}
@@ -0,0 +1,207 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the binary encodings of Gitlet's persistent classes (see
+ *  Codecs): each must decode to what was encoded, in its current
+ *  version and in those it has replaced. */
+public class CodecsTest {
+
+    /** A working file written by statCacheRoundTrip. */
+    private static final File WORKING =
+        join(Repository.CWD, "codecs-test.txt");
+
+    /** UIDs used as parents, trees, and blobs. */
+    private static final ObjectId A = ObjectId.of("a".getBytes()),
+        B = ObjectId.of("b".getBytes()),
+        C = ObjectId.of("c".getBytes());
+
+    @After
+    public void removeFiles() {
+        WORKING.delete();
+    }
+
+    /** Check that ENCODED decodes, as an instance of CLS, to something
+     *  that encodes to ENCODED again, and return it. */
+    private static <T extends Dumpable> T reencode(byte[] encoded,
+                                                   Class<T> cls) {
+        T result = Codecs.decode(encoded, cls);
+        assertArrayEquals(encoded, Codecs.encode(result));
+        return result;
+    }
+
+    /** Check that commits A and B have the same fields. */
+    private static void assertSameCommit(Commit a, Commit b) {
+        assertEquals(a.getMessage(), b.getMessage());
+        assertEquals(a.getTimestamp(), b.getTimestamp());
+        assertEquals(a.getParents(), b.getParents());
+        assertEquals(a.getTree(), b.getTree());
+    }
+
+    @Test
+    public void commitRoundTrip() {
+        for (List<ObjectId> parents : List.of(List.<ObjectId>of(), List.of(A),
+                                              List.of(A, B))) {
+            Commit commit = new Commit("message \u00e9\u4e2d\n" + parents,
+                                       new Date(1234567890123L), parents, C);
+            byte[] encoded = Codecs.encode(commit);
+            assertTrue(Codecs.isEncoded(encoded));
+            assertSameCommit(commit, reencode(encoded, Commit.class));
+            assertEquals(ObjectId.of(encoded), commit.uid());
+        }
+    }
+
+    /** A commit in the version-1 encoding, which listed its files in
+     *  full, is still read. */
+    @Test
+    public void commitVersion1() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[] { 'g', 'l', 1, 1 });
+        out.writeLong(1000);
+        Codecs.writeString(out, "old");
+        out.writeByte(1);
+        Codecs.writeUid(out, A);
+        Codecs.writeVarint(out, 2);
+        Codecs.writeString(out, "f.txt");
+        Codecs.writeUid(out, B);
+        Codecs.writeString(out, "g.txt");
+        Codecs.writeUid(out, C);
+        out.close();
+
+        Commit commit = Codecs.decode(bytes.toByteArray(), Commit.class);
+        assertEquals("old", commit.getMessage());
+        assertEquals(new Date(1000), commit.getTimestamp());
+        assertEquals(List.of(A), commit.getParents());
+        assertNull(commit.getTree());
+        assertEquals(Map.of("f.txt", B, "g.txt", C), commit.getBlobs());
+        assertEquals(C, commit.getBlob("g.txt"));
+    }
+
+    /** An object written by Java serialization, as before there were
+     *  codecs, is still read, under a serialVersionUID that does not
+     *  change with the class. */
+    @Test
+    public void serializedCommit() {
+        assertEquals(1L, ObjectStreamClass.lookup(Commit.class)
+                     .getSerialVersionUID());
+        assertEquals(1L, ObjectStreamClass.lookup(StagingArea.class)
+                     .getSerialVersionUID());
+        Commit commit = new Commit("serialized", new Date(5), List.of(A), B);
+        byte[] serialized = serialize(commit);
+        assertFalse(Codecs.isEncoded(serialized));
+        assertSameCommit(commit, Codecs.decode(serialized, Commit.class));
+    }
+
+    @Test
+    public void stagingAreaRoundTrip() {
+        StagingArea stage = new StagingArea();
+        reencode(Codecs.encode(stage), StagingArea.class);
+        stage.add("a.txt", A);
+        stage.add("dir/b.txt", B);
+        stage.remove("c.txt");
+        StagingArea read =
+            reencode(Codecs.encode(stage), StagingArea.class);
+        assertEquals(stage.added(), read.added());
+        assertEquals(stage.removed(), read.removed());
+    }
+
+    @Test
+    public void statCacheRoundTrip() {
+        writeContents(WORKING, "contents");
+        StatCache cache = new StatCache();
+        ObjectId uid = cache.uidOf(WORKING.getName());
+        assertEquals(ObjectId.of("contents".getBytes()), uid);
+        reencode(Codecs.encode(cache), StatCache.class);
+    }
+
+    /** Every prefix of an encoding is rejected rather than misread, as
+     *  is an encoding from a newer version of its codec. */
+    @Test
+    public void damagedEncodings() {
+        byte[] encoded =
+            Codecs.encode(new Commit("damaged", new Date(7), List.of(A), B));
+        for (int n = 4; n < encoded.length; n += 1) {
+            assertRejected(Arrays.copyOf(encoded, n), Commit.class);
+        }
+        byte[] newer = encoded.clone();
+        newer[3] += 1;
+        assertRejected(newer, Commit.class);
+        for (int version : new int[] { 0x7f, 0x80, 0xff }) {
+            newer[3] = (byte) version;
+            assertRejected(newer, Commit.class);
+        }
+        byte[] unknown = encoded.clone();
+        for (int tag : new int[] { 0x81, 0xff }) {
+            unknown[2] = (byte) tag;
+            assertRejected(unknown, Commit.class);
+        }
+        assertRejected(encoded, StagingArea.class);
+    }
+
+    /** A string length that is negative, too long for the encoding, or
+     *  not a valid varint is rejected rather than allocated. */
+    @Test
+    public void craftedLengths() {
+        byte[] encoded =
+            Codecs.encode(new Commit("crafted", new Date(7), List.of(A), B));
+        byte[][] lengths = {
+            { -1, -1, -1, -1, -1, -1, -1, -1, -1, 1 },
+            { -1, -1, -1, -1, 7 },
+            { (byte) (encoded.length - 12) },
+            { -128, -128, -128, -128, -128, -128, -128, -128, -128, -128,
+              -128, 0 },
+        };
+        for (byte[] length : lengths) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bytes.write(encoded, 0, 12);
+            bytes.write(length, 0, length.length);
+            bytes.write(encoded, 13, encoded.length - 13);
+            assertRejected(bytes.toByteArray(), Commit.class);
+        }
+    }
+
+    /** Check that DATA cannot be decoded as an instance of CLS. */
+    private static void assertRejected(byte[] data,
+                                       Class<? extends Dumpable> cls) {
+        try {
+            Codecs.decode(data, cls);
+            fail("decoded a damaged " + cls.getSimpleName());
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void varints() throws IOException {
+        long[] values = { 0, 1, 127, 128, 300, 1L << 35, Long.MAX_VALUE };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) {
+            Codecs.writeVarint(out, value);
+        }
+        out.close();
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, Codecs.readVarint(in));
+        }
+        assertEquals(0, in.available());
+    }
+}
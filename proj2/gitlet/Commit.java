@@ -1,26 +1,185 @@
 package gitlet;
 
-// TODO: any imports you need here
-
-import java.util.Date; // TODO: You'll likely use this in this class
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /** Represents a gitlet commit object.
- *  TODO: It's a good idea to give a description here of what else this Class
- *  does at a high level.
- *
- *  @author TODO
+ *  A Commit records a message, a timestamp, the UIDs of its parent
+ *  commits (none for the initial commit, two for a merge), and the root
+ *  of a FileMap from file names to the UIDs of the blobs holding their
+ *  contents, which shares all but the changed parts of its parent's.
+ *  Commits are immutable and are stored in the ObjectStore under the
+ *  SHA-1 hash of their encoding by CODEC.
  */
-public class Commit {
-    /**
-     * TODO: add instance variables here.
-     *
-     * List all instance variables of the Commit class here with a useful
-     * comment above them describing what that variable represents and how that
-     * variable is used. We've provided one example for `message`.
-     */
+public class Commit implements Dumpable {
+
+    /** Fixed, so that Commits serialized by Java serialization remain
+     *  readable after compatible changes to this class. */
+    private static final long serialVersionUID = 1L;
 
     /** The message of this Commit. */
     private String message;
 
-    /* TODO: fill in the rest of this class. */
+    /** The time at which this Commit was made. */
+    private Date timestamp;
+
+    /** The UIDs of the parents of this Commit, first parent first. */
+    private List<ObjectId> parents;
+
+    /** The UID of the root of the FileMap of this Commit's files, or
+     *  null for a Commit read in the version-1 encoding, which lists its
+     *  files in full. */
+    private ObjectId tree;
+
+    /** Mapping of file names to blob UIDs for the files in this Commit,
+     *  or null if not yet read from tree. */
+    private TreeMap<String, ObjectId> blobs;
+
+    /** A Commit with message MESSAGE made at TIMESTAMP, whose parents are
+     *  PARENTS and whose files are given by the FileMap rooted at TREE. */
+    Commit(String message, Date timestamp, List<ObjectId> parents,
+           ObjectId tree) {
+        this.message = message;
+        this.timestamp = timestamp;
+        this.parents = new ArrayList<>(parents);
+        this.tree = tree;
+    }
+
+    /** Return the message of this Commit. */
+    String getMessage() {
+        return message;
+    }
+
+    /** Return the time at which this Commit was made. */
+    Date getTimestamp() {
+        return timestamp;
+    }
+
+    /** Return the UIDs of this Commit's parents. */
+    List<ObjectId> getParents() {
+        return Collections.unmodifiableList(parents);
+    }
+
+    /** Return the UID of this Commit's first parent, or null if it has
+     *  none. */
+    ObjectId getParent() {
+        return parents.isEmpty() ? null : parents.get(0);
+    }
+
+    /** Return the UID of the root of this Commit's FileMap, or null if
+     *  it predates FileMaps. */
+    ObjectId getTree() {
+        return tree;
+    }
+
+    /** Return the mapping of file names to blob UIDs for this Commit.
+     *  This reads the whole FileMap; see getBlob for single files. */
+    Map<String, ObjectId> getBlobs() {
+        if (blobs == null) {
+            blobs = FileMap.read(ObjectStore.local(), tree);
+        }
+        return Collections.unmodifiableMap(blobs);
+    }
+
+    /** Return the UID of the blob for file NAME in this Commit, or null
+     *  if it does not track NAME. */
+    ObjectId getBlob(String name) {
+        if (tree == null) {
+            return blobs.get(name);
+        }
+        return FileMap.get(ObjectStore.local(), tree, name);
+    }
+
+    /** Return the UID of this Commit. */
+    ObjectId uid() {
+        return ObjectId.of(Codecs.encode(this));
+    }
+
+    /** Store this Commit in the repository's objects and, once the
+     *  current transaction commits, record it in the commit graph, UID
+     *  index, and message index.  Returns its UID. */
+    ObjectId save() {
+        ObjectId uid = ObjectStore.local().write(Codecs.encode(this));
+        Journal.local().afterCommit(() -> index(uid));
+        return uid;
+    }
+
+    /** Record this Commit, whose UID is UID, in the UID index, message
+     *  index, and commit graph.  The graph comes last, so that a commit
+     *  in it is in the others too (see Repository.recover). */
+    void index(ObjectId uid) {
+        UidIndex.local().add(uid);
+        MessageIndex.local().add(message, uid);
+        CommitGraph.local().add(uid, this);
+    }
+
+    /** Return the Commit with the given UID from the repository's
+     *  objects. */
+    static Commit load(ObjectId uid) {
+        return ObjectStore.local().decode(uid, Commit.class);
+    }
+
+    @Override
+    public void dump() {
+        System.out.printf("message: %s%ntimestamp: %s%nparents: %s%n"
+                          + "tree: %s%nblobs: %s%n", message, timestamp,
+                          parents, tree, getBlobs());
+    }
+
+    /** The encoding of Commits:
+     *      timestamp (8 bytes)  message  #parents (1 byte)  parent...
+     *      tree
+     *  where tree is the UID of the root of the Commit's FileMap, and
+     *  messages are written by Codecs.writeString.  Version 1 had in
+     *  place of tree
+     *      #files  (name  UID)...
+     *  where #files is a varint.  Commits are never rewritten, so only
+     *  Commits with trees are written. */
+    static final Codec<Commit> CODEC = new Codec<>() {
+        @Override
+        public int version() {
+            return 2;
+        }
+
+        @Override
+        public void write(Commit commit, DataOutputStream out)
+            throws IOException {
+            out.writeLong(commit.timestamp.getTime());
+            Codecs.writeString(out, commit.message);
+            out.writeByte(commit.parents.size());
+            for (ObjectId parent : commit.parents) {
+                Codecs.writeUid(out, parent);
+            }
+            Codecs.writeUid(out, commit.tree);
+        }
+
+        @Override
+        public Commit read(DataInputStream in, int version)
+            throws IOException {
+            Date timestamp = new Date(in.readLong());
+            String message = Codecs.readString(in);
+            List<ObjectId> parents = new ArrayList<>();
+            for (int n = in.readUnsignedByte(); n > 0; n -= 1) {
+                parents.add(Codecs.readUid(in));
+            }
+            if (version >= 2) {
+                return new Commit(message, timestamp, parents,
+                                  Codecs.readUid(in));
+            }
+            Commit commit = new Commit(message, timestamp, parents, null);
+            commit.blobs = new TreeMap<>();
+            for (long n = Codecs.readVarint(in); n > 0; n -= 1) {
+                String name = Codecs.readString(in);
+                commit.blobs.put(name, Codecs.readUid(in));
+            }
+            return commit;
+        }
+    };
 }
@@ -0,0 +1,542 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static gitlet.Utils.*;
+
+/** The commit graph of a repository: a side file, .gitlet/commit-graph,
+ *  that records the shape of the history so that ancestry questions can
+ *  be answered without reading Commit objects.  The file is a sequence of
+ *  fixed-width records, one per commit, of the form
+ *
+ *      UID (20 bytes)  first parent  second parent  timestamp  generation
+ *
+ *  where the parents are the record numbers of the parent commits (or -1
+ *  if absent), the timestamp is in milliseconds, and the generation is 1
+ *  for a commit without parents and otherwise one more than the largest
+ *  generation of its parents.  A commit's record always follows those of
+ *  its parents, so the file is in topological order and may simply be
+ *  appended to as commits are made.  Since every ancestor of a commit C
+ *  has a smaller generation number than C, a search for ancestors of C
+ *  need never visit commits with larger generation numbers.
+ *
+ *  Commits are found by UID through a second side file,
+ *  .gitlet/commit-graph.lookup, of the form
+ *
+ *      "GCGL"  N (4 bytes)  fanout (256 4-byte counts)  entry...
+ *
+ *  whose N entries, each a UID (20 bytes) and its record number (4
+ *  bytes), cover the first N records of the graph, sorted by UID, and
+ *  whose K-th fanout count is the number of those UIDs whose first byte
+ *  is at most K.  A UID is found by binary search over the memory-mapped
+ *  entries with its first byte, so opening the graph costs nothing per
+ *  commit.  Records appended since the lookup was written are kept in
+ *  a small table read from the end of the graph; once they exceed an
+ *  eighth of N (or MIN_RECENT), the lookup is rewritten to cover them.
+ */
+class CommitGraph {
+
+    /** Offset of the first parent within a record. */
+    private static final int PARENT1 = ObjectId.LENGTH;
+    /** Offset of the second parent within a record. */
+    private static final int PARENT2 = PARENT1 + 4;
+    /** Offset of the timestamp within a record. */
+    private static final int TIME = PARENT2 + 4;
+    /** Offset of the generation number within a record. */
+    private static final int GENERATION = TIME + 8;
+    /** Length of a record. */
+    static final int RECORD = GENERATION + 4;
+
+    /** Header of the lookup file. */
+    private static final byte[] LOOKUP_MAGIC = { 'G', 'C', 'G', 'L' };
+    /** Offset of the fanout table in the lookup file. */
+    private static final int FANOUT = LOOKUP_MAGIC.length + 4;
+    /** Offset of the first entry in the lookup file. */
+    private static final int ENTRIES = FANOUT + 256 * 4;
+    /** Length of a lookup entry. */
+    private static final int ENTRY = ObjectId.LENGTH + 4;
+    /** Number of records not covered by the lookup file that are always
+     *  tolerated before it is rewritten. */
+    private static final int MIN_RECENT = 256;
+
+    /** The commit graph of the repository whose metadata is in
+     *  GITLETDIR. */
+    CommitGraph(File gitletDir) {
+        this(gitletDir, ObjectStore.of(gitletDir));
+    }
+
+    /** The commit graph of the repository whose metadata is in GITLETDIR
+     *  and whose objects are in STORE. */
+    CommitGraph(File gitletDir, ObjectStore store) {
+        _gitletDir = gitletDir;
+        _file = join(gitletDir, "commit-graph");
+        _lookupFile = join(gitletDir, "commit-graph.lookup");
+        _store = store;
+        _paths = new ChangedPaths(gitletDir, _store);
+    }
+
+    /** Return the commit graph of the repository in the current
+     *  directory. */
+    static CommitGraph local() {
+        if (_local == null) {
+            _local = new CommitGraph(Repository.GITLET_DIR);
+        }
+        return _local;
+    }
+
+    /** Discard the cached commit graph of the repository in the current
+     *  directory, so that it is reread from disk when next needed. */
+    static void resetLocal() {
+        _local = null;
+    }
+
+    /** Return the number of commits in the graph. */
+    int size() {
+        load();
+        return _count;
+    }
+
+    /** Return true iff the graph contains commit UID. */
+    boolean contains(ObjectId uid) {
+        return position(uid) >= 0;
+    }
+
+    /** Return the record number of commit UID, or -1 if it is not in the
+     *  graph. */
+    int position(ObjectId uid) {
+        load();
+        Integer recent = _recent.get(uid);
+        if (recent != null) {
+            return recent;
+        }
+        int first = uid.byteAt(0) & 0xff;
+        int lo = first == 0 ? 0 : _lookup.getInt(FANOUT + 4 * (first - 1));
+        int hi = _lookup.getInt(FANOUT + 4 * first) - 1;
+        byte[] id = uid.bytes();
+        byte[] probe = new byte[ObjectId.LENGTH];
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            _lookup.get(ENTRIES + mid * ENTRY, probe, 0, probe.length);
+            int c = Arrays.compareUnsigned(probe, id);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return _lookup.getInt(ENTRIES + mid * ENTRY + ObjectId.LENGTH);
+            }
+        }
+        return -1;
+    }
+
+    /** Return the record number of commit UID.  Throws a
+     *  GitletException if it is not in the graph, as for a commit made
+     *  before the graph existed and not yet reindexed. */
+    private int requirePosition(ObjectId uid) {
+        int result = position(uid);
+        if (result < 0) {
+            throw error("Commit %s is missing from the commit graph; run "
+                        + "reindex.", uid.abbreviate(7));
+        }
+        return result;
+    }
+
+    /** Return the UID of the commit with record number POS. */
+    ObjectId uid(int pos) {
+        return ObjectId.read(_map.duplicate().position(pos * RECORD));
+    }
+
+    /** Return the record numbers of the parents of the commit with
+     *  record number POS. */
+    int[] parents(int pos) {
+        int p1 = _map.getInt(pos * RECORD + PARENT1);
+        int p2 = _map.getInt(pos * RECORD + PARENT2);
+        if (p1 < 0) {
+            return new int[0];
+        } else if (p2 < 0) {
+            return new int[] { p1 };
+        } else {
+            return new int[] { p1, p2 };
+        }
+    }
+
+    /** Return the generation number of the commit with record number
+     *  POS. */
+    int generation(int pos) {
+        return _map.getInt(pos * RECORD + GENERATION);
+    }
+
+    /** Return the timestamp, in milliseconds, of the commit with record
+     *  number POS. */
+    long timestamp(int pos) {
+        return _map.getLong(pos * RECORD + TIME);
+    }
+
+    /** Return the changed-path filters of the commits in the graph. */
+    ChangedPaths changedPaths() {
+        return _paths;
+    }
+
+    /** Add the commit COMMIT, whose UID is UID, to the graph if it is not
+     *  already there, first adding any of its ancestors that are missing
+     *  (as for commits made before the graph existed), and record the
+     *  paths that each changes (see ChangedPaths). */
+    void add(ObjectId uid, Commit commit) {
+        if (contains(uid)) {
+            return;
+        }
+        ArrayList<ObjectId> order = new ArrayList<>();
+        HashMap<ObjectId, Commit> pending = new HashMap<>();
+        ArrayDeque<ObjectId> work = new ArrayDeque<>();
+        pending.put(uid, commit);
+        work.push(uid);
+        while (!work.isEmpty()) {
+            ObjectId next = work.peek();
+            boolean ready = true;
+            for (ObjectId parent : pending.get(next).getParents()) {
+                if (!contains(parent) && !pending.containsKey(parent)) {
+                    pending.put(parent, _store.decode(parent, Commit.class));
+                    work.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                work.pop();
+                order.add(next);
+            }
+        }
+
+        ByteBuffer records = ByteBuffer.allocate(order.size() * RECORD);
+        ArrayList<byte[]> filters = new ArrayList<>();
+        int pos = _count;
+        for (ObjectId id : order) {
+            Commit c = pending.get(id);
+            ObjectId first = c.getParent();
+            filters.add(ChangedPaths.filter(
+                _store, c, first == null ? null
+                : pending.containsKey(first) ? pending.get(first)
+                : _store.decode(first, Commit.class)));
+            int[] parents = { -1, -1 };
+            int generation = 1;
+            for (int i = 0; i < c.getParents().size(); i += 1) {
+                ObjectId parent = c.getParents().get(i);
+                parents[i] = position(parent);
+                generation = Math.max(generation,
+                                      generationOf(parents[i], records) + 1);
+            }
+            id.write(records);
+            records.putInt(parents[0]).putInt(parents[1])
+                .putLong(c.getTimestamp().getTime()).putInt(generation);
+            _recent.put(id, pos);
+            pos += 1;
+        }
+        records.flip();
+        _gitletDir.mkdirs();
+        try (FileChannel out =
+             FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE)) {
+            long at = (long) _count * RECORD;
+            while (records.hasRemaining()) {
+                at += out.write(records, at);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _paths.append(_count, filters);
+        if (_recent.size() > Math.max(MIN_RECENT, _indexed / 8)) {
+            writeLookup();
+        }
+        /* _recent is already up to date. */
+        _map = null;
+    }
+
+    /** Remove the graph entirely, so that it may be rebuilt. */
+    void clear() {
+        _file.delete();
+        _lookupFile.delete();
+        _paths.clear();
+        _map = null;
+        _recent = null;
+    }
+
+    /** Return the UID of a latest common ancestor of commits A and B: one
+     *  that is an ancestor of both and is not an ancestor of any other
+     *  such commit.  Returns null if they have no common ancestor.
+     *  Throws a GitletException if either is not in the graph. */
+    ObjectId latestCommonAncestor(ObjectId a, ObjectId b) {
+        load();
+        final int fromA = 1, fromB = 2;
+        byte[] flags = new byte[_count];
+        PriorityQueue<Integer> queue = newQueue();
+        int pa = requirePosition(a), pb = requirePosition(b);
+        flags[pa] |= fromA;
+        flags[pb] |= fromB;
+        queue.add(pa);
+        queue.add(pb);
+        while (!queue.isEmpty()) {
+            int c = queue.poll();
+            if (flags[c] == (fromA | fromB)) {
+                /* Anything not yet visited has a smaller generation, and
+                 * so cannot be a descendant of C. */
+                return uid(c);
+            }
+            for (int p : parents(c)) {
+                if ((flags[p] | flags[c]) != flags[p]) {
+                    if (flags[p] == 0) {
+                        queue.add(p);
+                    }
+                    flags[p] |= flags[c];
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return true iff commit ANCESTOR is an ancestor of (or the same as)
+     *  commit DESCENDANT.  Visits only commits whose generation numbers
+     *  are at least that of ANCESTOR.  Throws a GitletException if
+     *  either is not in the graph. */
+    boolean isAncestor(ObjectId ancestor, ObjectId descendant) {
+        load();
+        int target = requirePosition(ancestor);
+        int floor = generation(target);
+        boolean[] seen = new boolean[_count];
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        work.push(requirePosition(descendant));
+        while (!work.isEmpty()) {
+            int c = work.pop();
+            if (c == target) {
+                return true;
+            }
+            for (int p : parents(c)) {
+                if (!seen[p] && generation(p) >= floor) {
+                    seen[p] = true;
+                    work.push(p);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Return the record numbers of the commits that are ancestors of (or
+     *  the same as) some commit in WANTS but of none in HAVES, parents
+     *  before children.  HAVES may include commits not in the graph,
+     *  which are ignored; a commit in WANTS that is not in the graph
+     *  causes a GitletException.  Commits are visited in order of decreasing
+     *  generation, so that a commit's flags are final when it is
+     *  reached, and the walk stops as soon as every commit still queued
+     *  is an ancestor of HAVES, without visiting their common
+     *  history. */
+    List<Integer> missing(Collection<ObjectId> wants,
+                          Collection<ObjectId> haves) {
+        load();
+        final int want = 1, have = 2;
+        byte[] flags = new byte[_count];
+        PriorityQueue<Integer> queue = newQueue();
+        int wanted = 0;
+        for (ObjectId uid : haves) {
+            int pos = position(uid);
+            if (pos >= 0 && flags[pos] == 0) {
+                flags[pos] = have;
+                queue.add(pos);
+            }
+        }
+        for (ObjectId uid : wants) {
+            int pos = requirePosition(uid);
+            if (flags[pos] == 0) {
+                flags[pos] = want;
+                queue.add(pos);
+                wanted += 1;
+            }
+        }
+        ArrayList<Integer> result = new ArrayList<>();
+        while (wanted > 0) {
+            int c = queue.poll();
+            if (flags[c] == want) {
+                wanted -= 1;
+                result.add(c);
+            }
+            for (int p : parents(c)) {
+                if (flags[p] == 0) {
+                    flags[p] = flags[c];
+                    queue.add(p);
+                    wanted += flags[c] == want ? 1 : 0;
+                } else if (flags[p] == want && flags[c] != want) {
+                    flags[p] |= have;
+                    wanted -= 1;
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Return a queue of record numbers that yields those with the largest
+     *  generation numbers, and then the latest timestamps, first. */
+    private PriorityQueue<Integer> newQueue() {
+        return new PriorityQueue<>((x, y) -> {
+            int c = Integer.compare(generation(y), generation(x));
+            return c != 0 ? c : Long.compare(timestamp(y), timestamp(x));
+        });
+    }
+
+    /** Return the generation of record POS, which may be in the file or
+     *  among the new RECORDS about to be appended to it. */
+    private int generationOf(int pos, ByteBuffer records) {
+        if (pos < _count) {
+            return generation(pos);
+        }
+        return records.getInt((pos - _count) * RECORD + GENERATION);
+    }
+
+    /** Map the graph file, and the lookup file and the UIDs of the
+     *  records it does not cover, if not already done.  A lookup file
+     *  covering more records than the graph has (as after a crash while
+     *  rebuilding) is ignored. */
+    private void load() {
+        if (_map != null) {
+            return;
+        }
+        _count = 0;
+        _map = ByteBuffer.allocate(0);
+        if (_file.isFile()) {
+            try (FileChannel ch = FileChannel.open(_file.toPath())) {
+                _count = (int) (ch.size() / RECORD);
+                _map = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                              (long) _count * RECORD);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        if (_recent == null) {
+            _lookup = mapLookup();
+            _indexed = _lookup.getInt(LOOKUP_MAGIC.length);
+            if (_indexed > _count) {
+                _lookup = emptyLookup();
+                _indexed = 0;
+            }
+            _recent = new HashMap<>();
+            for (int pos = _indexed; pos < _count; pos += 1) {
+                _recent.put(uid(pos), pos);
+            }
+        }
+    }
+
+    /** Return the mapped lookup file, or an empty lookup if there is
+     *  none. */
+    private ByteBuffer mapLookup() {
+        if (!_lookupFile.isFile()) {
+            return emptyLookup();
+        }
+        try (FileChannel ch = FileChannel.open(_lookupFile.toPath())) {
+            ByteBuffer result =
+                ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            byte[] magic = new byte[LOOKUP_MAGIC.length];
+            result.get(0, magic);
+            if (!Arrays.equals(magic, LOOKUP_MAGIC)) {
+                throw new IllegalArgumentException("corrupt commit-graph "
+                                                   + "lookup");
+            }
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the contents of a lookup file covering no records. */
+    private static ByteBuffer emptyLookup() {
+        return ByteBuffer.allocate(ENTRIES);
+    }
+
+    /** Rewrite the lookup file to cover every record, merging the UIDs
+     *  of the records not yet covered into its sorted entries. */
+    private void writeLookup() {
+        ObjectId[] recent = _recent.keySet().toArray(new ObjectId[0]);
+        Arrays.sort(recent);
+        int total = _indexed + recent.length;
+        int[] fanout = new int[256];
+        for (int k = 0; k < 256; k += 1) {
+            fanout[k] = _lookup.getInt(FANOUT + 4 * k);
+        }
+        for (ObjectId uid : recent) {
+            for (int k = uid.byteAt(0) & 0xff; k < 256; k += 1) {
+                fanout[k] += 1;
+            }
+        }
+        File tmp = join(_gitletDir, "commit-graph.lookup.tmp");
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 Files.newOutputStream(tmp.toPath())))) {
+            out.write(LOOKUP_MAGIC);
+            out.writeInt(total);
+            for (int count : fanout) {
+                out.writeInt(count);
+            }
+            byte[] entry = new byte[ENTRY];
+            int i = 0, j = 0;
+            while (i < _indexed || j < recent.length) {
+                if (i < _indexed) {
+                    _lookup.get(ENTRIES + i * ENTRY, entry);
+                }
+                if (j < recent.length
+                    && (i == _indexed
+                        || Arrays.compareUnsigned(
+                               recent[j].bytes(), 0, ObjectId.LENGTH,
+                               entry, 0, ObjectId.LENGTH) < 0)) {
+                    out.write(recent[j].bytes());
+                    out.writeInt(_recent.get(recent[j]));
+                    j += 1;
+                } else {
+                    out.write(entry);
+                    i += 1;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        replaceDurably(tmp, _lookupFile);
+        _lookup = mapLookup();
+        _indexed = total;
+        _recent = new HashMap<>();
+    }
+
+    /** Graph for the current repository, or null if not yet created. */
+    private static CommitGraph _local;
+
+    /** The repository metadata directory. */
+    private final File _gitletDir;
+    /** The graph file. */
+    private final File _file;
+    /** The lookup file, mapping UIDs to record numbers. */
+    private final File _lookupFile;
+    /** The objects of the repository, holding its commits. */
+    private final ObjectStore _store;
+    /** The changed-path filters of the commits in the graph. */
+    private final ChangedPaths _paths;
+    /** The mapped contents of _file, or null if not yet loaded. */
+    private ByteBuffer _map;
+    /** Number of records in _map. */
+    private int _count;
+    /** The mapped lookup file, or an empty one. */
+    private ByteBuffer _lookup;
+    /** Number of records covered by _lookup. */
+    private int _indexed;
+    /** Record numbers of the commits not covered by _lookup, indexed by
+     *  UID, or null if not yet loaded. */
+    private HashMap<ObjectId, Integer> _recent;
+}
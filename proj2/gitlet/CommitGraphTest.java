@@ -0,0 +1,219 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the commit graph (see CommitGraph) and its lookup file,
+ *  checked against the commits themselves, which are made in a
+ *  temporary repository. */
+public class CommitGraphTest {
+
+    /** Number of commits made: enough for the lookup file to be written
+     *  and then to fall behind the graph again. */
+    private static final int COMMITS = 700;
+
+    /** The commits made, oldest first. */
+    private final List<ObjectId> _commits = new ArrayList<>();
+    /** The parents of each commit made. */
+    private final Map<ObjectId, List<ObjectId>> _parents = new HashMap<>();
+
+    /** The repository directory of the current test. */
+    private File _dir;
+    /** The objects of the repository. */
+    private ObjectStore _store;
+    /** The commit graph of the repository, to which commits are added
+     *  as they are made. */
+    private CommitGraph _graph;
+
+    @Before
+    public void makeRepository() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-graph").toFile();
+        _store = new ObjectStore(_dir);
+        _graph = new CommitGraph(_dir);
+    }
+
+    @After
+    public void removeRepository() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Make a commit with message MESSAGE, made at time TIME, with
+     *  parents PARENTS, holding FILES, a mapping of file names to their
+     *  contents, and add it to the graph.  Returns its UID. */
+    private ObjectId commit(String message, long time, List<ObjectId> parents,
+                            Map<String, String> files) {
+        TreeMap<String, ObjectId> blobs = new TreeMap<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            blobs.put(file.getKey(), _store.write(file.getValue().getBytes()));
+        }
+        Commit commit = new Commit(message, new Date(time), parents,
+                                   FileMap.write(_store, blobs));
+        ObjectId uid = _store.write(Codecs.encode(commit));
+        _graph.add(uid, commit);
+        return uid;
+    }
+
+    /** Make COMMITS commits, on a mainline with short side branches and
+     *  merges, using RANDOM. */
+    private void makeHistory(Random random) {
+        for (int k = 0; k < COMMITS; k += 1) {
+            List<ObjectId> parents = new ArrayList<>();
+            if (k > 0) {
+                parents.add(_commits.get(k % 10 == 0 ? Math.max(0, k - 5)
+                                         : k - 1));
+            }
+            if (k > 3 && k % 15 == 0) {
+                parents.add(_commits.get(k - 3));
+            }
+            ObjectId uid = commit("commit " + k, 1000L * k, parents,
+                                  Map.of("f.txt", "version " + k,
+                                         "g.txt", "" + random.nextInt(3)));
+            _commits.add(uid);
+            _parents.put(uid, parents);
+        }
+    }
+
+    /** Return the ancestors of UID, including UID, found from the
+     *  commits' recorded parents. */
+    private Set<ObjectId> ancestors(ObjectId uid) {
+        Set<ObjectId> result = new HashSet<>();
+        ArrayDeque<ObjectId> work = new ArrayDeque<>(List.of(uid));
+        while (!work.isEmpty()) {
+            ObjectId next = work.pop();
+            if (result.add(next)) {
+                work.addAll(_parents.get(next));
+            }
+        }
+        return result;
+    }
+
+    /** Check that GRAPH records exactly the commits made, with their
+     *  parents, timestamps, and generation numbers. */
+    private void checkGraph(CommitGraph graph) {
+        assertEquals(COMMITS, graph.size());
+        Map<ObjectId, Integer> generations = new HashMap<>();
+        for (int k = 0; k < COMMITS; k += 1) {
+            ObjectId uid = _commits.get(k);
+            int pos = graph.position(uid);
+            assertTrue(graph.contains(uid));
+            assertEquals(uid, graph.uid(pos));
+            assertEquals(1000L * k, graph.timestamp(pos));
+            List<ObjectId> parents = new ArrayList<>();
+            int generation = 1;
+            for (int p : graph.parents(pos)) {
+                parents.add(graph.uid(p));
+                generation = Math.max(generation,
+                                      generations.get(graph.uid(p)) + 1);
+            }
+            assertEquals(_parents.get(uid), parents);
+            assertEquals(generation, graph.generation(pos));
+            generations.put(uid, generation);
+        }
+        ObjectId absent = ObjectId.of("no such commit".getBytes());
+        assertFalse(graph.contains(absent));
+        assertEquals(-1, graph.position(absent));
+    }
+
+    @Test
+    public void roundTrip() {
+        makeHistory(new Random(12));
+        assertTrue(join(_dir, "commit-graph.lookup").isFile());
+        checkGraph(_graph);
+        checkGraph(new CommitGraph(_dir));
+    }
+
+    /** A lookup file covering more commits than the graph, as after a
+     *  crash while the graph was being rebuilt, is ignored. */
+    @Test
+    public void staleLookup() {
+        makeHistory(new Random(13));
+        CommitGraph graph = new CommitGraph(_dir);
+        byte[] lookup = readContents(join(_dir, "commit-graph.lookup"));
+        graph.clear();
+        writeContents(join(_dir, "commit-graph.lookup"), (Object) lookup);
+        graph = new CommitGraph(_dir);
+        assertEquals(0, graph.size());
+        assertFalse(graph.contains(_commits.get(0)));
+        graph.add(_commits.get(10),
+                  _store.decode(_commits.get(10), Commit.class));
+        assertEquals(ancestors(_commits.get(10)).size(), graph.size());
+        assertTrue(graph.contains(_commits.get(0)));
+        assertFalse(graph.contains(_commits.get(11)));
+    }
+
+    @Test
+    public void ancestry() {
+        makeHistory(new Random(14));
+        CommitGraph graph = new CommitGraph(_dir);
+        Random random = new Random(15);
+        for (int trial = 0; trial < 200; trial += 1) {
+            ObjectId a = _commits.get(random.nextInt(COMMITS)),
+                b = _commits.get(random.nextInt(COMMITS));
+            Set<ObjectId> ofA = ancestors(a), ofB = ancestors(b);
+            assertEquals(ofB.contains(a), graph.isAncestor(a, b));
+            ObjectId lca = graph.latestCommonAncestor(a, b);
+            assertTrue(ofA.contains(lca) && ofB.contains(lca));
+            for (ObjectId other : ofA) {
+                if (ofB.contains(other) && !other.equals(lca)) {
+                    assertFalse(ancestors(other).contains(lca));
+                }
+            }
+        }
+    }
+
+    /** Ancestry questions about a commit missing from the graph are
+     *  refused rather than answered from another commit's record. */
+    @Test
+    public void missingCommit() {
+        makeHistory(new Random(16));
+        CommitGraph graph = new CommitGraph(_dir);
+        ObjectId absent = ObjectId.of("no such commit".getBytes());
+        ObjectId present = _commits.get(COMMITS - 1);
+        assertRejected(() -> graph.isAncestor(absent, present));
+        assertRejected(() -> graph.isAncestor(present, absent));
+        assertRejected(() -> graph.latestCommonAncestor(absent, present));
+        assertRejected(() -> graph.latestCommonAncestor(present, absent));
+        assertRejected(() -> graph.missing(List.of(absent), List.of()));
+        assertEquals(List.of(), graph.missing(List.of(present),
+                                              List.of(present, absent)));
+    }
+
+    /** Check that BODY throws a GitletException. */
+    private static void assertRejected(Runnable body) {
+        try {
+            body.run();
+            fail("answered a question about a missing commit");
+        } catch (GitletException excp) {
+            /* Expected. */
+        }
+    }
+}
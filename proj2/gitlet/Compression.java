@@ -0,0 +1,348 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static gitlet.Utils.*;
+
+/** Compressed storage of objects.  A stored object may be framed as
+ *
+ *      'G' 'L' 'Z'  codec (1 byte)  length (8 bytes)  CRC-32 (4 bytes)
+ *      payload
+ *
+ *  where length and CRC-32 are those of the uncompressed contents.  For
+ *  the codec NONE, the payload is the contents themselves.  For DEFLATE
+ *  and LZ, the contents are divided into blocks of BLOCK_SIZE bytes, each
+ *  compressed separately (so that objects may be compressed and
+ *  decompressed as streams) and stored as
+ *
+ *      uncompressed length (4 bytes)  stored length (4 bytes)  data
+ *
+ *  where a block whose stored length equals its uncompressed length is
+ *  stored as is.  Objects written before compression was introduced are
+ *  not framed, and are returned as they are by decode.
+ *
+ *  The codec byte may also have the bit MANIFEST set, marking the object
+ *  as the manifest of a chunked blob (see ObjectStore), so that it is
+ *  told apart from a blob without regard to its contents.
+ *
+ *  The codec used for new objects is given by the repository's
+ *  compression.codec setting ("none", the default, "deflate", or "lz"),
+ *  and its effort by compression.level (0-9, or -1 for the codec's
+ *  default; default 6).
+ */
+class Compression {
+
+    /** Codec storing contents uncompressed. */
+    static final int NONE = 0;
+    /** Codec using java.util.zip's Deflater. */
+    static final int DEFLATE = 1;
+    /** Codec using the in-tree LZ77 compressor. */
+    static final int LZ = 2;
+
+    /** Flag in the codec byte of the frame of a chunked blob's
+     *  manifest. */
+    static final int MANIFEST = 0x40;
+
+    /** Length of a frame header. */
+    static final int HEADER = 16;
+    /** Size of the blocks in which contents are compressed. */
+    static final int BLOCK_SIZE = 1 << 17;
+
+    /** Names of the codecs, indexed by codec number. */
+    private static final String[] NAMES = { "none", "deflate", "lz" };
+
+    /** Return the codec number of the codec named NAME. */
+    static int codecNamed(String name) {
+        int k = Arrays.asList(NAMES).indexOf(name);
+        if (k < 0) {
+            throw error("Unknown compression codec: %s", name);
+        }
+        return k;
+    }
+
+    /** Return the name of CODEC. */
+    static String codecName(int codec) {
+        return NAMES[codec];
+    }
+
+    /** Return the codec configured for the current repository. */
+    static int configuredCodec() {
+        return codecNamed(Config.get("compression.codec", "none"));
+    }
+
+    /** Return the compression level configured for the current
+     *  repository. */
+    static int configuredLevel() {
+        return parseLevel(Config.get("compression.level", "6"));
+    }
+
+    /** Return the compression level given by VALUE, a setting of
+     *  compression.level.  Throws a GitletException unless VALUE is a
+     *  level from 0 to 9, or -1. */
+    static int parseLevel(String value) {
+        try {
+            int level = Integer.parseInt(value);
+            if (level >= -1 && level <= 9) {
+                return level;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw error("Invalid compression.level: %s", value);
+    }
+
+    /** Return true iff DATA is framed. */
+    static boolean isFramed(byte[] data) {
+        return data.length >= HEADER && data[0] == 'G' && data[1] == 'L'
+            && data[2] == 'Z' && (data[3] & ~MANIFEST) >= 0
+            && (data[3] & ~MANIFEST) < NAMES.length;
+    }
+
+    /** Return true iff DATA is framed with the MANIFEST flag set.  Only
+     *  DATA's header is examined. */
+    static boolean isManifest(byte[] data) {
+        return isFramed(data) && (data[3] & MANIFEST) != 0;
+    }
+
+    /** Return CONTENTS framed and compressed with CODEC at LEVEL. */
+    static byte[] encode(byte[] contents, int codec, int level) {
+        return encode(contents, codec, level, false);
+    }
+
+    /** Return CONTENTS framed and compressed with CODEC at LEVEL, with
+     *  the MANIFEST flag set iff MANIFEST. */
+    static byte[] encode(byte[] contents, int codec, int level,
+                         boolean manifest) {
+        ByteBuffer result =
+            ByteBuffer.allocate(HEADER + contents.length
+                                + (contents.length / BLOCK_SIZE + 1) * 8);
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        result.put(header(manifest ? codec | MANIFEST : codec, contents.length,
+                          (int) crc.getValue()));
+        if (codec == NONE) {
+            result.put(contents);
+        } else {
+            for (int k = 0; k < contents.length; k += BLOCK_SIZE) {
+                byte[] block =
+                    Arrays.copyOfRange(contents, k,
+                                       Math.min(contents.length,
+                                                k + BLOCK_SIZE));
+                result.put(encodeBlock(block, codec, level));
+            }
+        }
+        return Arrays.copyOf(result.array(), result.position());
+    }
+
+    /** Return the contents of the possibly framed object STORED.  Throws
+     *  IllegalArgumentException if the object is damaged. */
+    static byte[] decode(byte[] stored) {
+        if (!isFramed(stored)) {
+            return stored;
+        }
+        ByteBuffer in = ByteBuffer.wrap(stored);
+        in.position(4);
+        int codec = stored[3] & ~MANIFEST;
+        long length = in.getLong();
+        int crc = in.getInt();
+        byte[] result;
+        if (codec == NONE) {
+            result = Arrays.copyOfRange(stored, HEADER, stored.length);
+        } else {
+            ByteBuffer out = ByteBuffer.allocate((int) length);
+            while (in.hasRemaining()) {
+                out.put(decodeBlock(in, codec));
+            }
+            result = out.array();
+        }
+        check(result, length, crc);
+        return result;
+    }
+
+    /** Write the contents read from IN to OUT as a framed object compressed
+     *  with CODEC at LEVEL, updating MD with the contents.  OUT must be
+     *  empty.  Uses memory proportional to BLOCK_SIZE. */
+    static void compress(ReadableByteChannel in, FileChannel out, int codec,
+                         int level, MessageDigest md) throws IOException {
+        CRC32 crc = new CRC32();
+        long length = 0;
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+        out.write(ByteBuffer.wrap(new byte[HEADER]));
+        while (true) {
+            buf.clear();
+            while (buf.hasRemaining() && in.read(buf) >= 0) {
+                continue;
+            }
+            if (buf.position() == 0) {
+                break;
+            }
+            byte[] block = Arrays.copyOf(buf.array(), buf.position());
+            md.update(block);
+            HASHED.add(block.length);
+            crc.update(block);
+            length += block.length;
+            writeFully(out, ByteBuffer.wrap(codec == NONE ? block
+                                            : encodeBlock(block, codec,
+                                                          level)));
+        }
+        out.write(ByteBuffer.wrap(header(codec, length, (int) crc.getValue())),
+                  0);
+    }
+
+    /** Write the contents of the framed object whose stored form is
+     *  read from IN to OUT.  Uses memory proportional to BLOCK_SIZE. */
+    static void decompress(ReadableByteChannel in, WritableByteChannel out)
+        throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        readFully(in, header);
+        header.flip();
+        if (!isFramed(header.array())) {
+            throw new IllegalArgumentException("object is not framed");
+        }
+        int codec = header.get(3) & ~MANIFEST;
+        long length = header.getLong(4);
+        int crcValue = header.getInt(12);
+        CRC32 crc = new CRC32();
+        long total = 0;
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+        while (true) {
+            byte[] block;
+            if (codec == NONE) {
+                buf.clear();
+                readFully(in, buf);
+                if (buf.position() == 0) {
+                    break;
+                }
+                block = Arrays.copyOf(buf.array(), buf.position());
+            } else {
+                ByteBuffer sizes = ByteBuffer.allocate(8);
+                readFully(in, sizes);
+                if (sizes.position() == 0) {
+                    break;
+                }
+                sizes.flip();
+                int rawLength = sizes.getInt();
+                ByteBuffer data = ByteBuffer.allocate(8 + sizes.getInt());
+                data.putInt(rawLength).putInt(data.capacity() - 8);
+                readFully(in, data);
+                data.flip();
+                block = decodeBlock(data, codec);
+            }
+            crc.update(block);
+            total += block.length;
+            writeFully(out, ByteBuffer.wrap(block));
+        }
+        if (total != length || (int) crc.getValue() != crcValue) {
+            throw new IllegalArgumentException("corrupt object");
+        }
+    }
+
+    /** Check that CONTENTS has length LENGTH and CRC-32 CRC. */
+    private static void check(byte[] contents, long length, int crc) {
+        CRC32 actual = new CRC32();
+        actual.update(contents);
+        if (contents.length != length || (int) actual.getValue() != crc) {
+            throw new IllegalArgumentException("corrupt object");
+        }
+    }
+
+    /** Return a frame header for contents of the given LENGTH and CRC
+     *  compressed with CODEC. */
+    private static byte[] header(int codec, long length, int crc) {
+        return ByteBuffer.allocate(HEADER).put((byte) 'G').put((byte) 'L')
+            .put((byte) 'Z').put((byte) codec).putLong(length).putInt(crc)
+            .array();
+    }
+
+    /** Return the stored form of BLOCK compressed with CODEC at LEVEL. */
+    private static byte[] encodeBlock(byte[] block, int codec, int level) {
+        byte[] data = codec == DEFLATE ? deflate(block, level)
+            : LZ77.compress(block, level);
+        if (data.length >= block.length) {
+            data = block;
+        }
+        return ByteBuffer.allocate(8 + data.length).putInt(block.length)
+            .putInt(data.length).put(data).array();
+    }
+
+    /** Return the contents of the block stored at the position of IN,
+     *  advancing IN past it. */
+    private static byte[] decodeBlock(ByteBuffer in, int codec) {
+        int rawLength = in.getInt();
+        byte[] data = new byte[in.getInt()];
+        in.get(data);
+        if (data.length == rawLength) {
+            return data;
+        } else if (codec == DEFLATE) {
+            return inflate(data, rawLength);
+        } else {
+            return LZ77.decompress(data, rawLength);
+        }
+    }
+
+    /** Return DATA compressed by Deflater at LEVEL. */
+    private static byte[] deflate(byte[] data, int level) {
+        Deflater deflater = new Deflater(level);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Return the RAWLENGTH bytes compressed by deflate in DATA. */
+    private static byte[] inflate(byte[] data, int rawLength) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        byte[] result = new byte[rawLength];
+        try {
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int k = inflater.inflate(result, n, rawLength - n);
+                if (k == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != rawLength) {
+                throw new IllegalArgumentException("corrupt object");
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException("corrupt object");
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    /** Fill BUF from IN, stopping early only at end of input. */
+    private static void readFully(ReadableByteChannel in, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining() && in.read(buf) >= 0) {
+            continue;
+        }
+    }
+
+    /** Write all of BUF to OUT. */
+    private static void writeFully(WritableByteChannel out, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+}
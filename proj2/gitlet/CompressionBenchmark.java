@@ -0,0 +1,91 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** Compares the codecs of Compression by write throughput and space
+ *  saved.  Usage:
+ *
+ *      java gitlet.CompressionBenchmark [FILE...]
+ *
+ *  compresses the contents of the FILEs (by default, the Java sources
+ *  of the current directory, plus a block of random bytes) with each
+ *  codec at levels 1, 6, and 9, and prints the speed of compression and
+ *  decompression and the stored size relative to the original.  Each
+ *  measurement is preceded by an untimed run, to warm up the JIT.
+ */
+public class CompressionBenchmark {
+
+    /** Number of times each measurement is repeated. */
+    private static final int ROUNDS = 5;
+
+    /** Run the benchmark as described in the class comment, using ARGS. */
+    public static void main(String... args) throws IOException {
+        byte[] text = sample(args);
+        byte[] random = new byte[text.length];
+        new Random(0).nextBytes(random);
+
+        System.out.printf("%-8s %-8s %6s %12s %12s %10s%n", "input", "codec",
+                          "level", "MB/s write", "MB/s read", "stored");
+        System.out.printf("---------------------------------------------"
+                          + "---------------%n");
+        for (int codec = Compression.NONE; codec <= Compression.LZ;
+             codec += 1) {
+            for (int level : new int[] { 1, 6, 9 }) {
+                if (codec == Compression.NONE && level != 1) {
+                    continue;
+                }
+                measure("text", text, codec, level);
+                measure("random", random, codec, level);
+            }
+        }
+    }
+
+    /** Return the contents of the files named in ARGS, or of the default
+     *  sample if there are none. */
+    private static byte[] sample(String[] args) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        if (args.length == 0) {
+            for (String name : plainFilenamesIn(Repository.CWD)) {
+                if (name.endsWith(".java")) {
+                    result.write(readContents(join(Repository.CWD, name)));
+                }
+            }
+        } else {
+            for (String name : args) {
+                result.write(readContents(new File(name)));
+            }
+        }
+        if (result.size() == 0) {
+            throw new IllegalArgumentException("no sample input");
+        }
+        return result.toByteArray();
+    }
+
+    /** Print a row of results for compressing DATA, described as INPUT,
+     *  with CODEC at LEVEL. */
+    private static void measure(String input, byte[] data, int codec,
+                                int level) {
+        byte[] stored = Compression.encode(data, codec, level);
+        Compression.decode(stored);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i += 1) {
+            stored = Compression.encode(data, codec, level);
+        }
+        double write = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i += 1) {
+            Compression.decode(stored);
+        }
+        double read = (System.nanoTime() - start) / 1e9;
+        double megabytes = (double) data.length * ROUNDS / (1 << 20);
+        System.out.printf("%-8s %-8s %6d %12.1f %12.1f %9.1f%%%n", input,
+                          Compression.codecName(codec), level,
+                          megabytes / write, megabytes / read,
+                          100.0 * stored.length / data.length);
+    }
+}
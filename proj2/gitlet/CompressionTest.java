@@ -0,0 +1,147 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of compressed frames (see Compression) and of the LZ77
+ *  compressor. */
+public class CompressionTest {
+
+    /** Words from which texts are made. */
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf",
+    };
+
+    /** Return LENGTH bytes chosen using RANDOM. */
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] result = new byte[length];
+        random.nextBytes(result);
+        return result;
+    }
+
+    /** Return LENGTH bytes of words chosen using RANDOM, which compress
+     *  well. */
+    private static byte[] randomText(Random random, int length) {
+        StringBuilder result = new StringBuilder();
+        while (result.length() < length) {
+            result.append(WORDS[random.nextInt(WORDS.length)])
+                .append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        result.setLength(length);
+        return result.toString().getBytes();
+    }
+
+    /** Return contents of varied kinds and lengths, made using RANDOM:
+     *  empty, tiny, random, repetitive, and text longer than a block. */
+    private static List<byte[]> samples(Random random) {
+        List<byte[]> result = new ArrayList<>();
+        result.add(new byte[0]);
+        result.add(new byte[] { 42 });
+        result.add("abcd".getBytes());
+        result.add(randomBytes(random, 1000));
+        result.add(new byte[70000]);
+        result.add(randomText(random, 5000));
+        result.add(randomText(random, 3 * Compression.BLOCK_SIZE + 17));
+        result.add(randomBytes(random, Compression.BLOCK_SIZE));
+        return result;
+    }
+
+    @Test
+    public void lz77RoundTrip() {
+        Random random = new Random(2);
+        for (byte[] data : samples(random)) {
+            for (int level : new int[] { 1, 6, 9 }) {
+                byte[] compressed = LZ77.compress(data, level);
+                assertArrayEquals(data,
+                                  LZ77.decompress(compressed, data.length));
+            }
+        }
+        byte[] text = randomText(random, 100000);
+        assertTrue(LZ77.compress(text, 6).length < text.length / 2);
+    }
+
+    @Test
+    public void frameRoundTrip() {
+        Random random = new Random(3);
+        for (byte[] data : samples(random)) {
+            for (int codec = Compression.NONE; codec <= Compression.LZ;
+                 codec += 1) {
+                for (boolean manifest : new boolean[] { false, true }) {
+                    byte[] stored =
+                        Compression.encode(data, codec, 6, manifest);
+                    assertTrue(Compression.isFramed(stored));
+                    assertEquals(manifest, Compression.isManifest(stored));
+                    assertArrayEquals(data, Compression.decode(stored));
+                }
+            }
+        }
+    }
+
+    /** Contents stored before compression existed are not framed, and
+     *  are returned as they are. */
+    @Test
+    public void unframed() {
+        byte[] data = "plain contents".getBytes();
+        assertFalse(Compression.isFramed(data));
+        assertArrayEquals(data, Compression.decode(data));
+    }
+
+    /** A frame whose checksum or payload is damaged is rejected. */
+    @Test
+    public void damagedFrames() {
+        byte[] data = randomText(new Random(4), 10000);
+        for (int codec = Compression.NONE; codec <= Compression.LZ;
+             codec += 1) {
+            byte[] stored = Compression.encode(data, codec, 6);
+            byte[] badCrc = stored.clone();
+            badCrc[Compression.HEADER - 1] ^= 1;
+            assertRejected(badCrc);
+            byte[] badLength = stored.clone();
+            badLength[Compression.HEADER - 5] += 1;
+            assertRejected(badLength);
+        }
+        byte[] stored = Compression.encode(data, Compression.NONE, 6);
+        stored[stored.length - 1] ^= 1;
+        assertRejected(stored);
+    }
+
+    /** Compression levels from 0 to 9, and -1, are accepted, and each
+     *  round-trips with every codec; anything else is a configuration
+     *  error. */
+    @Test
+    public void levels() {
+        byte[] data = randomText(new Random(5), 10000);
+        for (int level = -1; level <= 9; level += 1) {
+            assertEquals(level, Compression.parseLevel("" + level));
+            for (int codec = Compression.NONE; codec <= Compression.LZ;
+                 codec += 1) {
+                assertArrayEquals(data, Compression.decode(
+                    Compression.encode(data, codec, level)));
+            }
+        }
+        for (String value : new String[] { "-2", "10", "", "six", "6.0",
+                                            " 6", "99999999999" }) {
+            try {
+                Compression.parseLevel(value);
+                fail("accepted compression.level " + value);
+            } catch (GitletException excp) {
+                assertEquals("Invalid compression.level: " + value,
+                             excp.getMessage());
+            }
+        }
+    }
+
+    /** Check that decoding STORED throws IllegalArgumentException. */
+    private static void assertRejected(byte[] stored) {
+        try {
+            Compression.decode(stored);
+            fail("decoded a damaged frame");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static gitlet.Utils.*;
+
+/** Per-repository settings, kept as a Java properties file in
+ *  .gitlet/config.  Settings that are absent take their default values,
+ *  so that a repository without a config file behaves as it always
+ *  has.  The settings currently understood are
+ *
+ *      add.report      "true" to print the number of files added by
+ *                      add and the rate at which they were added to
+ *                      the standard error (see BulkAdd).
+ *      blob.layout     "whole" (the default) to store each blob as a
+ *                      single object, or "chunked" to split blobs into
+ *                      content-defined chunks (see Chunker).
+ *      blob.report     "true" to print blob storage statistics to the
+ *                      standard error after each command.
+ *      bloom.report    "true" to print the false-positive rate of the
+ *                      changed-path filters to the standard error after
+ *                      "log -- FILE" (see ChangedPaths).
+ *      cache.size      megabytes of object contents and decoded objects
+ *                      kept in memory (see ObjectStore); default 64.
+ *      compression.codec
+ *                      "none" (the default), "deflate", or "lz": the
+ *                      compression of new loose objects (see
+ *                      Compression).
+ *      compression.level
+ *                      0 (none) to 9 (smallest), or -1 for the
+ *                      codec's default; default 6.
+ *      daemon.watch    "true" to have a Daemon watch the working
+ *                      directory for changes (see Watcher).
+ *      remote.report   "true" to print the numbers of commits, objects,
+ *                      bytes, and files sent by push and fetch to the
+ *                      standard error (see Remote).
+ */
+class Config {
+
+    /** The file holding the settings. */
+    static final File CONFIG_FILE = join(Repository.GITLET_DIR, "config");
+
+    /** Return the value of setting KEY, or DEFLT if it is not set. */
+    static String get(String key, String deflt) {
+        return settings().getProperty(key, deflt);
+    }
+
+    /** Return the value of the boolean setting KEY, or DEFLT if it is not
+     *  set. */
+    static boolean getBoolean(String key, boolean deflt) {
+        return Boolean.parseBoolean(get(key, Boolean.toString(deflt)));
+    }
+
+    /** Discard the cached settings, so that they are reread when next
+     *  needed. */
+    static void resetLocal() {
+        _settings = null;
+    }
+
+    /** Return the settings, reading them if necessary. */
+    private static Properties settings() {
+        if (_settings == null) {
+            _settings = new Properties();
+            if (CONFIG_FILE.isFile()) {
+                try (InputStream in =
+                     Files.newInputStream(CONFIG_FILE.toPath())) {
+                    _settings.load(in);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        return _settings;
+    }
+
+    /** The repository's settings, or null if not yet read. */
+    private static Properties _settings;
+}
@@ -0,0 +1,306 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** An optional long-lived server for one repository, which saves each
+ *  Gitlet command the cost of starting a JVM, loading classes, and
+ *  rereading the repository's indices.  The command
+ *
+ *      java gitlet.Main daemon
+ *
+ *  run in a repository's working directory serves that repository until
+ *  it receives the command "daemon stop".  While it runs, invocations of
+ *  gitlet.Main from the same directory with the environment variable
+ *  GITLET_DAEMON set forward their arguments to it rather than executing
+ *  them, and print the output it returns.
+ *
+ *  The server listens on an ephemeral port of the loopback interface
+ *  (Gitlet targets Java versions without Unix-domain socket channels),
+ *  and writes the port and a random access token to .gitlet/daemon,
+ *  which is created readable only by its owner and renamed into place
+ *  once complete.  A client sends the token, to which the server
+ *  replies with the byte ACCEPTED; the client then sends the command's
+ *  arguments and the server replies with the command's output.  Each
+ *  side allows the other HANDSHAKE_TIMEOUT to exchange the token, so
+ *  that a client that connects and sends nothing cannot stall the
+ *  server.  A client that cannot connect or complete that handshake
+ *  (as when the file was left by a server that died) runs the command
+ *  itself, since the server cannot have run it; one that fails after
+ *  sending the command reports the failure instead, since the command
+ *  may have run.  Commands are executed one at a time.  Before each, the server
+ *  compares the sizes and modification times of the repository's
+ *  metadata files with those left by the last command it ran, and
+ *  discards its cached state if anything else has changed them.
+ *
+ *  If the repository's daemon.watch setting is true, the server also
+ *  watches the working directory (see Watcher), so that scans of it,
+ *  such as that made by an add of the whole working directory (see
+ *  BulkAdd), need examine only the files changed since the previous
+ *  scan.
+ */
+class Daemon {
+
+    /** The byte by which a server accepts a client's token. */
+    private static final int ACCEPTED = 1;
+    /** Time in milliseconds allowed to connect and exchange the token. */
+    static final int HANDSHAKE_TIMEOUT = 5000;
+
+    /** The file announcing a running server. */
+    static final File DAEMON_FILE = daemonFile(Repository.GITLET_DIR);
+
+    /** Serve the repository in the current directory until stopped. */
+    static void serve() {
+        Repository.checkInitialized();
+        serve(Repository.GITLET_DIR);
+    }
+
+    /** Serve the repository whose metadata is in GITLETDIR until stopped,
+     *  announcing the server in its daemon file.  The commands served
+     *  run as in Main.run, on the repository in the current directory,
+     *  which is normally the same one. */
+    static void serve(File gitletDir) {
+        File daemonFile = daemonFile(gitletDir);
+        String token = newToken();
+        Watcher watcher = null;
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                              0));
+            File tmp = join(gitletDir, "daemon.tmp");
+            createOwnerOnly(tmp);
+            writeContents(tmp, server.getLocalPort() + " " + token + "\n");
+            replaceDurably(tmp, daemonFile);
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(daemonFile::delete));
+            if (Config.getBoolean("daemon.watch", false)) {
+                watcher = Watcher.start(gitletDir.getParentFile(),
+                                        watchDir(gitletDir));
+            }
+            String fingerprint = fingerprint(gitletDir);
+            while (true) {
+                try (Socket client = server.accept()) {
+                    /* A client that connects but does not send its token
+                     * must not hold up the others. */
+                    client.setSoTimeout(HANDSHAKE_TIMEOUT);
+                    String[] args = readRequest(client, token);
+                    if (args == null) {
+                        continue;
+                    }
+                    if (!fingerprint.equals(fingerprint(gitletDir))) {
+                        Repository.resetCaches();
+                    }
+                    boolean stop = args.length == 2
+                        && args[0].equals("daemon") && args[1].equals("stop");
+                    writeReply(client, stop ? new byte[0] : execute(args));
+                    if (stop) {
+                        break;
+                    }
+                    fingerprint = fingerprint(gitletDir);
+                } catch (IOException excp) {
+                    /* A failed client affects no one else. */
+                }
+            }
+        } catch (IOException excp) {
+            throw error("Could not start daemon: %s", excp.getMessage());
+        } finally {
+            if (watcher != null) {
+                watcher.close();
+            }
+            daemonFile.delete();
+        }
+    }
+
+    /** If a server is running for the repository in the current directory,
+     *  have it execute ARGS, copy its output to the standard output, and
+     *  return true.  Return false, having sent nothing, if no server
+     *  accepts the request.  If the server fails once it has the request,
+     *  print a message saying so and return true, since the command may
+     *  have been executed. */
+    static boolean forward(String[] args) {
+        return forward(Repository.GITLET_DIR, args);
+    }
+
+    /** As for forward(ARGS), but for the server, if any, announced in the
+     *  daemon file of the repository whose metadata is in GITLETDIR. */
+    static boolean forward(File gitletDir, String[] args) {
+        File daemonFile = daemonFile(gitletDir);
+        if (!daemonFile.isFile()) {
+            return false;
+        }
+        Socket server = new Socket();
+        try {
+            DataOutputStream out;
+            DataInputStream in;
+            try {
+                String[] info =
+                    readContentsAsString(daemonFile).trim().split(" ");
+                server.connect(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                          Integer.parseInt(info[0])),
+                    HANDSHAKE_TIMEOUT);
+                server.setSoTimeout(HANDSHAKE_TIMEOUT);
+                out = new DataOutputStream(new BufferedOutputStream(
+                    server.getOutputStream()));
+                in = new DataInputStream(new BufferedInputStream(
+                    server.getInputStream()));
+                out.writeUTF(info[1]);
+                out.flush();
+                if (in.read() != ACCEPTED) {
+                    return false;
+                }
+                server.setSoTimeout(0);
+            } catch (IOException | IllegalArgumentException
+                     | ArrayIndexOutOfBoundsException excp) {
+                /* No live server: run the command here instead. */
+                return false;
+            }
+            try {
+                out.writeInt(args.length);
+                for (String arg : args) {
+                    Codecs.writeString(out, arg);
+                }
+                out.flush();
+                byte[] output = new byte[in.readInt()];
+                in.readFully(output);
+                System.out.write(output);
+                System.out.flush();
+            } catch (IOException excp) {
+                message("Lost the connection to the daemon; the command "
+                        + "may or may not have been executed.");
+            }
+            return true;
+        } finally {
+            try {
+                server.close();
+            } catch (IOException excp) {
+                /* Nothing more to do with it. */
+            }
+        }
+    }
+
+    /** Return the output of executing the command ARGS. */
+    static byte[] execute(String[] args) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            Main.run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        } catch (RuntimeException excp) {
+            System.out.println(excp);
+            Repository.resetCaches();
+        } finally {
+            System.out.flush();
+            System.setOut(stdout);
+        }
+        return output.toByteArray();
+    }
+
+    /** Return the arguments of a request from CLIENT, or null if it does
+     *  not carry TOKEN.  Once the token is accepted, the client may take
+     *  as long as it likes to send them. */
+    private static String[] readRequest(Socket client, String token)
+        throws IOException {
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(
+                client.getInputStream()));
+        if (!in.readUTF().equals(token)) {
+            return null;
+        }
+        client.setSoTimeout(0);
+        client.getOutputStream().write(ACCEPTED);
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("bad request");
+        }
+        String[] args = new String[count];
+        for (int i = 0; i < args.length; i += 1) {
+            args[i] = Codecs.readString(in);
+        }
+        return args;
+    }
+
+    /** Send OUTPUT to CLIENT. */
+    private static void writeReply(Socket client, byte[] output)
+        throws IOException {
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(
+                client.getOutputStream()));
+        out.writeInt(output.length);
+        out.write(output);
+        out.flush();
+    }
+
+    /** Return the file announcing a server for the repository whose
+     *  metadata is in GITLETDIR. */
+    static File daemonFile(File gitletDir) {
+        return join(gitletDir, "daemon");
+    }
+
+    /** Return the directory in which the Watcher of a server for the
+     *  repository whose metadata is in GITLETDIR makes its cookies. */
+    static File watchDir(File gitletDir) {
+        return join(gitletDir, "watch");
+    }
+
+    /** Return a summary of the sizes and modification times of the files
+     *  and directories directly within GITLETDIR, other than the server's
+     *  own. */
+    private static String fingerprint(File gitletDir) {
+        File[] files = gitletDir.listFiles();
+        File daemonFile = daemonFile(gitletDir);
+        File watchDir = watchDir(gitletDir);
+        List<String> result = new ArrayList<>();
+        if (files != null) {
+            for (File f : files) {
+                if (!f.equals(daemonFile) && !f.equals(watchDir)) {
+                    result.add(f.getName() + ":" + f.length() + ":"
+                               + f.lastModified());
+                }
+            }
+        }
+        result.sort(null);
+        return String.join(",", result);
+    }
+
+    /** Return a new random access token. */
+    private static String newToken() {
+        byte[] bytes = new byte[UID_LENGTH / 2];
+        new SecureRandom().nextBytes(bytes);
+        return ObjectId.toHex(bytes, 0);
+    }
+
+    /** Create FILE afresh, replacing any left by an earlier server,
+     *  readable and writable only by its owner from the moment it
+     *  exists, where the file system supports that. */
+    private static void createOwnerOnly(File file) throws IOException {
+        Files.deleteIfExists(file.toPath());
+        try {
+            Files.createFile(file.toPath(),
+                PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException excp) {
+            /* Not a POSIX file system. */
+            Files.createFile(file.toPath());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Compares the cost of running Gitlet commands in separate JVMs with
+ *  that of running them through a Daemon.  Usage, from the working
+ *  directory of an initialized repository:
+ *
+ *      java gitlet.DaemonBenchmark [N [COMMAND ARG...]]
+ *
+ *  runs COMMAND (by default "repack", which does nothing in a repository
+ *  without loose objects) N times (by default 1000) in each of three
+ *  ways: cold, with a fresh JVM per command; through the daemon, with a
+ *  fresh client JVM per command; and through the daemon from a client
+ *  already running, which approximates a native client.
+ */
+public class DaemonBenchmark {
+
+    /** Run the benchmark as described in the class comment, using ARGS. */
+    public static void main(String... args)
+        throws IOException, InterruptedException {
+        Repository.checkInitialized();
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        List<String> command = new ArrayList<>();
+        for (int i = 1; i < args.length; i += 1) {
+            command.add(args[i]);
+        }
+        if (command.isEmpty()) {
+            command.add("repack");
+        }
+
+        double cold = timeProcesses(n, command, false);
+
+        Process daemon = gitlet(List.of("daemon"), false).start();
+        while (!Daemon.DAEMON_FILE.isFile()) {
+            Thread.sleep(10);
+        }
+        double forwarded = timeProcesses(n, command, true);
+
+        String[] argv = command.toArray(new String[0]);
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i += 1) {
+            Daemon.forward(argv);
+        }
+        double inProcess = (System.nanoTime() - start) / 1e9;
+        System.setOut(stdout);
+
+        Daemon.forward(new String[] { "daemon", "stop" });
+        daemon.waitFor();
+
+        System.out.printf("%-24s %12s %12s%n", "mode", "time (s)",
+                          "ms/command");
+        System.out.printf("------------------------------------------------"
+                          + "--%n");
+        printRow("cold", cold, n);
+        printRow("daemon, JVM client", forwarded, n);
+        printRow("daemon, warm client", inProcess, n);
+    }
+
+    /** Return the time in seconds to run COMMAND N times, each in a new
+     *  JVM, forwarding to a daemon iff DAEMON. */
+    private static double timeProcesses(int n, List<String> command,
+                                        boolean daemon)
+        throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i += 1) {
+            gitlet(command, daemon).start().waitFor();
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /** Return a builder for a process running gitlet.Main with arguments
+     *  COMMAND, forwarding to a daemon iff DAEMON. */
+    private static ProcessBuilder gitlet(List<String> command,
+                                         boolean daemon) {
+        List<String> argv = new ArrayList<>();
+        argv.add(System.getProperty("java.home") + File.separator + "bin"
+                 + File.separator + "java");
+        argv.add("-cp");
+        argv.add(System.getProperty("java.class.path"));
+        argv.add("gitlet.Main");
+        argv.addAll(command);
+        ProcessBuilder result = new ProcessBuilder(argv);
+        result.directory(Repository.CWD);
+        result.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        result.redirectError(ProcessBuilder.Redirect.INHERIT);
+        if (daemon) {
+            result.environment().put("GITLET_DAEMON", "1");
+        } else {
+            result.environment().remove("GITLET_DAEMON");
+        }
+        return result;
+    }
+
+    /** Print a row of the results table for a mode named MODE that took
+     *  TIME seconds for N commands. */
+    private static void printRow(String mode, double time, int n) {
+        System.out.printf("%-24s %12.2f %12.3f%n", mode, time,
+                          time / n * 1000);
+    }
+}
@@ -0,0 +1,157 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the command server (see Daemon), run on a thread for a
+ *  temporary repository.  The commands forwarded are ones that fail
+ *  before touching any repository, since the server runs them in the
+ *  current directory. */
+public class DaemonTest {
+
+    /** Time in milliseconds to wait for the server to start or stop. */
+    private static final long WAIT = 10000;
+    /** A command that fails without touching any repository. */
+    private static final String[] COMMAND = { "no-such-command", "x" };
+
+    /** The temporary directory of the current test. */
+    private File _dir;
+    /** Its repository's metadata directory. */
+    private File _gitletDir;
+    /** The thread running the server. */
+    private Thread _server;
+
+    @Before
+    public void startServer() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-daemon").toFile();
+        _gitletDir = join(_dir, ".gitlet");
+        _gitletDir.mkdir();
+        _server = new Thread(() -> Daemon.serve(_gitletDir));
+        _server.setDaemon(true);
+        _server.start();
+        long deadline = System.currentTimeMillis() + WAIT;
+        while (!Daemon.daemonFile(_gitletDir).isFile()) {
+            assertTrue("server did not start",
+                       System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @After
+    public void stopServer() throws InterruptedException {
+        if (_server.isAlive()) {
+            forward(new String[] { "daemon", "stop" });
+            _server.join(WAIT);
+        }
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Forward ARGS to the server, returning what it printed, or null if
+     *  no server accepted them. */
+    private String forward(String[] args) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            if (!Daemon.forward(_gitletDir, args)) {
+                return null;
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Return a socket connected to the server. */
+    private Socket connect() throws IOException {
+        String[] info = readContentsAsString(Daemon.daemonFile(_gitletDir))
+            .trim().split(" ");
+        return new Socket(InetAddress.getLoopbackAddress(),
+                          Integer.parseInt(info[0]));
+    }
+
+    /** A forwarded command prints what it prints when executed here. */
+    @Test
+    public void forwardMatchesExecute() {
+        String expected =
+            new String(Daemon.execute(COMMAND), StandardCharsets.UTF_8);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, forward(COMMAND));
+        assertEquals(expected, forward(COMMAND));
+    }
+
+    /** A client with the wrong token is turned away without an answer,
+     *  and the server goes on serving others. */
+    @Test
+    public void wrongToken() throws IOException {
+        try (Socket client = connect()) {
+            client.setSoTimeout((int) WAIT);
+            DataOutputStream out =
+                new DataOutputStream(client.getOutputStream());
+            out.writeUTF("not the token");
+            out.flush();
+            assertEquals(-1, client.getInputStream().read());
+        }
+        assertNotNull(forward(COMMAND));
+    }
+
+    /** A client that connects and sends nothing is dropped once the
+     *  handshake times out, and the server goes on serving others. */
+    @Test
+    public void silentClient() throws IOException {
+        try (Socket client = connect()) {
+            client.setSoTimeout((int) WAIT);
+            long start = System.currentTimeMillis();
+            assertEquals(-1, client.getInputStream().read());
+            assertTrue(System.currentTimeMillis() - start
+                       >= Daemon.HANDSHAKE_TIMEOUT / 2);
+        }
+        assertNotNull(forward(COMMAND));
+    }
+
+    /** A daemon file left by a server that has died is ignored, so that
+     *  the client runs the command itself. */
+    @Test
+    public void staleDaemonFile() throws IOException, InterruptedException {
+        forward(new String[] { "daemon", "stop" });
+        _server.join(WAIT);
+        assertFalse(_server.isAlive());
+        assertFalse(Daemon.daemonFile(_gitletDir).exists());
+
+        int port;
+        try (ServerSocket closed =
+             new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = closed.getLocalPort();
+        }
+        writeContents(Daemon.daemonFile(_gitletDir), port + " 00ff\n");
+        assertNull(forward(COMMAND));
+        writeContents(Daemon.daemonFile(_gitletDir), "garbage");
+        assertNull(forward(COMMAND));
+    }
+}
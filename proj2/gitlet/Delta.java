@@ -0,0 +1,166 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/** Binary deltas between object contents, in the spirit of Git's
+ *  pack deltas.  A delta describes a TARGET byte array as a sequence of
+ *  instructions that either copy a range of a BASE array or insert
+ *  literal bytes.  Its encoding is
+ *
+ *      <target length>  (varint)
+ *      instruction...
+ *
+ *  where an instruction whose first byte is 0 is a copy, followed by the
+ *  varint offset and varint length of the range of BASE to copy, and an
+ *  instruction whose first byte N is in 1..127 inserts the N bytes that
+ *  follow it.
+ */
+class Delta {
+
+    /** Size of the blocks of the base that are indexed for matching. */
+    private static final int BLOCK = 16;
+
+    /** Maximum number of literal bytes in one insert instruction. */
+    private static final int MAX_INSERT = 127;
+
+    /** Multiplier for the rolling hash over BLOCK bytes. */
+    private static final int MULT = 31;
+
+    /** MULT raised to the power BLOCK - 1, for removing the oldest byte
+     *  from a rolling hash. */
+    private static final int MULT_OUT;
+
+    static {
+        int p = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            p *= MULT;
+        }
+        MULT_OUT = p;
+    }
+
+    /** Return a delta that transforms BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int k = 0; k + BLOCK <= base.length; k += BLOCK) {
+            blocks.putIfAbsent(hash(base, k), k);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, target.length);
+        int literalStart = 0;
+        int i = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            Integer k = blocks.get(h);
+            if (k != null && matches(base, k, target, i)) {
+                int start = k, len = BLOCK;
+                while (i + len < target.length && start + len < base.length
+                       && base[start + len] == target[i + len]) {
+                    len += 1;
+                }
+                while (i > literalStart && start > 0
+                       && base[start - 1] == target[i - 1]) {
+                    i -= 1;
+                    start -= 1;
+                    len += 1;
+                }
+                writeLiterals(out, target, literalStart, i);
+                out.write(0);
+                writeVarint(out, start);
+                writeVarint(out, len);
+                i += len;
+                literalStart = i;
+                if (i + BLOCK <= target.length) {
+                    h = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    h = (h - target[i] * MULT_OUT) * MULT + target[i + BLOCK];
+                }
+                i += 1;
+            }
+        }
+        writeLiterals(out, target, literalStart, target.length);
+        return out.toByteArray();
+    }
+
+    /** Return the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        int size = readVarint(delta, pos);
+        byte[] result = new byte[size];
+        int n = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++];
+            if (op == 0) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, n, len);
+                n += len;
+            } else {
+                System.arraycopy(delta, pos[0], result, n, op);
+                pos[0] += op;
+                n += op;
+            }
+        }
+        if (n != size) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /** Return the hash of the BLOCK bytes of DATA starting at K. */
+    private static int hash(byte[] data, int k) {
+        int h = 0;
+        for (int i = k; i < k + BLOCK; i += 1) {
+            h = h * MULT + data[i];
+        }
+        return h;
+    }
+
+    /** Return true iff the BLOCK bytes of A at I equal those of B at J. */
+    private static boolean matches(byte[] a, int i, byte[] b, int j) {
+        for (int d = 0; d < BLOCK; d += 1) {
+            if (a[i + d] != b[j + d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write insert instructions for DATA[START .. END) to OUT. */
+    private static void writeLiterals(ByteArrayOutputStream out, byte[] data,
+                                      int start, int end) {
+        while (start < end) {
+            int n = Math.min(MAX_INSERT, end - start);
+            out.write(n);
+            out.write(data, start, n);
+            start += n;
+        }
+    }
+
+    /** Write the non-negative VAL to OUT as a little-endian base-128
+     *  varint. */
+    static void writeVarint(ByteArrayOutputStream out, long val) {
+        while (val >= 0x80) {
+            out.write((int) (val & 0x7f) | 0x80);
+            val >>>= 7;
+        }
+        out.write((int) val);
+    }
+
+    /** Read a varint written by writeVarint from DATA at POS[0], advancing
+     *  POS[0] past it. */
+    static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = data[pos[0]++] & 0xff;
+            result |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return result;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Line-level differences between two sequences of line numbers (see
+ *  Lines), computed by Myers' O(ND) algorithm in its linear-space
+ *  form.  Rather than recording the furthest-reaching path on every
+ *  diagonal for each edit distance D, which takes O(ND) space, each
+ *  step runs the search from both ends of the sequences at once until
+ *  the two meet at the "middle snake" of a shortest edit script, and
+ *  then recurs on the parts before and after it, so that only O(N)
+ *  space is needed.
+ *
+ *  Two inexpensive reductions come first.  Lines common to the starts or
+ *  ends of the sequences being compared are matched directly.  And a
+ *  line that occurs in only one of the two sequences cannot be matched
+ *  at all, so such lines are dropped before the search and restored
+ *  afterwards; the result is still a shortest edit script, and files
+ *  that share few lines are compared in near-linear time.
+ */
+class Diff {
+
+    /** A difference: lines AStart through AEnd - 1 of the first sequence
+     *  are replaced by lines BStart through BEnd - 1 of the second. */
+    static class Hunk {
+        /** A hunk replacing lines ASTART through AEND - 1 of the first
+         *  sequence by lines BSTART through BEND - 1 of the second. */
+        Hunk(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d,%d -> %d,%d", aStart, aEnd, bStart,
+                                 bEnd);
+        }
+
+        /** Bounds of the replaced lines of the first sequence. */
+        final int aStart, aEnd;
+        /** Bounds of the replacing lines of the second sequence. */
+        final int bStart, bEnd;
+    }
+
+    /** Return a shortest list of Hunks that transforms line sequence A
+     *  into B, in increasing order of position, with no two adjacent. */
+    static List<Hunk> diff(int[] a, int[] b) {
+        int[] keptA = common(a, b), keptB = common(b, a);
+        Diff diff = new Diff(select(a, keptA), select(b, keptB));
+        diff.compare(0, keptA.length, 0, keptB.length);
+
+        List<Hunk> result = new ArrayList<>();
+        int nextA = 0, nextB = 0;
+        for (int r = 0; r < diff._runs; r += 1) {
+            for (int k = 0; k < diff._runLength[r]; k += 1) {
+                int x = keptA[diff._runA[r] + k], y = keptB[diff._runB[r] + k];
+                if (x > nextA || y > nextB) {
+                    result.add(new Hunk(nextA, x, nextB, y));
+                }
+                nextA = x + 1;
+                nextB = y + 1;
+            }
+        }
+        if (nextA < a.length || nextB < b.length) {
+            result.add(new Hunk(nextA, a.length, nextB, b.length));
+        }
+        return result;
+    }
+
+    /** Return the positions in A of the lines that also occur in B. */
+    private static int[] common(int[] a, int[] b) {
+        int max = 0;
+        for (int id : b) {
+            max = Math.max(max, id + 1);
+        }
+        boolean[] inB = new boolean[max];
+        for (int id : b) {
+            inB[id] = true;
+        }
+        int[] result = new int[a.length];
+        int n = 0;
+        for (int i = 0; i < a.length; i += 1) {
+            if (a[i] < max && inB[a[i]]) {
+                result[n] = i;
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Return the elements of A at POSITIONS. */
+    private static int[] select(int[] a, int[] positions) {
+        int[] result = new int[positions.length];
+        for (int k = 0; k < positions.length; k += 1) {
+            result[k] = a[positions[k]];
+        }
+        return result;
+    }
+
+    /** A comparison of line sequences A and B. */
+    private Diff(int[] a, int[] b) {
+        _a = a;
+        _b = b;
+        int size = a.length + b.length + 2;
+        _forward = new int[size];
+        _backward = new int[size];
+    }
+
+    /** Record the matching lines of _a[ALO .. AHI-1] and _b[BLO .. BHI-1]
+     *  in order, as described in the class comment. */
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        int prefix = 0;
+        while (aLo + prefix < aHi && bLo + prefix < bHi
+               && _a[aLo + prefix] == _b[bLo + prefix]) {
+            prefix += 1;
+        }
+        addRun(aLo, bLo, prefix);
+        aLo += prefix;
+        bLo += prefix;
+        int suffix = 0;
+        while (aLo < aHi - suffix && bLo < bHi - suffix
+               && _a[aHi - suffix - 1] == _b[bHi - suffix - 1]) {
+            suffix += 1;
+        }
+        aHi -= suffix;
+        bHi -= suffix;
+        if (aLo < aHi && bLo < bHi) {
+            long split = middleSnake(aLo, aHi, bLo, bHi);
+            if (split >= 0) {
+                int x = (int) (split >>> Integer.SIZE), y = (int) split;
+                compare(aLo, x, bLo, y);
+                compare(x, aHi, y, bHi);
+            }
+        }
+        addRun(aHi, bHi, suffix);
+    }
+
+    /** Return a point (X, Y), encoded as X * 2**32 + Y, at which a
+     *  shortest edit script for _a[ALO .. AHI-1] and _b[BLO .. BHI-1],
+     *  both non-empty and with differing first and last lines, may be
+     *  split into two shorter ones, or -1 if they have no lines in
+     *  common.  The furthest-reaching forward and backward paths on
+     *  diagonal K are kept in _forward and _backward at K + the maximum
+     *  search distance, as X offsets from the start and end,
+     *  respectively. */
+    private long middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int size = 2 * maxD;
+        Arrays.fill(_forward, 0, size, -1);
+        Arrays.fill(_backward, 0, size, -1);
+        _forward[offset + 1] = 0;
+        _backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean odd = delta % 2 != 0;
+        int fStart = 0, fEnd = 0, bStart = 0, bEnd = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k = -d + fStart; k <= d - fEnd; k += 2) {
+                int i = offset + k;
+                int x = k == -d || (k != d && _forward[i - 1] < _forward[i + 1])
+                    ? _forward[i + 1] : _forward[i - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && _a[aLo + x] == _b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _forward[i] = x;
+                if (x > n) {
+                    fEnd += 2;
+                } else if (y > m) {
+                    fStart += 2;
+                } else if (odd) {
+                    int j = offset + delta - k;
+                    if (j >= 0 && j < size && _backward[j] != -1
+                        && x >= n - _backward[j]) {
+                        return split(aLo + x, bLo + y);
+                    }
+                }
+            }
+            for (int k = -d + bStart; k <= d - bEnd; k += 2) {
+                int i = offset + k;
+                int x = k == -d
+                    || (k != d && _backward[i - 1] < _backward[i + 1])
+                    ? _backward[i + 1] : _backward[i - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m
+                       && _a[aHi - x - 1] == _b[bHi - y - 1]) {
+                    x += 1;
+                    y += 1;
+                }
+                _backward[i] = x;
+                if (x > n) {
+                    bEnd += 2;
+                } else if (y > m) {
+                    bStart += 2;
+                } else if (!odd) {
+                    int j = offset + delta - k;
+                    if (j >= 0 && j < size && _forward[j] != -1) {
+                        int fx = _forward[j];
+                        int fy = offset + fx - j;
+                        if (fx >= n - x) {
+                            return split(aLo + fx, bLo + fy);
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Return the point (X, Y) encoded as for middleSnake. */
+    private static long split(int x, int y) {
+        return ((long) x << Integer.SIZE) | (y & 0xffffffffL);
+    }
+
+    /** Record that the LENGTH lines starting at _a[A] match those
+     *  starting at _b[B]. */
+    private void addRun(int a, int b, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (_runs == _runA.length) {
+            _runA = Arrays.copyOf(_runA, 2 * _runs);
+            _runB = Arrays.copyOf(_runB, 2 * _runs);
+            _runLength = Arrays.copyOf(_runLength, 2 * _runs);
+        }
+        _runA[_runs] = a;
+        _runB[_runs] = b;
+        _runLength[_runs] = length;
+        _runs += 1;
+    }
+
+    /** The sequences compared, without the lines unique to either. */
+    private final int[] _a, _b;
+    /** Furthest-reaching paths of middleSnake, shared by all its calls
+     *  since each finishes before the next begins. */
+    private final int[] _forward, _backward;
+    /** Matching runs found so far, in order: each consists of the
+     *  _runLength[R] lines at _a[_runA[R]] and _b[_runB[R]]. */
+    private int[] _runA = new int[16], _runB = new int[16],
+        _runLength = new int[16];
+    /** Number of runs recorded. */
+    private int _runs;
+}
@@ -0,0 +1,127 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of line-level differences (see Diff), checked against a
+ *  straightforward dynamic-programming longest common subsequence. */
+public class DiffTest {
+
+    /** Return the length of a longest common subsequence of A and B. */
+    private static int lcs(int[] a, int[] b) {
+        int[][] len = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i -= 1) {
+            for (int j = b.length - 1; j >= 0; j -= 1) {
+                len[i][j] = a[i] == b[j] ? len[i + 1][j + 1] + 1
+                    : Math.max(len[i + 1][j], len[i][j + 1]);
+            }
+        }
+        return len[0][0];
+    }
+
+    /** Check that HUNKS are a shortest edit script from A to B: in
+     *  increasing order, none adjacent, transforming A into B, and
+     *  replacing no more lines than the longest common subsequence of A
+     *  and B requires. */
+    private static void checkScript(int[] a, int[] b, List<Diff.Hunk> hunks) {
+        int[] result = new int[b.length];
+        int n = 0, nextA = 0, edits = 0;
+        boolean first = true;
+        for (Diff.Hunk h : hunks) {
+            assertTrue(h.toString(), h.aStart <= h.aEnd && h.bStart <= h.bEnd);
+            assertTrue(h.toString(), h.aEnd > h.aStart || h.bEnd > h.bStart);
+            assertTrue(h.toString(), first || h.aStart > nextA);
+            assertEquals(h.toString(), h.aStart - nextA, h.bStart - n);
+            for (int i = nextA; i < h.aStart; i += 1) {
+                result[n] = a[i];
+                n += 1;
+            }
+            for (int j = h.bStart; j < h.bEnd; j += 1) {
+                result[n] = b[j];
+                n += 1;
+            }
+            edits += (h.aEnd - h.aStart) + (h.bEnd - h.bStart);
+            nextA = h.aEnd;
+            first = false;
+        }
+        assertEquals(a.length - nextA, b.length - n);
+        for (int i = nextA; i < a.length; i += 1) {
+            result[n] = a[i];
+            n += 1;
+        }
+        assertArrayEquals(b, result);
+        assertEquals(a.length + b.length - 2 * lcs(a, b), edits);
+    }
+
+    /** Return a random sequence of up to MAXLENGTH lines numbered below
+     *  ALPHABET, using RANDOM. */
+    private static int[] randomLines(Random random, int maxLength,
+                                     int alphabet) {
+        int[] result = new int[random.nextInt(maxLength + 1)];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = random.nextInt(alphabet);
+        }
+        return result;
+    }
+
+    /** Return A with random lines deleted, inserted, and replaced, using
+     *  RANDOM, as a new version of a file mostly like A. */
+    private static int[] edit(int[] a, Random random, int alphabet) {
+        int[] result = new int[2 * a.length + 4];
+        int n = 0;
+        for (int i = 0; i <= a.length; i += 1) {
+            int choice = random.nextInt(8);
+            if (choice == 0 && n < result.length) {
+                result[n] = random.nextInt(alphabet);
+                n += 1;
+            }
+            if (i < a.length && choice != 1) {
+                result[n] = choice == 2 ? random.nextInt(alphabet) : a[i];
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    @Test
+    public void emptyAndEqual() {
+        int[] empty = {}, some = { 1, 2, 3 };
+        assertTrue(Diff.diff(empty, empty).isEmpty());
+        assertTrue(Diff.diff(some, some.clone()).isEmpty());
+        checkScript(empty, some, Diff.diff(empty, some));
+        checkScript(some, empty, Diff.diff(some, empty));
+        assertEquals(1, Diff.diff(empty, some).size());
+    }
+
+    /** Unrelated random sequences over alphabets of several sizes, from
+     *  nearly all lines repeated to nearly all lines unique. */
+    @Test
+    public void randomSequences() {
+        Random random = new Random(21);
+        for (int alphabet : new int[] { 2, 3, 5, 20, 200 }) {
+            for (int trial = 0; trial < 300; trial += 1) {
+                int[] a = randomLines(random, 60, alphabet),
+                    b = randomLines(random, 60, alphabet);
+                checkScript(a, b, Diff.diff(a, b));
+            }
+        }
+    }
+
+    /** Versions differing by scattered edits, as files usually do. */
+    @Test
+    public void randomEdits() {
+        Random random = new Random(22);
+        for (int alphabet : new int[] { 4, 50, 1000 }) {
+            for (int trial = 0; trial < 200; trial += 1) {
+                int[] a = randomLines(random, 300, alphabet),
+                    b = edit(a, random, alphabet);
+                checkScript(a, b, Diff.diff(a, b));
+                checkScript(b, a, Diff.diff(b, a));
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/** Persistent maps from file names to blob UIDs, the file lists of
+ *  Commits.  A map is a hash array mapped trie whose nodes are objects in
+ *  an ObjectStore, so that a Commit records only the UID of its map's
+ *  root, and the maps of successive commits share every node not on the
+ *  path to a changed file.  Making a commit that changes one file among
+ *  N thus writes O(log N) small nodes rather than all N entries.
+ *
+ *  A node at depth D has FANOUT slots, and a name belongs in the slot
+ *  given by bits BITS * D to BITS * (D + 1) - 1 of its 64-bit hash (see
+ *  ChangedPaths.hash).  A slot holding at most BUCKET names keeps them
+ *  in a sorted bucket; a fuller slot holds the UID of a child node at
+ *  depth D + 1, unless the hash bits are exhausted, in which case the
+ *  bucket simply grows.  The shape of a map therefore depends only on
+ *  its contents, so that equal maps have the same root UID however they
+ *  were built, and two maps may be compared by descending only into
+ *  those subtrees whose UIDs differ (see changed).
+ */
+class FileMap implements Dumpable {
+
+    /** Number of hash bits consumed by each level. */
+    private static final int BITS = 5;
+    /** Number of slots in a node. */
+    private static final int FANOUT = 1 << BITS;
+    /** Depth of the deepest nodes. */
+    private static final int MAX_DEPTH = 64 / BITS - 1;
+    /** Largest number of names in a bucket above MAX_DEPTH. */
+    static final int BUCKET = 16;
+
+    /** Return the UID of the root of a map holding FILES, a mapping of
+     *  file names to blob UIDs, writing its nodes to STORE. */
+    static ObjectId write(ObjectStore store, Map<String, ObjectId> files) {
+        return update(store, null, files, Set.of());
+    }
+
+    /** Return the UID of the root of the map obtained from the one rooted
+     *  at ROOT (null for an empty map) by mapping the names in PUTS to
+     *  their UIDs and removing the names in REMOVES, writing new nodes to
+     *  STORE.  Only the nodes on the paths to the changed names are
+     *  read or written. */
+    static ObjectId update(ObjectStore store, ObjectId root,
+                           Map<String, ObjectId> puts,
+                           Set<String> removes) {
+        TreeMap<String, ObjectId> changes = new TreeMap<>();
+        for (String name : removes) {
+            changes.put(name, null);
+        }
+        changes.putAll(puts);
+        if (root != null && changes.isEmpty()) {
+            return root;
+        }
+        FileMap node = root == null ? new FileMap() : loadCopy(store, root);
+        node.apply(store, changes, 0);
+        return store.write(Codecs.encode(node));
+    }
+
+    /** Return the UID of the blob for NAME in the map rooted at ROOT in
+     *  STORE, or null if it has none. */
+    static ObjectId get(ObjectStore store, ObjectId root, String name) {
+        long hash = ChangedPaths.hash(name);
+        FileMap node = load(store, root);
+        for (int depth = 0; ; depth += 1) {
+            Slot slot = node._slots[slotOf(hash, depth)];
+            if (slot == null) {
+                return null;
+            } else if (slot.entries != null) {
+                return slot.entries.get(name);
+            }
+            node = load(store, slot.child);
+        }
+    }
+
+    /** Return the contents of the map rooted at ROOT in STORE, in order
+     *  of name. */
+    static TreeMap<String, ObjectId> read(ObjectStore store, ObjectId root) {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        load(store, root).collect(store, result);
+        return result;
+    }
+
+    /** Return the names whose blobs differ between the maps rooted at
+     *  BEFORE (null for an empty map) and AFTER in STORE, including names
+     *  present in only one of them.  Subtrees the maps share are not
+     *  read. */
+    static TreeSet<String> changed(ObjectStore store, ObjectId before,
+                                   ObjectId after) {
+        TreeSet<String> result = new TreeSet<>();
+        if (before == null || !before.equals(after)) {
+            diff(store, before == null ? new FileMap() : load(store, before),
+                 load(store, after), result);
+        }
+        return result;
+    }
+
+    /** Visit the map rooted at ROOT in STORE, calling NODE on the UID of
+     *  each node and BLOB on the UID of each blob in it.  The subtree
+     *  below a node is skipped if NODE returns false for it. */
+    static void walk(ObjectStore store, ObjectId root,
+                     Predicate<ObjectId> node, Consumer<ObjectId> blob) {
+        if (!node.test(root)) {
+            return;
+        }
+        for (Slot slot : load(store, root)._slots) {
+            if (slot == null) {
+                continue;
+            } else if (slot.entries != null) {
+                slot.entries.values().forEach(blob);
+            } else {
+                walk(store, slot.child, node, blob);
+            }
+        }
+    }
+
+    /** Call NODE on the UID of each node, and BLOB on the UID of each
+     *  blob, of the map rooted at AFTER in STORE that the map rooted at
+     *  BEFORE (null for an empty map) lacks, as for sending a commit to a
+     *  repository that has its parent.  Only the subtrees of AFTER that
+     *  differ from BEFORE are read; a UID may be reported more than
+     *  once. */
+    static void added(ObjectStore store, ObjectId before, ObjectId after,
+                      Consumer<ObjectId> node, Consumer<ObjectId> blob) {
+        if (after.equals(before)) {
+            return;
+        }
+        node.accept(after);
+        added(store, before == null ? new FileMap() : load(store, before),
+              load(store, after), node, blob);
+    }
+
+    /** Apply CHANGES, which map names to new UIDs or to null for names
+     *  to be removed, to this node, which is at depth DEPTH, writing any
+     *  new descendants to STORE. */
+    private void apply(ObjectStore store, TreeMap<String, ObjectId> changes,
+                       int depth) {
+        List<TreeMap<String, ObjectId>> bySlot =
+            new ArrayList<>(Collections.nCopies(FANOUT, null));
+        for (Map.Entry<String, ObjectId> e : changes.entrySet()) {
+            int k = slotOf(ChangedPaths.hash(e.getKey()), depth);
+            if (bySlot.get(k) == null) {
+                bySlot.set(k, new TreeMap<>());
+            }
+            bySlot.get(k).put(e.getKey(), e.getValue());
+        }
+        for (int k = 0; k < FANOUT; k += 1) {
+            if (bySlot.get(k) == null) {
+                continue;
+            }
+            Slot slot = _slots[k];
+            if (slot == null) {
+                slot = new Slot();
+                slot.entries = new TreeMap<>();
+            }
+            if (slot.entries != null) {
+                for (Map.Entry<String, ObjectId> e : bySlot.get(k).entrySet()) {
+                    if (e.getValue() == null) {
+                        slot.entries.remove(e.getKey());
+                    } else {
+                        slot.entries.put(e.getKey(), e.getValue());
+                    }
+                }
+                slot.size = slot.entries.size();
+                if (slot.size > BUCKET && depth < MAX_DEPTH) {
+                    FileMap child = new FileMap();
+                    child.apply(store, slot.entries, depth + 1);
+                    slot.child = store.write(Codecs.encode(child));
+                    slot.entries = null;
+                }
+            } else {
+                FileMap child = loadCopy(store, slot.child);
+                child.apply(store, bySlot.get(k), depth + 1);
+                slot.size = child.size();
+                if (slot.size <= BUCKET) {
+                    slot.entries = new TreeMap<>();
+                    child.collect(store, slot.entries);
+                    slot.child = null;
+                } else {
+                    slot.child = store.write(Codecs.encode(child));
+                }
+            }
+            _slots[k] = slot.size == 0 ? null : slot;
+        }
+    }
+
+    /** Return the number of names in this node and its descendants. */
+    private long size() {
+        long result = 0;
+        for (Slot slot : _slots) {
+            result += slot == null ? 0 : slot.size;
+        }
+        return result;
+    }
+
+    /** Add the entries of this node and its descendants in STORE to
+     *  RESULT. */
+    private void collect(ObjectStore store, Map<String, ObjectId> result) {
+        for (Slot slot : _slots) {
+            if (slot == null) {
+                continue;
+            } else if (slot.entries != null) {
+                result.putAll(slot.entries);
+            } else {
+                load(store, slot.child).collect(store, result);
+            }
+        }
+    }
+
+    /** Add to RESULT the names whose blobs differ between the nodes
+     *  BEFORE and AFTER, at the same depth, and their descendants in
+     *  STORE. */
+    private static void diff(ObjectStore store, FileMap before,
+                             FileMap after, Set<String> result) {
+        for (int k = 0; k < FANOUT; k += 1) {
+            Slot x = before._slots[k], y = after._slots[k];
+            if (x == null && y == null) {
+                continue;
+            } else if (x != null && y != null
+                       && x.child != null && y.child != null) {
+                if (!x.child.equals(y.child)) {
+                    diff(store, load(store, x.child), load(store, y.child),
+                         result);
+                }
+                continue;
+            }
+            TreeMap<String, ObjectId> was = entries(store, x),
+                now = entries(store, y);
+            for (Map.Entry<String, ObjectId> e : now.entrySet()) {
+                if (!e.getValue().equals(was.get(e.getKey()))) {
+                    result.add(e.getKey());
+                }
+            }
+            for (String name : was.keySet()) {
+                if (!now.containsKey(name)) {
+                    result.add(name);
+                }
+            }
+        }
+    }
+
+    /** Report to NODE and BLOB the nodes and blobs beneath AFTER, a node
+     *  at the same depth as BEFORE, that are not beneath BEFORE, reading
+     *  descendants from STORE. */
+    private static void added(ObjectStore store, FileMap before,
+                              FileMap after, Consumer<ObjectId> node,
+                              Consumer<ObjectId> blob) {
+        for (int k = 0; k < FANOUT; k += 1) {
+            Slot x = before._slots[k], y = after._slots[k];
+            if (y == null) {
+                continue;
+            } else if (x != null && x.child != null && y.child != null) {
+                if (!x.child.equals(y.child)) {
+                    node.accept(y.child);
+                    added(store, load(store, x.child), load(store, y.child),
+                          node, blob);
+                }
+                continue;
+            }
+            HashSet<ObjectId> had = new HashSet<>(entries(store, x).values());
+            if (y.entries != null) {
+                for (ObjectId uid : y.entries.values()) {
+                    if (!had.contains(uid)) {
+                        blob.accept(uid);
+                    }
+                }
+            } else {
+                walk(store, y.child, uid -> {
+                    node.accept(uid);
+                    return true;
+                }, uid -> {
+                    if (!had.contains(uid)) {
+                        blob.accept(uid);
+                    }
+                });
+            }
+        }
+    }
+
+    /** Return all entries beneath SLOT, which may be null, in STORE. */
+    private static TreeMap<String, ObjectId> entries(ObjectStore store,
+                                                     Slot slot) {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        if (slot == null) {
+            return result;
+        } else if (slot.entries != null) {
+            result.putAll(slot.entries);
+        } else {
+            load(store, slot.child).collect(store, result);
+        }
+        return result;
+    }
+
+    /** Return the number of the slot for a name with hash HASH in a node
+     *  at depth DEPTH. */
+    private static int slotOf(long hash, int depth) {
+        return (int) (hash >>> (BITS * depth)) & (FANOUT - 1);
+    }
+
+    /** Return the node UID from STORE, which may be shared with other
+     *  callers (see ObjectStore.decode) and so must not be modified. */
+    private static FileMap load(ObjectStore store, ObjectId uid) {
+        return store.decode(uid, FileMap.class);
+    }
+
+    /** Return a private copy of the node UID from STORE, for apply to
+     *  modify. */
+    private static FileMap loadCopy(ObjectStore store, ObjectId uid) {
+        return Codecs.decode(store.read(uid), FileMap.class);
+    }
+
+    @Override
+    public void dump() {
+        for (int k = 0; k < FANOUT; k += 1) {
+            Slot slot = _slots[k];
+            if (slot == null) {
+                continue;
+            } else if (slot.entries != null) {
+                System.out.printf("%2d: %s%n", k, slot.entries);
+            } else {
+                System.out.printf("%2d: node %s (%d files)%n", k,
+                                  slot.child, slot.size);
+            }
+        }
+    }
+
+    /** The contents of one slot of a node. */
+    private static class Slot {
+        /** The names in the slot mapped to their blobs, if the slot is a
+         *  bucket, or null. */
+        private TreeMap<String, ObjectId> entries;
+        /** The UID of the slot's child node, or null if it is a bucket. */
+        private ObjectId child;
+        /** The number of names beneath the slot. */
+        private long size;
+    }
+
+    /** The encoding of nodes:
+     *      bitmap (4 bytes)  slot...
+     *  where bit K of bitmap is set iff slot K is occupied, and each
+     *  occupied slot, in order, is either
+     *      0 (1 byte)  #names  (name  UID)...      (a bucket)
+     *      1 (1 byte)  #names  child UID           (a child node)
+     *  with #names a varint. */
+    static final Codec<FileMap> CODEC = new Codec<>() {
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public void write(FileMap node, DataOutputStream out)
+            throws IOException {
+            int bitmap = 0;
+            for (int k = 0; k < FANOUT; k += 1) {
+                bitmap |= node._slots[k] == null ? 0 : 1 << k;
+            }
+            out.writeInt(bitmap);
+            for (Slot slot : node._slots) {
+                if (slot == null) {
+                    continue;
+                }
+                out.writeByte(slot.entries != null ? BUCKET_SLOT : CHILD_SLOT);
+                Codecs.writeVarint(out, slot.size);
+                if (slot.entries != null) {
+                    for (Map.Entry<String, ObjectId> e
+                             : slot.entries.entrySet()) {
+                        Codecs.writeString(out, e.getKey());
+                        Codecs.writeUid(out, e.getValue());
+                    }
+                } else {
+                    Codecs.writeUid(out, slot.child);
+                }
+            }
+        }
+
+        @Override
+        public FileMap read(DataInputStream in, int version)
+            throws IOException {
+            FileMap node = new FileMap();
+            int bitmap = in.readInt();
+            for (int k = 0; k < FANOUT; k += 1) {
+                if ((bitmap & (1 << k)) == 0) {
+                    continue;
+                }
+                Slot slot = new Slot();
+                int kind = in.readUnsignedByte();
+                slot.size = Codecs.readVarint(in);
+                if (kind == BUCKET_SLOT) {
+                    slot.entries = new TreeMap<>();
+                    for (long n = slot.size; n > 0; n -= 1) {
+                        String name = Codecs.readString(in);
+                        slot.entries.put(name, Codecs.readUid(in));
+                    }
+                } else if (kind == CHILD_SLOT) {
+                    slot.child = Codecs.readUid(in);
+                } else {
+                    throw new IOException("corrupt file map node");
+                }
+                node._slots[k] = slot;
+            }
+            return node;
+        }
+    };
+
+    /** Kinds of encoded slots. */
+    private static final int BUCKET_SLOT = 0, CHILD_SLOT = 1;
+
+    /** The slots of this node, null where empty. */
+    private final Slot[] _slots = new Slot[FANOUT];
+}
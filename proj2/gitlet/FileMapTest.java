@@ -0,0 +1,137 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the persistent maps holding commits' file lists (see
+ *  FileMap). */
+public class FileMapTest {
+
+    /** The repository directory of the current test. */
+    private File _dir;
+    /** Its objects. */
+    private ObjectStore _store;
+
+    @Before
+    public void makeDirectory() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-filemap").toFile();
+        _store = new ObjectStore(_dir);
+    }
+
+    @After
+    public void removeDirectory() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Return a map of COUNT file names, some in subdirectories, to
+     *  random blob UIDs made using RANDOM. */
+    private static TreeMap<String, ObjectId> randomFiles(Random random,
+                                                         int count) {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        while (result.size() < count) {
+            String name = String.format("d%d/file%d.txt", random.nextInt(5),
+                                        random.nextInt(10 * count + 1));
+            result.put(name, blob(random));
+        }
+        return result;
+    }
+
+    /** Return a random blob UID made using RANDOM. */
+    private static ObjectId blob(Random random) {
+        byte[] id = new byte[ObjectId.LENGTH];
+        random.nextBytes(id);
+        return ObjectId.fromBytes(id, 0);
+    }
+
+    /** Check that the map rooted at ROOT holds exactly FILES. */
+    private void checkMap(ObjectId root, Map<String, ObjectId> files) {
+        assertEquals(files, FileMap.read(_store, root));
+        for (Map.Entry<String, ObjectId> file : files.entrySet()) {
+            assertEquals(file.getValue(),
+                         FileMap.get(_store, root, file.getKey()));
+        }
+        assertNull(FileMap.get(_store, root, "missing.txt"));
+        Set<ObjectId> blobs = new HashSet<>();
+        FileMap.walk(_store, root, node -> true, blobs::add);
+        assertEquals(new HashSet<>(files.values()), blobs);
+    }
+
+    @Test
+    public void roundTrip() {
+        Random random = new Random(10);
+        for (int count : new int[] { 0, 1, FileMap.BUCKET,
+                                     FileMap.BUCKET + 1, 2000 }) {
+            TreeMap<String, ObjectId> files = randomFiles(random, count);
+            ObjectId root = FileMap.write(_store, files);
+            checkMap(root, files);
+            checkMap(root, FileMap.read(new ObjectStore(_dir), root));
+        }
+    }
+
+    /** Updating a map gives the same root as writing its new contents
+     *  afresh, and changed reports just the names that differ. */
+    @Test
+    public void updates() {
+        Random random = new Random(11);
+        TreeMap<String, ObjectId> files = randomFiles(random, 1000);
+        ObjectId root = FileMap.write(_store, files);
+        for (int round = 0; round < 20; round += 1) {
+            TreeMap<String, ObjectId> puts = new TreeMap<>();
+            TreeSet<String> removes = new TreeSet<>();
+            for (String name : files.keySet()) {
+                int choice = random.nextInt(100);
+                if (choice < 3) {
+                    puts.put(name, blob(random));
+                } else if (choice < 5) {
+                    removes.add(name);
+                }
+            }
+            puts.putAll(randomFiles(random, 10));
+            removes.removeAll(puts.keySet());
+
+            TreeMap<String, ObjectId> updated = new TreeMap<>(files);
+            updated.putAll(puts);
+            updated.keySet().removeAll(removes);
+            ObjectId next = FileMap.update(_store, root, puts, removes);
+            checkMap(next, updated);
+            assertEquals(FileMap.write(_store, updated), next);
+
+            TreeSet<String> changed = new TreeSet<>(removes);
+            for (String name : puts.keySet()) {
+                if (!puts.get(name).equals(files.get(name))) {
+                    changed.add(name);
+                }
+            }
+            assertEquals(changed, FileMap.changed(_store, root, next));
+            assertEquals(changed, FileMap.changed(_store, next, root));
+            assertEquals(updated.keySet(),
+                         FileMap.changed(_store, null, next));
+            files = updated;
+            root = next;
+        }
+        assertEquals(root, FileMap.update(_store, root, Map.of(), Set.of()));
+    }
+}
@@ -0,0 +1,79 @@
+package gitlet;
+
+import java.util.TreeMap;
+
+import static gitlet.Utils.*;
+
+/** Mark-and-sweep garbage collection of a repository's objects.  The
+ *  mark phase finds the objects reachable from every branch (see
+ *  ReachabilityIndex): the commits, the nodes of their FileMaps and the
+ *  blobs in those, and the chunks of chunked blobs, together with the
+ *  blobs in the staging area.  Where the pack has reachability bitmaps,
+ *  most of the history is covered by ORing them, and only the commits
+ *  made since are walked.  The sweep phase then deletes every unmarked
+ *  object (see ObjectStore.sweep), and once that is committed, the
+ *  commit indices are rebuilt from the surviving commits and the
+ *  bitmaps from the new pack.
+ */
+class GarbageCollector {
+
+    /** A collector for the objects in STORE, whose reachability bitmaps
+     *  are BITMAPS. */
+    GarbageCollector(ObjectStore store, ReachabilityIndex bitmaps) {
+        _store = store;
+        _bitmaps = bitmaps;
+    }
+
+    /** Collect garbage, printing the number of objects kept and the bytes
+     *  reclaimed, with the time taken by each phase. */
+    void collect() {
+        if (Refs.local().head() == null) {
+            throw error("No current branch.");
+        }
+        long start = System.nanoTime();
+        ReachabilityIndex.Reachable marks =
+            _bitmaps.reachable(Refs.local().branches().values());
+        for (ObjectId blob : StagingArea.load().added().values()) {
+            marks.addBlob(blob);
+        }
+        TreeMap<ObjectId, Commit> live = new TreeMap<>();
+        CommitGraph graph = CommitGraph.local();
+        for (int pos = 0; pos < graph.size(); pos += 1) {
+            ObjectId uid = graph.uid(pos);
+            if (marks.contains(uid)) {
+                live.put(uid, null);
+            }
+        }
+        marks.walked().forEach(uid -> live.put(uid, null));
+        long marked = System.nanoTime();
+        int total = _store.pack().size() + _store.looseIds().size();
+        long freed = _store.sweep(marks::contains);
+        long swept = System.nanoTime();
+        Journal.local().afterCommit(() -> {
+            long reindexStart = System.nanoTime();
+            live.replaceAll((uid, commit) -> Commit.load(uid));
+            Repository.rebuildIndices(live);
+            long reindexed = System.nanoTime();
+            int made = _bitmaps.rebuild(Refs.local().branches().values());
+            long done = System.nanoTime();
+            System.out.printf("mark: %d of %d objects reachable, %d "
+                              + "bitmaps used, %d commits walked "
+                              + "(%.1f ms)%n",
+                              marks.size(), total, marks.bitmaps(),
+                              marks.walked().size(), (marked - start) / 1e6);
+            System.out.printf("sweep: %d objects, %d bytes reclaimed "
+                              + "(%.1f ms)%n",
+                              total - marks.size(), freed,
+                              (swept - marked) / 1e6);
+            System.out.printf("reindex: %d commits (%.1f ms)%n",
+                              live.size(), (reindexed - reindexStart) / 1e6);
+            System.out.printf("bitmaps: %d commits (%.1f ms)%n", made,
+                              (done - reindexed) / 1e6);
+        });
+    }
+
+    /** The object store being collected. */
+    private final ObjectStore _store;
+    /** Its reachability bitmaps. */
+    private final ReachabilityIndex _bitmaps;
+}
@@ -0,0 +1,556 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static gitlet.Utils.*;
+
+/** A write-ahead journal making each Gitlet command's changes to the
+ *  repository atomic.  While a transaction is active, writes to
+ *  repository files are held in memory (or, for large blobs, in
+ *  temporary files in the journal directory) rather than made in place.
+ *  Once the writes held in memory reach SPILL_LIMIT bytes, further ones
+ *  are written to temporary files too, so that a transaction writing
+ *  many files, such as a bulk add, needs bounded memory.
+ *  Committing the transaction writes all of them to the log file,
+ *  .gitlet/journal/log,
+ *
+ *      "GJNL"  entry...  0 (1 byte)  CRC-32 of what precedes (4 bytes)
+ *
+ *  where each entry is either
+ *
+ *      1  path  length (4 bytes)  contents     (write contents to path)
+ *      2  path  temporary path                 (rename temporary to path)
+ *
+ *  with paths relative to the repository directory, as written by
+ *  DataOutputStream.writeUTF.  The log is streamed to disk a record at
+ *  a time and forced there; only then is each file put in place, by
+ *  writing a temporary file, forcing it to disk, and renaming it
+ *  atomically.  Once the directories of all the renamed files are also
+ *  forced to disk, the log is deleted.  If a command is interrupted,
+ *  the next one finds the log on starting (see recover): a complete log
+ *  is replayed, which is harmless for entries already applied, while a
+ *  torn one is discarded, leaving the repository as it was before the
+ *  interrupted command.
+ *
+ *  Appends to the pack of objects are not journaled; see ObjectStore for
+ *  why a crash during one is harmless.
+ *
+ *  Only one process at a time may use a repository's journal.  Each
+ *  transaction, and each recovery, holds an exclusive lock on the file
+ *  .gitlet/lock (see lock), so that no process replays or discards the
+ *  log or temporary files of a transaction that another is still
+ *  making.
+ */
+class Journal {
+
+    /** Time spent logging and applying transactions' writes. */
+    private static final Metrics.Timer COMMIT_TIMER =
+        Metrics.timer("phase.commit");
+    /** Time spent in actions run after transactions commit. */
+    private static final Metrics.Timer AFTER_COMMIT_TIMER =
+        Metrics.timer("phase.after-commit");
+
+    /** The journal of the repository whose metadata is in GITLETDIR. */
+    Journal(File gitletDir) {
+        _gitletDir = gitletDir;
+        _dir = join(gitletDir, "journal");
+        _log = join(_dir, "log");
+        _lockFile = join(gitletDir, "lock");
+    }
+
+    /** Return the journal of the repository in the current directory. */
+    static Journal local() {
+        if (_local == null) {
+            _local = new Journal(Repository.GITLET_DIR);
+        }
+        return _local;
+    }
+
+    /** Discard the journals of the repository in the current directory
+     *  and of any others, abandoning any transactions in progress. */
+    static void resetLocal() {
+        _local = null;
+        _others.clear();
+    }
+
+    /** Return the journal for the repository whose metadata is in
+     *  GITLETDIR: that of the current repository, or for any other
+     *  (such as a remote), one shared by all users of that directory in
+     *  this process, so that they may write to it in one transaction. */
+    static Journal of(File gitletDir) {
+        if (gitletDir.equals(Repository.GITLET_DIR)) {
+            return local();
+        }
+        return _others.computeIfAbsent(gitletDir, Journal::new);
+    }
+
+    /** Run BODY as a single transaction, committing its writes if it
+     *  returns normally and abandoning them if it throws, while holding
+     *  the repository's lock. */
+    void atomically(Runnable body) {
+        lock();
+        try {
+            begin();
+            try {
+                body.run();
+                commit();
+            } finally {
+                abort();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    /** Acquire the repository's lock, if the repository exists, until a
+     *  matching call of unlock.  Calls may be nested.  The lock is an
+     *  exclusive file lock on .gitlet/lock, which the operating system
+     *  releases if the process dies.  Throws a GitletException if
+     *  another process, or another Journal in this one, holds it. */
+    void lock() {
+        if (_holds == 0 && _gitletDir.isDirectory()) {
+            FileChannel channel = null;
+            FileLock lock = null;
+            try {
+                channel = FileChannel.open(_lockFile.toPath(),
+                                           StandardOpenOption.CREATE,
+                                           StandardOpenOption.WRITE);
+                lock = channel.tryLock();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            } catch (OverlappingFileLockException excp) {
+                lock = null;
+            } finally {
+                if (lock == null && channel != null) {
+                    close(channel);
+                }
+            }
+            if (lock == null) {
+                throw error("Another Gitlet command is using this "
+                            + "repository.");
+            }
+            _lock = lock;
+        }
+        _holds += 1;
+    }
+
+    /** Release the repository's lock, as acquired by the matching call of
+     *  lock. */
+    void unlock() {
+        if (_holds <= 0) {
+            throw new IllegalStateException("journal not locked");
+        }
+        _holds -= 1;
+        if (_holds == 0 && _lock != null) {
+            close(_lock.channel());
+            _lock = null;
+        }
+    }
+
+    /** Start a transaction.  Throws IllegalStateException if one is
+     *  already active. */
+    void begin() {
+        if (_active) {
+            throw new IllegalStateException("transaction already active");
+        }
+        _active = true;
+    }
+
+    /** Return true iff a transaction is active. */
+    boolean active() {
+        return _active;
+    }
+
+    /** Write CONTENTS to FILE, creating or overwriting it, as part of the
+     *  current transaction, if any. */
+    void write(File file, byte[] contents) {
+        if (!_active) {
+            writeContents(file, (Object) contents);
+            return;
+        }
+        if (_heldBytes + contents.length > SPILL_LIMIT) {
+            File tmp = newTempFile();
+            writeContents(tmp, (Object) contents);
+            move(tmp, file);
+            _spilled.add(tmp);
+            return;
+        }
+        unwrite(file);
+        _writes.put(file, contents);
+        _heldBytes += contents.length;
+    }
+
+    /** Rename the temporary file TMP, made by newTempFile, to FILE as part
+     *  of the current transaction, if any. */
+    void move(File tmp, File file) {
+        if (!_active) {
+            rename(tmp, file);
+            return;
+        }
+        unwrite(file);
+        _moves.put(file, tmp);
+    }
+
+    /** Cancel any write or rename of FILE in the current transaction. */
+    private void unwrite(File file) {
+        byte[] held = _writes.remove(file);
+        if (held != null) {
+            _heldBytes -= held.length;
+        }
+        File old = _moves.remove(file);
+        if (old != null) {
+            old.delete();
+            _spilled.remove(old);
+        }
+    }
+
+    /** Return a new, empty temporary file in the journal directory.  If
+     *  left behind by a process that dies, it is deleted by the next
+     *  recover, which cannot run while the caller holds the lock.  May
+     *  be called from several threads at once. */
+    File newTempFile() {
+        _dir.mkdirs();
+        try {
+            return File.createTempFile("tmp", null, _dir);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return true iff FILE exists, or will once the current transaction
+     *  commits. */
+    boolean exists(File file) {
+        return _writes.containsKey(file) || _moves.containsKey(file)
+            || file.isFile();
+    }
+
+    /** Return the contents of FILE as seen within the current
+     *  transaction. */
+    byte[] read(File file) {
+        byte[] pending = _writes.get(file);
+        if (pending != null) {
+            return pending;
+        }
+        return readContents(_moves.getOrDefault(file, file));
+    }
+
+    /** Return the contents to be written to FILE by the current
+     *  transaction, or null if it does not write FILE. */
+    byte[] pending(File file) {
+        File tmp = _moves.get(file);
+        if (tmp != null && _spilled.contains(tmp)) {
+            return readContents(tmp);
+        }
+        return _writes.get(file);
+    }
+
+    /** Return the files to be written by the current transaction. */
+    List<File> pendingFiles() {
+        List<File> result = new ArrayList<>(_writes.keySet());
+        result.addAll(_moves.keySet());
+        return result;
+    }
+
+    /** Run ACTION once the current transaction's writes are in place, or
+     *  immediately if no transaction is active.  Used for updating
+     *  derived data, such as indices, that refer to files written in the
+     *  transaction. */
+    void afterCommit(Runnable action) {
+        if (_active) {
+            _actions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /** Make the writes of the current transaction, as described in the
+     *  class comment, and end it.  If the log cannot be written, the
+     *  transaction stays active, so that abort discards it.  Once the log
+     *  is on disk, the transaction ends even if putting the files in
+     *  place fails, leaving its temporary files for recover to finish
+     *  the job. */
+    void commit() {
+        if (!_active) {
+            throw new IllegalStateException("no active transaction");
+        }
+        long start = COMMIT_TIMER.start();
+        List<Runnable> actions = new ArrayList<>(_actions);
+        if (!_writes.isEmpty() || !_moves.isEmpty()) {
+            for (File tmp : _moves.values()) {
+                syncContents(tmp);
+            }
+            _dir.mkdirs();
+            try (FileChannel log =
+                 FileChannel.open(_log.toPath(),
+                                  StandardOpenOption.CREATE,
+                                  StandardOpenOption.WRITE,
+                                  StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeLog(log, _writes, _moves);
+                log.force(false);
+            } catch (IOException excp) {
+                _log.delete();
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            syncDirectory(_dir);
+            try {
+                apply(_writes, _moves);
+            } finally {
+                clear();
+            }
+        } else {
+            clear();
+        }
+        COMMIT_TIMER.stop(start);
+        start = AFTER_COMMIT_TIMER.start();
+        for (Runnable action : actions) {
+            action.run();
+        }
+        AFTER_COMMIT_TIMER.stop(start);
+        _log.delete();
+    }
+
+    /** Abandon the current transaction's writes, if it is active. */
+    void abort() {
+        if (_active) {
+            for (File tmp : _moves.values()) {
+                tmp.delete();
+            }
+            clear();
+        }
+    }
+
+    /** Finish or roll back a transaction left incomplete by an earlier
+     *  command, as described in the class comment, returning the files
+     *  it wrote, if it was finished.  Also removes stray temporary
+     *  files, unless this process has a transaction active.  Holds the
+     *  repository's lock meanwhile. */
+    List<File> recover() {
+        lock();
+        try {
+            List<File> result = new ArrayList<>();
+            if (_log.isFile()) {
+                Map<File, byte[]> writes = new LinkedHashMap<>();
+                Map<File, File> moves = new LinkedHashMap<>();
+                if (decodeLog(readContents(_log), writes, moves)) {
+                    moves.values().removeIf(tmp -> !tmp.isFile());
+                    apply(writes, moves);
+                    result.addAll(writes.keySet());
+                    result.addAll(moves.keySet());
+                }
+                _log.delete();
+            }
+            File[] stray = _dir.listFiles();
+            LISTINGS.add(1);
+            if (stray != null && !_active) {
+                for (File file : stray) {
+                    file.delete();
+                }
+            }
+            return result;
+        } finally {
+            unlock();
+        }
+    }
+
+    /** Put in place MOVES and WRITES, which map files to their temporary
+     *  files and new contents, respectively, and force the result to
+     *  disk.  Renames come first, so that large blobs are in place before
+     *  the commits and references that point to them. */
+    private void apply(Map<File, byte[]> writes, Map<File, File> moves) {
+        Set<File> dirs = new LinkedHashSet<>();
+        for (Map.Entry<File, File> move : moves.entrySet()) {
+            rename(move.getValue(), move.getKey());
+            dirs.add(move.getKey().getParentFile());
+        }
+        for (Map.Entry<File, byte[]> write : writes.entrySet()) {
+            File tmp = newTempFile();
+            try (FileChannel out = FileChannel.open(tmp.toPath(),
+                                                    StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.wrap(write.getValue());
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                out.force(false);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            rename(tmp, write.getKey());
+            dirs.add(write.getKey().getParentFile());
+        }
+        for (File dir : dirs) {
+            syncDirectory(dir);
+        }
+    }
+
+    /** Write a log of WRITES and MOVES to LOG, a record at a time, with
+     *  the CRC-32 computed as the records are written. */
+    private void writeLog(FileChannel log, Map<File, byte[]> writes,
+                          Map<File, File> moves) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Channels.newOutputStream(log), crc)));
+        out.write(MAGIC);
+        for (Map.Entry<File, byte[]> write : writes.entrySet()) {
+            out.writeByte(WRITE);
+            out.writeUTF(relative(write.getKey()));
+            out.writeInt(write.getValue().length);
+            out.write(write.getValue());
+        }
+        for (Map.Entry<File, File> move : moves.entrySet()) {
+            out.writeByte(MOVE);
+            out.writeUTF(relative(move.getKey()));
+            out.writeUTF(relative(move.getValue()));
+        }
+        out.writeByte(END);
+        out.flush();
+        out.writeInt((int) crc.getValue());
+        out.flush();
+    }
+
+    /** Decode the log LOG into WRITES and MOVES, returning false if it is
+     *  incomplete or damaged.  The CRC-32 is checked first, so that no
+     *  damaged path or length is ever used. */
+    private boolean decodeLog(byte[] log, Map<File, byte[]> writes,
+                              Map<File, File> moves) {
+        if (log.length < MAGIC.length + 5
+            || !Arrays.equals(log, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(log, 0, log.length - 4);
+        if (ByteBuffer.wrap(log, log.length - 4, 4).getInt()
+            != (int) crc.getValue()) {
+            return false;
+        }
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(log, 0,
+                                                         log.length - 4));
+        try {
+            in.skipBytes(MAGIC.length);
+            while (true) {
+                int kind = in.readByte();
+                if (kind == END) {
+                    return in.available() == 0;
+                } else if (kind == WRITE) {
+                    File file = join(_gitletDir, in.readUTF());
+                    byte[] contents = new byte[in.readInt()];
+                    in.readFully(contents);
+                    writes.put(file, contents);
+                } else if (kind == MOVE) {
+                    File file = join(_gitletDir, in.readUTF());
+                    moves.put(file, join(_gitletDir, in.readUTF()));
+                } else {
+                    return false;
+                }
+            }
+        } catch (EOFException | NegativeArraySizeException excp) {
+            return false;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the path of FILE relative to the repository directory. */
+    private String relative(File file) {
+        return _gitletDir.toPath().relativize(file.toPath()).toString();
+    }
+
+    /** Atomically replace FILE with TMP. */
+    private static void rename(File tmp, File file) {
+        try {
+            file.getParentFile().mkdirs();
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Close CHANNEL, releasing any lock on it. */
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Discard the state of the current transaction and end it. */
+    private void clear() {
+        _writes.clear();
+        _moves.clear();
+        _spilled.clear();
+        _heldBytes = 0;
+        _actions.clear();
+        _active = false;
+    }
+
+    /** Header of a log. */
+    private static final byte[] MAGIC = { 'G', 'J', 'N', 'L' };
+    /** Number of bytes of pending writes held in memory beyond which
+     *  further writes go to temporary files. */
+    private static final long SPILL_LIMIT = 32 << 20;
+    /** Kinds of log entries. */
+    private static final int END = 0, WRITE = 1, MOVE = 2;
+
+    /** Journal of the current repository, or null if not yet created. */
+    private static Journal _local;
+    /** Journals of other repositories, indexed by repository
+     *  directory. */
+    private static final HashMap<File, Journal> _others = new HashMap<>();
+
+    /** The repository directory. */
+    private final File _gitletDir;
+    /** The directory holding the log and temporary files. */
+    private final File _dir;
+    /** The log file. */
+    private final File _log;
+    /** The file locked by lock. */
+    private final File _lockFile;
+    /** The lock held on _lockFile, or null. */
+    private FileLock _lock;
+    /** Number of calls of lock not yet matched by unlock. */
+    private int _holds;
+    /** True iff a transaction is active. */
+    private boolean _active;
+    /** Pending writes of the current transaction, mapping files to their
+     *  new contents, in order of writing. */
+    private final LinkedHashMap<File, byte[]> _writes = new LinkedHashMap<>();
+    /** Pending renames of the current transaction, mapping files to the
+     *  temporary files that will replace them. */
+    private final LinkedHashMap<File, File> _moves = new LinkedHashMap<>();
+    /** Total length of the contents in _writes. */
+    private long _heldBytes;
+    /** Temporary files in _moves holding writes that exceeded
+     *  SPILL_LIMIT. */
+    private final HashSet<File> _spilled = new HashSet<>();
+    /** Actions to run after the current transaction commits. */
+    private final List<Runnable> _actions = new ArrayList<>();
+}
@@ -0,0 +1,237 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of transactions (see Journal): their writes take effect at
+ *  commit and not on abort, and after a crash a complete log is
+ *  replayed while a torn or damaged one is discarded. */
+public class JournalTest {
+
+    /** The repository directory of the current test. */
+    private File _dir;
+    /** Files written by the transactions of the tests. */
+    private File _a, _b, _c;
+    /** The journal directory, holding the log and temporary files. */
+    private File _journalDir;
+
+    @Before
+    public void makeDirectory() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-journal").toFile();
+        _a = join(_dir, "a");
+        _b = join(_dir, "b");
+        _c = join(_dir, "sub", "c");
+        _journalDir = join(_dir, "journal");
+    }
+
+    @After
+    public void removeDirectory() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Write the old contents of _a and _b. */
+    private void writeOld() {
+        writeContents(_a, "old a");
+        writeContents(_b, "old b");
+    }
+
+    /** Check that _a, _b, and _c have their contents from before the
+     *  transaction of crash. */
+    private void checkOld() {
+        assertEquals("old a", readContentsAsString(_a));
+        assertEquals("old b", readContentsAsString(_b));
+        assertFalse(_c.exists());
+    }
+
+    /** Check that _a, _b, and _c have their contents from the
+     *  transaction of crash. */
+    private void checkNew() {
+        assertEquals("new a", readContentsAsString(_a));
+        assertEquals("new b", readContentsAsString(_b));
+        assertEquals("new c", readContentsAsString(_c));
+    }
+
+    /** Check that the journal directory holds no log or temporary
+     *  files. */
+    private void checkClean() {
+        String[] left = _journalDir.list();
+        assertTrue(left == null || left.length == 0);
+    }
+
+    /** Run in JOURNAL a transaction writing _a and _c and renaming a
+     *  temporary file to _b, returning that file. */
+    private static File transaction(Journal journal, File a, File b,
+                                    File c) {
+        journal.write(a, "new a".getBytes());
+        File tmp = journal.newTempFile();
+        writeContents(tmp, "new b");
+        journal.move(tmp, b);
+        journal.write(c, "new c".getBytes());
+        return tmp;
+    }
+
+    @Test
+    public void commitAndAbort() {
+        writeOld();
+        Journal journal = new Journal(_dir);
+        journal.begin();
+        File tmp = transaction(journal, _a, _b, _c);
+        assertTrue(journal.exists(_c));
+        assertEquals("new b", new String(journal.read(_b)));
+        assertEquals(Set.of(_a, _b, _c),
+                     Set.copyOf(journal.pendingFiles()));
+        journal.abort();
+        checkOld();
+        assertFalse(tmp.exists());
+
+        int[] actions = new int[1];
+        journal.begin();
+        transaction(journal, _a, _b, _c);
+        journal.afterCommit(() -> actions[0] += 1);
+        assertEquals(0, actions[0]);
+        journal.commit();
+        checkNew();
+        assertEquals(1, actions[0]);
+        checkClean();
+    }
+
+    /** A transaction whose log cannot be written stays active until
+     *  aborted, which discards its temporary files and leaves the files
+     *  as they were. */
+    @Test
+    public void logFails() {
+        writeOld();
+        Journal journal = new Journal(_dir);
+        join(_journalDir, "log", "obstacle").mkdirs();
+        journal.begin();
+        File tmp = transaction(journal, _a, _b, _c);
+        try {
+            journal.commit();
+            fail("committed without a log");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+        assertTrue(journal.active());
+        journal.abort();
+        assertFalse(journal.active());
+        assertFalse(tmp.exists());
+        checkOld();
+    }
+
+    /** A transaction whose log is written ends even if its files cannot
+     *  all be put in place, keeping what recover needs to finish it. */
+    @Test
+    public void applyFails() {
+        writeOld();
+        File obstacle = _c.getParentFile();
+        writeContents(obstacle, "not a directory");
+        Journal journal = new Journal(_dir);
+        int[] actions = new int[1];
+        journal.begin();
+        transaction(journal, _a, _b, _c);
+        journal.afterCommit(() -> actions[0] += 1);
+        try {
+            journal.commit();
+            fail("wrote below a plain file");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+        assertFalse(journal.active());
+        assertEquals(List.of(), journal.pendingFiles());
+        assertEquals(0, actions[0]);
+        journal.abort();
+
+        obstacle.delete();
+        new Journal(_dir).recover();
+        checkNew();
+        checkClean();
+    }
+
+    /** Write the old contents, run the transaction, and then put back the
+     *  files as they were, leaving the transaction's log, as if the
+     *  process had died once the log was on disk.  Returns the log. */
+    private byte[] crash() {
+        writeOld();
+        Journal journal = new Journal(_dir);
+        File log = join(_journalDir, "log");
+        byte[][] saved = new byte[1][];
+        journal.begin();
+        File tmp = transaction(journal, _a, _b, _c);
+        journal.afterCommit(() -> saved[0] = readContents(log));
+        journal.commit();
+        checkNew();
+
+        _b.renameTo(tmp);
+        writeOld();
+        _c.delete();
+        return saved[0];
+    }
+
+    /** A complete log is replayed, and its temporary files consumed. */
+    @Test
+    public void crashReplay() {
+        byte[] log = crash();
+        writeContents(join(_journalDir, "log"), (Object) log);
+        List<File> recovered = new Journal(_dir).recover();
+        checkNew();
+        assertEquals(Set.of(_a, _b, _c), Set.copyOf(recovered));
+        checkClean();
+
+        writeContents(join(_journalDir, "log"), (Object) log);
+        new Journal(_dir).recover();
+        checkNew();
+        checkClean();
+    }
+
+    /** A torn or damaged log is discarded, along with the temporary
+     *  files of its transaction, leaving the files as they were. */
+    @Test
+    public void tornLog() {
+        byte[] log = crash();
+        TreeSet<Integer> lengths = new TreeSet<>();
+        for (int n = 0; n < log.length; n += 7) {
+            lengths.add(n);
+        }
+        lengths.add(log.length - 1);
+        for (int n : lengths) {
+            crash();
+            writeContents(join(_journalDir, "log"),
+                          (Object) Arrays.copyOf(log, n));
+            assertEquals(List.of(), new Journal(_dir).recover());
+            checkOld();
+            checkClean();
+        }
+        for (int k = 4; k < log.length; k += 5) {
+            crash();
+            byte[] damaged = log.clone();
+            damaged[k] ^= 0x10;
+            writeContents(join(_journalDir, "log"), (Object) damaged);
+            assertEquals(List.of(), new Journal(_dir).recover());
+            checkOld();
+            checkClean();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** A small, fast LZ77 compressor in the style of LZ4, used by
+ *  Compression.  Compressed data is a sequence of
+ *
+ *      #literals  literal...  offset  length - MIN_MATCH
+ *
+ *  (all counts being varints, as written by Delta.writeVarint), where
+ *  each sequence emits its literal bytes and then copies LENGTH bytes
+ *  starting OFFSET bytes back in the output.  The last sequence has no
+ *  match; the decompressor stops when it has produced the expected
+ *  number of bytes.  Matches are found through hash chains over 4-byte
+ *  prefixes, searched to a depth that grows with the compression level;
+ *  at level 1, positions inside matches are not indexed.
+ */
+class LZ77 {
+
+    /** Shortest match encoded. */
+    private static final int MIN_MATCH = 4;
+    /** After 2 ** SKIP_SHIFT bytes without a match, the search skips ahead
+     *  increasingly quickly, so that incompressible data costs little. */
+    private static final int SKIP_SHIFT = 6;
+    /** Number of bits in a hash-table index. */
+    private static final int HASH_BITS = 15;
+
+    /** Return DATA compressed at LEVEL (1-9). */
+    static byte[] compress(byte[] data, int level) {
+        int depth = 1 << (Math.max(1, Math.min(9, level)) - 1);
+        int[] head = new int[1 << HASH_BITS];
+        int[] prev = new int[data.length];
+        Arrays.fill(head, -1);
+        Output out = new Output(data.length / 2 + 16);
+        int literalStart = 0;
+        int i = 0;
+        while (i + MIN_MATCH <= data.length) {
+            int h = hash(data, i);
+            int bestLength = 0, bestPos = -1;
+            int candidate = head[h];
+            for (int d = 0; d < depth && candidate >= 0; d += 1) {
+                int len = matchLength(data, candidate, i);
+                if (len > bestLength) {
+                    bestLength = len;
+                    bestPos = candidate;
+                }
+                candidate = prev[candidate];
+            }
+            prev[i] = head[h];
+            head[h] = i;
+            if (bestLength < MIN_MATCH) {
+                i += 1 + ((i - literalStart) >> SKIP_SHIFT);
+                continue;
+            }
+            out.varint(i - literalStart);
+            out.write(data, literalStart, i - literalStart);
+            out.varint(i - bestPos);
+            out.varint(bestLength - MIN_MATCH);
+            int end = i + bestLength;
+            if (depth > 1) {
+                for (i += 1; i < end && i + MIN_MATCH <= data.length;
+                     i += 1) {
+                    int g = hash(data, i);
+                    prev[i] = head[g];
+                    head[g] = i;
+                }
+            }
+            i = end;
+            literalStart = i;
+        }
+        out.varint(data.length - literalStart);
+        out.write(data, literalStart, data.length - literalStart);
+        return out.toByteArray();
+    }
+
+    /** Return the LENGTH bytes compressed by compress in DATA. */
+    static byte[] decompress(byte[] data, int length) {
+        byte[] result = new byte[length];
+        int[] pos = { 0 };
+        int n = 0;
+        try {
+            while (true) {
+                int literals = Delta.readVarint(data, pos);
+                System.arraycopy(data, pos[0], result, n, literals);
+                pos[0] += literals;
+                n += literals;
+                if (n == length) {
+                    return result;
+                }
+                int offset = Delta.readVarint(data, pos);
+                int len = Delta.readVarint(data, pos) + MIN_MATCH;
+                if (offset <= 0 || offset > n) {
+                    throw new IllegalArgumentException("corrupt object");
+                }
+                for (int k = 0; k < len; k += 1, n += 1) {
+                    result[n] = result[n - offset];
+                }
+            }
+        } catch (IndexOutOfBoundsException excp) {
+            throw new IllegalArgumentException("corrupt object");
+        }
+    }
+
+    /** Return the hash of the MIN_MATCH bytes of DATA at K. */
+    private static int hash(byte[] data, int k) {
+        int v = (data[k] & 0xff) | (data[k + 1] & 0xff) << 8
+            | (data[k + 2] & 0xff) << 16 | (data[k + 3] & 0xff) << 24;
+        return (v * 0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+
+    /** Return the length of the common prefix of DATA[A..] and DATA[B..],
+     *  where A < B. */
+    private static int matchLength(byte[] data, int a, int b) {
+        int n = 0;
+        while (b + n < data.length && data[a + n] == data[b + n]) {
+            n += 1;
+        }
+        return n;
+    }
+
+    /** An unsynchronized, growable output buffer. */
+    private static class Output {
+        /** An empty buffer with initial capacity CAPACITY. */
+        Output(int capacity) {
+            _buf = new byte[capacity];
+        }
+
+        /** Append N (>= 0) as a varint, in the format of
+         *  Delta.writeVarint. */
+        void varint(int n) {
+            reserve(5);
+            while (n >= 0x80) {
+                _buf[_size++] = (byte) (n | 0x80);
+                n >>>= 7;
+            }
+            _buf[_size++] = (byte) n;
+        }
+
+        /** Append DATA[START .. START+LEN-1]. */
+        void write(byte[] data, int start, int len) {
+            reserve(len);
+            System.arraycopy(data, start, _buf, _size, len);
+            _size += len;
+        }
+
+        /** Return the contents of the buffer. */
+        byte[] toByteArray() {
+            return Arrays.copyOf(_buf, _size);
+        }
+
+        /** Ensure room for N more bytes. */
+        private void reserve(int n) {
+            if (_size + n > _buf.length) {
+                _buf = Arrays.copyOf(_buf, Math.max(2 * _buf.length,
+                                                    _size + n));
+            }
+        }
+
+        /** The contents, in _buf[0 .. _size-1]. */
+        private byte[] _buf;
+        /** Number of bytes written. */
+        private int _size;
+    }
+}
@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** The lines of a text held in a ByteBuffer, such as a file mapped into
+ *  memory, for line-level comparison (see Diff and Merge).  Each line
+ *  includes its terminating newline, except perhaps the last.  The
+ *  text itself is never copied: a Lines records only where each line
+ *  starts and a number for it, assigned by a Table shared by all the
+ *  texts being compared, so that two lines in any of them are equal iff
+ *  their numbers are.
+ */
+class Lines {
+
+    /** The lines of TEXT, numbered by TABLE. */
+    Lines(ByteBuffer text, Table table) {
+        _text = text;
+        int n = 0;
+        int[] starts = new int[16];
+        int[] ids = new int[16];
+        int limit = text.limit();
+        for (int start = 0; start < limit; n += 1) {
+            int end = start;
+            int hash = 0;
+            while (end < limit) {
+                byte b = text.get(end);
+                end += 1;
+                hash = HASH_MULT * hash + b;
+                if (b == '\n') {
+                    break;
+                }
+            }
+            if (n + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, 2 * starts.length);
+                ids = Arrays.copyOf(ids, 2 * ids.length);
+            }
+            starts[n] = start;
+            ids[n] = table.id(text, start, end, hash);
+            start = end;
+        }
+        starts[n] = limit;
+        _starts = starts;
+        _ids = Arrays.copyOf(ids, n);
+    }
+
+    /** Return the lines of FILE, which is mapped into memory rather than
+     *  read, numbered by TABLE.  A null FILE is treated as empty.  Throws
+     *  IllegalArgumentException if FILE cannot be mapped, as when it is
+     *  2 GiB or more. */
+    static Lines map(File file, Table table) {
+        if (file == null) {
+            return new Lines(ByteBuffer.allocate(0), table);
+        }
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            if (in.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + " is too large");
+            }
+            return new Lines(in.map(FileChannel.MapMode.READ_ONLY, 0,
+                                    in.size()), table);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the number of lines. */
+    int size() {
+        return _ids.length;
+    }
+
+    /** Return the numbers of my lines, in order.  The result must not be
+     *  modified. */
+    int[] ids() {
+        return _ids;
+    }
+
+    /** Return the number of bytes in lines FROM through TO - 1. */
+    long length(int from, int to) {
+        return _starts[to] - _starts[from];
+    }
+
+    /** Return true iff lines FROM through TO - 1 are empty or end with a
+     *  newline. */
+    boolean endsLine(int from, int to) {
+        return from == to || _text.get(_starts[to] - 1) == '\n';
+    }
+
+    /** Write lines FROM through TO - 1 to OUT. */
+    void write(int from, int to, FileChannel out) throws IOException {
+        ByteBuffer slice = _text.duplicate();
+        slice.limit(_starts[to]).position(_starts[from]);
+        while (slice.hasRemaining()) {
+            out.write(slice);
+        }
+    }
+
+    /** Multiplier of the hash of a line's bytes. */
+    private static final int HASH_MULT = 31;
+
+    /** An assignment of numbers to distinct lines, kept in an
+     *  open-addressed hash table whose entries record where each line
+     *  was first seen. */
+    static class Table {
+
+        /** Return the number of distinct lines numbered so far. */
+        int size() {
+            return _count;
+        }
+
+        /** Return the number of the line occupying bytes START through END
+         *  - 1 of TEXT, whose hash is HASH, assigning it the next number
+         *  if it is new. */
+        int id(ByteBuffer text, int start, int end, int hash) {
+            if (2 * _count >= _slots.length) {
+                grow();
+            }
+            int mask = _slots.length - 1;
+            for (int k = mix(hash) & mask; ; k = (k + 1) & mask) {
+                int id = _slots[k] - 1;
+                if (id < 0) {
+                    return add(k, text, start, end, hash);
+                }
+                if (_hashes[id] == hash && equal(id, text, start, end)) {
+                    return id;
+                }
+            }
+        }
+
+        /** Assign the next number to the line occupying bytes START
+         *  through END - 1 of TEXT, whose hash is HASH, recording it in
+         *  slot K.  Returns the number. */
+        private int add(int k, ByteBuffer text, int start, int end,
+                        int hash) {
+            if (_count == _hashes.length) {
+                int n = 2 * _count;
+                _hashes = Arrays.copyOf(_hashes, n);
+                _texts = Arrays.copyOf(_texts, n);
+                _starts = Arrays.copyOf(_starts, n);
+                _ends = Arrays.copyOf(_ends, n);
+            }
+            if (_buffers.isEmpty() || _buffers.get(_buffers.size() - 1)
+                != text) {
+                _buffers.add(text);
+            }
+            int id = _count;
+            _hashes[id] = hash;
+            _texts[id] = _buffers.size() - 1;
+            _starts[id] = start;
+            _ends[id] = end;
+            _slots[k] = id + 1;
+            _count += 1;
+            return id;
+        }
+
+        /** Return true iff line ID has the same bytes as bytes START
+         *  through END - 1 of TEXT. */
+        private boolean equal(int id, ByteBuffer text, int start, int end) {
+            if (_ends[id] - _starts[id] != end - start) {
+                return false;
+            }
+            ByteBuffer other = _buffers.get(_texts[id]);
+            for (int i = _starts[id], j = start; j < end; i += 1, j += 1) {
+                if (other.get(i) != text.get(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Double the size of the hash table. */
+        private void grow() {
+            int[] slots = new int[2 * _slots.length];
+            int mask = slots.length - 1;
+            for (int id = 0; id < _count; id += 1) {
+                int k = mix(_hashes[id]) & mask;
+                while (slots[k] != 0) {
+                    k = (k + 1) & mask;
+                }
+                slots[k] = id + 1;
+            }
+            _slots = slots;
+        }
+
+        /** Return HASH with its bits spread, so that lines whose hashes
+         *  differ only in their high bits land in different slots. */
+        private static int mix(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+
+        /** Hash table of line numbers plus one; 0 marks an empty slot. */
+        private int[] _slots = new int[64];
+        /** Number of lines numbered. */
+        private int _count;
+        /** The texts in which lines were first seen. */
+        private final ArrayList<ByteBuffer> _buffers = new ArrayList<>();
+        /** Indexed by line number: the hash of the line, the index in
+         *  _buffers of its text, and the positions of its first byte and
+         *  of the byte after its last. */
+        private int[] _hashes = new int[16], _texts = new int[16],
+            _starts = new int[16], _ends = new int[16];
+    }
+
+    /** The text. */
+    private final ByteBuffer _text;
+    /** Positions in _text of the start of each line, followed by the
+     *  text's length. */
+    private final int[] _starts;
+    /** Number of each line. */
+    private final int[] _ids;
+}
@@ -1,24 +1,160 @@
 package gitlet;
 
+import java.util.Arrays;
+
 /** Driver class for Gitlet, a subset of the Git version-control system.
- *  @author TODO
+ *  If the environment variable GITLET_DAEMON is set and a Daemon is
+ *  serving the repository, commands are forwarded to it.  If the
+ *  environment variable GITLET_STATS is set, each command prints its
+ *  statistics to the standard error (see Metrics).
  */
 public class Main {
 
+    /** Time spent recovering from interrupted commands. */
+    private static final Metrics.Timer RECOVER_TIMER =
+        Metrics.timer("phase.recover");
+    /** Time spent executing commands, before committing their
+     *  transactions. */
+    private static final Metrics.Timer COMMAND_TIMER =
+        Metrics.timer("phase.command");
+
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND1> <OPERAND2> ... 
      */
     public static void main(String[] args) {
-        // TODO: what if args is empty?
+        if (System.getenv("GITLET_STATS") != null) {
+            Metrics.enable();
+        }
+        if (System.getenv("GITLET_DAEMON") != null && args.length > 0
+            && !args[0].equals("daemon") && Daemon.forward(args)) {
+            return;
+        }
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        }
+        if (Repository.GITLET_DIR.isDirectory()
+            && Config.getBoolean("blob.report", false)) {
+            System.err.println(ObjectStore.blobReport());
+        }
+    }
+
+    /** Execute the command described by ARGS as a single transaction (see
+     *  Journal), after recovering from any interrupted earlier command,
+     *  measuring it (see Metrics).  The repository stays locked from the
+     *  recovery to the end of the command.  The daemon command is not
+     *  measured or locked, since a Daemon measures the commands it runs,
+     *  each of which takes the lock itself. */
+    static void run(String[] args) {
+        boolean daemon = args.length > 0 && args[0].equals("daemon");
+        Journal journal = Journal.local();
+        if (!daemon) {
+            journal.lock();
+            Metrics.begin(args);
+        }
+        try {
+            if (Repository.GITLET_DIR.isDirectory()) {
+                long start = RECOVER_TIMER.start();
+                Repository.recover();
+                RECOVER_TIMER.stop(start);
+            }
+            if (daemon) {
+                dispatch(args);
+            } else {
+                journal.atomically(() -> {
+                    long start = COMMAND_TIMER.start();
+                    try {
+                        dispatch(args);
+                    } finally {
+                        COMMAND_TIMER.stop(start);
+                    }
+                });
+            }
+        } finally {
+            if (!daemon) {
+                journal.unlock();
+                Metrics.end();
+            }
+        }
+    }
+
+    /** Execute the command described by ARGS. */
+    private static void dispatch(String[] args) {
+        if (args.length == 0) {
+            throw Utils.error("Please enter a command.");
+        }
         String firstArg = args[0];
         switch(firstArg) {
             case "init":
-                // TODO: handle the `init` command
+                validateNumArgs(args, 1);
+                Repository.init();
                 break;
             case "add":
-                // TODO: handle the `add [filename]` command
+                if (args.length < 2) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                Repository.add(Arrays.asList(args).subList(1, args.length));
+                break;
+            case "repack":
+                Repository.repack();
                 break;
-            // TODO: FILL THE REST IN
+            case "reindex":
+                Repository.reindex();
+                break;
+            case "log":
+                if (args.length == 1) {
+                    Repository.log();
+                } else if (args.length == 3 && args[1].equals("--")) {
+                    Repository.logPath(args[2]);
+                } else {
+                    throw Utils.error("Incorrect operands.");
+                }
+                break;
+            case "find":
+                validateNumArgs(args, 2);
+                Repository.find(args[1]);
+                break;
+            case "gc":
+                Repository.gc();
+                break;
+            case "pack-refs":
+                Repository.packRefs();
+                break;
+            case "add-remote":
+                validateNumArgs(args, 3);
+                Repository.addRemote(args[1], args[2]);
+                break;
+            case "rm-remote":
+                validateNumArgs(args, 2);
+                Repository.rmRemote(args[1]);
+                break;
+            case "push":
+                validateNumArgs(args, 3);
+                Repository.push(args[1], args[2]);
+                break;
+            case "fetch":
+                validateNumArgs(args, 3);
+                Repository.fetch(args[1], args[2]);
+                break;
+            case "daemon":
+                if (args.length == 1) {
+                    Daemon.serve();
+                } else if (!args[1].equals("stop") || args.length > 2) {
+                    throw Utils.error("Incorrect operands.");
+                } else if (!Daemon.forward(args)) {
+                    throw Utils.error("No daemon is running.");
+                }
+                break;
+            default:
+                throw Utils.error("No command with that name exists.");
+        }
+    }
+
+    /** Throw a GitletException unless ARGS has exactly N elements. */
+    private static void validateNumArgs(String[] args, int n) {
+        if (args.length != n) {
+            throw Utils.error("Incorrect operands.");
         }
     }
 }
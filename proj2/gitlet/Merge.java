@@ -0,0 +1,185 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Line-level three-way merges of files changed on both sides of a
+ *  merge.  The split-point version (the base) is compared with the
+ *  current version (ours) and with the given version (theirs) by Diff.
+ *  Scanning the base in order, each group of hunks from the two
+ *  comparisons whose base lines overlap or touch forms a region.  A
+ *  region changed on only one side, or changed identically on both,
+ *  takes the changed lines; any other region is a conflict, written as
+ *
+ *      <<<<<<< HEAD
+ *      lines of the current version
+ *      =======
+ *      lines of the given version
+ *      >>>>>>>
+ *
+ *  Lines between regions are copied from the base.  The result is
+ *  written to its file as it is produced, straight from the three
+ *  inputs, which are mapped into memory rather than read: apart from
+ *  the inputs' pages, the merge holds only two ints for each line and
+ *  the hunks.  A file absent from a version is treated as empty, so
+ *  that a file changed on one side and deleted on the other conflicts
+ *  as a whole.
+ */
+class Merge {
+
+    /** Marker starting a conflict. */
+    private static final byte[] OURS = bytes("<<<<<<< HEAD\n");
+    /** Marker separating the two sides of a conflict. */
+    private static final byte[] SEPARATOR = bytes("=======\n");
+    /** Marker ending a conflict. */
+    private static final byte[] THEIRS = bytes(">>>>>>>\n");
+    /** Line terminator. */
+    private static final byte[] NEWLINE = bytes("\n");
+
+    /** Write to DEST the merge of the blobs BASE, OURS, and THEIRS from
+     *  the repository's objects, any of which may be null for an absent
+     *  file.  Returns true iff there were conflicts.  The blobs are
+     *  streamed to temporary files (see ObjectStore.copyTo), which are
+     *  then merged as by mergeFiles. */
+    static boolean mergeBlobs(ObjectId base, ObjectId ours, ObjectId theirs,
+                              File dest) {
+        List<File> temps = new ArrayList<>();
+        try {
+            return mergeFiles(extract(base, temps), extract(ours, temps),
+                              extract(theirs, temps), dest);
+        } finally {
+            temps.forEach(File::delete);
+        }
+    }
+
+    /** Write to DEST the merge of the files BASE, OURS, and THEIRS, any of
+     *  which may be null for an absent file.  Returns true iff there were
+     *  conflicts.  DEST must differ from the inputs. */
+    static boolean mergeFiles(File base, File ours, File theirs, File dest) {
+        Lines.Table table = new Lines.Table();
+        Lines baseLines = Lines.map(base, table),
+            ourLines = Lines.map(ours, table),
+            theirLines = Lines.map(theirs, table);
+        try (FileChannel out =
+             FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            return merge(baseLines, ourLines, theirLines, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the merge of BASE, OURS, and THEIRS, which must have been
+     *  numbered by the same Lines.Table, to OUT, returning true iff
+     *  there were conflicts. */
+    static boolean merge(Lines base, Lines ours, Lines theirs,
+                         FileChannel out) throws IOException {
+        List<Diff.Hunk> changedA = Diff.diff(base.ids(), ours.ids()),
+            changedB = Diff.diff(base.ids(), theirs.ids());
+        boolean conflict = false;
+        int i = 0, j = 0;
+        int pos = 0;
+        int deltaA = 0, deltaB = 0;
+        while (i < changedA.size() || j < changedB.size()) {
+            int lo = Math.min(i < changedA.size()
+                              ? changedA.get(i).aStart : Integer.MAX_VALUE,
+                              j < changedB.size()
+                              ? changedB.get(j).aStart : Integer.MAX_VALUE);
+            int hi = lo;
+            int firstA = i, firstB = j;
+            int startA = lo + deltaA, startB = lo + deltaB;
+            boolean grew = true;
+            while (grew) {
+                grew = false;
+                for (; i < changedA.size() && changedA.get(i).aStart <= hi;
+                     i += 1) {
+                    Diff.Hunk h = changedA.get(i);
+                    hi = Math.max(hi, h.aEnd);
+                    deltaA += (h.bEnd - h.bStart) - (h.aEnd - h.aStart);
+                    grew = true;
+                }
+                for (; j < changedB.size() && changedB.get(j).aStart <= hi;
+                     j += 1) {
+                    Diff.Hunk h = changedB.get(j);
+                    hi = Math.max(hi, h.aEnd);
+                    deltaB += (h.bEnd - h.bStart) - (h.aEnd - h.aStart);
+                    grew = true;
+                }
+            }
+            int endA = hi + deltaA, endB = hi + deltaB;
+
+            base.write(pos, lo, out);
+            if (i == firstA) {
+                theirs.write(startB, endB, out);
+            } else if (j == firstB || same(ours, startA, endA,
+                                           theirs, startB, endB)) {
+                ours.write(startA, endA, out);
+            } else {
+                conflict = true;
+                write(out, OURS);
+                ours.write(startA, endA, out);
+                if (!ours.endsLine(startA, endA)) {
+                    write(out, NEWLINE);
+                }
+                write(out, SEPARATOR);
+                theirs.write(startB, endB, out);
+                if (!theirs.endsLine(startB, endB)) {
+                    write(out, NEWLINE);
+                }
+                write(out, THEIRS);
+            }
+            pos = hi;
+        }
+        base.write(pos, base.size(), out);
+        return conflict;
+    }
+
+    /** Return true iff lines ASTART through AEND - 1 of A are the same as
+     *  lines BSTART through BEND - 1 of B. */
+    private static boolean same(Lines a, int aStart, int aEnd,
+                                Lines b, int bStart, int bEnd) {
+        if (aEnd - aStart != bEnd - bStart) {
+            return false;
+        }
+        int[] x = a.ids(), y = b.ids();
+        for (int k = 0; k < aEnd - aStart; k += 1) {
+            if (x[aStart + k] != y[bStart + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return a new temporary file holding the contents of blob UID,
+     *  adding it to TEMPS, or null if UID is null. */
+    private static File extract(ObjectId uid, List<File> temps) {
+        if (uid == null) {
+            return null;
+        }
+        File result = Journal.local().newTempFile();
+        temps.add(result);
+        ObjectStore.local().copyTo(uid, result);
+        return result;
+    }
+
+    /** Write all of DATA to OUT. */
+    private static void write(FileChannel out, byte[] data)
+        throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /** Return the UTF-8 encoding of S. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,193 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** Compares the line-level three-way merge of Merge with the whole-file
+ *  conflict it replaces, on large text files.  Usage, from an empty
+ *  directory:
+ *
+ *      java gitlet.MergeBenchmark [MB [EDITS]]
+ *
+ *  writes a base text of about MB megabytes (by default 100) of short
+ *  lines, and two versions of it that each change, insert, or delete
+ *  lines at EDITS (by default 1000) places, one place in a hundred
+ *  being changed differently by both.  It then merges the versions with
+ *  Merge.mergeFiles and, for comparison, by reading both into Strings
+ *  and writing them out between conflict markers.  Prints the time and
+ *  peak heap use of each, and the number of conflicts Merge found.
+ */
+public class MergeBenchmark {
+
+    /** Average number of bytes in a line. */
+    private static final int LINE = 64;
+    /** One edit in this many changes the same line on both sides. */
+    private static final int CONFLICT_RATE = 100;
+    /** Words from which lines are made. */
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf",
+        "hotel", "india", "juliet", "kilo", "lima", "mike", "november",
+    };
+
+    /** Run the benchmark as described in the class comment, using ARGS. */
+    public static void main(String... args) throws IOException {
+        int mb = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        File base = join(Repository.CWD, "base.txt"),
+            ours = join(Repository.CWD, "ours.txt"),
+            theirs = join(Repository.CWD, "theirs.txt"),
+            merged = join(Repository.CWD, "merged.txt");
+        if (base.exists() || ours.exists() || theirs.exists()) {
+            throw error("Run MergeBenchmark in an empty directory.");
+        }
+        int lines = (int) ((long) mb * (1 << 20) / LINE);
+        int conflicts = generate(base, ours, theirs, lines, edits);
+        System.out.printf("%d lines, %d edits per side, %d conflicting%n",
+                          lines, edits, conflicts);
+
+        System.out.printf("%-16s %10s %10s %12s %10s%n", "merge", "s",
+                          "MB/s", "peak heap MB", "conflicts");
+        System.out.printf("------------------------------------------------"
+                          + "-----------%n");
+        long input = base.length() + ours.length() + theirs.length();
+        resetPeaks();
+        long start = System.nanoTime();
+        Merge.mergeFiles(base, ours, theirs, merged);
+        double time = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-16s %10.2f %10.1f %12.1f %10d%n", "line-level",
+                          time, input / time / 1e6, peakHeap() / 1e6,
+                          countConflicts(merged));
+
+        resetPeaks();
+        start = System.nanoTime();
+        try {
+            String current = readContentsAsString(ours),
+                given = readContentsAsString(theirs);
+            writeContents(merged, "<<<<<<< HEAD\n" + current + "=======\n"
+                          + given + ">>>>>>>\n");
+            time = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-16s %10.2f %10.1f %12.1f %10d%n",
+                              "whole-file", time,
+                              (ours.length() + theirs.length()) / time / 1e6,
+                              peakHeap() / 1e6, 1);
+        } catch (OutOfMemoryError excp) {
+            System.out.printf("%-16s out of memory%n", "whole-file");
+        }
+        merged.delete();
+    }
+
+    /** Write a base text of LINES lines to BASE, and versions of it with
+     *  EDITS edits each to OURS and THEIRS, as described in the class
+     *  comment.  Returns the number of edits that conflict. */
+    private static int generate(File base, File ours, File theirs,
+                                int lines, int edits) throws IOException {
+        Random random = new Random(0);
+        byte[] kinds = new byte[lines];
+        for (int k = 0; k < edits; k += 1) {
+            kinds[random.nextInt(lines)] |= 1;
+            kinds[random.nextInt(lines)] |= 2;
+        }
+        int conflicts = 0;
+        for (int k = 0; k < edits / CONFLICT_RATE; k += 1) {
+            kinds[random.nextInt(lines)] = 3;
+        }
+        try (OutputStream b = stream(base); OutputStream o = stream(ours);
+             OutputStream t = stream(theirs)) {
+            for (int i = 0; i < lines; i += 1) {
+                byte[] line = line(i, random, "");
+                b.write(line);
+                edit(o, line, i, (kinds[i] & 1) != 0, random, "ours");
+                edit(t, line, i, (kinds[i] & 2) != 0, random, "theirs");
+                if (kinds[i] == 3 && (i == 0 || kinds[i - 1] == 0)) {
+                    conflicts += 1;
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /** Write LINE, number I of the base, to OUT, after changing, deleting,
+     *  or inserting before it, chosen using RANDOM, if EDITED.  Changed
+     *  lines are marked by SIDE. */
+    private static void edit(OutputStream out, byte[] line, int i,
+                             boolean edited, Random random, String side)
+        throws IOException {
+        if (!edited) {
+            out.write(line);
+            return;
+        }
+        switch (random.nextInt(3)) {
+        case 0:
+            out.write(line(i, random, side));
+            break;
+        case 1:
+            break;
+        default:
+            out.write(line(i, random, side));
+            out.write(line);
+            break;
+        }
+    }
+
+    /** Return a line numbered I with random words chosen using RANDOM,
+     *  marked by TAG. */
+    private static byte[] line(int i, Random random, String tag) {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%09d%s", i, tag));
+        while (result.length() < LINE - 8) {
+            result.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return result.append('\n').toString()
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Return a buffered stream writing FILE. */
+    private static OutputStream stream(File file) throws IOException {
+        return new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+    }
+
+    /** Return the number of conflicts in the merged file FILE. */
+    private static int countConflicts(File file) {
+        Lines.Table table = new Lines.Table();
+        int marker = new Lines(java.nio.ByteBuffer.wrap(
+            "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8)), table)
+            .ids()[0];
+        int result = 0;
+        for (int id : Lines.map(file, table).ids()) {
+            result += id == marker ? 1 : 0;
+        }
+        return result;
+    }
+
+    /** Start measuring peak heap use afresh. */
+    private static void resetPeaks() {
+        System.gc();
+        for (MemoryPoolMXBean pool
+                 : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    /** Return the sum of the peak uses of the heap's memory pools since
+     *  the last resetPeaks. */
+    private static long peakHeap() {
+        long result = 0;
+        for (MemoryPoolMXBean pool
+                 : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                result += pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+}
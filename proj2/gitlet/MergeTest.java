@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of line-level three-way merges (see Merge). */
+public class MergeTest {
+
+    /** Files written by the current test. */
+    private final List<File> _files = new ArrayList<>();
+
+    /** Return a new temporary file containing TEXT, or null if TEXT is
+     *  null, standing for an absent version. */
+    private File file(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            File result = File.createTempFile("merge-test", ".txt");
+            _files.add(result);
+            writeContents(result, text);
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Check that merging BASE, OURS, and THEIRS gives EXPECTED, with a
+     *  conflict iff CONFLICT. */
+    private void checkMerge(String base, String ours, String theirs,
+                            String expected, boolean conflict) {
+        File dest = file("");
+        assertEquals(conflict, Merge.mergeFiles(file(base), file(ours),
+                                                file(theirs), dest));
+        assertEquals(expected, readContentsAsString(dest));
+    }
+
+    @After
+    public void removeFiles() {
+        for (File file : _files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void oneSidedChange() {
+        String base = "a\nb\nc\n", changed = "a\nB\nc\nd\n";
+        checkMerge(base, changed, base, changed, false);
+        checkMerge(base, base, changed, changed, false);
+        checkMerge(base, "b\nc\n", base, "b\nc\n", false);
+    }
+
+    @Test
+    public void identicalChange() {
+        checkMerge("a\nb\nc\n", "a\nX\nc\n", "a\nX\nc\n", "a\nX\nc\n",
+                   false);
+        checkMerge("a\nb\nc\n", "c\n", "c\n", "c\n", false);
+    }
+
+    @Test
+    public void separateChanges() {
+        checkMerge("a\nb\nc\nd\ne\n", "A\nb\nc\nd\ne\n", "a\nb\nc\nd\nE\n",
+                   "A\nb\nc\nd\nE\n", false);
+    }
+
+    @Test
+    public void overlappingConflict() {
+        checkMerge("a\nb\nc\n", "a\nX\nc\n", "a\nY\nc\n",
+                   "a\n<<<<<<< HEAD\nX\n=======\nY\n>>>>>>>\nc\n", true);
+        checkMerge("a\nb\nc\nd\n", "a\nX\nY\nd\n", "a\nb\nZ\nd\n",
+                   "a\n<<<<<<< HEAD\nX\nY\n=======\nb\nZ\n>>>>>>>\nd\n",
+                   true);
+        checkMerge("a\nb\nc\n", "a\nc\n", "a\nY\nc\n",
+                   "a\n<<<<<<< HEAD\n=======\nY\n>>>>>>>\nc\n", true);
+    }
+
+    @Test
+    public void insertionsAtSameLine() {
+        checkMerge("a\nb\n", "a\nX\nb\n", "a\nY\nb\n",
+                   "a\n<<<<<<< HEAD\nX\n=======\nY\n>>>>>>>\nb\n", true);
+        checkMerge("a\nb\n", "a\nX\nb\n", "a\nX\nb\n", "a\nX\nb\n", false);
+    }
+
+    @Test
+    public void unterminatedLastLines() {
+        checkMerge("a\nb", "a\nX", "a\nY",
+                   "a\n<<<<<<< HEAD\nX\n=======\nY\n>>>>>>>\n", true);
+    }
+
+    @Test
+    public void missingBase() {
+        checkMerge(null, "x\n", "y\n",
+                   "<<<<<<< HEAD\nx\n=======\ny\n>>>>>>>\n", true);
+        checkMerge(null, "x\n", "x\n", "x\n", false);
+        checkMerge(null, null, "y\n", "y\n", false);
+        checkMerge("a\n", null, "b\n",
+                   "<<<<<<< HEAD\n=======\nb\n>>>>>>>\n", true);
+    }
+}
@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** An index from commit messages to the UIDs of the commits having them,
+ *  so that find need examine only matching commits.  It consists of two
+ *  files.  The append-only log, .gitlet/messages, holds one record per
+ *  commit:
+ *
+ *      key (8 bytes)  UID (20 bytes)  previous (8 bytes)
+ *
+ *  where key is the first 8 bytes of the SHA-1 hash of the message, and
+ *  previous is the offset of the preceding record with the same key, or
+ *  -1.  The records for any one key thus form a chain, newest first.  The
+ *  heads table, .gitlet/messages.heads, is an open-addressed hash table
+ *  mapping each key to the offset of the newest record of its chain:
+ *
+ *      capacity (4 bytes)  #used (4 bytes)  (key  offset + 1)...
+ *
+ *  with capacity a power of two and an offset field of 0 marking an empty
+ *  slot.  The table is rebuilt from the log at twice the size when it
+ *  becomes half full.  Adding a commit checks only the head of its
+ *  chain for a repeat, as when a commit's indexing is redone after a
+ *  crash, so that many commits with one message cost constant time
+ *  each; any older repeat is dropped by find.
+ */
+class MessageIndex {
+
+    /** Length of a log record. */
+    private static final int RECORD = 8 + ObjectId.LENGTH + 8;
+    /** Length of the heads table header. */
+    private static final int HEADER = 8;
+    /** Length of a heads table slot. */
+    private static final int SLOT = 16;
+    /** Initial capacity of the heads table. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The message index of the repository whose metadata is in
+     *  GITLETDIR. */
+    MessageIndex(File gitletDir) {
+        _logFile = join(gitletDir, "messages");
+        _headsFile = join(gitletDir, "messages.heads");
+        _store = ObjectStore.of(gitletDir);
+    }
+
+    /** Return the message index of the repository in the current
+     *  directory. */
+    static MessageIndex local() {
+        if (_local == null) {
+            _local = new MessageIndex(Repository.GITLET_DIR);
+        }
+        return _local;
+    }
+
+    /** Discard the cached message index of the repository in the current
+     *  directory, so that it is reread from disk when next needed. */
+    static void resetLocal() {
+        _local = null;
+    }
+
+    /** Record that commit UID has message MESSAGE, unless it is the
+     *  commit most recently recorded with a message of the same key.  A
+     *  partial record left at the end of the log by a crash is
+     *  overwritten. */
+    void add(String message, ObjectId uid) {
+        long key = key(message);
+        int grown = 0;
+        try (RandomAccessFile log = new RandomAccessFile(_logFile, "rw");
+             RandomAccessFile heads = openHeads()) {
+            int slot = findSlot(heads, key);
+            long head = heads.readLong() - 1;
+            if (head >= 0 && uidAt(log, head).equals(uid)) {
+                return;
+            }
+            long offset = log.length() - log.length() % RECORD;
+            log.setLength(offset);
+            log.seek(offset);
+            log.write(ByteBuffer.allocate(RECORD).putLong(key)
+                      .put(uid.bytes()).putLong(head).array());
+            heads.seek(HEADER + (long) slot * SLOT);
+            heads.writeLong(key);
+            heads.writeLong(offset + 1);
+            if (head < 0) {
+                heads.seek(0);
+                int capacity = heads.readInt();
+                int used = heads.readInt() + 1;
+                heads.seek(4);
+                heads.writeInt(used);
+                if (used * 2 > capacity) {
+                    grown = capacity * 2;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (grown > 0) {
+            try (RandomAccessFile log = new RandomAccessFile(_logFile, "r")) {
+                rebuildHeads(log, grown);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Return the UIDs of all commits whose message is MESSAGE, oldest
+     *  first.  Takes time proportional to the number of such commits. */
+    List<ObjectId> find(String message) {
+        if (!_logFile.isFile() || !_headsFile.isFile()) {
+            return List.of();
+        }
+        long key = key(message);
+        try (RandomAccessFile log = new RandomAccessFile(_logFile, "r");
+             RandomAccessFile heads = new RandomAccessFile(_headsFile, "r")) {
+            findSlot(heads, key);
+            List<ObjectId> chain = chain(log, heads.readLong() - 1);
+            Collections.reverse(chain);
+            LinkedHashSet<ObjectId> result = new LinkedHashSet<>();
+            for (ObjectId uid : chain) {
+                /* Distinct messages may share a key. */
+                if (!result.contains(uid)
+                    && _store.decode(uid, Commit.class).getMessage()
+                       .equals(message)) {
+                    result.add(uid);
+                }
+            }
+            return new ArrayList<>(result);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Remove the index entirely, so that it may be rebuilt. */
+    void clear() {
+        _logFile.delete();
+        _headsFile.delete();
+    }
+
+    /** Return the key for MESSAGE. */
+    private static long key(String message) {
+        byte[] hash =
+            ObjectId.of(message.getBytes(StandardCharsets.UTF_8)).bytes();
+        return ByteBuffer.wrap(hash).getLong();
+    }
+
+    /** Return the UID in the record at offset OFFSET of LOG. */
+    private static ObjectId uidAt(RandomAccessFile log, long offset)
+        throws IOException {
+        byte[] uid = new byte[ObjectId.LENGTH];
+        log.seek(offset + 8);
+        log.readFully(uid);
+        return ObjectId.fromBytes(uid, 0);
+    }
+
+    /** Return the UIDs in the chain of records in LOG starting at offset
+     *  HEAD, newest first. */
+    private static List<ObjectId> chain(RandomAccessFile log, long head)
+        throws IOException {
+        List<ObjectId> result = new ArrayList<>();
+        byte[] record = new byte[RECORD];
+        while (head >= 0) {
+            log.seek(head);
+            log.readFully(record);
+            result.add(ObjectId.fromBytes(record, 8));
+            head = ByteBuffer.wrap(record, RECORD - 8, 8).getLong();
+        }
+        return result;
+    }
+
+    /** Return the number of the slot in HEADS that holds KEY, or of the
+     *  empty slot where it belongs, leaving HEADS positioned at the
+     *  slot's offset field. */
+    private static int findSlot(RandomAccessFile heads, long key)
+        throws IOException {
+        heads.seek(0);
+        int mask = heads.readInt() - 1;
+        int slot = Long.hashCode(key) & mask;
+        while (true) {
+            heads.seek(HEADER + (long) slot * SLOT);
+            long k = heads.readLong();
+            long offset = heads.readLong();
+            if (offset == 0 || k == key) {
+                heads.seek(HEADER + (long) slot * SLOT + 8);
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** Return the heads table opened for update, creating it, or rebuilding
+     *  it from an existing log, if it does not exist. */
+    private RandomAccessFile openHeads() throws IOException {
+        if (!_headsFile.isFile()) {
+            try (RandomAccessFile log = new RandomAccessFile(_logFile, "rw")) {
+                int capacity = INITIAL_CAPACITY;
+                while (log.length() / RECORD * 2 > capacity) {
+                    capacity *= 2;
+                }
+                rebuildHeads(log, capacity);
+            }
+        }
+        return new RandomAccessFile(_headsFile, "rw");
+    }
+
+    /** Rewrite the heads table with the given CAPACITY from the records in
+     *  LOG. */
+    private void rebuildHeads(RandomAccessFile log, int capacity)
+        throws IOException {
+        ByteBuffer table = ByteBuffer.allocate(HEADER + capacity * SLOT);
+        int used = 0;
+        byte[] record = new byte[RECORD];
+        for (long offset = 0; offset + RECORD <= log.length();
+             offset += RECORD) {
+            log.seek(offset);
+            log.readFully(record);
+            long key = ByteBuffer.wrap(record).getLong();
+            int slot = Long.hashCode(key) & (capacity - 1);
+            while (table.getLong(HEADER + slot * SLOT + 8) != 0
+                   && table.getLong(HEADER + slot * SLOT) != key) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            if (table.getLong(HEADER + slot * SLOT + 8) == 0) {
+                used += 1;
+            }
+            table.putLong(HEADER + slot * SLOT, key);
+            table.putLong(HEADER + slot * SLOT + 8, offset + 1);
+        }
+        table.putInt(0, capacity);
+        table.putInt(4, used);
+        File tmp = new File(_headsFile.getPath() + ".tmp");
+        writeContents(tmp, (Object) table.array());
+        replaceDurably(tmp, _headsFile);
+    }
+
+    /** Index for the current repository, or null if not yet created. */
+    private static MessageIndex _local;
+
+    /** The log of records. */
+    private final File _logFile;
+    /** The heads table. */
+    private final File _headsFile;
+    /** The objects of the repository, holding its commits. */
+    private final ObjectStore _store;
+}
@@ -0,0 +1,147 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the index from commit messages to commits (see
+ *  MessageIndex), made of commits in a temporary repository. */
+public class MessageIndexTest {
+
+    /** Number of distinct messages: enough for the heads table to be
+     *  rebuilt at a larger size. */
+    private static final int MESSAGES = 600;
+    /** Number of further commits, which repeat the first five
+     *  messages. */
+    private static final int REPEATS = 500;
+
+    /** The repository directory of the current test. */
+    private File _dir;
+    /** The objects of the repository. */
+    private ObjectStore _store;
+    /** The message index of the repository, to which commits are added
+     *  as they are made. */
+    private MessageIndex _index;
+
+    @Before
+    public void makeRepository() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-messages").toFile();
+        _store = new ObjectStore(_dir);
+        _index = new MessageIndex(_dir);
+    }
+
+    @After
+    public void removeRepository() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Make a commit with message MESSAGE, made at time TIME, with
+     *  parents PARENTS, holding FILES, a mapping of file names to their
+     *  contents, and add it to the index.  Returns its UID. */
+    private ObjectId commit(String message, long time, List<ObjectId> parents,
+                            Map<String, String> files) {
+        TreeMap<String, ObjectId> blobs = new TreeMap<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            blobs.put(file.getKey(), _store.write(file.getValue().getBytes()));
+        }
+        Commit commit = new Commit(message, new Date(time), parents,
+                                   FileMap.write(_store, blobs));
+        ObjectId uid = _store.write(Codecs.encode(commit));
+        _index.add(message, uid);
+        return uid;
+    }
+
+    /** Make commits with MESSAGES distinct messages, the first few of
+     *  which recur many times, returning the UIDs of the commits with
+     *  each message, oldest first. */
+    private Map<String, List<ObjectId>> makeHistory() {
+        Map<String, List<ObjectId>> result = new LinkedHashMap<>();
+        ObjectId parent = null;
+        for (int k = 0; k < MESSAGES + REPEATS; k += 1) {
+            String message = k < MESSAGES ? "message " + k
+                : "message " + k % 5;
+            parent = commit(message, 1000L * k,
+                            parent == null ? List.of() : List.of(parent),
+                            Map.of("f.txt", "version " + k));
+            result.computeIfAbsent(message, m -> new ArrayList<>())
+                .add(parent);
+        }
+        return result;
+    }
+
+    /** Check that INDEX finds exactly the commits in EXPECTED. */
+    private static void checkIndex(MessageIndex index,
+                                   Map<String, List<ObjectId>> expected) {
+        for (Map.Entry<String, List<ObjectId>> e : expected.entrySet()) {
+            assertEquals(e.getKey(), e.getValue(), index.find(e.getKey()));
+        }
+        assertEquals(List.of(), index.find("no such message"));
+        assertEquals(List.of(), index.find("message"));
+    }
+
+    @Test
+    public void roundTrip() {
+        Map<String, List<ObjectId>> expected = makeHistory();
+        assertEquals(1 + REPEATS / 5, expected.get("message 0").size());
+        assertTrue(join(_dir, "messages.heads").length() > 1024 * 16);
+        checkIndex(_index, expected);
+        checkIndex(new MessageIndex(_dir), expected);
+    }
+
+    /** Indexing a commit again, as when the indexing of a commit is redone
+     *  after a crash, adds nothing. */
+    @Test
+    public void repeatedAdd() {
+        Map<String, List<ObjectId>> expected = makeHistory();
+        MessageIndex index = new MessageIndex(_dir);
+        for (Map.Entry<String, List<ObjectId>> e : expected.entrySet()) {
+            List<ObjectId> uids = e.getValue();
+            index.add(e.getKey(), uids.get(uids.size() - 1));
+            index.add(e.getKey(), uids.get(0));
+        }
+        checkIndex(new MessageIndex(_dir), expected);
+    }
+
+    /** A record added after a partial one, as left by a crash while
+     *  appending, is aligned and found. */
+    @Test
+    public void tornLog() {
+        ObjectId first = commit("first", 0, List.of(),
+                                Map.of("f.txt", "first"));
+        File log = join(_dir, "messages");
+        long length = log.length();
+        writeContents(log, (Object) Arrays.copyOf(readContents(log),
+                                                  (int) length + 5));
+        ObjectId second = commit("second", 1000, List.of(first),
+                                 Map.of("f.txt", "second"));
+        assertEquals(2 * length, log.length());
+        MessageIndex index = new MessageIndex(_dir);
+        assertEquals(List.of(first), index.find("first"));
+        assertEquals(List.of(second), index.find("second"));
+    }
+}
@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A registry of named counters and timers describing the work done by
+ *  a command, such as objects read and written, bytes hashed, time
+ *  spent (de)serializing, and directory listings.  Any class may
+ *  register its own by name (see counter and timer); registering a name
+ *  again returns the same instrument, so that several classes may feed
+ *  one.
+ *
+ *  Counters are always kept, being cheap, so that reports such as
+ *  ObjectStore.blobReport may use them.  Timers read the clock only when
+ *  statistics are enabled, which Main does if the environment variable
+ *  GITLET_STATS is set.  Each command (see Main.run) then starts with
+ *  all instruments at zero and ends by printing them to the standard
+ *  error as one line of JSON:
+ *
+ *      {"command": [ARG...], "wall_ms": TIME,
+ *       "timers": {NAME: {"count": N, "ms": TIME}, ...},
+ *       "counters": {NAME: N, ...}}
+ *
+ *  An instrument is registered, and so reported, once the class that
+ *  uses it has been loaded.  Commands forwarded to a Daemon are
+ *  measured, and reported, by the Daemon's process.  Instruments may be
+ *  updated from several threads.
+ */
+class Metrics {
+
+    /** Turn on timing and reporting. */
+    static void enable() {
+        _enabled = true;
+    }
+
+    /** Return true iff timing and reporting are on. */
+    static boolean enabled() {
+        return _enabled;
+    }
+
+    /** Return the counter named NAME, registering it if needed. */
+    static synchronized Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /** Return the timer named NAME, registering it if needed. */
+    static synchronized Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /** Reset every instrument to zero at the start of the command
+     *  ARGS. */
+    static synchronized void begin(String[] args) {
+        COUNTERS.values().forEach(c -> c._value.reset());
+        for (Timer timer : TIMERS.values()) {
+            timer._count.reset();
+            timer._nanos.reset();
+        }
+        _args = args;
+        _start = System.nanoTime();
+    }
+
+    /** Print the instruments to the standard error as described in the
+     *  class comment, if reporting is on. */
+    static void end() {
+        if (_enabled) {
+            report(System.err);
+        }
+    }
+
+    /** Print the instruments to OUT as JSON. */
+    static synchronized void report(PrintStream out) {
+        StringBuilder json = new StringBuilder("{\"command\": [");
+        for (int i = 0; i < _args.length; i += 1) {
+            json.append(i == 0 ? "" : ", ").append(quote(_args[i]));
+        }
+        json.append(String.format("], \"wall_ms\": %.3f, \"timers\": {",
+                                  (System.nanoTime() - _start) / 1e6));
+        String sep = "";
+        for (Map.Entry<String, Timer> e : TIMERS.entrySet()) {
+            json.append(sep).append(quote(e.getKey()))
+                .append(String.format(": {\"count\": %d, \"ms\": %.3f}",
+                                      e.getValue()._count.sum(),
+                                      e.getValue()._nanos.sum() / 1e6));
+            sep = ", ";
+        }
+        json.append("}, \"counters\": {");
+        sep = "";
+        for (Map.Entry<String, Counter> e : COUNTERS.entrySet()) {
+            json.append(sep).append(quote(e.getKey())).append(": ")
+                .append(e.getValue().get());
+            sep = ", ";
+        }
+        out.println(json.append("}}"));
+    }
+
+    /** Return S as a JSON string literal. */
+    private static String quote(String s) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /** A count of events or bytes. */
+    static class Counter {
+        /** Add N to my value. */
+        void add(long n) {
+            _value.add(n);
+        }
+
+        /** Return my value. */
+        long get() {
+            return _value.sum();
+        }
+
+        /** My value. */
+        private final LongAdder _value = new LongAdder();
+    }
+
+    /** The number of times some operation was done, and the total time it
+     *  took.  Used as
+     *
+     *      long start = TIMER.start();
+     *      try {
+     *          ...
+     *      } finally {
+     *          TIMER.stop(start);
+     *      }
+     */
+    static class Timer {
+        /** Return a start time for stop, or 0 if timing is off. */
+        long start() {
+            return _enabled ? System.nanoTime() : 0;
+        }
+
+        /** Record one operation begun at START, as returned by start. */
+        void stop(long start) {
+            if (_enabled) {
+                _count.increment();
+                _nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        /** Number of operations timed. */
+        private final LongAdder _count = new LongAdder();
+        /** Their total time in nanoseconds. */
+        private final LongAdder _nanos = new LongAdder();
+    }
+
+    /** Registered counters by name. */
+    private static final TreeMap<String, Counter> COUNTERS = new TreeMap<>();
+    /** Registered timers by name. */
+    private static final TreeMap<String, Timer> TIMERS = new TreeMap<>();
+
+    /** True iff timing and reporting are on. */
+    private static volatile boolean _enabled;
+    /** Arguments of the current command. */
+    private static String[] _args = new String[0];
+    /** Start time of the current command, from System.nanoTime. */
+    private static long _start = System.nanoTime();
+}
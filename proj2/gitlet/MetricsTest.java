@@ -0,0 +1,101 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the registry of counters and timers (see Metrics) and of
+ *  the report printed when GITLET_STATS is set. */
+public class MetricsTest {
+
+    /** Number of threads updating a counter at once. */
+    private static final int THREADS = 8;
+    /** Number of updates made by each. */
+    private static final int UPDATES = 10000;
+
+    /** Return the report that Metrics.report prints. */
+    private static String report() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Metrics.report(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Return the value reported in REPORT for the counter NAME, checking
+     *  that it is reported exactly once. */
+    private static long reported(String report, String name) {
+        Matcher m =
+            Pattern.compile("\"" + Pattern.quote(name) + "\": (\\d+)[,}]")
+            .matcher(report);
+        assertTrue(name, m.find());
+        long result = Long.parseLong(m.group(1));
+        assertFalse(name, m.find());
+        return result;
+    }
+
+    /** Updates from several threads are all counted, a name registered
+     *  twice denotes one counter, and each command starts from zero. */
+    @Test
+    public void counterTotals() throws InterruptedException {
+        Metrics.Counter counter = Metrics.counter("test.totals");
+        assertSame(counter, Metrics.counter("test.totals"));
+        Metrics.begin(new String[] { "test" });
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t += 1) {
+            long n = t + 1;
+            threads.add(new Thread(() -> {
+                for (int k = 0; k < UPDATES; k += 1) {
+                    Metrics.counter("test.totals").add(n);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long expected = (long) UPDATES * THREADS * (THREADS + 1) / 2;
+        assertEquals(expected, counter.get());
+        assertEquals(expected, reported(report(), "test.totals"));
+
+        Metrics.begin(new String[] { "test" });
+        assertEquals(0, counter.get());
+        counter.add(3);
+        assertEquals(3, reported(report(), "test.totals"));
+    }
+
+    /** The report is one line of JSON giving the command, with its
+     *  arguments quoted, the wall time, and each timer and counter. */
+    @Test
+    public void reportFormat() {
+        Metrics.enable();
+        Metrics.Timer timer = Metrics.timer("test.timer");
+        Metrics.Counter counter = Metrics.counter("test.format");
+        Metrics.begin(new String[] { "log", "a \"quoted\"\\ arg\n" });
+        for (int k = 0; k < 3; k += 1) {
+            long start = timer.start();
+            timer.stop(start);
+        }
+        counter.add(42);
+        String report = report();
+
+        assertTrue(report.endsWith("}}" + System.lineSeparator()));
+        assertFalse(report.trim().contains("\n"));
+        String number = "\\d+\\.\\d{3}";
+        String prefix = "{\"command\": [\"log\", "
+            + "\"a \\\"quoted\\\"\\\\ arg\\u000a\"], \"wall_ms\": ";
+        assertTrue(report, report.startsWith(prefix));
+        assertTrue(report.substring(prefix.length())
+                   .matches(number + ", \"timers\": \\{.*\\}, "
+                            + "\"counters\": \\{.*\\}\\}\\s*"));
+        assertTrue(report, Pattern.compile("\"test\\.timer\": \\{\"count\": 3, "
+                                           + "\"ms\": " + number + "\\}")
+                   .matcher(report).find());
+        assertEquals(42, reported(report, "test.format"));
+    }
+}
@@ -0,0 +1,103 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** An in-memory cache of values derived from the objects of an
+ *  ObjectStore, such as their contents or decoded Commits, keyed by UID.
+ *  Each entry has a weight, approximately the bytes it occupies, and
+ *  the cache holds entries of total weight at most its capacity,
+ *  evicting the least recently used ones to make room.  An entry
+ *  heavier than a MAX_SHARE of the capacity is not kept at all, so that
+ *  one large blob cannot flush everything else.
+ *
+ *  Objects are named by their contents and so never change: entries can
+ *  never be stale, and a cache need be cleared only when objects are
+ *  deleted (see ObjectStore.sweep).  Mutable state, such as the staging
+ *  area, is not kept in ObjectCaches.  Hits, misses, and evictions are
+ *  counted in Metrics as cache.NAME.hits, cache.NAME.misses, and
+ *  cache.NAME.evictions.
+ */
+class ObjectCache<V> {
+
+    /** Denominator of the largest share of the capacity one entry may
+     *  have. */
+    private static final int MAX_SHARE = 8;
+
+    /** An empty cache named NAME of total weight at most CAPACITY. */
+    ObjectCache(String name, long capacity) {
+        _capacity = capacity;
+        _hits = Metrics.counter("cache." + name + ".hits");
+        _misses = Metrics.counter("cache." + name + ".misses");
+        _evictions = Metrics.counter("cache." + name + ".evictions");
+    }
+
+    /** Return the value cached for UID, or null if there is none, making
+     *  it the most recently used. */
+    synchronized V get(ObjectId uid) {
+        Entry<V> entry = _entries.get(uid);
+        if (entry == null) {
+            _misses.add(1);
+            return null;
+        }
+        _hits.add(1);
+        return entry.value;
+    }
+
+    /** Cache VALUE, of weight WEIGHT, for UID, evicting the least recently
+     *  used entries as needed. */
+    synchronized void put(ObjectId uid, V value, long weight) {
+        if (weight > _capacity / MAX_SHARE) {
+            return;
+        }
+        Entry<V> old = _entries.put(uid, new Entry<>(value, weight));
+        _weight += weight - (old == null ? 0 : old.weight);
+        Iterator<Entry<V>> eldest = _entries.values().iterator();
+        while (_weight > _capacity) {
+            _weight -= eldest.next().weight;
+            eldest.remove();
+            _evictions.add(1);
+        }
+    }
+
+    /** Remove all entries. */
+    synchronized void clear() {
+        _entries.clear();
+        _weight = 0;
+    }
+
+    /** Return the number of entries. */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /** Return the total weight of the entries. */
+    synchronized long weight() {
+        return _weight;
+    }
+
+    /** A cached value and its weight. */
+    private static class Entry<V> {
+        /** An entry for VALUE of weight WEIGHT. */
+        Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        /** The value. */
+        private final V value;
+        /** Its weight. */
+        private final long weight;
+    }
+
+    /** Entries by UID, least recently used first. */
+    private final Map<ObjectId, Entry<V>> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Maximum total weight of the entries. */
+    private final long _capacity;
+    /** Total weight of the entries. */
+    private long _weight;
+    /** Counters of hits, misses, and evictions. */
+    private final Metrics.Counter _hits, _misses, _evictions;
+}
@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the caches of values derived from objects (see
+ *  ObjectCache). */
+public class ObjectCacheTest {
+
+    /** Return N distinct UIDs. */
+    private static List<ObjectId> uids(int n) {
+        List<ObjectId> result = new ArrayList<>();
+        for (int k = 0; k < n; k += 1) {
+            result.add(ObjectId.of(("object " + k).getBytes()));
+        }
+        return result;
+    }
+
+    /** When full, the cache evicts the entries least recently used,
+     *  whether by get or by put. */
+    @Test
+    public void evictionOrder() {
+        ObjectCache<String> cache = new ObjectCache<>("test.order", 80);
+        List<ObjectId> uids = uids(12);
+        for (int k = 0; k < 8; k += 1) {
+            cache.put(uids.get(k), "value " + k, 10);
+        }
+        assertEquals(8, cache.size());
+        assertEquals("value 0", cache.get(uids.get(0)));
+        cache.put(uids.get(2), "value 2", 10);
+
+        cache.put(uids.get(8), "value 8", 10);
+        assertNull(cache.get(uids.get(1)));
+        cache.put(uids.get(9), "value 9", 10);
+        assertNull(cache.get(uids.get(3)));
+        cache.put(uids.get(10), "value 10", 10);
+        assertNull(cache.get(uids.get(4)));
+        for (int k : new int[] { 0, 2, 5, 6, 7, 8, 9, 10 }) {
+            assertEquals("value " + k, cache.get(uids.get(k)));
+        }
+        cache.put(uids.get(11), "value 11", 10);
+        assertNull(cache.get(uids.get(0)));
+        assertEquals(8, cache.size());
+    }
+
+    /** The total weight never exceeds the capacity: one heavy entry
+     *  evicts several light ones, a replaced entry's weight is
+     *  reckoned afresh, and an entry too heavy for its share is not
+     *  kept. */
+    @Test
+    public void weightLimit() {
+        ObjectCache<String> cache = new ObjectCache<>("test.weight", 800);
+        Metrics.Counter evictions =
+            Metrics.counter("cache.test.weight.evictions");
+        Metrics.Counter hits = Metrics.counter("cache.test.weight.hits");
+        Metrics.Counter misses = Metrics.counter("cache.test.weight.misses");
+        long evicted = evictions.get(), hit = hits.get(),
+            missed = misses.get();
+        List<ObjectId> uids = uids(100);
+        for (int k = 0; k < 80; k += 1) {
+            cache.put(uids.get(k), "light", 10);
+            assertTrue(cache.weight() <= 800);
+        }
+        assertEquals(800, cache.weight());
+        assertEquals(evicted, evictions.get());
+
+        cache.put(uids.get(80), "heavy", 100);
+        assertEquals(71, cache.size());
+        assertEquals(800, cache.weight());
+        assertEquals(evicted + 10, evictions.get());
+        for (int k = 0; k < 10; k += 1) {
+            assertNull(cache.get(uids.get(k)));
+        }
+        assertEquals("heavy", cache.get(uids.get(80)));
+
+        cache.put(uids.get(80), "lighter", 50);
+        assertEquals(750, cache.weight());
+        assertEquals("lighter", cache.get(uids.get(80)));
+
+        cache.put(uids.get(81), "too heavy", 101);
+        assertNull(cache.get(uids.get(81)));
+        assertEquals(750, cache.weight());
+        assertEquals(hit + 2, hits.get());
+        assertEquals(missed + 11, misses.get());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+}
@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static gitlet.Utils.*;
+
+/** The SHA-1 UID of an object, held as its 20 binary bytes.  ObjectIds
+ *  are immutable, compare in the order of their hexadecimal numerals,
+ *  and carry a precomputed hash code, so they serve as cheap keys in
+ *  maps.  The hexadecimal numeral is needed only for file names and for
+ *  user-visible output; see hex and fromHex.
+ */
+final class ObjectId implements Comparable<ObjectId>, Serializable {
+
+    /** Length of an ObjectId in bytes. */
+    static final int LENGTH = UID_LENGTH / 2;
+
+    /** The ObjectId whose bytes are BYTES[OFFSET .. OFFSET+LENGTH-1]. */
+    static ObjectId fromBytes(byte[] bytes, int offset) {
+        return new ObjectId(Arrays.copyOfRange(bytes, offset,
+                                               offset + LENGTH));
+    }
+
+    /** The ObjectId read from the position of BUF, which is advanced past
+     *  it. */
+    static ObjectId read(ByteBuffer buf) {
+        byte[] bytes = new byte[LENGTH];
+        buf.get(bytes);
+        return new ObjectId(bytes);
+    }
+
+    /** The ObjectId denoted by the hexadecimal numeral HEX, in either
+     *  case.  Throws IllegalArgumentException if HEX is malformed. */
+    static ObjectId fromHex(String hex) {
+        if (hex.length() != UID_LENGTH) {
+            throw new IllegalArgumentException("malformed UID: " + hex);
+        }
+        byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i += 1) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("malformed UID: " + hex);
+            }
+            bytes[i] = (byte) (hi << 4 | lo);
+        }
+        return new ObjectId(bytes);
+    }
+
+    /** Return the ObjectId of the digest computed by MD, which is
+     *  reset. */
+    static ObjectId of(MessageDigest md) {
+        return new ObjectId(md.digest());
+    }
+
+    /** Return the ObjectId of CONTENTS, the same as that of the UID
+     *  sha1(CONTENTS). */
+    static ObjectId of(byte[] contents) {
+        MessageDigest md = newSha1();
+        md.update(contents);
+        HASHED.add(contents.length);
+        return of(md);
+    }
+
+    /** Return the ObjectId of the contents of FILE, which is read in
+     *  chunks of CHUNK_SIZE bytes so that memory use does not depend on
+     *  its size.  Throws IllegalArgumentException in case of problems. */
+    static ObjectId of(File file) {
+        MessageDigest md = newSha1();
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK_SIZE);
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            while (in.read(buf) >= 0) {
+                buf.flip();
+                HASHED.add(buf.remaining());
+                md.update(buf);
+                buf.clear();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return of(md);
+    }
+
+    /** Write my bytes to the position of BUF, advancing it. */
+    void write(ByteBuffer buf) {
+        buf.put(_bytes);
+    }
+
+    /** Return a copy of my bytes. */
+    byte[] bytes() {
+        return _bytes.clone();
+    }
+
+    /** Return my byte K. */
+    byte byteAt(int k) {
+        return _bytes[k];
+    }
+
+    /** Return my hexadecimal numeral, in lower case. */
+    String hex() {
+        return toHex(_bytes, 0);
+    }
+
+    /** Return the first N digits of my hexadecimal numeral. */
+    String abbreviate(int n) {
+        return hex().substring(0, n);
+    }
+
+    /** Return the lower-case hexadecimal numeral for the LENGTH bytes of
+     *  BYTES starting at OFFSET. */
+    static String toHex(byte[] bytes, int offset) {
+        char[] result = new char[UID_LENGTH];
+        for (int i = 0; i < LENGTH; i += 1) {
+            int b = bytes[offset + i] & 0xff;
+            result[2 * i] = DIGITS[b >>> 4];
+            result[2 * i + 1] = DIGITS[b & 0xf];
+        }
+        return new String(result);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        return Arrays.compareUnsigned(_bytes, other._bytes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ObjectId
+            && Arrays.equals(_bytes, ((ObjectId) obj)._bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return _hash;
+    }
+
+    @Override
+    public String toString() {
+        return hex();
+    }
+
+    /** An ObjectId with bytes BYTES, which it takes ownership of. */
+    private ObjectId(byte[] bytes) {
+        _bytes = bytes;
+        /* The bytes of a SHA-1 hash are already uniformly distributed. */
+        _hash = ByteBuffer.wrap(bytes).getInt();
+    }
+
+    /** Hexadecimal digits. */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /** My bytes. */
+    private final byte[] _bytes;
+    /** My hash code. */
+    private final int _hash;
+}
@@ -0,0 +1,115 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of binary object UIDs (see ObjectId) against their hexadecimal
+ *  numerals. */
+public class ObjectIdTest {
+
+    /** Return LENGTH random bytes chosen using RANDOM. */
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] result = new byte[length];
+        random.nextBytes(result);
+        return result;
+    }
+
+    /** Conversions to and from hexadecimal numerals are inverses, accept
+     *  either case, and agree with sha1. */
+    @Test
+    public void hexRoundTrip() {
+        Random random = new Random(40);
+        for (int trial = 0; trial < 1000; trial += 1) {
+            byte[] contents = randomBytes(random, trial);
+            String hex = sha1(contents);
+            ObjectId uid = ObjectId.of(contents);
+            assertEquals(hex, uid.hex());
+            assertEquals(uid, ObjectId.fromHex(hex));
+            assertEquals(uid, ObjectId.fromHex(hex.toUpperCase()));
+            assertEquals(uid.hashCode(), ObjectId.fromHex(hex).hashCode());
+            assertEquals(hex.substring(0, 7), uid.abbreviate(7));
+        }
+        byte[] bytes = new byte[ObjectId.LENGTH + 3];
+        bytes[3] = (byte) 0x80;
+        bytes[ObjectId.LENGTH + 2] = (byte) 0xff;
+        String hex = "80000000000000000000000000000000000000ff";
+        assertEquals(hex, ObjectId.toHex(bytes, 3));
+        assertEquals(ObjectId.fromBytes(bytes, 3), ObjectId.fromHex(hex));
+    }
+
+    /** Malformed numerals are rejected. */
+    @Test
+    public void malformedHex() {
+        String good = sha1("x");
+        String[] bad = { "", good.substring(1), good + "0",
+                         "g" + good.substring(1),
+                         good.substring(0, 39) + " " };
+        for (String hex : bad) {
+            try {
+                ObjectId.fromHex(hex);
+                fail("accepted " + hex);
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    /** ObjectIds compare as their numerals do, so that the high bit of a
+     *  byte makes it larger rather than negative. */
+    @Test
+    public void compareTo() {
+        Random random = new Random(41);
+        List<ObjectId> uids = new ArrayList<>();
+        for (int k = 0; k < 200; k += 1) {
+            uids.add(ObjectId.fromBytes(randomBytes(random, ObjectId.LENGTH),
+                                        0));
+        }
+        for (ObjectId a : uids) {
+            for (ObjectId b : uids) {
+                assertEquals(Integer.signum(a.hex().compareTo(b.hex())),
+                             Integer.signum(a.compareTo(b)));
+                assertEquals(a.hex().equals(b.hex()), a.equals(b));
+            }
+        }
+    }
+
+    /** ObjectIds written to and read from buffers, or taken from the
+     *  middle of a byte array, are unchanged, and own their bytes. */
+    @Test
+    public void readWrite() {
+        Random random = new Random(42);
+        List<ObjectId> uids = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate(50 * ObjectId.LENGTH + 1);
+        buf.put((byte) 7);
+        for (int k = 0; k < 50; k += 1) {
+            ObjectId uid = ObjectId.of(randomBytes(random, 10));
+            uids.add(uid);
+            uid.write(buf);
+        }
+        buf.flip();
+        assertEquals(7, buf.get());
+        byte[] all = buf.array();
+        for (int k = 0; k < 50; k += 1) {
+            ObjectId uid = uids.get(k);
+            assertEquals(uid, ObjectId.read(buf));
+            ObjectId copy = ObjectId.fromBytes(all, 1 + k * ObjectId.LENGTH);
+            assertEquals(uid, copy);
+            for (int i = 0; i < ObjectId.LENGTH; i += 1) {
+                assertEquals(all[1 + k * ObjectId.LENGTH + i],
+                             copy.byteAt(i));
+            }
+        }
+        assertFalse(buf.hasRemaining());
+        ObjectId uid = ObjectId.fromBytes(all, 1);
+        all[1] ^= 1;
+        uid.bytes()[0] ^= 1;
+        assertEquals(uids.get(0), uid);
+    }
+}
@@ -0,0 +1,765 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import static gitlet.Utils.*;
+
+/** The content-addressed object database of a Gitlet repository.  Each
+ *  object (blob or serialized commit) is named by the SHA-1 UID of its
+ *  contents.  An object is either loose, in which case it is the file
+ *  objects/UID in the repository directory, or packed, in which case
+ *  it lives in the repository's PackFile under pack/.  New objects are
+ *  always written loose; the repack operation moves them into the pack.
+ *  A blob may also be stored as a manifest listing the UIDs of chunks
+ *  that are themselves objects (see writeBlob); read reassembles such
+ *  blobs.  A manifest is marked as such where it is stored, in its
+ *  loose object's frame (see Compression) or its pack entry (see
+ *  PackFile), rather than recognized by its contents, which a blob
+ *  could share.  Loose objects are compressed as described in
+ *  Compression; packed objects are stored uncompressed, but usually as
+ *  deltas.  New loose objects are written through the repository's
+ *  Journal, and so appear on disk only when the current command's
+ *  transaction commits.
+ *
+ *  The pack is the exception: repack and receive append to it at once,
+ *  outside the Journal, since packing a large repository's objects
+ *  through it would hold them all until commit.  This is safe because
+ *  the pack is append-only and an object, being named by its contents,
+ *  is never wrong, only possibly unreferenced.  PackFile forces the
+ *  appended entries to disk before putting a new index in place, and
+ *  repack deletes loose objects only once its transaction commits, so
+ *  a crash or an aborted command leaves every object readable, with at
+ *  worst some bytes the index does not cover or some objects nothing
+ *  refers to, which gc reclaims.  Only deletions from the pack (see
+ *  sweep) go through the Journal.
+ *
+ *  The contents returned by read, and the objects decoded by decode,
+ *  are kept in ObjectCaches, so that walks of history that revisit
+ *  commits and FileMap nodes read and decode each once.  The caches
+ *  share the capacity given by the repository's cache.size setting, in
+ *  megabytes (by default 64).
+ */
+class ObjectStore {
+
+    /** The object store of the repository whose metadata is in
+     *  GITLETDIR. */
+    ObjectStore(File gitletDir) {
+        _gitletDir = gitletDir;
+        _objectsDir = join(gitletDir, "objects");
+        _pack = new PackFile(join(gitletDir, "pack"));
+        _journal = Journal.of(gitletDir);
+        long capacity =
+            Long.parseLong(Config.get("cache.size", "64")) << 20;
+        _contents = new ObjectCache<>("contents", capacity / 2);
+        _decoded = new ObjectCache<>("decoded", capacity / 2);
+    }
+
+    /** Return the object store of the repository in the current
+     *  directory. */
+    static ObjectStore local() {
+        if (_local == null) {
+            _local = new ObjectStore(Repository.GITLET_DIR);
+        }
+        return _local;
+    }
+
+    /** Return the object store of the repository whose metadata is in
+     *  GITLETDIR: that of the current repository, or a new one for any
+     *  other. */
+    static ObjectStore of(File gitletDir) {
+        if (gitletDir.equals(Repository.GITLET_DIR)) {
+            return local();
+        }
+        return new ObjectStore(gitletDir);
+    }
+
+    /** Discard the cached object store of the repository in the current
+     *  directory, so that it is reread from disk when next needed. */
+    static void resetLocal() {
+        _local = null;
+    }
+
+    /** Return true iff this store contains the object UID. */
+    boolean contains(ObjectId uid) {
+        return _journal.exists(looseFile(uid)) || _pack.contains(uid);
+    }
+
+    /** Return the contents of object UID, reassembling it from its chunks
+     *  if it is a chunked blob.  The result, which may be cached, must not
+     *  be modified.  Throws IllegalArgumentException if there is no such
+     *  object. */
+    byte[] read(ObjectId uid) {
+        byte[] result = _contents.get(uid);
+        if (result == null) {
+            result = assemble(uid);
+            _contents.put(uid, result, result.length + ENTRY_OVERHEAD);
+        }
+        return result;
+    }
+
+    /** Return the object UID decoded as an instance of EXPECTEDCLASS (see
+     *  Codecs), such as a Commit.  The result, which may be cached, must
+     *  not be modified.  Throws IllegalArgumentException if there is no
+     *  such object or it is not of that class. */
+    <T extends Serializable> T decode(ObjectId uid, Class<T> expectedClass) {
+        Object cached = _decoded.get(uid);
+        if (expectedClass.isInstance(cached)) {
+            return expectedClass.cast(cached);
+        }
+        byte[] data = assemble(uid);
+        T result = Codecs.decode(data, expectedClass);
+        _decoded.put(uid, result, data.length + ENTRY_OVERHEAD);
+        return result;
+    }
+
+    /** Return the contents of object UID as for read, without caching
+     *  them. */
+    private byte[] assemble(ObjectId uid) {
+        Stored stored = readStored(uid);
+        if (!stored.manifest) {
+            return stored.bytes;
+        }
+        ByteBuffer manifest = ByteBuffer.wrap(stored.bytes);
+        ByteBuffer result = ByteBuffer.allocate((int) manifest.getLong());
+        for (int n = manifest.getInt(); n > 0; n -= 1) {
+            result.put(readStored(nextChunk(manifest)).bytes);
+        }
+        return result.array();
+    }
+
+    /** Write the contents of object UID to the file DEST, creating or
+     *  overwriting it as needed, without passing them through the heap
+     *  where possible.  An uncompressed loose object, or a packed object
+     *  stored whole, is copied from its file with FileChannel.transferTo;
+     *  a compressed loose object is decompressed a block at a time; and a
+     *  chunked blob is written one chunk at a time.  Other objects, such
+     *  as deltas and objects written by the current transaction, are read
+     *  into memory first.  The contents are written to a temporary file
+     *  beside DEST, created as an ordinary new file would be, that then
+     *  replaces DEST, so that DEST is left as it was if the object is
+     *  missing or cannot be read.  Throws IllegalArgumentException in
+     *  that case. */
+    void copyTo(ObjectId uid, File dest) {
+        if (!contains(uid)) {
+            throw new IllegalArgumentException("no such object: " + uid);
+        }
+        File tmp = new File(dest.getAbsoluteFile().getParentFile(),
+                            "." + dest.getName() + ".gitlet-tmp");
+        try {
+            try (FileChannel out =
+                 FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                                  StandardOpenOption.READ,
+                                  StandardOpenOption.WRITE,
+                                  StandardOpenOption.TRUNCATE_EXISTING)) {
+                copyTo(uid, out);
+            }
+            try {
+                Files.move(tmp.toPath(), dest.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Files.move(tmp.toPath(), dest.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /** Write the contents of object UID to OUT, which is empty, as for
+     *  copyTo(UID, DEST). */
+    private void copyTo(ObjectId uid, FileChannel out) throws IOException {
+        if (streamTo(uid, out)) {
+            return;
+        }
+        out.truncate(0);
+        out.position(0);
+        Stored stored = readStored(uid);
+        if (!stored.manifest) {
+            writeFully(out, ByteBuffer.wrap(stored.bytes));
+            return;
+        }
+        ByteBuffer manifest = ByteBuffer.wrap(stored.bytes);
+        manifest.getLong();
+        for (int n = manifest.getInt(); n > 0; n -= 1) {
+            ObjectId chunk = nextChunk(manifest);
+            if (!streamTo(chunk, out)) {
+                writeFully(out, ByteBuffer.wrap(readStored(chunk).bytes));
+            }
+        }
+    }
+
+    /** Append the contents of object UID to OUT without staging them in
+     *  the heap, returning true, if that is possible.  Otherwise, or if
+     *  the object is a chunked blob's manifest, return false, leaving
+     *  OUT's position unchanged but its contents beyond that position
+     *  unspecified. */
+    private boolean streamTo(ObjectId uid, FileChannel out) throws IOException {
+        long start = out.position();
+        File loose = looseFile(uid);
+        if (_journal.pending(loose) != null) {
+            return false;
+        } else if (loose.isFile()) {
+            try (FileChannel in = FileChannel.open(loose.toPath())) {
+                ByteBuffer header = ByteBuffer.allocate(Compression.HEADER);
+                while (header.hasRemaining() && in.read(header) >= 0) {
+                    continue;
+                }
+                byte[] head = Arrays.copyOf(header.array(), header.position());
+                if (!Compression.isFramed(head)) {
+                    transfer(in, 0, in.size(), out);
+                } else if (Compression.isManifest(head)) {
+                    return false;
+                } else if (head[3] == Compression.NONE) {
+                    transfer(in, Compression.HEADER,
+                             in.size() - Compression.HEADER, out);
+                } else {
+                    in.position(0);
+                    Compression.decompress(in, out);
+                }
+            }
+        } else if (!_pack.transferTo(uid, out)) {
+            return false;
+        }
+        OBJECTS_READ.add(1);
+        BYTES_READ.add(out.position() - start);
+        return true;
+    }
+
+    /** Append the LENGTH bytes of IN starting at POSITION to OUT. */
+    private static void transfer(FileChannel in, long position, long length,
+                                 FileChannel out) throws IOException {
+        for (long n = 0; n < length; ) {
+            long k = in.transferTo(position + n, length - n, out);
+            if (k <= 0) {
+                throw new IOException("short object file");
+            }
+            n += k;
+        }
+    }
+
+    /** Write all of BUF to OUT. */
+    private static void writeFully(FileChannel out, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /** Store CONTENTS as an object, if not already present, and return its
+     *  UID. */
+    ObjectId write(byte[] contents) {
+        ObjectId uid = ObjectId.of(contents);
+        if (!contains(uid)) {
+            store(uid, contents);
+        }
+        return uid;
+    }
+
+    /** Store the contents of FILE as a blob, if not already present, and
+     *  return its UID, which is the same as that of
+     *  write(readContents(FILE)).  Equivalent to
+     *  store(prepareBlob(FILE)). */
+    ObjectId writeBlob(File file) {
+        return store(prepareBlob(file));
+    }
+
+    /** Return the contents of FILE as a blob, read, hashed, and compressed
+     *  but not yet stored, for store.  FILE is read in pieces while it is
+     *  hashed, so that memory use does not depend on its size.  If the
+     *  repository's blob.layout setting is "chunked", the blob consists of
+     *  content-defined chunks (see Chunker) and a manifest listing them;
+     *  otherwise, it is one object.  Blobs larger than INLINE_LIMIT, and
+     *  the chunks of chunked blobs, are compressed into temporary files
+     *  rather than kept in memory.  Objects
+     *  already on disk are not compressed again.  This method records
+     *  nothing in the current transaction, and so may be called from
+     *  several threads at once; its only use of the Journal is for
+     *  temporary files (see Journal.newTempFile), which other processes
+     *  leave alone because the caller holds the repository's lock (see
+     *  Journal.lock). */
+    PreparedBlob prepareBlob(File file) {
+        return prepareBlob(file, Config.get("blob.layout", "whole")
+                           .equals("chunked"));
+    }
+
+    /** As for prepareBlob(FILE), but making a chunked blob iff CHUNKED,
+     *  whatever the repository's blob.layout setting. */
+    PreparedBlob prepareBlob(File file, boolean chunked) {
+        PreparedBlob result = new PreparedBlob();
+        result.length = file.length();
+        int codec = Compression.configuredCodec(),
+            level = Compression.configuredLevel();
+        if (chunked) {
+            prepareChunks(file, result, codec, level);
+        } else if (file.length() <= INLINE_LIMIT) {
+            byte[] contents = readContents(file);
+            result.uid = ObjectId.of(contents);
+            if (!onDisk(result.uid)) {
+                result.add(result.uid,
+                           Compression.encode(contents, codec, level));
+            }
+        } else {
+            File tmp = _journal.newTempFile();
+            MessageDigest md = newSha1();
+            try (FileChannel in = FileChannel.open(file.toPath());
+                 FileChannel out = FileChannel.open(tmp.toPath(),
+                                                    StandardOpenOption.WRITE)) {
+                Compression.compress(in, out, codec, level, md);
+            } catch (IOException excp) {
+                tmp.delete();
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            result.uid = ObjectId.of(md);
+            if (onDisk(result.uid)) {
+                tmp.delete();
+            } else {
+                result.addFile(result.uid, tmp);
+            }
+        }
+        return result;
+    }
+
+    /** Store BLOB, as returned by prepareBlob, as part of the current
+     *  transaction, skipping any of its objects already present, and
+     *  return its UID. */
+    ObjectId store(PreparedBlob blob) {
+        BLOB_BYTES.add(blob.length);
+        for (int k = 0; k < blob.fileIds.size(); k += 1) {
+            File tmp = blob.files.get(k);
+            if (contains(blob.fileIds.get(k))) {
+                tmp.delete();
+            } else {
+                _objectsDir.mkdirs();
+                OBJECTS_WRITTEN.add(1);
+                BYTES_WRITTEN.add(tmp.length());
+                _journal.move(tmp, looseFile(blob.fileIds.get(k)));
+            }
+        }
+        for (int k = 0; k < blob.ids.size(); k += 1) {
+            if (!contains(blob.ids.get(k))) {
+                storeEncoded(blob.ids.get(k), blob.stored.get(k));
+            }
+        }
+        return blob.uid;
+    }
+
+    /** Fill in RESULT with the chunks of FILE and their manifest, encoded
+     *  with CODEC at LEVEL.  Each new chunk is written to a temporary file
+     *  as soon as it is found, so that only the manifest is held in
+     *  memory. */
+    private void prepareChunks(File file, PreparedBlob result, int codec,
+                               int level) {
+        MessageDigest md = newSha1();
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        int count = 0;
+        long length = 0;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            Chunker chunker = new Chunker(in);
+            for (byte[] chunk = chunker.next(); chunk != null;
+                 chunk = chunker.next()) {
+                md.update(chunk);
+                HASHED.add(chunk.length);
+                ObjectId uid = ObjectId.of(chunk);
+                if (!onDisk(uid)) {
+                    File tmp = _journal.newTempFile();
+                    result.addFile(uid, tmp);
+                    writeContents(tmp, (Object) Compression.encode(chunk, codec,
+                                                                   level));
+                }
+                entries.write(ByteBuffer.allocate(MANIFEST_ENTRY)
+                              .put(uid.bytes()).putInt(chunk.length)
+                              .array());
+                count += 1;
+                length += chunk.length;
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            for (File tmp : result.files) {
+                tmp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        result.uid = ObjectId.of(md);
+        if (!onDisk(result.uid)) {
+            byte[] manifest =
+                ByteBuffer.allocate(MANIFEST_HEADER + count * MANIFEST_ENTRY)
+                .putLong(length).putInt(count).put(entries.toByteArray())
+                .array();
+            result.add(result.uid,
+                       Compression.encode(manifest, codec, level, true));
+        }
+    }
+
+    /** Return true iff object UID is on disk, loose or packed, ignoring
+     *  the current transaction.  May be called from several threads. */
+    boolean onDisk(ObjectId uid) {
+        return looseFile(uid).isFile() || _pack.contains(uid);
+    }
+
+    /** Return the UID of the next chunk in MANIFEST, advancing past its
+     *  entry. */
+    private static ObjectId nextChunk(ByteBuffer manifest) {
+        ObjectId result = ObjectId.read(manifest);
+        manifest.getInt();
+        return result;
+    }
+
+    /** Write CONTENTS as the loose object UID, compressed as configured
+     *  for the repository, as part of the current transaction. */
+    private void store(ObjectId uid, byte[] contents) {
+        storeEncoded(uid,
+                     Compression.encode(contents,
+                                        Compression.configuredCodec(),
+                                        Compression.configuredLevel()));
+    }
+
+    /** Write STORED, already compressed, as the loose object UID, as part
+     *  of the current transaction. */
+    private void storeEncoded(ObjectId uid, byte[] stored) {
+        _objectsDir.mkdirs();
+        _journal.write(looseFile(uid), stored);
+        OBJECTS_WRITTEN.add(1);
+        BYTES_WRITTEN.add(stored.length);
+    }
+
+    /** Return the stored form of object UID, which for a chunked blob is
+     *  its manifest, after decompressing it if needed. */
+    Stored readStored(ObjectId uid) {
+        File loose = looseFile(uid);
+        Stored result;
+        if (_journal.exists(loose)) {
+            result = decodeLoose(_journal.read(loose));
+        } else {
+            result = _pack.read(uid);
+            if (result == null) {
+                throw new IllegalArgumentException("no such object: " + uid);
+            }
+        }
+        OBJECTS_READ.add(1);
+        BYTES_READ.add(result.bytes.length);
+        return result;
+    }
+
+    /** Return the stored form of the loose object whose file contains
+     *  DATA. */
+    private static Stored decodeLoose(byte[] data) {
+        return new Stored(Compression.decode(data),
+                          Compression.isManifest(data));
+    }
+
+    /** Return a description of the blob storage done by the current
+     *  command (see Metrics): the total size of blobs stored, the bytes
+     *  of objects actually written, and their ratio. */
+    static String blobReport() {
+        long stored = BLOB_BYTES.get(), written = BYTES_WRITTEN.get();
+        return String.format("blobs: %d bytes stored, %d bytes written, "
+                             + "dedup ratio %.2f", stored, written,
+                             written == 0 ? 1.0 : (double) stored / written);
+    }
+
+    /** Return the UIDs of the chunks of object UID if it is a chunked
+     *  blob, and otherwise an empty list. */
+    List<ObjectId> chunks(ObjectId uid) {
+        return chunks(readStored(uid));
+    }
+
+    /** Return the UIDs of the chunks listed in STORED, the stored form of
+     *  an object, if it is the manifest of a chunked blob, and otherwise
+     *  an empty list. */
+    static List<ObjectId> chunks(Stored stored) {
+        List<ObjectId> result = new ArrayList<>();
+        if (stored.manifest) {
+            ByteBuffer manifest = ByteBuffer.wrap(stored.bytes);
+            manifest.getLong();
+            for (int n = manifest.getInt(); n > 0; n -= 1) {
+                result.add(nextChunk(manifest));
+            }
+        }
+        return result;
+    }
+
+    /** Return the UIDs of all loose objects, in sorted order. */
+    List<ObjectId> looseIds() {
+        List<ObjectId> result = new ArrayList<>();
+        List<String> names = plainFilenamesIn(_objectsDir);
+        if (names != null) {
+            for (String name : names) {
+                if (name.length() == UID_LENGTH) {
+                    result.add(ObjectId.fromHex(name));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the UIDs of all objects, loose or packed, in sorted
+     *  order. */
+    List<ObjectId> ids() {
+        TreeSet<ObjectId> result = new TreeSet<>(looseIds());
+        result.addAll(_pack.ids());
+        return new ArrayList<>(result);
+    }
+
+    /** Return the pack holding this store's packed objects. */
+    PackFile pack() {
+        return _pack;
+    }
+
+    /** Move the loose objects into the pack, returning the number moved.
+     *  Like sweep, this reads and appends the objects BATCH_SIZE bytes
+     *  at a time, so that memory use does not grow with their total
+     *  size.  Objects longer than PACK_LIMIT stay loose, since each
+     *  object is read whole.  The loose files are deleted only once the
+     *  current transaction commits, by which time the pack's index lists
+     *  their objects. */
+    int repack() {
+        List<ObjectId> ids = looseIds();
+        List<File> moved = new ArrayList<>();
+        TreeMap<ObjectId, Stored> batch = new TreeMap<>();
+        long batchSize = 0;
+        for (int k = 0; k < ids.size(); k += 1) {
+            File loose = looseFile(ids.get(k));
+            if (contentLength(loose) <= PACK_LIMIT) {
+                Stored stored = decodeLoose(readContents(loose));
+                batch.put(ids.get(k), stored);
+                batchSize += stored.bytes.length;
+                moved.add(loose);
+            }
+            if (batchSize > BATCH_SIZE || k == ids.size() - 1) {
+                _pack.append(batch);
+                batch.clear();
+                batchSize = 0;
+            }
+        }
+        _journal.afterCommit(() -> moved.forEach(File::delete));
+        return moved.size();
+    }
+
+    /** Return the length of the contents of the loose object in FILE,
+     *  from its frame header (see Compression) if it has one. */
+    private static long contentLength(File file) {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            ByteBuffer header = ByteBuffer.allocate(Compression.HEADER);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                continue;
+            }
+            byte[] head = Arrays.copyOf(header.array(), header.position());
+            return Compression.isFramed(head) ? header.getLong(4) : in.size();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Add to the pack those of OBJECTS, a mapping of UIDs to stored
+     *  forms (see readStored), that this store lacks, returning the
+     *  number of bytes written to the pack and its index.  Like repack,
+     *  this appends to the pack directly rather than through the
+     *  Journal, which is safe because unreferenced objects are
+     *  harmless. */
+    long receive(Map<ObjectId, Stored> objects) {
+        TreeMap<ObjectId, Stored> missing = new TreeMap<>();
+        for (Map.Entry<ObjectId, Stored> e : objects.entrySet()) {
+            if (!contains(e.getKey())) {
+                missing.put(e.getKey(), e.getValue());
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        long before = _pack.length() - _pack.indexLength();
+        _pack.append(missing);
+        OBJECTS_WRITTEN.add(missing.size());
+        BYTES_WRITTEN.add(_pack.length() - before);
+        return _pack.length() - before;
+    }
+
+    /** Delete, as part of the current transaction, every object whose
+     *  UID does not satisfy LIVE, returning the number of bytes freed.
+     *  If any packed object is deleted, the live ones are copied to a new
+     *  pack, BATCH_SIZE bytes at a time, which replaces the old one. */
+    long sweep(Predicate<ObjectId> live) {
+        long freed = 0;
+        List<File> dead = new ArrayList<>();
+        for (ObjectId uid : looseIds()) {
+            if (!live.test(uid)) {
+                dead.add(looseFile(uid));
+                freed += looseFile(uid).length();
+            }
+        }
+        _journal.afterCommit(() -> dead.forEach(File::delete));
+
+        int n = _pack.size();
+        int kept = 0;
+        for (int k = 0; k < n; k += 1) {
+            kept += live.test(_pack.id(k)) ? 1 : 0;
+        }
+        if (!dead.isEmpty() || kept < n) {
+            _journal.afterCommit(() -> {
+                _contents.clear();
+                _decoded.clear();
+            });
+        }
+        if (kept < n) {
+            File dir = join(_gitletDir, "pack.new");
+            List<String> stale = plainFilenamesIn(dir);
+            if (stale != null) {
+                for (String name : stale) {
+                    join(dir, name).delete();
+                }
+            }
+            PackFile fresh = new PackFile(dir);
+            TreeMap<ObjectId, Stored> batch = new TreeMap<>();
+            long batchSize = 0;
+            for (int k = 0; k < n; k += 1) {
+                ObjectId uid = _pack.id(k);
+                if (live.test(uid)) {
+                    Stored stored = _pack.read(uid);
+                    batch.put(uid, stored);
+                    batchSize += stored.bytes.length;
+                }
+                if (batchSize > BATCH_SIZE || k == n - 1) {
+                    fresh.append(batch);
+                    batch.clear();
+                    batchSize = 0;
+                }
+            }
+            freed += _pack.length() - fresh.length();
+            _pack.replaceWith(fresh, _journal);
+            _journal.afterCommit(dir::delete);
+        }
+        return freed;
+    }
+
+    /** Return the file that holds the loose object UID. */
+    File looseFile(ObjectId uid) {
+        return join(_objectsDir, uid.hex());
+    }
+
+    /** The stored form of an object: its contents, or for a chunked
+     *  blob, its manifest,
+     *
+     *      length (8 bytes)  #chunks (4 bytes)
+     *      (chunk UID  chunk length (4 bytes))...
+     *
+     *  where length is the total length of the blob. */
+    static class Stored {
+        /** The stored form BYTES, which is a manifest iff MANIFEST. */
+        Stored(byte[] bytes, boolean manifest) {
+            this.bytes = bytes;
+            this.manifest = manifest;
+        }
+
+        /** The contents or manifest. */
+        final byte[] bytes;
+        /** True iff BYTES is a manifest. */
+        final boolean manifest;
+    }
+
+    /** A blob read, hashed, and compressed by prepareBlob, ready to be
+     *  stored. */
+    static class PreparedBlob {
+        /** Return the UID of the blob. */
+        ObjectId uid() {
+            return uid;
+        }
+
+        /** Return the length in bytes of the blob. */
+        long length() {
+            return length;
+        }
+
+        /** Add the object UID, with stored contents STORED, to those to
+         *  be written. */
+        private void add(ObjectId uid, byte[] stored) {
+            ids.add(uid);
+            this.stored.add(stored);
+        }
+
+        /** Add the object UID, whose stored contents are in the temporary
+         *  file TMP, to those to be moved into place. */
+        private void addFile(ObjectId uid, File tmp) {
+            fileIds.add(uid);
+            files.add(tmp);
+        }
+
+        /** The UID of the blob. */
+        private ObjectId uid;
+        /** Its length in bytes. */
+        private long length;
+        /** Objects to be written that were not on disk and are held in
+         *  memory: a small blob, or a chunked blob's manifest. */
+        private final List<ObjectId> ids = new ArrayList<>();
+        /** Their compressed contents. */
+        private final List<byte[]> stored = new ArrayList<>();
+        /** Objects to be moved into place that were not on disk and are
+         *  held in temporary files: a large blob, or a chunked blob's
+         *  chunks. */
+        private final List<ObjectId> fileIds = new ArrayList<>();
+        /** The temporary files holding their compressed contents. */
+        private final List<File> files = new ArrayList<>();
+    }
+
+    /** Length of the header of a chunked blob's manifest. */
+    private static final int MANIFEST_HEADER = 12;
+    /** Length of a manifest entry. */
+    private static final int MANIFEST_ENTRY = ObjectId.LENGTH + 4;
+    /** Approximate number of bytes of objects that repack and sweep copy
+     *  to a pack at once. */
+    private static final long BATCH_SIZE = 32 << 20;
+    /** Length of the largest object that repack moves into the pack,
+     *  well below the 2 GiB limit on a pack entry (see PackFile). */
+    private static final long PACK_LIMIT = 512 << 20;
+    /** Size of the largest blob that writeBlob compresses in memory. */
+    private static final long INLINE_LIMIT = 1 << 20;
+    /** Approximate bytes used by a cache entry beyond the object's
+     *  contents. */
+    private static final long ENTRY_OVERHEAD = 64;
+
+    /** Number of objects read, and their stored sizes. */
+    private static final Metrics.Counter OBJECTS_READ =
+        Metrics.counter("objects.read"),
+        BYTES_READ = Metrics.counter("objects.read.bytes");
+    /** Number of new objects written, and their stored sizes. */
+    private static final Metrics.Counter OBJECTS_WRITTEN =
+        Metrics.counter("objects.written"),
+        BYTES_WRITTEN = Metrics.counter("objects.written.bytes");
+    /** Total size of blobs passed to writeBlob. */
+    private static final Metrics.Counter BLOB_BYTES =
+        Metrics.counter("blobs.bytes");
+
+    /** Store for the current repository, or null if not yet created. */
+    private static ObjectStore _local;
+
+    /** The repository directory. */
+    private final File _gitletDir;
+    /** Directory of loose objects. */
+    private final File _objectsDir;
+    /** Pack of packed objects. */
+    private final PackFile _pack;
+    /** Journal through which objects are written. */
+    private final Journal _journal;
+    /** Cached results of read. */
+    private final ObjectCache<byte[]> _contents;
+    /** Cached results of decode. */
+    private final ObjectCache<Object> _decoded;
+}
@@ -0,0 +1,205 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the object store (see ObjectStore): blobs hashed and written
+ *  from working files, whole or in content-defined chunks (see
+ *  Chunker), in a temporary repository. */
+public class ObjectStoreTest {
+
+    /** The temporary directory of the current test, holding working
+     *  files and, in .gitlet, the repository. */
+    private File _dir;
+    /** The objects of the repository. */
+    private ObjectStore _store;
+
+    @Before
+    public void makeDirectory() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-objects").toFile();
+        _store = new ObjectStore(join(_dir, ".gitlet"));
+    }
+
+    @After
+    public void removeDirectory() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Return a working file NAME holding LENGTH bytes chosen using
+     *  RANDOM. */
+    private File workingFile(String name, Random random, int length) {
+        byte[] contents = new byte[length];
+        random.nextBytes(contents);
+        File file = join(_dir, name);
+        writeContents(file, (Object) contents);
+        return file;
+    }
+
+    /** A blob's UID, found while streaming a file in pieces, is the hash
+     *  of its whole contents, for files that fit in one buffer and for
+     *  those that take many. */
+    @Test
+    public void streamingHash() {
+        Random random = new Random(20);
+        int[] lengths = { 0, 1, 100, CHUNK_SIZE - 1, CHUNK_SIZE,
+                          (1 << 20) + 1, 3 * (1 << 20) + 17 };
+        for (int length : lengths) {
+            File file = workingFile("f" + length, random, length);
+            byte[] contents = readContents(file);
+            ObjectId expected = ObjectId.fromHex(sha1(contents));
+            assertEquals(expected, _store.prepareBlob(file).uid());
+            assertEquals(expected, _store.writeBlob(file));
+            assertArrayEquals(contents, _store.read(expected));
+            assertArrayEquals(contents,
+                              new ObjectStore(join(_dir, ".gitlet"))
+                              .read(expected));
+        }
+    }
+
+    /** Return the chunks into which Chunker divides CONTENTS, checking
+     *  their sizes and that together they make up CONTENTS. */
+    private static List<byte[]> chunks(byte[] contents) throws IOException {
+        Chunker chunker = new Chunker(new ByteArrayInputStream(contents));
+        List<byte[]> result = new ArrayList<>();
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (byte[] chunk = chunker.next(); chunk != null;
+             chunk = chunker.next()) {
+            assertTrue(chunk.length <= Chunker.MAX_SIZE);
+            if (!result.isEmpty()) {
+                assertTrue(result.get(result.size() - 1).length
+                           >= Chunker.MIN_SIZE);
+            }
+            result.add(chunk);
+            all.write(chunk);
+        }
+        assertArrayEquals(contents, all.toByteArray());
+        return result;
+    }
+
+    /** An insertion changes only the chunks around it: those before it
+     *  are unchanged, and those after it soon fall back into step. */
+    @Test
+    public void chunkBoundariesStable() throws IOException {
+        Random random = new Random(21);
+        byte[] before = new byte[1 << 20];
+        random.nextBytes(before);
+        byte[] inserted = new byte[100];
+        random.nextBytes(inserted);
+        int at = before.length / 2;
+        ByteArrayOutputStream edited = new ByteArrayOutputStream();
+        edited.write(before, 0, at);
+        edited.write(inserted);
+        edited.write(before, at, before.length - at);
+
+        List<byte[]> old = chunks(before), now = chunks(edited.toByteArray());
+        assertTrue(old.size() > 50);
+        int prefix = 0;
+        while (Arrays.equals(old.get(prefix), now.get(prefix))) {
+            prefix += 1;
+        }
+        int suffix = 0;
+        while (Arrays.equals(old.get(old.size() - 1 - suffix),
+                             now.get(now.size() - 1 - suffix))) {
+            suffix += 1;
+        }
+        assertTrue(old.size() - prefix - suffix <= 2);
+        assertTrue(now.size() - prefix - suffix <= 3);
+    }
+
+    /** A chunked blob reads back, and is copied out through its manifest
+     *  by copyTo, whether its objects are loose or packed; a new version
+     *  of it adds only a few chunks. */
+    @Test
+    public void chunkedBlobRoundTrip() throws IOException {
+        Random random = new Random(22);
+        File file = workingFile("big", random, 1 << 20);
+        byte[] contents = readContents(file);
+        ObjectId uid = _store.store(_store.prepareBlob(file, true));
+        assertEquals(ObjectId.fromHex(sha1(contents)), uid);
+        List<ObjectId> chunks = _store.chunks(uid);
+        assertTrue(chunks.size() > 50);
+        assertEquals(chunks.size() + 1, _store.looseIds().size());
+        checkCopies(_store, uid, contents);
+
+        byte[] edited = Arrays.copyOf(contents, contents.length + 10);
+        System.arraycopy(contents, 5000, edited, 5010,
+                         contents.length - 5000);
+        writeContents(file, (Object) edited);
+        int loose = _store.looseIds().size();
+        ObjectId newUid = _store.store(_store.prepareBlob(file, true));
+        assertTrue(_store.looseIds().size() - loose <= 4);
+        checkCopies(_store, newUid, edited);
+
+        _store.repack();
+        ObjectStore reread = new ObjectStore(join(_dir, ".gitlet"));
+        assertEquals(List.of(), reread.looseIds());
+        checkCopies(reread, uid, contents);
+        checkCopies(reread, newUid, edited);
+    }
+
+    /** Check that object UID of STORE holds CONTENTS, both when read and
+     *  when copied to a file. */
+    private void checkCopies(ObjectStore store, ObjectId uid,
+                             byte[] contents) {
+        assertArrayEquals(contents, store.read(uid));
+        File copy = join(_dir, "copy");
+        writeContents(copy, "old contents, longer than none");
+        store.copyTo(uid, copy);
+        assertArrayEquals(contents, readContents(copy));
+    }
+
+    /** A copy of a missing object, or of a chunked blob one of whose
+     *  chunks is missing, fails without touching the destination. */
+    @Test
+    public void failedCopyKeepsDestination() {
+        Random random = new Random(23);
+        File file = workingFile("big", random, 1 << 20);
+        ObjectId uid = _store.store(_store.prepareBlob(file, true));
+        List<ObjectId> chunks = _store.chunks(uid);
+        File copy = join(_dir, "copy");
+        writeContents(copy, "precious");
+
+        ObjectId absent = ObjectId.of("no such object".getBytes());
+        assertCopyFails(_store, absent, copy);
+        _store.looseFile(chunks.get(chunks.size() / 2)).delete();
+        assertCopyFails(new ObjectStore(join(_dir, ".gitlet")), uid, copy);
+        assertEquals("precious", readContentsAsString(copy));
+        assertEquals(List.of("big", "copy"), plainFilenamesIn(_dir));
+    }
+
+    /** Check that copying object UID of STORE to DEST fails. */
+    private static void assertCopyFails(ObjectStore store, ObjectId uid,
+                                        File dest) {
+        try {
+            store.copyTo(uid, dest);
+            fail("copied " + uid);
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+}
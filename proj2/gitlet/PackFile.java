@@ -0,0 +1,380 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static gitlet.Utils.*;
+
+/** An append-only store of many objects in a single file, with a sorted
+ *  index for lookup.  The pack file, objects.pack, consists of the
+ *  4-byte header PACK_MAGIC followed by entries of the form
+ *
+ *      kind (1 byte)  payload length (4 bytes)  [base offset (8 bytes)]
+ *      payload
+ *
+ *  where kind is FULL, in which case the payload is the object's
+ *  contents, or DELTA, in which case the payload is a Delta against the
+ *  entry at the given base offset, possibly with the bit MANIFEST set
+ *  to mark the object as a chunked blob's manifest (see
+ *  ObjectStore.Stored).  Since lengths are 4-byte ints, as are those of
+ *  the byte arrays appended, no entry reaches 2 GiB; ObjectStore.repack
+ *  leaves objects anywhere near that size loose.  The index, objects.idx,
+ *  consists of the header IDX_MAGIC, an entry count, and then that many
+ *  (20-byte UID, 8-byte offset) records sorted by UID, so that an object
+ *  is found by binary search over the memory-mapped index.
+ *
+ *  Entries are only ever appended to the pack, which is forced to disk;
+ *  the index is then rewritten to a temporary file, also forced to disk,
+ *  and renamed into place, so that a crash leaves at worst some
+ *  unreferenced bytes at the end of the pack.
+ *
+ *  The file objects.bitmap beside them holds reachability bitmaps over
+ *  the positions of the objects in the index (see ReachabilityIndex).
+ *  Since an append or replacement moves objects to new positions, it
+ *  first deletes that file.
+ */
+class PackFile {
+
+    /** Header of a pack file. */
+    private static final byte[] PACK_MAGIC = { 'G', 'P', 'A', 'K' };
+    /** Header of a pack index. */
+    private static final byte[] IDX_MAGIC = { 'G', 'I', 'D', 'X' };
+    /** Length of an index header. */
+    private static final int IDX_HEADER = IDX_MAGIC.length + 4;
+    /** Length of a binary UID. */
+    private static final int ID_BYTES = ObjectId.LENGTH;
+    /** Length of an index record. */
+    private static final int RECORD = ID_BYTES + 8;
+
+    /** Entry kind for an object stored whole. */
+    private static final int FULL = 0;
+    /** Entry kind for an object stored as a delta. */
+    private static final int DELTA = 1;
+    /** Flag in the kind of an entry holding a chunked blob's manifest. */
+    private static final int MANIFEST = 0x40;
+
+    /** Number of preceding objects considered as delta bases. */
+    private static final int WINDOW = 10;
+    /** Maximum length of a chain of deltas. */
+    private static final int MAX_DEPTH = 16;
+
+    /** A pack whose files reside in DIR, which need not exist yet. */
+    PackFile(File dir) {
+        _dir = dir;
+        _packFile = join(dir, "objects.pack");
+        _indexFile = join(dir, "objects.idx");
+        _bitmapFile = join(dir, "objects.bitmap");
+    }
+
+    /** Return the number of objects in this pack. */
+    int size() {
+        return index() == null ? 0 : _count;
+    }
+
+    /** Return true iff this pack contains the object UID. */
+    boolean contains(ObjectId uid) {
+        return find(uid.bytes()) >= 0;
+    }
+
+    /** Return the stored form of the object UID, or null if this pack
+     *  does not contain it. */
+    ObjectStore.Stored read(ObjectId uid) {
+        int k = find(uid.bytes());
+        if (k < 0) {
+            return null;
+        }
+        try (FileChannel pack = FileChannel.open(_packFile.toPath())) {
+            return readEntry(pack, _index.getLong(IDX_HEADER + k * RECORD
+                                                  + ID_BYTES));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the position of object UID in the sorted list of this pack's
+     *  objects, or -1 if this pack does not contain it. */
+    int position(ObjectId uid) {
+        return find(uid.bytes());
+    }
+
+    /** Return the UID of the object at position K in the sorted list of
+     *  this pack's objects. */
+    ObjectId id(int k) {
+        return ObjectId.read(index().duplicate()
+                             .position(IDX_HEADER + k * RECORD));
+    }
+
+    /** Return the size in bytes of this pack's index file. */
+    long indexLength() {
+        return _indexFile.length();
+    }
+
+    /** Return the file holding the reachability bitmaps over this pack's
+     *  positions, which need not exist. */
+    File bitmapFile() {
+        return _bitmapFile;
+    }
+
+    /** Return the size in bytes of this pack's pack file. */
+    long packLength() {
+        return _packFile.length();
+    }
+
+    /** Return the total size in bytes of this pack's files. */
+    long length() {
+        return _packFile.length() + _indexFile.length();
+    }
+
+    /** Replace this pack's files with those of OTHER, as part of
+     *  JOURNAL's current transaction.  If OTHER is empty, this pack is
+     *  deleted. */
+    void replaceWith(PackFile other, Journal journal) {
+        _bitmapFile.delete();
+        if (other.size() == 0) {
+            journal.afterCommit(() -> {
+                _indexFile.delete();
+                _packFile.delete();
+            });
+        } else {
+            journal.move(other._packFile, _packFile);
+            journal.move(other._indexFile, _indexFile);
+        }
+        journal.afterCommit(() -> _index = null);
+    }
+
+    /** If this pack contains object UID stored whole, and it is not a
+     *  manifest, append its contents to OUT with FileChannel.transferTo
+     *  and return true.  Otherwise, return false. */
+    boolean transferTo(ObjectId uid, FileChannel out) throws IOException {
+        int k = find(uid.bytes());
+        if (k < 0) {
+            return false;
+        }
+        long offset = _index.getLong(IDX_HEADER + k * RECORD + ID_BYTES);
+        try (FileChannel pack = FileChannel.open(_packFile.toPath())) {
+            ByteBuffer header = ByteBuffer.allocate(5);
+            pack.read(header, offset);
+            header.flip();
+            if (header.get() != FULL) {
+                return false;
+            }
+            long length = header.getInt();
+            for (long n = 0; n < length; ) {
+                long m = pack.transferTo(offset + 5 + n, length - n, out);
+                if (m <= 0) {
+                    throw new IOException("truncated pack entry");
+                }
+                n += m;
+            }
+            return true;
+        }
+    }
+
+    /** Return the UIDs of all objects in this pack, in sorted order. */
+    List<ObjectId> ids() {
+        ArrayList<ObjectId> result = new ArrayList<>();
+        for (int k = 0; k < size(); k += 1) {
+            result.add(id(k));
+        }
+        return result;
+    }
+
+    /** Append the objects in OBJECTS, a mapping of UIDs to stored forms,
+     *  to this pack, storing each as a delta against a similar object
+     *  where that saves space.  Objects already in the pack are
+     *  skipped. */
+    void append(Map<ObjectId, ObjectStore.Stored> objects) {
+        List<Map.Entry<ObjectId, ObjectStore.Stored>> todo =
+            new ArrayList<>();
+        for (Map.Entry<ObjectId, ObjectStore.Stored> e : objects.entrySet()) {
+            if (!contains(e.getKey())) {
+                todo.add(e);
+            }
+        }
+        if (todo.isEmpty()) {
+            return;
+        }
+        /* Larger objects first, so that deltas mostly delete. */
+        todo.sort(Comparator.comparingInt(
+            (Map.Entry<ObjectId, ObjectStore.Stored> e) ->
+                e.getValue().bytes.length).reversed());
+
+        _dir.mkdirs();
+        _bitmapFile.delete();
+        int old = size();
+        byte[][] records = new byte[old + todo.size()][];
+        for (int k = 0; k < old; k += 1) {
+            records[k] = new byte[RECORD];
+            _index.get(IDX_HEADER + k * RECORD, records[k], 0, RECORD);
+        }
+        try (FileChannel pack =
+             FileChannel.open(_packFile.toPath(), StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE)) {
+            long pos = pack.size();
+            if (pos == 0) {
+                pos += pack.write(ByteBuffer.wrap(PACK_MAGIC), 0);
+            }
+            long[] offsets = new long[todo.size()];
+            int[] depths = new int[todo.size()];
+            for (int i = 0; i < todo.size(); i += 1) {
+                byte[] contents = todo.get(i).getValue().bytes;
+                int flag = todo.get(i).getValue().manifest ? MANIFEST : 0;
+                byte[] best = null;
+                int bestBase = -1;
+                for (int j = Math.max(0, i - WINDOW); j < i; j += 1) {
+                    byte[] base = todo.get(j).getValue().bytes;
+                    if (depths[j] >= MAX_DEPTH
+                        || base.length / 2 > contents.length) {
+                        continue;
+                    }
+                    byte[] delta = Delta.create(base, contents);
+                    if (delta.length < contents.length / 2
+                        && (best == null || delta.length < best.length)) {
+                        best = delta;
+                        bestBase = j;
+                    }
+                }
+
+                ByteBuffer header;
+                if (best == null) {
+                    header = ByteBuffer.allocate(5);
+                    header.put((byte) (FULL | flag)).putInt(contents.length);
+                } else {
+                    header = ByteBuffer.allocate(13);
+                    header.put((byte) (DELTA | flag)).putInt(best.length)
+                        .putLong(offsets[bestBase]);
+                    depths[i] = depths[bestBase] + 1;
+                    contents = best;
+                }
+                header.flip();
+                offsets[i] = pos;
+                pos += pack.write(header, pos);
+                pos += pack.write(ByteBuffer.wrap(contents), pos);
+
+                records[old + i] =
+                    ByteBuffer.allocate(RECORD)
+                    .put(todo.get(i).getKey().bytes()).putLong(offsets[i])
+                    .array();
+            }
+            pack.force(false);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        writeIndex(records);
+    }
+
+    /** Return the stored form of the entry at OFFSET in PACK. */
+    private ObjectStore.Stored readEntry(FileChannel pack, long offset)
+        throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(13);
+        pack.read(header, offset);
+        header.flip();
+        int kind = header.get();
+        boolean manifest = (kind & MANIFEST) != 0;
+        kind &= ~MANIFEST;
+        byte[] payload = new byte[header.getInt()];
+        long base = kind == DELTA ? header.getLong() : 0;
+        ByteBuffer body = ByteBuffer.wrap(payload);
+        long pos = offset + (kind == DELTA ? 13 : 5);
+        while (body.hasRemaining()) {
+            if (pack.read(body, pos + body.position()) < 0) {
+                throw new IOException("truncated pack entry");
+            }
+        }
+        if (kind == DELTA) {
+            payload = Delta.apply(readEntry(pack, base).bytes, payload);
+        }
+        return new ObjectStore.Stored(payload, manifest);
+    }
+
+    /** Return the position of the record for ID in the index, or -1 if
+     *  there is none. */
+    private int find(byte[] id) {
+        if (index() == null) {
+            return -1;
+        }
+        byte[] probe = new byte[ID_BYTES];
+        int lo = 0, hi = _count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            _index.get(IDX_HEADER + mid * RECORD, probe, 0, ID_BYTES);
+            int c = Arrays.compareUnsigned(probe, id);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the memory-mapped index, or null if there is none yet.
+     *  Synchronized so that lookups may be made from several threads. */
+    private synchronized ByteBuffer index() {
+        if (_index == null && _indexFile.isFile()) {
+            try (FileChannel ch = FileChannel.open(_indexFile.toPath())) {
+                MappedByteBuffer buf =
+                    ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                byte[] magic = new byte[IDX_MAGIC.length];
+                buf.get(0, magic, 0, magic.length);
+                if (!Arrays.equals(magic, IDX_MAGIC)) {
+                    throw new IllegalArgumentException("corrupt pack index");
+                }
+                _count = buf.getInt(IDX_MAGIC.length);
+                _index = buf;
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return _index;
+    }
+
+    /** Replace the index with RECORDS, after sorting them by UID, through
+     *  a temporary file forced to disk before it is renamed into place
+     *  (see Utils.replaceDurably). */
+    private void writeIndex(byte[][] records) {
+        Arrays.sort(records, (a, b) -> Arrays.compareUnsigned(a, 0, ID_BYTES,
+                                                              b, 0, ID_BYTES));
+        File tmp = join(_dir, "objects.idx.tmp");
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 Files.newOutputStream(tmp.toPath())))) {
+            out.write(IDX_MAGIC);
+            out.writeInt(records.length);
+            for (byte[] r : records) {
+                out.write(r);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        replaceDurably(tmp, _indexFile);
+        _index = null;
+    }
+
+    /** Directory containing the pack and its index. */
+    private final File _dir;
+    /** The pack file. */
+    private final File _packFile;
+    /** The index file. */
+    private final File _indexFile;
+    /** The reachability bitmaps over the index. */
+    private final File _bitmapFile;
+    /** The mapped index, or null if not yet loaded. */
+    private ByteBuffer _index;
+    /** Number of records in _index. */
+    private int _count;
+}
@@ -0,0 +1,192 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of packs (see PackFile): objects moved into a pack by repack,
+ *  many of them as deltas, must read back unchanged, also after the
+ *  pack is reopened and appended to. */
+public class PackFileTest {
+
+    /** The repository directory of the current test. */
+    private File _dir;
+
+    @Before
+    public void makeDirectory() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-pack").toFile();
+    }
+
+    @After
+    public void removeDirectory() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Return LENGTH bytes of lines of digits chosen using RANDOM. */
+    private static byte[] randomText(Random random, int length) {
+        byte[] result = new byte[length];
+        for (int k = 0; k < length; k += 1) {
+            result[k] = (byte) (k % 40 == 39 ? '\n'
+                                : '0' + random.nextInt(10));
+        }
+        return result;
+    }
+
+    /** Write to STORE, and record in OBJECTS, COUNT versions of a text
+     *  made using RANDOM, each an edit of the last, plus some unrelated
+     *  random objects. */
+    private static void writeObjects(ObjectStore store,
+                                     Map<ObjectId, byte[]> objects,
+                                     Random random, int count) {
+        byte[] text = randomText(random, 20000);
+        for (int k = 0; k < count; k += 1) {
+            text = text.clone();
+            int at = random.nextInt(text.length - 10);
+            System.arraycopy(String.format("%010d", k).getBytes(), 0, text,
+                             at, 10);
+            objects.put(store.write(text), text);
+            byte[] other = new byte[random.nextInt(3000)];
+            random.nextBytes(other);
+            objects.put(store.write(other), other);
+        }
+    }
+
+    /** Check that STORE holds exactly OBJECTS, all packed. */
+    private static void checkPacked(ObjectStore store,
+                                    Map<ObjectId, byte[]> objects) {
+        assertEquals(List.of(), store.looseIds());
+        List<ObjectId> ids = new ArrayList<>(objects.keySet());
+        ids.sort(null);
+        assertEquals(ids, store.pack().ids());
+        assertEquals(ids, store.ids());
+        for (Map.Entry<ObjectId, byte[]> e : objects.entrySet()) {
+            assertTrue(store.pack().contains(e.getKey()));
+            assertEquals(e.getKey(), store.pack().id(store.pack()
+                                                     .position(e.getKey())));
+            assertArrayEquals(e.getValue(), store.read(e.getKey()));
+        }
+    }
+
+    @Test
+    public void repackRoundTrip() {
+        Random random = new Random(6);
+        ObjectStore store = new ObjectStore(_dir);
+        Map<ObjectId, byte[]> objects = new LinkedHashMap<>();
+        writeObjects(store, objects, random, 40);
+        long total = 0;
+        for (byte[] contents : objects.values()) {
+            total += contents.length;
+        }
+        assertEquals(objects.size(), store.repack());
+        checkPacked(store, objects);
+        assertTrue(store.pack().packLength() < total / 4);
+
+        checkPacked(new ObjectStore(_dir), objects);
+    }
+
+    /** Objects appended to a reopened pack may be deltas against those
+     *  already in it. */
+    @Test
+    public void appendRoundTrip() {
+        Random random = new Random(7);
+        Map<ObjectId, byte[]> objects = new LinkedHashMap<>();
+        ObjectStore store = new ObjectStore(_dir);
+        writeObjects(store, objects, random, 10);
+        store.repack();
+        store = new ObjectStore(_dir);
+        writeObjects(store, objects, random, 10);
+        assertEquals(20, store.looseIds().size());
+        store.repack();
+        checkPacked(store, objects);
+        checkPacked(new ObjectStore(_dir), objects);
+    }
+
+    /** Appends are made outside the Journal, so a crash may leave bytes
+     *  at the end of the pack that the index does not cover, or a
+     *  partial temporary index.  The objects already packed and those
+     *  still loose must read back, and later appends must work. */
+    @Test
+    public void tornAppend() {
+        Random random = new Random(8);
+        Map<ObjectId, byte[]> objects = new LinkedHashMap<>();
+        ObjectStore store = new ObjectStore(_dir);
+        writeObjects(store, objects, random, 10);
+        store.repack();
+        File pack = join(_dir, "pack", "objects.pack"),
+            index = join(_dir, "pack", "objects.idx");
+        byte[] oldIndex = readContents(index);
+
+        Map<ObjectId, byte[]> more = new LinkedHashMap<>();
+        writeObjects(store, more, random, 10);
+        store.repack();
+        writeContents(index, (Object) oldIndex);
+        byte[] torn = new byte[1000];
+        random.nextBytes(torn);
+        byte[] packed = readContents(pack);
+        writeContents(pack, packed, torn);
+        writeContents(join(_dir, "pack", "objects.idx.tmp"),
+                      (Object) Arrays.copyOf(oldIndex, 50));
+
+        store = new ObjectStore(_dir);
+        for (Map.Entry<ObjectId, byte[]> e : more.entrySet()) {
+            assertFalse(store.contains(e.getKey()));
+            assertEquals(e.getKey(), store.write(e.getValue()));
+        }
+        objects.putAll(more);
+        for (Map.Entry<ObjectId, byte[]> e : objects.entrySet()) {
+            assertArrayEquals(e.getValue(), store.read(e.getKey()));
+        }
+        assertEquals(more.size(), store.repack());
+        assertTrue(store.pack().packLength()
+                   > packed.length + torn.length);
+        checkPacked(store, objects);
+        checkPacked(new ObjectStore(_dir), objects);
+    }
+
+    @Test
+    public void deltaRoundTrip() {
+        Random random = new Random(5);
+        List<byte[]> samples = new ArrayList<>();
+        samples.add(new byte[0]);
+        samples.add("abcd".getBytes());
+        samples.add(randomText(random, 5000));
+        samples.add(new byte[70000]);
+        for (byte[] base : samples) {
+            for (byte[] target : samples) {
+                assertArrayEquals(target,
+                                  Delta.apply(base, Delta.create(base,
+                                                                 target)));
+            }
+        }
+        byte[] base = randomText(random, 20000);
+        byte[] target = Arrays.copyOf(base, base.length + 100);
+        System.arraycopy("an edit".getBytes(), 0, target, 5000, 7);
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        assertTrue(delta.length < 500);
+    }
+}
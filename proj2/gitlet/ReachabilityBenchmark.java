@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** Compares finding the objects reachable from a commit with and without
+ *  reachability bitmaps (see ReachabilityIndex).  Usage, from an empty
+ *  directory:
+ *
+ *      java gitlet.ReachabilityBenchmark [FILES [COMMITS [SIZE]]]
+ *
+ *  creates a repository whose history has COMMITS commits (by default
+ *  2000) over FILES files (by default 10000) of SIZE bytes (by default
+ *  256), as in RemoteBenchmark, repacks it, which makes the bitmaps,
+ *  and then adds ten more commits.  For the head before those commits,
+ *  the head after them, and the difference between the two (as for a
+ *  push), prints the objects found and the time taken by a walk of the
+ *  whole history and by bitmaps, with the numbers of bitmaps used and
+ *  commits walked.
+ */
+public class ReachabilityBenchmark {
+
+    /** Number of commits made after repacking. */
+    private static final int AHEAD = 10;
+    /** Number of times each query is run; the fastest time is shown. */
+    private static final int TRIALS = 5;
+
+    /** Run the benchmark as described in the class comment, using ARGS. */
+    public static void main(String... args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        if (Repository.GITLET_DIR.exists()) {
+            throw error("Run ReachabilityBenchmark in an empty directory.");
+        }
+        Repository.GITLET_DIR.mkdirs();
+        Random random = new Random(0);
+
+        long start = System.nanoTime();
+        Journal.local().atomically(
+            () -> RemoteBenchmark.build(files, commits, size, random));
+        System.out.printf("built %d commits over %d files in %.1f s%n",
+                          commits, files, (System.nanoTime() - start) / 1e9);
+        start = System.nanoTime();
+        Journal.local().atomically(Repository::repack);
+        File bitmaps = ObjectStore.local().pack().bitmapFile();
+        System.out.printf("repacked %d objects with %d bitmaps (%d bytes) "
+                          + "in %.1f s%n", ObjectStore.local().pack().size(),
+                          ReachabilityIndex.local().size(), bitmaps.length(),
+                          (System.nanoTime() - start) / 1e9);
+        ObjectId old = Refs.local().get("master");
+        Journal.local().atomically(() -> {
+            for (int i = 0; i < AHEAD; i += 1) {
+                RemoteBenchmark.commit(files, size, random,
+                                       1 + random.nextInt(3), "ahead " + i);
+            }
+        });
+        ObjectId head = Refs.local().get("master");
+
+        System.out.printf("%-12s %-8s %8s %10s %8s %8s%n", "query", "method",
+                          "objects", "ms", "bitmaps", "walked");
+        System.out.printf("-------------------------------------------------"
+                          + "-----------%n");
+        File hidden = new File(bitmaps.getPath() + ".hidden");
+        for (boolean walk : new boolean[] { true, false }) {
+            if (walk) {
+                bitmaps.renameTo(hidden);
+            }
+            ReachabilityIndex index =
+                new ReachabilityIndex(ObjectStore.local(),
+                                      CommitGraph.local());
+            String method = walk ? "walk" : "bitmaps";
+            query("old head", method, index, List.of(old), null);
+            query("new head", method, index, List.of(head), null);
+            query("difference", method, index, List.of(head), List.of(old));
+            if (walk) {
+                hidden.renameTo(bitmaps);
+            }
+        }
+    }
+
+    /** Print the result of finding the objects reachable from WANTS and,
+     *  if HAVES is not null, not from HAVES, using INDEX, labelled LABEL
+     *  and METHOD. */
+    private static void query(String label, String method,
+                              ReachabilityIndex index,
+                              Collection<ObjectId> wants,
+                              Collection<ObjectId> haves) {
+        long best = Long.MAX_VALUE;
+        ReachabilityIndex.Reachable result = null;
+        int bitmaps = 0, walked = 0;
+        for (int t = 0; t < TRIALS; t += 1) {
+            long start = System.nanoTime();
+            result = index.reachable(wants);
+            bitmaps = result.bitmaps();
+            walked = result.walked().size();
+            if (haves != null) {
+                ReachabilityIndex.Reachable other = index.reachable(haves);
+                result.removeAll(other);
+                bitmaps += other.bitmaps();
+                walked += other.walked().size();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-12s %-8s %8d %10.1f %8d %8d%n", label, method,
+                          result.size(), best / 1e6, bitmaps, walked);
+    }
+}
@@ -0,0 +1,416 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static gitlet.Utils.*;
+
+/** Reachability bitmaps over a repository's pack, which answer "which
+ *  objects does this commit reach?" without walking its history.  For
+ *  the head of each branch, and for every commit whose generation number
+ *  (see CommitGraph) is a multiple of INTERVAL, a Bitmap records the
+ *  positions in the pack index (see PackFile.position) of all the
+ *  objects the commit reaches: itself, its ancestors, the nodes of
+ *  their FileMaps, their blobs, and the chunks of those.
+ *
+ *  The objects reachable from a set of commits are then found by
+ *  walking back from them, in order of decreasing generation, only as
+ *  far as the nearest commits with bitmaps, whose bitmaps are ORed
+ *  together; only the FileMaps of the commits walked are read, and
+ *  only their subtrees not already in the result.  Objects that are
+ *  loose, and so have no position in the pack, are numbered instead by
+ *  their positions in a sorted listing of the loose objects, taken once
+ *  whenever the bitmaps are loaded (so once per gc), and kept in a
+ *  second Bitmap; only loose objects written since the listing was
+ *  taken, such as those of the current transaction, are kept in a set
+ *  of UIDs.  With no bitmaps, this is a walk of the whole history, as
+ *  garbage collection once did.
+ *
+ *  The bitmaps are rebuilt by repack and gc, and kept in the pack's
+ *  file objects.bitmap, of the form
+ *
+ *      "GBMP"  pack size (4 bytes)  pack length (8 bytes)  count (4 bytes)
+ *      count times: UID (20 bytes)  length (4 bytes)  Bitmap
+ *
+ *  where the pack size is its number of objects and the pack length
+ *  that of its file in bytes.  The pack deletes the bitmap file whenever
+ *  its positions change.  Since the pack file only grows until it is
+ *  replaced, a bitmap file whose pack size or length does not match the
+ *  pack's (as after a crash between changing the pack and deleting the
+ *  file) is ignored.
+ */
+class ReachabilityIndex {
+
+    /** Header of a bitmap file. */
+    private static final byte[] MAGIC = { 'G', 'B', 'M', 'P' };
+    /** Commits with generation numbers that are multiples of this get
+     *  bitmaps. */
+    static final int INTERVAL = 100;
+
+    /** Numbers of bitmaps used and of commits walked by reachable. */
+    private static final Metrics.Counter BITMAPS_USED =
+        Metrics.counter("reach.bitmaps"),
+        COMMITS_WALKED = Metrics.counter("reach.commits");
+
+    /** The bitmaps over STORE's pack, for the commits in GRAPH. */
+    ReachabilityIndex(ObjectStore store, CommitGraph graph) {
+        _store = store;
+        _pack = store.pack();
+        _graph = graph;
+    }
+
+    /** Return the bitmaps of the repository in the current directory. */
+    static ReachabilityIndex local() {
+        if (_local == null) {
+            _local = new ReachabilityIndex(ObjectStore.local(),
+                                           CommitGraph.local());
+        }
+        return _local;
+    }
+
+    /** Discard the cached bitmaps of the repository in the current
+     *  directory, so that they are reread from disk when next needed. */
+    static void resetLocal() {
+        _local = null;
+    }
+
+    /** Return the number of commits with bitmaps. */
+    int size() {
+        load();
+        return _offsets.size();
+    }
+
+    /** Return the objects reachable from COMMITS, as described in the
+     *  class comment.  Commits that are not in the store are ignored. */
+    Reachable reachable(Collection<ObjectId> commits) {
+        load();
+        Reachable result = new Reachable();
+        PriorityQueue<ObjectId> todo =
+            new PriorityQueue<>(Comparator.comparingInt(this::generation)
+                                .reversed());
+        todo.addAll(commits);
+        while (!todo.isEmpty()) {
+            ObjectId uid = todo.poll();
+            if (result.contains(uid)) {
+                continue;
+            }
+            Bitmap bitmap = bitmap(uid);
+            if (bitmap != null) {
+                result._packed.or(bitmap);
+                result._bitmaps += 1;
+            } else if (result.add(uid)) {
+                result._walked.add(uid);
+                todo.addAll(_store.decode(uid, Commit.class).getParents());
+            }
+        }
+        BITMAPS_USED.add(result._bitmaps);
+        COMMITS_WALKED.add(result._walked.size());
+        for (ObjectId uid : result._walked) {
+            Commit commit = _store.decode(uid, Commit.class);
+            if (commit.getTree() == null) {
+                commit.getBlobs().values().forEach(result::addBlob);
+            } else {
+                FileMap.walk(_store, commit.getTree(), result::add,
+                             result::addBlob);
+            }
+        }
+        return result;
+    }
+
+    /** Replace the bitmaps with ones for TIPS and for those of their
+     *  ancestors selected as described in the class comment, returning
+     *  the number made.  Commits reaching loose objects get none. */
+    int rebuild(Collection<ObjectId> tips) {
+        File file = _pack.bitmapFile();
+        file.delete();
+        _offsets = null;
+        _built = new HashMap<>();
+        try {
+            if (_pack.size() == 0) {
+                return 0;
+            }
+            for (int pos : selected(tips)) {
+                ObjectId uid = _graph.uid(pos);
+                Reachable reach = reachable(List.of(uid));
+                if (reach.looseCount() == 0) {
+                    _built.put(uid, reach._packed);
+                }
+            }
+            write(file, new TreeMap<>(_built));
+            return _built.size();
+        } finally {
+            _built = null;
+            _offsets = null;
+        }
+    }
+
+    /** Return the graph positions of TIPS and of their ancestors whose
+     *  generation numbers are multiples of INTERVAL, parents first. */
+    private List<Integer> selected(Collection<ObjectId> tips) {
+        Set<Integer> heads = new HashSet<>();
+        Deque<Integer> todo = new ArrayDeque<>();
+        for (ObjectId tip : tips) {
+            int pos = _graph.position(tip);
+            if (pos >= 0) {
+                heads.add(pos);
+                todo.push(pos);
+            }
+        }
+        BitSet seen = new BitSet();
+        List<Integer> result = new ArrayList<>();
+        while (!todo.isEmpty()) {
+            int pos = todo.pop();
+            if (seen.get(pos)) {
+                continue;
+            }
+            seen.set(pos);
+            if (heads.contains(pos)
+                || _graph.generation(pos) % INTERVAL == 0) {
+                result.add(pos);
+            }
+            for (int p : _graph.parents(pos)) {
+                todo.push(p);
+            }
+        }
+        result.sort(Comparator.comparingInt(_graph::generation));
+        return result;
+    }
+
+    /** Write BITMAPS, a mapping of commit UIDs to Bitmaps, to FILE in the
+     *  form described in the class comment, through a temporary file
+     *  renamed into place. */
+    private void write(File file, Map<ObjectId, Bitmap> bitmaps) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 Files.newOutputStream(tmp.toPath())))) {
+            out.write(MAGIC);
+            out.writeInt(_pack.size());
+            out.writeLong(_pack.packLength());
+            out.writeInt(bitmaps.size());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (Map.Entry<ObjectId, Bitmap> e : bitmaps.entrySet()) {
+                bytes.reset();
+                e.getValue().write(new DataOutputStream(bytes));
+                out.write(e.getKey().bytes());
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        replaceDurably(tmp, file);
+    }
+
+    /** Return the bitmap of commit UID, or null if it has none. */
+    private Bitmap bitmap(ObjectId uid) {
+        if (_built != null) {
+            return _built.get(uid);
+        }
+        Integer offset = _offsets.get(uid);
+        if (offset == null) {
+            return null;
+        }
+        return Bitmap.read(_map.duplicate().position(offset));
+    }
+
+    /** Return the generation number of commit UID, or the largest int if
+     *  it is not in the graph. */
+    private int generation(ObjectId uid) {
+        int pos = _graph.position(uid);
+        return pos < 0 ? Integer.MAX_VALUE : _graph.generation(pos);
+    }
+
+    /** Map the bitmap file, index its commits, and list the loose
+     *  objects, if not already done for the pack's current contents. */
+    private void load() {
+        if (_offsets != null && _mappedSize == _pack.size()
+            && _mappedLength == _pack.packLength()) {
+            return;
+        }
+        _offsets = new HashMap<>();
+        _mappedSize = _pack.size();
+        _mappedLength = _pack.packLength();
+        _listing = _store.looseIds().toArray(new ObjectId[0]);
+        Arrays.sort(_listing);
+        File file = _pack.bitmapFile();
+        if (_built != null || !file.isFile()) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(file.toPath())) {
+            ByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                                    ch.size());
+            byte[] magic = new byte[MAGIC.length];
+            map.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("corrupt bitmap file");
+            }
+            if (map.getInt() != _mappedSize
+                || map.getLong() != _mappedLength) {
+                return;
+            }
+            for (int n = map.getInt(); n > 0; n -= 1) {
+                ObjectId uid = ObjectId.read(map);
+                int length = map.getInt();
+                _offsets.put(uid, map.position());
+                map.position(map.position() + length);
+            }
+            _map = map;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** A set of objects reachable from some commits, as returned by
+     *  reachable: the positions of packed objects in one Bitmap, those of
+     *  loose ones in the listing of loose objects in another, and the
+     *  UIDs of loose objects not in the listing. */
+    class Reachable {
+
+        /** Return true iff this set contains object UID. */
+        boolean contains(ObjectId uid) {
+            int k = _pack.position(uid);
+            if (k >= 0) {
+                return _packed.contains(k);
+            }
+            k = Arrays.binarySearch(_listed, uid);
+            return k >= 0 ? _loose.contains(k) : _unlisted.contains(uid);
+        }
+
+        /** Add object UID, returning true iff it exists in the store and
+         *  was not already in this set. */
+        boolean add(ObjectId uid) {
+            int k = _pack.position(uid);
+            if (k >= 0) {
+                return _packed.add(k);
+            }
+            k = Arrays.binarySearch(_listed, uid);
+            if (k >= 0) {
+                return _loose.add(k);
+            }
+            return !_unlisted.contains(uid) && _store.contains(uid)
+                && _unlisted.add(uid);
+        }
+
+        /** Add blob UID and its chunks. */
+        void addBlob(ObjectId uid) {
+            if (add(uid)) {
+                for (ObjectId chunk : _store.chunks(uid)) {
+                    add(chunk);
+                }
+            }
+        }
+
+        /** Remove the objects in OTHER, which was made from the same
+         *  pack, from this set. */
+        void removeAll(Reachable other) {
+            _packed.andNot(other._packed);
+            if (other._listed == _listed) {
+                _loose.andNot(other._loose);
+                _unlisted.removeAll(other._unlisted);
+            } else {
+                Bitmap loose = new Bitmap();
+                other.forEachLoose(uid -> {
+                    int k = Arrays.binarySearch(_listed, uid);
+                    if (k >= 0) {
+                        loose.add(k);
+                    } else {
+                        _unlisted.remove(uid);
+                    }
+                });
+                _loose.andNot(loose);
+            }
+        }
+
+        /** Return the number of objects in this set. */
+        int size() {
+            return _packed.cardinality() + looseCount();
+        }
+
+        /** Return the number of loose objects in this set. */
+        int looseCount() {
+            return _loose.cardinality() + _unlisted.size();
+        }
+
+        /** Call ACTION on the UID of each object in this set: the packed
+         *  ones in order, and then the loose ones. */
+        void forEach(Consumer<ObjectId> action) {
+            _packed.forEach(k -> action.accept(_pack.id(k)));
+            forEachLoose(action);
+        }
+
+        /** Call ACTION on the UID of each loose object in this set. */
+        private void forEachLoose(Consumer<ObjectId> action) {
+            _loose.forEach(k -> action.accept(_listed[k]));
+            _unlisted.forEach(action);
+        }
+
+        /** Return the commits whose FileMaps were walked, rather than
+         *  covered by bitmaps, in making this set. */
+        List<ObjectId> walked() {
+            return _walked;
+        }
+
+        /** Return the number of bitmaps ORed into this set. */
+        int bitmaps() {
+            return _bitmaps;
+        }
+
+        /** Positions of the packed objects. */
+        private final Bitmap _packed = new Bitmap();
+        /** The listing of loose objects when this set was made. */
+        private final ObjectId[] _listed = _listing;
+        /** Positions in _listed of the loose objects listed there. */
+        private final Bitmap _loose = new Bitmap();
+        /** UIDs of the loose objects not in _listed. */
+        private final Set<ObjectId> _unlisted = new HashSet<>();
+        /** Commits walked. */
+        private final List<ObjectId> _walked = new ArrayList<>();
+        /** Number of bitmaps used. */
+        private int _bitmaps;
+    }
+
+    /** Bitmaps for the current repository, or null if not yet made. */
+    private static ReachabilityIndex _local;
+
+    /** The object store. */
+    private final ObjectStore _store;
+    /** Its pack. */
+    private final PackFile _pack;
+    /** The commit graph. */
+    private final CommitGraph _graph;
+    /** Offsets of the bitmaps in _map, by commit, or null if not
+     *  loaded. */
+    private Map<ObjectId, Integer> _offsets;
+    /** The mapped bitmap file. */
+    private ByteBuffer _map;
+    /** Size of the pack when _offsets was loaded. */
+    private int _mappedSize;
+    /** Length of the pack file when _offsets was loaded. */
+    private long _mappedLength;
+    /** UIDs of the loose objects when _offsets was loaded, sorted. */
+    private ObjectId[] _listing;
+    /** Bitmaps made so far by rebuild, while it runs, or null. */
+    private Map<ObjectId, Bitmap> _built;
+}
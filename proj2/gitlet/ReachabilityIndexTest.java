@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of reachability bitmaps and their file (see ReachabilityIndex),
+ *  checked against walks of the whole history of a temporary
+ *  repository. */
+public class ReachabilityIndexTest {
+
+    /** Number of commits on the main line: enough for several to get
+     *  bitmaps. */
+    private static final int COMMITS = 3 * ReachabilityIndex.INTERVAL + 20;
+
+    /** The tips of the history made by makeHistory. */
+    private final List<ObjectId> _tips = new ArrayList<>();
+
+    /** The repository directory of the current test. */
+    private File _dir;
+    /** The objects of the repository. */
+    private ObjectStore _store;
+    /** The commit graph of the repository, to which commits are added
+     *  as they are made. */
+    private CommitGraph _graph;
+    /** The bitmaps of the repository. */
+    private ReachabilityIndex _bitmaps;
+
+    @Before
+    public void makeRepository() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-bitmaps").toFile();
+        _store = new ObjectStore(_dir);
+        _graph = new CommitGraph(_dir);
+        _bitmaps = new ReachabilityIndex(_store, _graph);
+    }
+
+    @After
+    public void removeRepository() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Make a commit with message MESSAGE, made at time TIME, with
+     *  parents PARENTS, holding FILES, a mapping of file names to their
+     *  contents, and add it to the graph.  Returns its UID. */
+    private ObjectId commit(String message, long time, List<ObjectId> parents,
+                            Map<String, String> files) {
+        TreeMap<String, ObjectId> blobs = new TreeMap<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            blobs.put(file.getKey(), _store.write(file.getValue().getBytes()));
+        }
+        Commit commit = new Commit(message, new Date(time), parents,
+                                   FileMap.write(_store, blobs));
+        ObjectId uid = _store.write(Codecs.encode(commit));
+        _graph.add(uid, commit);
+        return uid;
+    }
+
+    /** Make COMMITS commits on a main line, and a side branch from its
+     *  middle, recording their tips in _tips. */
+    private void makeHistory() {
+        ObjectId main = null, side = null;
+        for (int k = 0; k < COMMITS; k += 1) {
+            main = commit("main " + k, 1000L * k,
+                          main == null ? List.of() : List.of(main),
+                          Map.of("f.txt", "version " + k,
+                                 "g.txt", "version " + k / 10,
+                                 "h.txt", "fixed"));
+            if (k == COMMITS / 2) {
+                side = main;
+            }
+        }
+        for (int k = 0; k < 10; k += 1) {
+            side = commit("side " + k, 1000L * k, List.of(side),
+                          Map.of("f.txt", "side " + k));
+        }
+        _tips.add(main);
+        _tips.add(side);
+    }
+
+    /** Return the UIDs of the objects reachable from COMMITS in STORE,
+     *  found by walking all of their history. */
+    private static Set<ObjectId> walk(ObjectStore store,
+                                      List<ObjectId> commits) {
+        Set<ObjectId> result = new HashSet<>();
+        ArrayDeque<ObjectId> work = new ArrayDeque<>(commits);
+        while (!work.isEmpty()) {
+            ObjectId uid = work.pop();
+            if (result.add(uid)) {
+                Commit commit = store.decode(uid, Commit.class);
+                FileMap.walk(store, commit.getTree(), result::add,
+                             result::add);
+                work.addAll(commit.getParents());
+            }
+        }
+        return result;
+    }
+
+    /** Return the objects in R as a set of UIDs. */
+    private static Set<ObjectId> contents(ReachabilityIndex.Reachable r) {
+        Set<ObjectId> result = new HashSet<>();
+        r.forEach(result::add);
+        assertEquals(r.size(), result.size());
+        return result;
+    }
+
+    /** Return the bitmaps of the repository, read afresh from its
+     *  files. */
+    private ReachabilityIndex reread() {
+        return new ReachabilityIndex(new ObjectStore(_dir),
+                                     new CommitGraph(_dir));
+    }
+
+    /** Check that BITMAPS find the same objects as a walk of the whole
+     *  history from each tip, and from all of them. */
+    private void checkReachable(ReachabilityIndex bitmaps) {
+        for (ObjectId tip : _tips) {
+            ReachabilityIndex.Reachable r = bitmaps.reachable(List.of(tip));
+            assertEquals(walk(_store, List.of(tip)), contents(r));
+            for (ObjectId uid : walk(_store, List.of(tip))) {
+                assertTrue(r.contains(uid));
+            }
+        }
+        assertEquals(walk(_store, _tips), contents(bitmaps.reachable(_tips)));
+    }
+
+    @Test
+    public void roundTrip() {
+        makeHistory();
+        _store.repack();
+        int made = _bitmaps.rebuild(_tips);
+        assertEquals(made, reread().size());
+        assertTrue(made > 3);
+        assertTrue(_store.pack().bitmapFile().isFile());
+
+        ReachabilityIndex bitmaps = reread();
+        checkReachable(bitmaps);
+        ReachabilityIndex.Reachable r = bitmaps.reachable(_tips);
+        assertTrue(r.bitmaps() > 0);
+        assertTrue(r.walked().isEmpty());
+        assertEquals(0, r.looseCount());
+    }
+
+    /** Loose objects written after the bitmaps are found too, and
+     *  removeAll takes away exactly the objects of another set. */
+    @Test
+    public void looseObjects() {
+        makeHistory();
+        _store.repack();
+        _bitmaps.rebuild(_tips);
+        ObjectId main = _tips.get(0);
+        for (int k = 0; k < 5; k += 1) {
+            main = commit("more " + k, 1000L * (COMMITS + k), List.of(main),
+                          Map.of("f.txt", "more " + k));
+        }
+        _tips.set(0, main);
+        ReachabilityIndex bitmaps = reread();
+        checkReachable(bitmaps);
+        ReachabilityIndex.Reachable r = bitmaps.reachable(List.of(main));
+        assertEquals(5, r.walked().size());
+        assertTrue(r.looseCount() > 0);
+
+        Set<ObjectId> expected = walk(_store, List.of(main));
+        expected.removeAll(walk(_store, List.of(_tips.get(1))));
+        r.removeAll(bitmaps.reachable(List.of(_tips.get(1))));
+        assertEquals(expected, contents(r));
+    }
+
+    /** A bitmap file made for a smaller pack, as when a crash follows an
+     *  append to the pack but precedes the deletion of the file, is
+     *  ignored. */
+    @Test
+    public void staleFile() {
+        makeHistory();
+        _store.repack();
+        _bitmaps.rebuild(_tips);
+        File file = _store.pack().bitmapFile();
+        byte[] saved = readContents(file);
+        ObjectId main = commit("later", 0, List.of(_tips.get(0)),
+                               Map.of("f.txt", "later"));
+        _tips.set(0, main);
+        _store.repack();
+        assertFalse(file.exists());
+        writeContents(file, (Object) saved);
+
+        ReachabilityIndex bitmaps = reread();
+        assertEquals(0, bitmaps.size());
+        checkReachable(bitmaps);
+    }
+}
@@ -0,0 +1,334 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static gitlet.Utils.*;
+
+/** The branches of a Gitlet repository and its HEAD.  HEAD, the file
+ *  .gitlet/HEAD, holds the name of the current branch.  A branch is
+ *  either loose, the file .gitlet/refs/heads/NAME holding the UID of the
+ *  branch's head commit (where a NAME such as R/B, for the branch B of
+ *  remote R, names a file in a subdirectory), or packed, an entry in
+ *  .gitlet/packed-refs:
+ *
+ *      "GREF"  #refs (4 bytes)  offset (4 bytes)...  record...
+ *
+ *  where the records, each
+ *
+ *      name length (2 bytes)  name (UTF-8)  UID (20 bytes)
+ *
+ *  are sorted by name (as Strings) and the offsets locate them in the
+ *  file.  The file is memory-mapped, so that a branch is found by
+ *  binary search and all branches are listed by one sequential read.  A
+ *  loose ref overrides a packed one of the same name; an empty loose
+ *  ref marks a deleted branch that is still packed.  The pack operation
+ *  moves all loose refs into packed-refs.  All writes go through the
+ *  repository's Journal.
+ */
+class Refs {
+
+    /** The references of the repository whose metadata is in GITLETDIR. */
+    Refs(File gitletDir) {
+        _headFile = join(gitletDir, "HEAD");
+        _looseDir = join(gitletDir, "refs", "heads");
+        _packedFile = join(gitletDir, "packed-refs");
+        _journal = Journal.of(gitletDir);
+    }
+
+    /** Return the references of the repository in the current
+     *  directory. */
+    static Refs local() {
+        if (_local == null) {
+            _local = new Refs(Repository.GITLET_DIR);
+        }
+        return _local;
+    }
+
+    /** Discard the cached references of the repository in the current
+     *  directory, so that they are reread from disk when next needed. */
+    static void resetLocal() {
+        _local = null;
+    }
+
+    /** Return the name of the current branch, or null if there is none. */
+    String head() {
+        if (!_journal.exists(_headFile)) {
+            return null;
+        }
+        return new String(_journal.read(_headFile),
+                          StandardCharsets.UTF_8).trim();
+    }
+
+    /** Make BRANCH the current branch. */
+    void setHead(String branch) {
+        _journal.write(_headFile,
+                       (branch + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Return the UID of the head commit of BRANCH, or null if there is no
+     *  such branch. */
+    ObjectId get(String branch) {
+        File loose = join(_looseDir, branch);
+        if (_journal.exists(loose)) {
+            String uid = new String(_journal.read(loose),
+                                    StandardCharsets.UTF_8).trim();
+            return uid.isEmpty() ? null : ObjectId.fromHex(uid);
+        }
+        ByteBuffer packed = packed();
+        int k = find(packed, branch);
+        if (k < 0) {
+            return null;
+        }
+        ByteBuffer record = record(packed, k);
+        readName(record);
+        return ObjectId.read(record);
+    }
+
+    /** Make UID the head commit of BRANCH, creating BRANCH if needed.
+     *  Throws a GitletException, before writing anything, if BRANCH is
+     *  not a valid name (see checkName) or if creating it would conflict
+     *  with an existing branch (see checkConflicts). */
+    void set(String branch, ObjectId uid) {
+        checkName(branch);
+        if (get(branch) == null) {
+            checkConflicts(branch);
+        }
+        _journal.write(join(_looseDir, branch),
+                       (uid.hex() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Delete BRANCH, if it exists.  Throws a GitletException if BRANCH
+     *  is not a valid name (see checkName). */
+    void delete(String branch) {
+        checkName(branch);
+        if (get(branch) != null) {
+            _journal.write(join(_looseDir, branch), new byte[0]);
+        }
+    }
+
+    /** Return a map from the names of all branches to the UIDs of their
+     *  head commits, in order of name. */
+    TreeMap<String, ObjectId> branches() {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        ByteBuffer packed = packed();
+        if (packed.limit() > 0) {
+            int count = packed.getInt(MAGIC.length);
+            packed.position(MAGIC.length + 4 + 4 * count);
+            for (int k = 0; k < count; k += 1) {
+                String name = readName(packed);
+                result.put(name, ObjectId.read(packed));
+            }
+        }
+        for (String name : looseNames()) {
+            ObjectId uid = get(name);
+            if (uid == null) {
+                result.remove(name);
+            } else {
+                result.put(name, uid);
+            }
+        }
+        return result;
+    }
+
+    /** Move all loose refs into packed-refs, returning the number of
+     *  branches packed.  The directories left empty are deleted too, so
+     *  that they do not conflict with new branches (see
+     *  checkConflicts). */
+    int pack() {
+        TreeMap<String, ObjectId> branches = branches();
+        String[] loose = looseNames();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        ByteBuffer header =
+            ByteBuffer.allocate(MAGIC.length + 4 + 4 * branches.size());
+        header.put(MAGIC).putInt(branches.size());
+        for (Map.Entry<String, ObjectId> branch : branches.entrySet()) {
+            byte[] name = branch.getKey().getBytes(StandardCharsets.UTF_8);
+            header.putInt(header.capacity() + records.size());
+            records.write(name.length >>> 8);
+            records.write(name.length);
+            records.write(name, 0, name.length);
+            records.write(branch.getValue().bytes(), 0, ObjectId.LENGTH);
+        }
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        contents.write(header.array(), 0, header.capacity());
+        contents.write(records.toByteArray(), 0, records.size());
+        _journal.write(_packedFile, contents.toByteArray());
+        _packed = null;
+        _journal.afterCommit(() -> {
+            for (String name : loose) {
+                File file = join(_looseDir, name);
+                file.delete();
+                File dir = file.getParentFile();
+                while (!dir.equals(_looseDir) && dir.delete()) {
+                    dir = dir.getParentFile();
+                }
+            }
+        });
+        return branches.size();
+    }
+
+    /** Throw a GitletException unless BRANCH is a valid branch name: a
+     *  non-empty sequence of non-empty components separated by single
+     *  '/'s, none of them "." or "..", and containing no backslash or NUL.
+     *  These are exactly the names that denote a file strictly below
+     *  the loose refs directory. */
+    private static void checkName(String branch) {
+        if (branch.isEmpty() || branch.indexOf('\\') >= 0
+            || branch.indexOf('\0') >= 0) {
+            throw error("Invalid branch name: %s", branch);
+        }
+        for (String component : branch.split("/", -1)) {
+            if (component.isEmpty() || component.equals(".")
+                || component.equals("..")) {
+                throw error("Invalid branch name: %s", branch);
+            }
+        }
+    }
+
+    /** Throw a GitletException if a new branch BRANCH would conflict
+     *  with an existing one: if some branch is named by a proper prefix
+     *  of BRANCH's components (as "origin" for "origin/main") or has
+     *  BRANCH as such a prefix, or if a loose ref, including a deleted
+     *  one, occupies the place of such a branch.  Either would require
+     *  a loose ref to be both a file and a directory. */
+    private void checkConflicts(String branch) {
+        String prefix = branch + "/";
+        for (String name : branches().keySet()) {
+            if (name.startsWith(prefix) || branch.startsWith(name + "/")) {
+                throw error("A branch named %s conflicts with %s.",
+                            branch, name);
+            }
+        }
+        File loose = join(_looseDir, branch);
+        if (loose.isDirectory()) {
+            throw error("A branch named %s conflicts with the loose refs "
+                        + "under it.", branch);
+        }
+        for (File dir = loose.getParentFile(); !dir.equals(_looseDir);
+             dir = dir.getParentFile()) {
+            if (dir.isFile() || _journal.pending(dir) != null) {
+                throw error("A branch named %s conflicts with a deleted "
+                            + "branch.", branch);
+            }
+        }
+    }
+
+    /** Return the contents of packed-refs, which are empty if there is
+     *  none. */
+    private ByteBuffer packed() {
+        byte[] pending = _journal.pending(_packedFile);
+        if (pending != null) {
+            return ByteBuffer.wrap(pending);
+        }
+        if (_packed == null) {
+            if (!_packedFile.isFile()) {
+                return ByteBuffer.allocate(0);
+            }
+            try (FileChannel ch = FileChannel.open(_packedFile.toPath())) {
+                _packed = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            byte[] magic = new byte[MAGIC.length];
+            _packed.get(0, magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("corrupt packed-refs");
+            }
+        }
+        return _packed.duplicate();
+    }
+
+    /** Return the index of the record for BRANCH in PACKED, or -1 if there
+     *  is none. */
+    private static int find(ByteBuffer packed, String branch) {
+        if (packed.limit() == 0) {
+            return -1;
+        }
+        int lo = 0, hi = packed.getInt(MAGIC.length);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = readName(record(packed, mid)).compareTo(branch);
+            if (c == 0) {
+                return mid;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return a buffer positioned at record K of PACKED. */
+    private static ByteBuffer record(ByteBuffer packed, int k) {
+        ByteBuffer result = packed.duplicate();
+        result.position(packed.getInt(MAGIC.length + 4 + 4 * k));
+        return result;
+    }
+
+    /** Read a name from the position of BUF, advancing past it. */
+    private static String readName(ByteBuffer buf) {
+        byte[] name = new byte[buf.getShort() & 0xffff];
+        buf.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /** Return the names of the loose refs, including those pending in the
+     *  current transaction. */
+    private String[] looseNames() {
+        TreeMap<String, Boolean> names = new TreeMap<>();
+        listLoose(_looseDir, "", names);
+        Path dir = _looseDir.toPath();
+        for (File file : _journal.pendingFiles()) {
+            if (file.toPath().startsWith(dir)) {
+                names.put(dir.relativize(file.toPath()).toString()
+                          .replace(File.separatorChar, '/'), true);
+            }
+        }
+        return names.keySet().toArray(new String[0]);
+    }
+
+    /** Add to NAMES the names of the loose refs in DIR, prefixed by
+     *  PREFIX, and in its subdirectories. */
+    private static void listLoose(File dir, String prefix,
+                                  TreeMap<String, Boolean> names) {
+        File[] files = dir.listFiles();
+        LISTINGS.add(1);
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listLoose(file, prefix + file.getName() + "/", names);
+            } else {
+                names.put(prefix + file.getName(), true);
+            }
+        }
+    }
+
+    /** Header of packed-refs. */
+    private static final byte[] MAGIC = { 'G', 'R', 'E', 'F' };
+
+    /** References of the current repository, or null if not yet read. */
+    private static Refs _local;
+
+    /** The file holding the name of the current branch. */
+    private final File _headFile;
+    /** Directory of loose refs. */
+    private final File _looseDir;
+    /** The packed refs file. */
+    private final File _packedFile;
+    /** Journal through which references are written. */
+    private final Journal _journal;
+    /** The mapped contents of _packedFile, or null if not yet mapped. */
+    private ByteBuffer _packed;
+}
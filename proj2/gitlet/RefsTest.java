@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of branches (see Refs), loose and in the packed-refs file. */
+public class RefsTest {
+
+    /** The repository directory of the current test. */
+    private File _dir;
+
+    @Before
+    public void makeDirectory() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-refs").toFile();
+    }
+
+    @After
+    public void removeDirectory() {
+        Journal.resetLocal();
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Return the UID of a commit numbered K. */
+    private static ObjectId uid(int k) {
+        return ObjectId.of(("commit " + k).getBytes());
+    }
+
+    /** Set branches with a variety of names in REFS, recording them in
+     *  EXPECTED. */
+    private static void setBranches(Refs refs,
+                                    TreeMap<String, ObjectId> expected) {
+        String[] names = { "main", "dev", "origin/main", "origin/dev",
+                           "a-b_c.d", "v1.2", "z" };
+        for (int k = 0; k < names.length; k += 1) {
+            refs.set(names[k], uid(k));
+            expected.put(names[k], uid(k));
+        }
+        for (int k = 0; k < 300; k += 1) {
+            String name = String.format("many/b%03d", k);
+            refs.set(name, uid(1000 + k));
+            expected.put(name, uid(1000 + k));
+        }
+    }
+
+    /** Check that REFS holds exactly the branches in EXPECTED. */
+    private static void checkBranches(Refs refs,
+                                      TreeMap<String, ObjectId> expected) {
+        assertEquals(expected, refs.branches());
+        for (String name : expected.keySet()) {
+            assertEquals(name, expected.get(name), refs.get(name));
+        }
+        assertNull(refs.get("missing"));
+        assertNull(refs.get("origin"));
+    }
+
+    /** Run BODY as a transaction on the repository, as commands run. */
+    private void atomically(Runnable body) {
+        Journal.of(_dir).atomically(body);
+    }
+
+    @Test
+    public void packedRoundTrip() {
+        Refs refs = new Refs(_dir);
+        TreeMap<String, ObjectId> expected = new TreeMap<>();
+        atomically(() -> {
+            refs.setHead("main");
+            setBranches(refs, expected);
+            checkBranches(refs, expected);
+        });
+        checkBranches(refs, expected);
+        atomically(() -> assertEquals(expected.size(), refs.pack()));
+        assertTrue(join(_dir, "packed-refs").isFile());
+        assertEquals(0, join(_dir, "refs", "heads").list().length);
+        checkBranches(refs, expected);
+
+        Refs reread = new Refs(_dir);
+        assertEquals("main", reread.head());
+        checkBranches(reread, expected);
+    }
+
+    /** Loose refs override packed ones, and an empty loose ref hides a
+     *  deleted branch until the refs are packed again. */
+    @Test
+    public void looseOverridesPacked() {
+        Refs refs = new Refs(_dir);
+        TreeMap<String, ObjectId> expected = new TreeMap<>();
+        atomically(() -> {
+            setBranches(refs, expected);
+            refs.pack();
+        });
+        atomically(() -> {
+            refs.set("main", uid(99));
+            refs.delete("origin/dev");
+            refs.set("new", uid(98));
+        });
+        expected.put("main", uid(99));
+        expected.remove("origin/dev");
+        expected.put("new", uid(98));
+        checkBranches(refs, expected);
+        checkBranches(new Refs(_dir), expected);
+
+        atomically(() -> {
+            Refs inside = new Refs(_dir);
+            assertEquals(expected.size(), inside.pack());
+            checkBranches(inside, expected);
+        });
+        checkBranches(new Refs(_dir), expected);
+        assertFalse(join(_dir, "refs", "heads", "origin", "dev").exists());
+    }
+
+    /** Once a deleted branch is packed away, its name may be used as
+     *  the directory of a new branch, and vice versa. */
+    @Test
+    public void packedNamesFreed() {
+        Refs refs = new Refs(_dir);
+        atomically(() -> refs.set("origin/main", uid(1)));
+        atomically(refs::pack);
+        atomically(() -> refs.delete("origin/main"));
+        atomically(refs::pack);
+        assertFalse(join(_dir, "refs", "heads", "origin").exists());
+        atomically(() -> refs.set("origin", uid(2)));
+        assertEquals(uid(2), refs.get("origin"));
+        assertNull(refs.get("origin/main"));
+    }
+
+    /** A packed-refs file with the wrong header is rejected. */
+    @Test
+    public void damagedPackedRefs() {
+        Refs refs = new Refs(_dir);
+        atomically(() -> {
+            refs.set("main", uid(0));
+            refs.pack();
+        });
+        writeContents(join(_dir, "packed-refs"), "GARBAGE!");
+        try {
+            new Refs(_dir).get("main");
+            fail("read a damaged packed-refs file");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+}
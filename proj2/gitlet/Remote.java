@@ -0,0 +1,287 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static gitlet.Utils.*;
+
+/** Remote repositories: other Gitlet repositories on the local file
+ *  system, each recorded by add-remote as a file .gitlet/remotes/NAME
+ *  holding the path of its .gitlet directory (an empty file marks a
+ *  removed remote).  Commits are pushed to and fetched from them.
+ *
+ *  A transfer from a sender to a receiver begins with a negotiation.
+ *  The receiver advertises the heads of all its branches, and the
+ *  sender uses its CommitGraph to find the commits reachable from the
+ *  head being sent that are not reachable from any advertised head (see
+ *  CommitGraph.missing), without walking their shared history.  Since a
+ *  repository holds everything reachable from its branches, the
+ *  receiver lacks just those commits, together with the FileMap nodes
+ *  and blobs (and chunks) of theirs that their parents' maps lack (see
+ *  FileMap.added).  If the sender has reachability bitmaps, it instead
+ *  sends exactly the objects reachable from the head but not from the
+ *  advertised heads it has, each set being found mostly by ORing
+ *  bitmaps (see ReachabilityIndex), so that objects a commit restores
+ *  from older history are not sent again.  The objects are appended to
+ *  the receiver's pack in one run (see ObjectStore.receive), rather
+ *  than copied as loose files or probed for one at a time, which
+ *  discards the receiver's bitmaps until it next repacks.  Finally the
+ *  receiver indexes the new commits, which are then safely in its
+ *  pack, and moves the branch as part of a transaction of its Journal,
+ *  within which a push also reads and checks the branch it moves.
+ *
+ *  If the repository's remote.report setting is true, each transfer
+ *  prints to the standard error the numbers of commits and objects sent
+ *  and of bytes and files written.
+ */
+class Remote {
+
+    /** Directory of remote definitions. */
+    static final File REMOTES_DIR = join(Repository.GITLET_DIR, "remotes");
+
+    /** Approximate number of bytes of objects sent to the receiver's pack
+     *  at once. */
+    private static final long BATCH_SIZE = 32 << 20;
+    /** Number of files written to the receiver by a transfer that sends
+     *  objects: its pack and pack index. */
+    private static final int PACK_FILES = 2;
+
+    /** Record the repository whose .gitlet directory is at PATH, in which
+     *  '/' separates components, as the remote NAME. */
+    static void add(String name, String path) {
+        if (directory(name) != null) {
+            throw error("A remote with that name already exists.");
+        }
+        Journal.local().write(join(REMOTES_DIR, name),
+                              path.replace('/', File.separatorChar)
+                              .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Forget the remote NAME. */
+    static void remove(String name) {
+        if (directory(name) == null) {
+            throw error("A remote with that name does not exist.");
+        }
+        Journal.local().write(join(REMOTES_DIR, name), new byte[0]);
+    }
+
+    /** Send the head of the current branch and its history to BRANCH of
+     *  the remote NAME, creating BRANCH there if needed.  The head of
+     *  the remote BRANCH must be in the current branch's history.
+     *  Returns what was sent. */
+    static Transfer push(String name, String branch) {
+        Side local = new Side(Repository.GITLET_DIR);
+        Side remote = new Side(existingDirectory(name));
+        String current = local.refs.head();
+        if (current == null) {
+            throw error("No current branch.");
+        }
+        ObjectId head = local.refs.get(current);
+        Transfer[] result = new Transfer[1];
+        remote.journal.atomically(() -> {
+            /* The remote's branch is read and checked under its lock, so
+             * that no other push can move it before ours does. */
+            remote.journal.recover();
+            ObjectId theirs = remote.refs.get(branch);
+            if (theirs != null
+                && (!local.graph.contains(theirs)
+                    || !local.graph.isAncestor(theirs, head))) {
+                throw error("Please pull down remote changes before "
+                            + "pushing.");
+            }
+            result[0] = transfer(local, remote, head, branch, "push");
+        });
+        return result[0];
+    }
+
+    /** Copy the history of BRANCH of the remote NAME into the current
+     *  repository, as the branch NAME/BRANCH.  Returns what was
+     *  sent. */
+    static Transfer fetch(String name, String branch) {
+        Side local = new Side(Repository.GITLET_DIR);
+        Side remote = new Side(existingDirectory(name));
+        remote.journal.recover();
+        ObjectId tip = remote.refs.get(branch);
+        if (tip == null) {
+            throw error("That remote does not have that branch.");
+        }
+        return transfer(remote, local, tip, name + "/" + branch, "fetch");
+    }
+
+    /** Send TIP and what it reaches from FROM to TO, as described in the
+     *  class comment, and make TIP the head of BRANCH in TO, as part of
+     *  TO's current transaction.  VERB names the operation in the
+     *  report.  Returns what was sent. */
+    private static Transfer transfer(Side from, Side to, ObjectId tip,
+                                 String branch, String verb) {
+        if (!from.graph.contains(tip)) {
+            throw new IllegalArgumentException("commit graph lacks " + tip);
+        }
+        List<ObjectId> haves = new ArrayList<>(to.refs.branches().values());
+        LinkedHashMap<ObjectId, Commit> commits = new LinkedHashMap<>();
+        LinkedHashSet<ObjectId> objects = new LinkedHashSet<>();
+        boolean bitmapped = from.bitmaps.size() > 0;
+        if (bitmapped) {
+            haves.removeIf(uid -> !from.graph.contains(uid));
+            ReachabilityIndex.Reachable wanted =
+                from.bitmaps.reachable(List.of(tip));
+            wanted.removeAll(from.bitmaps.reachable(haves));
+            wanted.forEach(objects::add);
+        }
+        for (int pos : from.graph.missing(List.of(tip), haves)) {
+            ObjectId uid = from.graph.uid(pos);
+            Commit commit = from.commit(uid);
+            commits.put(uid, commit);
+            objects.add(uid);
+            if (bitmapped) {
+                continue;
+            }
+            ObjectId first = commit.getParent();
+            Commit parent = first == null ? null
+                : commits.containsKey(first) ? commits.get(first)
+                : from.commit(first);
+            if (commit.getTree() == null) {
+                objects.addAll(commit.getBlobs().values());
+            } else {
+                FileMap.added(from.store,
+                              parent == null ? null : parent.getTree(),
+                              commit.getTree(), objects::add, objects::add);
+            }
+        }
+
+        Transfer result = new Transfer();
+        result.commits = commits.size();
+        Deque<ObjectId> todo = new ArrayDeque<>(objects);
+        HashSet<ObjectId> seen = new HashSet<>(objects);
+        TreeMap<ObjectId, ObjectStore.Stored> batch = new TreeMap<>();
+        long batchSize = 0;
+        while (!todo.isEmpty()) {
+            ObjectId uid = todo.pop();
+            ObjectStore.Stored stored = from.store.readStored(uid);
+            for (ObjectId chunk : ObjectStore.chunks(stored)) {
+                if (seen.add(chunk)) {
+                    todo.add(chunk);
+                }
+            }
+            batch.put(uid, stored);
+            batchSize += stored.bytes.length;
+            result.objects += 1;
+            if (batchSize > BATCH_SIZE || todo.isEmpty()) {
+                result.bytes += to.store.receive(batch);
+                batch.clear();
+                batchSize = 0;
+            }
+        }
+
+        /* The objects are already in TO's pack, so its indices may take
+         * the commits now, parents first and the graph last (see
+         * Commit.index), rather than after the transaction commits. */
+        for (Map.Entry<ObjectId, Commit> e : commits.entrySet()) {
+            to.uids.add(e.getKey());
+            to.messages.add(e.getValue().getMessage(), e.getKey());
+            to.graph.add(e.getKey(), e.getValue());
+        }
+        to.refs.set(branch, tip);
+        result.files = result.bytes == 0 ? 0 : PACK_FILES;
+        if (Config.getBoolean("remote.report", false)) {
+            System.err.println(verb + ": " + result);
+        }
+        return result;
+    }
+
+    /** Return the .gitlet directory of the remote NAME, or null if there
+     *  is no such remote. */
+    private static File directory(String name) {
+        File file = join(REMOTES_DIR, name);
+        Journal journal = Journal.local();
+        if (!journal.exists(file)) {
+            return null;
+        }
+        String path = new String(journal.read(file), StandardCharsets.UTF_8);
+        if (path.isEmpty()) {
+            return null;
+        }
+        File dir = new File(path);
+        if (!dir.isAbsolute()) {
+            dir = join(Repository.CWD, path);
+        }
+        return dir.toPath().normalize().toFile();
+    }
+
+    /** Return the .gitlet directory of the remote NAME, which must
+     *  exist. */
+    private static File existingDirectory(String name) {
+        File dir = directory(name);
+        if (dir == null || !dir.isDirectory()) {
+            throw error("Remote directory not found.");
+        }
+        return dir;
+    }
+
+    /** The amount of data sent by a push or fetch. */
+    static class Transfer {
+        /** Number of commits sent. */
+        int commits;
+        /** Number of objects, including commits, sent. */
+        int objects;
+        /** Number of bytes written to the receiver's pack and index. */
+        long bytes;
+        /** Number of the receiver's files written. */
+        int files;
+
+        @Override
+        public String toString() {
+            return String.format("%d commits, %d objects, %d bytes written "
+                                 + "in %d files", commits, objects, bytes,
+                                 files);
+        }
+    }
+
+    /** One side of a transfer: the stores and indices of a repository,
+     *  which are the cached ones for the current repository. */
+    private static class Side {
+        /** The side for the repository whose metadata is in GITLETDIR. */
+        Side(File gitletDir) {
+            boolean local = gitletDir.equals(Repository.GITLET_DIR);
+            journal = Journal.of(gitletDir);
+            store = local ? ObjectStore.local() : new ObjectStore(gitletDir);
+            refs = local ? Refs.local() : new Refs(gitletDir);
+            graph = local ? CommitGraph.local()
+                : new CommitGraph(gitletDir, store);
+            uids = local ? UidIndex.local() : new UidIndex(gitletDir);
+            messages = local ? MessageIndex.local()
+                : new MessageIndex(gitletDir);
+            bitmaps = local ? ReachabilityIndex.local()
+                : new ReachabilityIndex(store, graph);
+        }
+
+        /** Return the commit UID from this side's store. */
+        Commit commit(ObjectId uid) {
+            return store.decode(uid, Commit.class);
+        }
+
+        /** The repository's journal. */
+        private final Journal journal;
+        /** The repository's objects. */
+        private final ObjectStore store;
+        /** The repository's branches. */
+        private final Refs refs;
+        /** The repository's commit graph. */
+        private final CommitGraph graph;
+        /** The repository's commit UID index. */
+        private final UidIndex uids;
+        /** The repository's message index. */
+        private final MessageIndex messages;
+        /** The repository's reachability bitmaps. */
+        private final ReachabilityIndex bitmaps;
+    }
+}
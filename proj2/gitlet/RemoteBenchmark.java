@@ -0,0 +1,136 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** Measures the data sent by push (see Remote) to a remote that is one
+ *  commit behind.  Usage, from an empty directory:
+ *
+ *      java gitlet.RemoteBenchmark [FILES [COMMITS [SIZE]]]
+ *
+ *  creates a repository whose history has COMMITS commits (by default
+ *  100) over FILES files (by default 20000) of SIZE bytes (by default
+ *  1024), the first adding all the files and each later one changing
+ *  one to three of them, and packs its objects.  It then pushes that
+ *  history to an empty repository in the subdirectory "remote", makes
+ *  one more commit changing one file, and pushes again.  For each push,
+ *  prints the time taken and the commits, objects, bytes, and files
+ *  sent, and for comparison, the objects, bytes, and files of a copy of
+ *  everything reachable from the pushed head.
+ */
+public class RemoteBenchmark {
+
+    /** Run the benchmark as described in the class comment, using ARGS. */
+    public static void main(String... args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        File remote = join(Repository.CWD, "remote", ".gitlet");
+        if (Repository.GITLET_DIR.exists() || remote.exists()) {
+            throw error("Run RemoteBenchmark in an empty directory.");
+        }
+        Repository.GITLET_DIR.mkdirs();
+        remote.mkdirs();
+        Random random = new Random(0);
+
+        long start = System.nanoTime();
+        Journal.local().atomically(() -> {
+            build(files, commits, size, random);
+            Remote.add("origin", "remote/.gitlet");
+        });
+        Journal.local().atomically(Repository::repack);
+        System.out.printf("built %d commits over %d files in %.1f s%n",
+                          commits, files, (System.nanoTime() - start) / 1e9);
+
+        System.out.printf("%-12s %8s %8s %8s %12s %6s%n", "push", "ms",
+                          "commits", "objects", "bytes", "files");
+        System.out.printf("-------------------------------------------------"
+                          + "-----------%n");
+        push("initial");
+        Journal.local().atomically(() -> commit(files, size, random, 1,
+                                                "one more"));
+        push("one ahead");
+    }
+
+    /** Push the current branch to the remote, printing its statistics and
+     *  those of a full copy, labelled LABEL. */
+    private static void push(String label) {
+        long start = System.nanoTime();
+        Remote.Transfer[] sent = new Remote.Transfer[1];
+        Journal.local().atomically(
+            () -> sent[0] = Remote.push("origin", "master"));
+        System.out.printf("%-12s %8.1f %8d %8d %12d %6d%n", label,
+                          (System.nanoTime() - start) / 1e6, sent[0].commits,
+                          sent[0].objects, sent[0].bytes, sent[0].files);
+        long[] full = reachable(Refs.local().get("master"));
+        System.out.printf("%-12s %8s %8s %8d %12d %6d%n", "  full copy",
+                          "", "", full[0], full[1], full[0]);
+    }
+
+    /** Return the number of objects reachable from commit HEAD, and their
+     *  total stored size. */
+    private static long[] reachable(ObjectId head) {
+        ObjectStore store = ObjectStore.local();
+        TreeSet<ObjectId> seen = new TreeSet<>();
+        long[] result = new long[2];
+        for (ObjectId uid = head; uid != null; ) {
+            seen.add(uid);
+            Commit commit = Commit.load(uid);
+            FileMap.walk(store, commit.getTree(), seen::add, seen::add);
+            uid = commit.getParent();
+        }
+        for (ObjectId uid : seen) {
+            result[0] += 1;
+            result[1] += store.readStored(uid).bytes.length;
+        }
+        return result;
+    }
+
+    /** Create a history of COMMITS commits over FILES files of SIZE bytes
+     *  using RANDOM, as described in the class comment, on the branch
+     *  master. */
+    static void build(int files, int commits, int size,
+                              Random random) {
+        Refs.local().setHead("master");
+        commit(files, size, random, files, "initial commit");
+        for (int i = 1; i < commits; i += 1) {
+            commit(files, size, random, 1 + random.nextInt(3),
+                   "commit " + i);
+        }
+    }
+
+    /** Commit new contents of SIZE bytes, chosen using RANDOM, for
+     *  CHANGES of the FILES files (all of them, if CHANGES is FILES) to
+     *  the current branch, with message MESSAGE. */
+    static void commit(int files, int size, Random random,
+                               int changes, String message) {
+        Refs refs = Refs.local();
+        ObjectId parent = refs.get(refs.head());
+        TreeMap<String, ObjectId> puts = new TreeMap<>();
+        for (int k = 0; k < changes; k += 1) {
+            int file = changes == files ? k : random.nextInt(files);
+            byte[] contents = new byte[size];
+            random.nextBytes(contents);
+            puts.put(fileName(file), ObjectStore.local().write(contents));
+        }
+        ObjectId tree = FileMap.update(ObjectStore.local(),
+                                       parent == null ? null
+                                       : Commit.load(parent).getTree(),
+                                       puts, new TreeSet<>());
+        Commit commit =
+            new Commit(message, new Date(),
+                       parent == null ? List.of() : List.of(parent), tree);
+        refs.set(refs.head(), commit.save());
+    }
+
+    /** Return the name of synthetic file number K. */
+    private static String fileName(int k) {
+        return String.format("file%05d.txt", k);
+    }
+}
@@ -1,29 +1,305 @@
 package gitlet;
 
 import java.io.File;
-import static gitlet.Utils.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
 
-// TODO: any imports you need here
+import static gitlet.Utils.*;
 
-/** Represents a gitlet repository.
- *  TODO: It's a good idea to give a description here of what else this Class
- *  does at a high level.
- *
- *  @author TODO
+/** Represents a gitlet repository: the working directory and the
+ *  .gitlet directory beneath it.  Each command that Main dispatches is
+ *  carried out here, using the ObjectStore for blobs and commits, Refs
+ *  for branches, the StagingArea, and the indices kept beside them
+ *  (CommitGraph, MessageIndex, and ReachabilityIndex).  Writes to the
+ *  refs, staging area, and loose objects go through the Journal, so that
+ *  a command takes effect completely or not at all.  Appends to the pack
+ *  of objects (see ObjectStore) and to the indices are made directly,
+ *  since a crash during one leaves at worst unreferenced objects or
+ *  missing index entries, which recover supplies.
  */
 public class Repository {
-    /**
-     * TODO: add instance variables here.
-     *
-     * List all instance variables of the Repository class here with a useful
-     * comment above them describing what that variable represents and how that
-     * variable is used. We've provided two examples for you.
-     */
 
     /** The current working directory. */
     public static final File CWD = new File(System.getProperty("user.dir"));
     /** The .gitlet directory. */
     public static final File GITLET_DIR = join(CWD, ".gitlet");
 
-    /* TODO: fill in the rest of this class. */
+    /** Check that the current directory is in an initialized Gitlet
+     *  repository, throwing a GitletException if not. */
+    static void checkInitialized() {
+        if (!GITLET_DIR.isDirectory()) {
+            throw error("Not in an initialized Gitlet directory.");
+        }
+    }
+
+    /** Create a new repository in the current directory, holding one
+     *  commit, the initial commit, with no files, made at the Unix epoch,
+     *  as the head of the branch master, which is made current.  Throws
+     *  a GitletException if there is a repository here already. */
+    public static void init() {
+        if (GITLET_DIR.exists()) {
+            throw error("A Gitlet version-control system already exists "
+                        + "in the current directory.");
+        }
+        GITLET_DIR.mkdir();
+        ObjectId tree = FileMap.write(ObjectStore.local(), Map.of());
+        ObjectId uid =
+            new Commit("initial commit", new Date(0), List.of(), tree).save();
+        Refs.local().set("master", uid);
+        Refs.local().setHead("master");
+    }
+
+    /** Discard all cached repository state, so that it is reread from
+     *  disk when next needed. */
+    static void resetCaches() {
+        Config.resetLocal();
+        ObjectStore.resetLocal();
+        CommitGraph.resetLocal();
+        UidIndex.resetLocal();
+        MessageIndex.resetLocal();
+        Journal.resetLocal();
+        Refs.resetLocal();
+        ReachabilityIndex.resetLocal();
+    }
+
+    /** Finish or roll back any transaction interrupted by an earlier
+     *  command (see Journal), and index the commits that it made.  Those
+     *  are the commits reachable from the branches that the commit graph
+     *  lacks, since a command that makes a commit also moves a branch to
+     *  it, and a commit enters the graph only after the other indices
+     *  (see Commit.index).  They are found by type, by walking from the
+     *  branches, rather than by decoding whatever files were
+     *  recovered. */
+    static void recover() {
+        Journal.local().recover();
+        CommitGraph graph = CommitGraph.local();
+        Map<ObjectId, Commit> commits = new HashMap<>();
+        for (ObjectId uid : unindexed(Refs.local().branches().values(),
+                                      graph::contains, commits)) {
+            commits.get(uid).index(uid);
+        }
+    }
+
+    /** Return the UIDs of the commits reachable from TIPS, stopping at
+     *  those for which INDEXED is true, parents before children,
+     *  recording each commit in COMMITS as it is read. */
+    private static List<ObjectId> unindexed(Collection<ObjectId> tips,
+                                            Predicate<ObjectId> indexed,
+                                            Map<ObjectId, Commit> commits) {
+        ObjectStore store = ObjectStore.local();
+        List<ObjectId> result = new ArrayList<>();
+        ArrayDeque<ObjectId> work = new ArrayDeque<>();
+        for (ObjectId tip : tips) {
+            if (indexed.test(tip) || commits.containsKey(tip)) {
+                continue;
+            }
+            commits.put(tip, store.decode(tip, Commit.class));
+            work.push(tip);
+            while (!work.isEmpty()) {
+                ObjectId next = work.peek();
+                boolean ready = true;
+                for (ObjectId parent : commits.get(next).getParents()) {
+                    if (!indexed.test(parent)
+                        && !commits.containsKey(parent)) {
+                        commits.put(parent,
+                                    store.decode(parent, Commit.class));
+                        work.push(parent);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    work.pop();
+                    result.add(next);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the full UID of the commit whose UID is or begins with ID,
+     *  as for checkout and reset.  Throws a GitletException if there is
+     *  no such commit or ID is ambiguous. */
+    static ObjectId resolveCommit(String id) {
+        ObjectId uid = UidIndex.local().resolve(id);
+        if (uid == null) {
+            throw error("No commit with that id exists.");
+        }
+        return uid;
+    }
+
+    /** Overwrite the working file NAME with its version in COMMIT, as for
+     *  checkout and reset.  The blob is streamed into place (see
+     *  ObjectStore.copyTo) rather than read into memory.  Throws a
+     *  GitletException if COMMIT does not track NAME. */
+    static void restoreFile(Commit commit, String name) {
+        ObjectId uid = commit.getBlob(name);
+        if (uid == null) {
+            throw error("File does not exist in that commit.");
+        }
+        ObjectStore.local().copyTo(uid, join(CWD, name));
+    }
+
+    /** Print the log entries, newest first, of the commits in the
+     *  first-parent history of the current branch, as for "log". */
+    public static void log() {
+        checkInitialized();
+        Refs refs = Refs.local();
+        ObjectId uid = refs.head() == null ? null : refs.get(refs.head());
+        if (uid == null) {
+            throw error("No current branch.");
+        }
+        while (uid != null) {
+            Commit commit = Commit.load(uid);
+            printLogEntry(uid, commit);
+            uid = commit.getParent();
+        }
+    }
+
+    /** Print the log entries, newest first, of the commits in the
+     *  first-parent history of the current branch that change the file
+     *  NAME, as for "log -- NAME".  Commits are ruled out by their
+     *  changed-path filters where possible (see ChangedPaths). */
+    public static void logPath(String name) {
+        checkInitialized();
+        Refs refs = Refs.local();
+        ObjectId head = refs.head() == null ? null : refs.get(refs.head());
+        if (head == null) {
+            throw error("No current branch.");
+        }
+        CommitGraph graph = CommitGraph.local();
+        ChangedPaths filters = graph.changedPaths();
+        for (ObjectId uid : filters.history(graph, head, name)) {
+            printLogEntry(uid, Commit.load(uid));
+        }
+        if (Config.getBoolean("bloom.report", false)) {
+            System.err.println(filters.report());
+        }
+    }
+
+    /** Print the UIDs of all commits whose message is MESSAGE, one per
+     *  line, as for "find MESSAGE", found through the message index (see
+     *  MessageIndex) without reading other commits.  Throws a
+     *  GitletException if there are none. */
+    public static void find(String message) {
+        checkInitialized();
+        List<ObjectId> found = MessageIndex.local().find(message);
+        if (found.isEmpty()) {
+            throw error("Found no commit with that message.");
+        }
+        for (ObjectId uid : found) {
+            System.out.println(uid.hex());
+        }
+    }
+
+    /** Print the log entry for COMMIT, whose UID is UID. */
+    static void printLogEntry(ObjectId uid, Commit commit) {
+        System.out.println("===");
+        System.out.println("commit " + uid.hex());
+        List<ObjectId> parents = commit.getParents();
+        if (parents.size() > 1) {
+            System.out.println("Merge: " + parents.get(0).abbreviate(7)
+                               + " " + parents.get(1).abbreviate(7));
+        }
+        System.out.printf("Date: %1$ta %1$tb %1$te %1$tT %1$tY %1$tz%n",
+                          commit.getTimestamp());
+        System.out.println(commit.getMessage());
+        System.out.println();
+    }
+
+    /** Rebuild the commit graph, commit UID index, and message index from
+     *  the commits reachable from the repository's branches, as for
+     *  repositories created before those indices existed.  Commits are
+     *  found by walking from the branches, so that no other object is
+     *  ever decoded as one. */
+    public static void reindex() {
+        checkInitialized();
+        TreeMap<ObjectId, Commit> commits = new TreeMap<>();
+        unindexed(Refs.local().branches().values(), uid -> false, commits);
+        rebuildIndices(commits);
+    }
+
+    /** Replace the contents of the commit graph, commit UID index, and
+     *  message index with COMMITS, a mapping of UIDs to commits. */
+    static void rebuildIndices(Map<ObjectId, Commit> commits) {
+        List<ObjectId> uids = new ArrayList<>(commits.keySet());
+        uids.sort(Comparator.comparing(uid -> commits.get(uid).getTimestamp()));
+
+        CommitGraph.local().clear();
+        UidIndex.local().clear();
+        MessageIndex.local().clear();
+        for (ObjectId uid : uids) {
+            Commit commit = commits.get(uid);
+            CommitGraph.local().add(uid, commit);
+            UidIndex.local().add(uid);
+            MessageIndex.local().add(commit.getMessage(), uid);
+        }
+        UidIndex.local().compact();
+    }
+
+    /** Delete all objects not reachable from the repository's branches or
+     *  staging area, reporting what was reclaimed (see
+     *  GarbageCollector). */
+    public static void gc() {
+        checkInitialized();
+        new GarbageCollector(ObjectStore.local(), ReachabilityIndex.local())
+            .collect();
+    }
+
+    /** Stage the files named by PATHS, and the files below the
+     *  directories among them, for addition (see BulkAdd). */
+    public static void add(List<String> paths) {
+        checkInitialized();
+        BulkAdd.add(paths);
+    }
+
+    /** Move all loose branch references into the repository's
+     *  packed-refs file. */
+    public static void packRefs() {
+        checkInitialized();
+        Refs.local().pack();
+    }
+
+    /** Move all loose objects into the repository's pack file, storing
+     *  them as deltas against similar objects where possible, and
+     *  rebuild its reachability bitmaps (see ReachabilityIndex). */
+    public static void repack() {
+        checkInitialized();
+        ObjectStore.local().repack();
+        ReachabilityIndex.local().rebuild(Refs.local().branches().values());
+    }
+
+    /** Record the repository whose .gitlet directory is PATH as the
+     *  remote NAME. */
+    public static void addRemote(String name, String path) {
+        checkInitialized();
+        Remote.add(name, path);
+    }
+
+    /** Forget the remote NAME. */
+    public static void rmRemote(String name) {
+        checkInitialized();
+        Remote.remove(name);
+    }
+
+    /** Send the current branch to BRANCH of the remote NAME (see
+     *  Remote). */
+    public static void push(String name, String branch) {
+        checkInitialized();
+        Remote.push(name, branch);
+    }
+
+    /** Copy BRANCH of the remote NAME into the branch NAME/BRANCH (see
+     *  Remote). */
+    public static void fetch(String name, String branch) {
+        checkInitialized();
+        Remote.fetch(name, branch);
+    }
 }
@@ -0,0 +1,134 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** The staging area of a Gitlet repository: files staged for addition,
+ *  with the UIDs of their staged blobs, and files staged for removal.
+ *  It is kept in the file .gitlet/staging.
+ */
+class StagingArea implements Dumpable {
+
+    /** Fixed, so that staging areas serialized by Java serialization
+     *  remain readable after compatible changes to this class. */
+    private static final long serialVersionUID = 1L;
+
+    /** The file in which the staging area is kept. */
+    static final File STAGING_FILE = join(Repository.GITLET_DIR, "staging");
+
+    /** An empty staging area. */
+    StagingArea() {
+    }
+
+    /** Return the repository's staging area, which is empty if it has
+     *  never been saved. */
+    static StagingArea load() {
+        Journal journal = Journal.local();
+        if (!journal.exists(STAGING_FILE)) {
+            return new StagingArea();
+        }
+        return Codecs.decode(journal.read(STAGING_FILE), StagingArea.class);
+    }
+
+    /** Write this staging area to the repository. */
+    void save() {
+        Journal.local().write(STAGING_FILE, Codecs.encode(this));
+    }
+
+    /** Stage NAME for addition with contents UID. */
+    void add(String name, ObjectId uid) {
+        _removed.remove(name);
+        _added.put(name, uid);
+    }
+
+    /** Stage NAME for removal. */
+    void remove(String name) {
+        _added.remove(name);
+        _removed.add(name);
+    }
+
+    /** Remove NAME from the staging area altogether. */
+    void unstage(String name) {
+        _added.remove(name);
+        _removed.remove(name);
+    }
+
+    /** Remove all files from the staging area. */
+    void clear() {
+        _added.clear();
+        _removed.clear();
+    }
+
+    /** Return true iff nothing is staged. */
+    boolean isEmpty() {
+        return _added.isEmpty() && _removed.isEmpty();
+    }
+
+    /** Return the mapping of files staged for addition to their blob
+     *  UIDs. */
+    Map<String, ObjectId> added() {
+        return Collections.unmodifiableMap(_added);
+    }
+
+    /** Return the set of files staged for removal. */
+    Set<String> removed() {
+        return Collections.unmodifiableSet(_removed);
+    }
+
+    @Override
+    public void dump() {
+        System.out.printf("added: %s%nremoved: %s%n", _added, _removed);
+    }
+
+    /** The encoding of staging areas:
+     *      #added  (name  UID)...  #removed  name...
+     *  where counts are varints. */
+    static final Codec<StagingArea> CODEC = new Codec<>() {
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public void write(StagingArea stage, DataOutputStream out)
+            throws IOException {
+            Codecs.writeVarint(out, stage._added.size());
+            for (Map.Entry<String, ObjectId> e : stage._added.entrySet()) {
+                Codecs.writeString(out, e.getKey());
+                Codecs.writeUid(out, e.getValue());
+            }
+            Codecs.writeVarint(out, stage._removed.size());
+            for (String name : stage._removed) {
+                Codecs.writeString(out, name);
+            }
+        }
+
+        @Override
+        public StagingArea read(DataInputStream in, int version)
+            throws IOException {
+            StagingArea stage = new StagingArea();
+            for (long n = Codecs.readVarint(in); n > 0; n -= 1) {
+                String name = Codecs.readString(in);
+                stage._added.put(name, Codecs.readUid(in));
+            }
+            for (long n = Codecs.readVarint(in); n > 0; n -= 1) {
+                stage._removed.add(Codecs.readString(in));
+            }
+            return stage;
+        }
+    };
+
+    /** Files staged for addition, mapped to their blob UIDs. */
+    private final TreeMap<String, ObjectId> _added = new TreeMap<>();
+    /** Files staged for removal. */
+    private final TreeSet<String> _removed = new TreeSet<>();
+}
@@ -0,0 +1,196 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static gitlet.Utils.*;
+
+/** A cache of the blob UIDs of working files, kept in .gitlet/index in
+ *  the manner of Git's index.  For each file it records the size and
+ *  modification time the file had when it was last hashed, so that a
+ *  file whose size and modification time are unchanged need not be read
+ *  and hashed again.
+ *
+ *  A file modified within the timestamp granularity of the file system
+ *  after it was hashed may keep the same modification time.  To guard
+ *  against such "racily clean" files, an entry is trusted only if the
+ *  file's modification time is strictly earlier than that of the index
+ *  file itself when it was loaded.
+ *
+ *  uidOf may be called concurrently from several threads.
+ */
+class StatCache implements Dumpable {
+
+    /** The file in which the cache is kept. */
+    static final File INDEX_FILE = join(Repository.GITLET_DIR, "index");
+
+    /** An empty cache. */
+    StatCache() {
+    }
+
+    /** Return the repository's cache, which is empty if it has never been
+     *  saved. */
+    static StatCache load() {
+        return load(INDEX_FILE, Repository.CWD);
+    }
+
+    /** Return the cache kept in INDEXFILE, which is empty if there is no
+     *  such file, for the working files in WORKDIR. */
+    static StatCache load(File indexFile, File workDir) {
+        StatCache result = new StatCache();
+        if (indexFile.isFile()) {
+            result = readObject(indexFile, StatCache.class);
+            result._indexTime = modificationTime(indexFile);
+        }
+        result._workDir = workDir;
+        return result;
+    }
+
+    /** Write this cache to the repository as part of the current
+     *  transaction, if it has changed since it was loaded. */
+    synchronized void save() {
+        if (_changed) {
+            Journal.local().write(INDEX_FILE, Codecs.encode(this));
+            _changed = false;
+        }
+    }
+
+    /** Return the UID of the blob that would hold the contents of the
+     *  working file NAME, hashing the file only if its size or
+     *  modification time differ from those recorded for it. */
+    ObjectId uidOf(String name) {
+        return uidOf(name, ObjectId::of);
+    }
+
+    /** Return the UID of the blob that would hold the contents of the
+     *  working file NAME as for uidOf(NAME), but computing it, when the
+     *  file must be hashed, as HASH(FILE), where FILE is the working
+     *  file.  HASH may thus also do something else with the contents it
+     *  reads, such as compress them. */
+    ObjectId uidOf(String name, Function<File, ObjectId> hash) {
+        File file = join(_workDir, name);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(),
+                                         BasicFileAttributes.class);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        long size = attrs.size();
+        long mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        Entry entry;
+        synchronized (this) {
+            entry = _entries.get(name);
+        }
+        if (entry != null && entry.size == size && entry.mtime == mtime
+            && mtime < _indexTime) {
+            return entry.uid;
+        }
+        ObjectId uid = hash.apply(file);
+        synchronized (this) {
+            _entries.put(name, new Entry(size, mtime, uid));
+            _changed = true;
+        }
+        return uid;
+    }
+
+    /** Forget anything recorded about the working file NAME. */
+    synchronized void forget(String name) {
+        if (_entries.remove(name) != null) {
+            _changed = true;
+        }
+    }
+
+    @Override
+    public void dump() {
+        for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+            System.out.printf("%s %d %d %s%n", e.getValue().uid,
+                              e.getValue().size, e.getValue().mtime,
+                              e.getKey());
+        }
+    }
+
+    /** Return the modification time of FILE in nanoseconds. */
+    private static long modificationTime(File file) {
+        try {
+            return Files.getLastModifiedTime(file.toPath())
+                .to(TimeUnit.NANOSECONDS);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** What is recorded about one file. */
+    private static class Entry implements Serializable {
+        /** An entry for a file of SIZE bytes modified at MTIME with contents
+         *  UID. */
+        Entry(long size, long mtime, ObjectId uid) {
+            this.size = size;
+            this.mtime = mtime;
+            this.uid = uid;
+        }
+
+        /** The file's size in bytes. */
+        private final long size;
+        /** The file's modification time in nanoseconds. */
+        private final long mtime;
+        /** The UID of the file's contents. */
+        private final ObjectId uid;
+    }
+
+    /** The encoding of stat caches:
+     *      #entries  (name  size  mtime  UID)...
+     *  where #entries is a varint, and size and mtime are 8 bytes each. */
+    static final Codec<StatCache> CODEC = new Codec<>() {
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public void write(StatCache cache, DataOutputStream out)
+            throws IOException {
+            Codecs.writeVarint(out, cache._entries.size());
+            for (Map.Entry<String, Entry> e : cache._entries.entrySet()) {
+                Codecs.writeString(out, e.getKey());
+                out.writeLong(e.getValue().size);
+                out.writeLong(e.getValue().mtime);
+                Codecs.writeUid(out, e.getValue().uid);
+            }
+        }
+
+        @Override
+        public StatCache read(DataInputStream in, int version)
+            throws IOException {
+            StatCache cache = new StatCache();
+            for (long n = Codecs.readVarint(in); n > 0; n -= 1) {
+                String name = Codecs.readString(in);
+                long size = in.readLong();
+                long mtime = in.readLong();
+                cache._entries.put(name,
+                                   new Entry(size, mtime, Codecs.readUid(in)));
+            }
+            return cache;
+        }
+    };
+
+    /** Entries for working files, indexed by name. */
+    private final TreeMap<String, Entry> _entries = new TreeMap<>();
+    /** Modification time of INDEX_FILE when loaded, in nanoseconds.
+     *  Entries for files modified at or after this time are not
+     *  trusted. */
+    private transient long _indexTime = Long.MIN_VALUE;
+    /** The working directory, which holds the files named in _entries. */
+    private transient File _workDir = Repository.CWD;
+    /** True iff _entries has changed since it was loaded. */
+    private transient boolean _changed;
+}
@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the cache of working files' UIDs (see StatCache), kept for
+ *  the files of a temporary directory. */
+public class StatCacheTest {
+
+    /** A modification time in milliseconds, well in the past. */
+    private static final long TIME = 1_500_000_000_000L;
+
+    /** The working directory of the current test. */
+    private File _dir;
+    /** The file holding the cache. */
+    private File _index;
+    /** Number of times a file has been hashed. */
+    private int _hashes;
+
+    @Before
+    public void makeDirectory() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-stat").toFile();
+        _index = join(_dir, "index");
+    }
+
+    @After
+    public void removeDirectory() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Set the modification time of FILE to MILLIS. */
+    private static void touch(File file, long millis) throws IOException {
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(millis));
+    }
+
+    /** Return the UID of working file NAME as found through CACHE,
+     *  counting the times it is hashed. */
+    private ObjectId uidOf(StatCache cache, String name) {
+        return cache.uidOf(name, file -> {
+            _hashes += 1;
+            return ObjectId.of(readContents(file));
+        });
+    }
+
+    /** Save CACHE in the index file, with modification time MILLIS, and
+     *  return the cache read back from it. */
+    private StatCache reload(StatCache cache, long millis)
+        throws IOException {
+        writeContents(_index, (Object) Codecs.encode(cache));
+        touch(_index, millis);
+        return StatCache.load(_index, _dir);
+    }
+
+    /** An entry is trusted only for a file modified strictly before the
+     *  cache was written; one modified at the same time is rehashed, so
+     *  that a change within the timestamp granularity is seen. */
+    @Test
+    public void racyTimestamp() throws IOException {
+        File file = join(_dir, "f.txt");
+        writeContents(file, "one");
+        touch(file, TIME);
+        StatCache cache = StatCache.load(_index, _dir);
+        ObjectId one = uidOf(cache, "f.txt");
+        assertEquals(1, _hashes);
+
+        cache = reload(cache, TIME);
+        assertEquals(one, uidOf(cache, "f.txt"));
+        assertEquals(2, _hashes);
+
+        writeContents(file, "two");
+        touch(file, TIME);
+        cache = reload(cache, TIME);
+        assertEquals(ObjectId.of("two".getBytes()), uidOf(cache, "f.txt"));
+        assertEquals(3, _hashes);
+
+        cache = reload(cache, TIME + 2000);
+        assertEquals(ObjectId.of("two".getBytes()), uidOf(cache, "f.txt"));
+        assertEquals(3, _hashes);
+    }
+
+    /** A change of size or modification time is always seen. */
+    @Test
+    public void changedFile() throws IOException {
+        File file = join(_dir, "f.txt");
+        writeContents(file, "one");
+        touch(file, TIME);
+        StatCache cache = StatCache.load(_index, _dir);
+        uidOf(cache, "f.txt");
+        cache = reload(cache, TIME + 2000);
+
+        writeContents(file, "three");
+        touch(file, TIME);
+        assertEquals(ObjectId.of("three".getBytes()), uidOf(cache, "f.txt"));
+        writeContents(file, "four!");
+        touch(file, TIME + 1000);
+        assertEquals(ObjectId.of("four!".getBytes()), uidOf(cache, "f.txt"));
+        assertEquals(3, _hashes);
+    }
+}
@@ -0,0 +1,235 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** A persistent sorted index of the UIDs of all commits, used to resolve
+ *  abbreviated commit UIDs by binary search.  It consists of two files:
+ *  .gitlet/commit-ids, a sorted array of 20-byte UIDs that is memory-
+ *  mapped and searched, and .gitlet/commit-ids.new, an unsorted log of
+ *  UIDs added since commit-ids was last written.  New commits are
+ *  appended to the log; when the log exceeds MAX_LOG entries it is merged
+ *  into the sorted array.  Lookups therefore take O(log N + MAX_LOG) time
+ *  for N commits, and additions O(1) amortized writes of O(N / MAX_LOG)
+ *  bytes.
+ */
+class UidIndex {
+
+    /** Length of a binary UID. */
+    private static final int ID_BYTES = ObjectId.LENGTH;
+    /** Maximum number of entries in the unsorted log. */
+    private static final int MAX_LOG = 1024;
+    /** Length of the shortest prefix that resolve accepts. */
+    static final int MIN_PREFIX = 4;
+
+    /** The commit UID index of the repository whose metadata is in
+     *  GITLETDIR. */
+    UidIndex(File gitletDir) {
+        _sortedFile = join(gitletDir, "commit-ids");
+        _logFile = join(gitletDir, "commit-ids.new");
+    }
+
+    /** Return the commit UID index of the repository in the current
+     *  directory. */
+    static UidIndex local() {
+        if (_local == null) {
+            _local = new UidIndex(Repository.GITLET_DIR);
+        }
+        return _local;
+    }
+
+    /** Discard the cached commit UID index of the repository in the current
+     *  directory, so that it is reread from disk when next needed. */
+    static void resetLocal() {
+        _local = null;
+    }
+
+    /** Add the commit UID to the index.  A partial entry left at the end
+     *  of the log by a crash is overwritten, so that entries stay aligned
+     *  on ID_BYTES. */
+    void add(ObjectId uid) {
+        load();
+        byte[] id = uid.bytes();
+        if (sortedContains(id) || _log.contains(uid)) {
+            return;
+        }
+        try (FileChannel log =
+             FileChannel.open(_logFile.toPath(), StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE)) {
+            long end = log.size() - log.size() % ID_BYTES;
+            log.truncate(end);
+            ByteBuffer buf = ByteBuffer.wrap(id);
+            while (buf.hasRemaining()) {
+                end += log.write(buf, end);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _log.add(uid);
+        if (_log.size() > MAX_LOG) {
+            compact();
+        }
+    }
+
+    /** Return the full UID of the unique commit whose UID begins with
+     *  PREFIX, or null if there is none or PREFIX is shorter than
+     *  MIN_PREFIX.  Throws a GitletException if PREFIX is ambiguous. */
+    ObjectId resolve(String prefix) {
+        if (prefix.length() < MIN_PREFIX) {
+            return null;
+        }
+        List<ObjectId> matches = matching(prefix, 2);
+        if (matches.size() > 1) {
+            throw error("Ambiguous commit id: %s", prefix);
+        }
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    /** Return up to LIMIT UIDs in the index that begin with PREFIX, in
+     *  sorted order. */
+    List<ObjectId> matching(String prefix, int limit) {
+        load();
+        prefix = prefix.toLowerCase();
+        if (prefix.length() > UID_LENGTH
+            || !prefix.matches("[0-9a-f]*")) {
+            return List.of();
+        }
+        TreeSet<ObjectId> result = new TreeSet<>();
+        for (ObjectId uid : _log) {
+            if (uid.hex().startsWith(prefix)) {
+                result.add(uid);
+            }
+        }
+
+        /* The prefix padded with zeros is the smallest UID beginning with
+         * PREFIX. */
+        String padded = prefix + "0".repeat(UID_LENGTH - prefix.length());
+        int found = 0;
+        for (int k = lowerBound(ObjectId.fromHex(padded).bytes());
+             k < _count && found < limit; k += 1, found += 1) {
+            ObjectId uid =
+                ObjectId.read(_sorted.duplicate().position(k * ID_BYTES));
+            if (!uid.hex().startsWith(prefix)) {
+                break;
+            }
+            result.add(uid);
+        }
+        List<ObjectId> all = new ArrayList<>(result);
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    /** Remove the index entirely, so that it may be rebuilt. */
+    void clear() {
+        _sortedFile.delete();
+        _logFile.delete();
+        _sorted = null;
+    }
+
+    /** Merge the log into the sorted array and empty the log. */
+    void compact() {
+        load();
+        byte[][] ids = new byte[_count + _log.size()][];
+        for (int k = 0; k < _count; k += 1) {
+            ids[k] = new byte[ID_BYTES];
+            _sorted.get(k * ID_BYTES, ids[k], 0, ID_BYTES);
+        }
+        int k = _count;
+        for (ObjectId uid : _log) {
+            ids[k] = uid.bytes();
+            k += 1;
+        }
+        Arrays.sort(ids, Arrays::compareUnsigned);
+        File tmp = new File(_sortedFile.getPath() + ".tmp");
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 Files.newOutputStream(tmp.toPath())))) {
+            for (byte[] id : ids) {
+                out.write(id);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        replaceDurably(tmp, _sortedFile);
+        _logFile.delete();
+        _sorted = null;
+    }
+
+    /** Return the position of the first UID in the sorted array that is
+     *  not less than ID. */
+    private int lowerBound(byte[] id) {
+        byte[] probe = new byte[ID_BYTES];
+        int lo = 0, hi = _count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            _sorted.get(mid * ID_BYTES, probe, 0, ID_BYTES);
+            if (Arrays.compareUnsigned(probe, id) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Return true iff the sorted array contains ID. */
+    private boolean sortedContains(byte[] id) {
+        int k = lowerBound(id);
+        if (k == _count) {
+            return false;
+        }
+        byte[] probe = new byte[ID_BYTES];
+        _sorted.get(k * ID_BYTES, probe, 0, ID_BYTES);
+        return Arrays.equals(probe, id);
+    }
+
+    /** Load the index files, if not already done. */
+    private void load() {
+        if (_sorted != null) {
+            return;
+        }
+        _count = 0;
+        _sorted = ByteBuffer.allocate(0);
+        if (_sortedFile.isFile()) {
+            try (FileChannel ch = FileChannel.open(_sortedFile.toPath())) {
+                _count = (int) (ch.size() / ID_BYTES);
+                _sorted = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                                 (long) _count * ID_BYTES);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        _log = new TreeSet<>();
+        if (_logFile.isFile()) {
+            byte[] log = readContents(_logFile);
+            for (int k = 0; k + ID_BYTES <= log.length; k += ID_BYTES) {
+                _log.add(ObjectId.fromBytes(log, k));
+            }
+        }
+    }
+
+    /** Index for the current repository, or null if not yet created. */
+    private static UidIndex _local;
+
+    /** The sorted array file. */
+    private final File _sortedFile;
+    /** The unsorted log file. */
+    private final File _logFile;
+    /** The mapped sorted array, or null if not yet loaded. */
+    private ByteBuffer _sorted;
+    /** Number of UIDs in _sorted. */
+    private int _count;
+    /** UIDs in the log. */
+    private TreeSet<ObjectId> _log;
+}
@@ -0,0 +1,159 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the index of commit UIDs (see UidIndex), whose entries are
+ *  split between a sorted array and a log of recent additions. */
+public class UidIndexTest {
+
+    /** The repository directory of the current test. */
+    private File _dir;
+
+    @Before
+    public void makeDirectory() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-uids").toFile();
+    }
+
+    @After
+    public void removeDirectory() {
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Return COUNT random UIDs made using RANDOM. */
+    private static List<ObjectId> randomUids(Random random, int count) {
+        List<ObjectId> result = new ArrayList<>();
+        byte[] id = new byte[ObjectId.LENGTH];
+        for (int k = 0; k < count; k += 1) {
+            random.nextBytes(id);
+            result.add(ObjectId.fromBytes(id, 0));
+        }
+        return result;
+    }
+
+    /** Check that INDEX holds exactly the UIDs in EXPECTED. */
+    private static void checkIndex(UidIndex index,
+                                   TreeSet<ObjectId> expected) {
+        for (ObjectId uid : expected) {
+            assertEquals(uid, index.resolve(uid.hex()));
+            assertEquals(uid, index.resolve(uid.hex().substring(0, 12)));
+        }
+        assertEquals(new ArrayList<>(expected),
+                     index.matching("", expected.size() + 1));
+        for (int k = 0; k < 16; k += 1) {
+            String prefix = Integer.toHexString(k);
+            List<ObjectId> all = new ArrayList<>(
+                expected.subSet(ObjectId.fromHex(prefix + "0".repeat(39)),
+                                true, ObjectId.fromHex(prefix
+                                                       + "f".repeat(39)),
+                                true));
+            assertEquals(all, index.matching(prefix, all.size()));
+            assertEquals(all.subList(0, Math.min(3, all.size())),
+                         index.matching(prefix.toUpperCase(), 3));
+        }
+        assertNull(index.resolve("xxxx"));
+        assertEquals(List.of(), index.matching("0".repeat(41), 5));
+    }
+
+    /** UIDs survive being compacted into the sorted array, both as they
+     *  are added and after the index is reread. */
+    @Test
+    public void roundTrip() {
+        Random random = new Random(9);
+        TreeSet<ObjectId> expected = new TreeSet<>();
+        UidIndex index = new UidIndex(_dir);
+        for (int round = 0; round < 3; round += 1) {
+            for (ObjectId uid : randomUids(random, 700)) {
+                index.add(uid);
+                index.add(uid);
+                expected.add(uid);
+            }
+            checkIndex(index, expected);
+            index = new UidIndex(_dir);
+            checkIndex(index, expected);
+        }
+        assertTrue(join(_dir, "commit-ids").length()
+                   >= 1024 * ObjectId.LENGTH);
+        index.compact();
+        assertEquals(expected.size() * ObjectId.LENGTH,
+                     join(_dir, "commit-ids").length());
+        assertFalse(join(_dir, "commit-ids.new").exists());
+        checkIndex(new UidIndex(_dir), expected);
+    }
+
+    @Test
+    public void ambiguousPrefix() {
+        UidIndex index = new UidIndex(_dir);
+        index.add(ObjectId.fromHex("abcd" + "0".repeat(36)));
+        index.add(ObjectId.fromHex("abcd" + "1".repeat(36)));
+        index.compact();
+        index.add(ObjectId.fromHex("abce" + "0".repeat(36)));
+        assertNotNull(index.resolve("abcd0"));
+        assertNotNull(index.resolve("abce"));
+        try {
+            index.resolve("abcd");
+            fail("resolved an ambiguous prefix");
+        } catch (GitletException excp) {
+            assertEquals("Ambiguous commit id: abcd", excp.getMessage());
+        }
+    }
+
+    /** Prefixes shorter than MIN_PREFIX, which would match most or all
+     *  commits, resolve to nothing. */
+    @Test
+    public void shortPrefix() {
+        UidIndex index = new UidIndex(_dir);
+        ObjectId uid = ObjectId.fromHex("abcd" + "0".repeat(36));
+        index.add(uid);
+        assertEquals(uid, index.resolve("abcd"));
+        assertNull(index.resolve("abc"));
+        assertNull(index.resolve("a"));
+        assertNull(index.resolve(""));
+    }
+
+    /** An entry added after a partial one, as left by a crash while
+     *  appending, is aligned and read back. */
+    @Test
+    public void tornLog() {
+        Random random = new Random(19);
+        List<ObjectId> uids = randomUids(random, 10);
+        UidIndex index = new UidIndex(_dir);
+        for (ObjectId uid : uids.subList(0, 9)) {
+            index.add(uid);
+        }
+        File log = join(_dir, "commit-ids.new");
+        byte[] torn = Arrays.copyOf(readContents(log),
+                                    (int) log.length() + 7);
+        writeContents(log, (Object) torn);
+        new UidIndex(_dir).add(uids.get(9));
+        assertEquals(10 * ObjectId.LENGTH, log.length());
+        index = new UidIndex(_dir);
+        for (ObjectId uid : uids) {
+            assertEquals(uid, index.resolve(uid.hex()));
+        }
+    }
+}
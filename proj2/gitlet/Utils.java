@@ -3,19 +3,19 @@ package gitlet;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 
@@ -33,6 +33,9 @@ class Utils {
 
     /* SHA-1 HASH VALUES. */
 
+    /** Number of bytes hashed by SHA-1. */
+    static final Metrics.Counter HASHED = Metrics.counter("sha1.bytes");
+
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
@@ -41,17 +44,29 @@ class Utils {
             for (Object val : vals) {
                 if (val instanceof byte[]) {
                     md.update((byte[]) val);
+                    HASHED.add(((byte[]) val).length);
                 } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+                    byte[] bytes =
+                        ((String) val).getBytes(StandardCharsets.UTF_8);
+                    md.update(bytes);
+                    HASHED.add(bytes.length);
                 } else {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
+            return ObjectId.toHex(md.digest(), 0);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Size of the chunks in which large files are read and written. */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Return a new SHA-1 message digest. */
+    static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
@@ -136,29 +151,69 @@ class Utils {
         }
     }
 
+    /** Force the contents of FILE, which must exist, to disk.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static void syncContents(File file) {
+        try (FileChannel channel =
+             FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(false);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Force the entries of the directory DIR, such as files just renamed
+     *  into it, to disk.  Does nothing on platforms that do not allow a
+     *  directory to be opened. */
+    static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath())) {
+            channel.force(true);
+        } catch (IOException excp) {
+            /* Not supported here (as on Windows). */
+        }
+    }
+
+    /** Replace FILE with TMP by an atomic rename, forcing TMP's contents
+     *  to disk before and the rename after, so that after a crash FILE
+     *  has either its old contents or all of TMP's.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static void replaceDurably(File tmp, File file) {
+        syncContents(tmp);
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
+     *  FILE may have been written either with a Codec or by Java
+     *  serialization, and may be a compressed object (see Compression).
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
-        try {
-            ObjectInputStream in =
-                new ObjectInputStream(new FileInputStream(file));
-            T result = expectedClass.cast(in.readObject());
-            in.close();
-            return result;
-        } catch (IOException | ClassCastException
-                 | ClassNotFoundException excp) {
-            throw new IllegalArgumentException(excp.getMessage());
-        }
+        return Codecs.decode(Compression.decode(readContents(file)),
+                             expectedClass);
     }
 
-    /** Write OBJ to FILE. */
+    /** Write OBJ to FILE, using its Codec if it has one, and otherwise
+     *  Java serialization. */
     static void writeObject(File file, Serializable obj) {
-        writeContents(file, serialize(obj));
+        if (Codecs.hasCodec(obj)) {
+            writeContents(file, Codecs.encode((Dumpable) obj));
+        } else {
+            writeContents(file, serialize(obj));
+        }
     }
 
     /* DIRECTORIES */
 
+    /** Number of directories listed. */
+    static final Metrics.Counter LISTINGS = Metrics.counter("dir.listings");
+
     /** Filter out all but plain files. */
     private static final FilenameFilter PLAIN_FILES =
         new FilenameFilter() {
@@ -173,6 +228,7 @@ class Utils {
      *  not denote a directory. */
     static List<String> plainFilenamesIn(File dir) {
         String[] files = dir.list(PLAIN_FILES);
+        LISTINGS.add(1);
         if (files == null) {
             return null;
         } else {
@@ -209,6 +265,7 @@ class Utils {
 
     /** Returns a byte array containing the serialized contents of OBJ. */
     static byte[] serialize(Serializable obj) {
+        long start = Codecs.ENCODE_TIMER.start();
         try {
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
             ObjectOutputStream objectStream = new ObjectOutputStream(stream);
@@ -217,6 +274,8 @@ class Utils {
             return stream.toByteArray();
         } catch (IOException excp) {
             throw error("Internal error serializing commit.");
+        } finally {
+            Codecs.ENCODE_TIMER.stop(start);
         }
     }
 
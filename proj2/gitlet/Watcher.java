@@ -0,0 +1,227 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static gitlet.Utils.*;
+
+/** A watch on a working directory, kept by a long-lived process such as
+ *  a Daemon, that records the names of the files in it that have been
+ *  created, deleted, or modified, so that a scan of the directory (see
+ *  WorkingTree) need look only at those.  Events are collected from a
+ *  java.nio.file.WatchService by a background thread.
+ *
+ *  Events arrive asynchronously, so before reporting changes, changes
+ *  synchronizes with the thread by creating a "cookie" file and waiting
+ *  for the thread to see it.  Cookies are made in a separate directory
+ *  within the repository's metadata, so that they never appear among
+ *  the working files; it is registered with the same service, which
+ *  delivers the events of both directories in the order they occur.
+ *  When the thread sees a cookie, it first takes any events still
+ *  pending for the working directory, so that every change made before
+ *  the cookie was created has then been seen as well.  Polling services,
+ *  which examine the directories separately, give no such order and are
+ *  not used.  If the service drops events (an OVERFLOW), stops watching
+ *  either directory, or fails to deliver the cookie within SYNC_TIMEOUT,
+ *  the changes are unknown and the caller must fall back to a full
+ *  scan.  Only the directory itself is watched, so only
+ *  the files directly within it are scanned this way; BulkAdd, which
+ *  uses such scans when adding the whole directory, finds the files in
+ *  subdirectories through the StatCache instead.
+ */
+class Watcher implements Runnable {
+
+    /** Prefix of the names of cookie files. */
+    private static final String COOKIE_PREFIX = "cookie-";
+    /** Time in milliseconds to wait for a cookie. */
+    private static final long SYNC_TIMEOUT = 2000;
+
+    /** Start watching DIR, making cookies in COOKIEDIR, which is created
+     *  if need be and should be used for nothing else.  Returns the new
+     *  Watcher, which becomes the active one, or null if the file system
+     *  does not support watching them in order. */
+    static Watcher start(File dir, File cookieDir) {
+        WatchService service = null;
+        try {
+            cookieDir.mkdirs();
+            Path path = dir.toPath();
+            service = path.getFileSystem().newWatchService();
+            if (service.getClass().getSimpleName().startsWith("Polling")) {
+                service.close();
+                return null;
+            }
+            WatchKey dirKey =
+                path.register(service, ENTRY_CREATE, ENTRY_DELETE,
+                              ENTRY_MODIFY);
+            WatchKey cookieKey =
+                cookieDir.toPath().register(service, ENTRY_CREATE);
+            Watcher result =
+                new Watcher(cookieDir, service, dirKey, cookieKey);
+            Thread thread = new Thread(result, "gitlet-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            _active = result;
+            return result;
+        } catch (IOException | UnsupportedOperationException excp) {
+            if (service != null) {
+                try {
+                    service.close();
+                } catch (IOException closeExcp) {
+                    /* Not watching in any case. */
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Return the active Watcher of this process, or null if there is
+     *  none. */
+    static Watcher active() {
+        return _active;
+    }
+
+    /** Stop watching. */
+    void close() {
+        if (_active == this) {
+            _active = null;
+        }
+        try {
+            _service.close();
+        } catch (IOException excp) {
+            /* Nothing more to watch in any case. */
+        }
+    }
+
+    /** Return the names of the files in my directory that may have changed
+     *  since the last call, or null if they are unknown and the whole
+     *  directory must be rescanned.  Afterwards, starts recording changes
+     *  afresh. */
+    synchronized Set<String> changes() {
+        boolean synced = sync();
+        Set<String> result = synced && !_overflowed
+            ? new TreeSet<>(_dirty) : null;
+        _dirty.clear();
+        _overflowed = false;
+        return result;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = _service.take();
+            } catch (InterruptedException | ClosedWatchServiceException excp) {
+                return;
+            }
+            synchronized (this) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        _overflowed = true;
+                    } else if (key == _cookieKey) {
+                        recordCookie(event.context().toString());
+                    } else {
+                        _dirty.add(event.context().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    /* The directory itself is gone. */
+                    _overflowed = true;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /** Note the creation of the cookie NAME, after taking the events for
+     *  the working directory that preceded it.  Must be called while
+     *  holding my lock. */
+    private void recordCookie(String name) {
+        if (!name.startsWith(COOKIE_PREFIX)) {
+            return;
+        }
+        long number;
+        try {
+            number = Long.parseLong(name.substring(COOKIE_PREFIX.length()));
+        } catch (NumberFormatException excp) {
+            return;
+        }
+        for (WatchEvent<?> event : _dirKey.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                _overflowed = true;
+            } else {
+                _dirty.add(event.context().toString());
+            }
+        }
+        _cookieSeen = Math.max(_cookieSeen, number);
+    }
+
+    /** Wait until the background thread has seen every event preceding
+     *  this call, returning false if that could not be established.  Must
+     *  be called while holding my lock. */
+    private boolean sync() {
+        _cookie += 1;
+        File cookie = join(_cookieDir, COOKIE_PREFIX + _cookie);
+        try {
+            if (!cookie.createNewFile()) {
+                return false;
+            }
+            long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(SYNC_TIMEOUT);
+            while (_cookieSeen < _cookie) {
+                long left =
+                    TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0) {
+                    return false;
+                }
+                wait(left);
+            }
+            return true;
+        } catch (IOException | InterruptedException excp) {
+            return false;
+        } finally {
+            cookie.delete();
+        }
+    }
+
+    /** A watcher making cookies in COOKIEDIR whose events come from
+     *  SERVICE, through DIRKEY for the working directory and COOKIEKEY
+     *  for COOKIEDIR. */
+    private Watcher(File cookieDir, WatchService service, WatchKey dirKey,
+                    WatchKey cookieKey) {
+        _cookieDir = cookieDir;
+        _service = service;
+        _dirKey = dirKey;
+        _cookieKey = cookieKey;
+    }
+
+    /** The Watcher of this process, or null if there is none. */
+    private static volatile Watcher _active;
+
+    /** The directory in which cookies are made. */
+    private final File _cookieDir;
+    /** The source of events. */
+    private final WatchService _service;
+    /** The registration of the working directory with _service. */
+    private final WatchKey _dirKey;
+    /** The registration of _cookieDir with _service. */
+    private final WatchKey _cookieKey;
+    /** Names of files changed since the last call to changes. */
+    private final Set<String> _dirty = new HashSet<>();
+    /** True iff events have been lost since the last call to changes. */
+    private boolean _overflowed;
+    /** Number of the last cookie created. */
+    private long _cookie;
+    /** Number of the last cookie seen by the background thread. */
+    private long _cookieSeen;
+}
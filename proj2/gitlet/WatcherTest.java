@@ -0,0 +1,91 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of the watch on a working directory (see Watcher), kept on a
+ *  temporary directory.  They are skipped where the file system cannot
+ *  be watched. */
+public class WatcherTest {
+
+    /** The working directory of the current test. */
+    private File _dir;
+    /** The directory of its cookies. */
+    private File _cookieDir;
+    /** The watch on _dir. */
+    private Watcher _watcher;
+
+    @Before
+    public void startWatching() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-watch").toFile();
+        _cookieDir = join(_dir, ".gitlet", "watch");
+        _watcher = Watcher.start(_dir, _cookieDir);
+        Assume.assumeNotNull(_watcher);
+    }
+
+    @After
+    public void stopWatching() {
+        if (_watcher != null) {
+            _watcher.close();
+        }
+        delete(_dir);
+    }
+
+    /** Delete FILE and, if it is a directory, everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** A change made just before changes is called is reported by that
+     *  call, and only once. */
+    @Test
+    public void changeBeforeSync() {
+        Set<String> changes = _watcher.changes();
+        assertNotNull(changes);
+        assertFalse(changes.contains("f0"));
+        for (int k = 0; k < 100; k += 1) {
+            writeContents(join(_dir, "f" + k), "version " + k);
+            if (k > 0) {
+                join(_dir, "f" + (k - 1)).delete();
+            }
+            changes = _watcher.changes();
+            assertNotNull(changes);
+            assertTrue(changes.contains("f" + k));
+            if (k > 0) {
+                assertTrue(changes.contains("f" + (k - 1)));
+            }
+            assertEquals(k == 0 ? 1 : 2, changes.size());
+        }
+        assertEquals(Set.of(), _watcher.changes());
+    }
+
+    /** Cookies are made outside the working files and leave nothing
+     *  behind. */
+    @Test
+    public void cookiesHidden() {
+        for (int k = 0; k < 10; k += 1) {
+            Set<String> changes = _watcher.changes();
+            assertNotNull(changes);
+            assertEquals(Set.of(), changes);
+        }
+        assertEquals(0, _cookieDir.list().length);
+        assertEquals(List.of(), plainFilenamesIn(_dir));
+    }
+}
@@ -0,0 +1,160 @@
+package gitlet;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static gitlet.Utils.*;
+
+/** Scans of the working directory, which find the blob UID of every plain
+ *  file in it so that they can be compared with the staging area and the
+ *  head commit.  Files are hashed concurrently on a ForkJoinPool; the
+ *  result is nonetheless always in the lexicographic order given by
+ *  plainFilenamesIn, and is identical to that of a sequential scan.
+ *
+ *  The number of threads is taken from the environment variable
+ *  GITLET_PARALLELISM, defaulting to the number of available processors.
+ *  Setting GITLET_SEQUENTIAL (to anything) forces a sequential scan on
+ *  the calling thread, as does a parallelism of 1.
+ *
+ *  In a process with an active Watcher (as in a Daemon with daemon.watch
+ *  set), the result of each scan is kept, and the next scan rehashes
+ *  only the files the Watcher reports as changed since, without listing
+ *  or even examining the others.  When the Watcher cannot say what has
+ *  changed, the scan falls back to examining every file.
+ */
+class WorkingTree {
+
+    /** Number of files below which a task hashes its files itself rather
+     *  than splitting them among subtasks. */
+    private static final int THRESHOLD = 16;
+
+    /** Return a mapping of the names of all plain files in the working
+     *  directory, in lexicographic order, to the UIDs of their contents,
+     *  using CACHE to avoid rehashing unchanged files. */
+    static Map<String, ObjectId> scan(StatCache cache) {
+        Watcher watcher = Watcher.active();
+        if (watcher == null) {
+            _snapshot = null;
+            return fullScan(cache);
+        }
+        Set<String> changed = watcher.changes();
+        if (changed == null || _snapshot == null
+            || _snapshotWatcher != watcher) {
+            _snapshot = new TreeMap<>(fullScan(cache));
+            _snapshotWatcher = watcher;
+        } else {
+            for (String name : changed) {
+                if (join(Repository.CWD, name).isFile()) {
+                    _snapshot.put(name, cache.uidOf(name));
+                } else {
+                    _snapshot.remove(name);
+                }
+            }
+        }
+        return new LinkedHashMap<>(_snapshot);
+    }
+
+    /** Return the result of scan, found by examining every file in the
+     *  working directory. */
+    private static Map<String, ObjectId> fullScan(StatCache cache) {
+        List<String> names = plainFilenamesIn(Repository.CWD);
+        ObjectId[] uids = new ObjectId[names.size()];
+        HashTask task = new HashTask(cache, names, uids, 0, names.size());
+        if (parallelism() <= 1) {
+            task.hashAll();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism());
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        LinkedHashMap<String, ObjectId> result = new LinkedHashMap<>();
+        for (int i = 0; i < uids.length; i += 1) {
+            result.put(names.get(i), uids[i]);
+        }
+        return result;
+    }
+
+    /** Return the number of threads to use for scanning. */
+    static int parallelism() {
+        if (_parallelism == 0) {
+            String level = System.getenv("GITLET_PARALLELISM");
+            if (System.getenv("GITLET_SEQUENTIAL") != null) {
+                _parallelism = 1;
+            } else if (level != null) {
+                try {
+                    _parallelism = Math.max(1, Integer.parseInt(level));
+                } catch (NumberFormatException excp) {
+                    throw error("Invalid GITLET_PARALLELISM: %s", level);
+                }
+            } else {
+                _parallelism = Runtime.getRuntime().availableProcessors();
+            }
+        }
+        return _parallelism;
+    }
+
+    /** Set the number of threads to use for scanning to N, overriding the
+     *  environment.  N of 1 forces sequential scans. */
+    static void setParallelism(int n) {
+        _parallelism = Math.max(1, n);
+    }
+
+    /** A task that hashes a range of working files. */
+    private static class HashTask extends RecursiveAction {
+
+        /** A task that sets UIDS[K] to the UID of working file NAMES[K] for
+         *  LO <= K < HI, using CACHE. */
+        HashTask(StatCache cache, List<String> names, ObjectId[] uids,
+                 int lo, int hi) {
+            _cache = cache;
+            _names = names;
+            _uids = uids;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo <= THRESHOLD) {
+                hashAll();
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new HashTask(_cache, _names, _uids, _lo, mid),
+                          new HashTask(_cache, _names, _uids, mid, _hi));
+            }
+        }
+
+        /** Hash all of my files on the current thread. */
+        void hashAll() {
+            for (int k = _lo; k < _hi; k += 1) {
+                _uids[k] = _cache.uidOf(_names.get(k));
+            }
+        }
+
+        /** Cache of working-file UIDs. */
+        private final StatCache _cache;
+        /** Names of all files being scanned. */
+        private final List<String> _names;
+        /** UIDs of all files being scanned. */
+        private final ObjectId[] _uids;
+        /** Bounds of the range of files handled by this task. */
+        private final int _lo, _hi;
+    }
+
+    /** Number of threads to use for scanning, or 0 if not yet
+     *  determined. */
+    private static int _parallelism;
+    /** The result of the last scan, kept up to date by _snapshotWatcher,
+     *  or null if there is none. */
+    private static TreeMap<String, ObjectId> _snapshot;
+    /** The Watcher that was active for the last scan. */
+    private static Watcher _snapshotWatcher;
+}
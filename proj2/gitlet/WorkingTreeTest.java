@@ -0,0 +1,83 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.Utils.*;
+
+/** Tests of scans of the working directory (see WorkingTree). */
+public class WorkingTreeTest {
+
+    /** Number of files written, enough for a parallel scan to split its
+     *  work among several tasks. */
+    private static final int FILES = 200;
+
+    /** Files written by the current test. */
+    private final List<File> _files = new ArrayList<>();
+
+    /** Write FILES working files of varied sizes and contents, some
+     *  identical, returning their names. */
+    private List<String> writeFiles() {
+        Random random = new Random(61);
+        List<String> names = new ArrayList<>();
+        for (int k = 0; k < FILES; k += 1) {
+            String name = String.format("wt-test-%03d.txt", k);
+            byte[] contents = new byte[k % 10 == 0 ? 17 : random.nextInt(5000)];
+            random.nextBytes(contents);
+            File file = join(Repository.CWD, name);
+            writeContents(file, (Object) contents);
+            _files.add(file);
+            names.add(name);
+        }
+        return names;
+    }
+
+    @After
+    public void removeFiles() {
+        for (File file : _files) {
+            file.delete();
+        }
+    }
+
+    /** A scan on several threads must give exactly the result of one
+     *  on the calling thread, as forced by GITLET_SEQUENTIAL. */
+    @Test
+    public void parallelScanEqualsSequential() {
+        List<String> names = writeFiles();
+        WorkingTree.setParallelism(1);
+        Map<String, ObjectId> sequential = WorkingTree.scan(new StatCache());
+        WorkingTree.setParallelism(4);
+        Map<String, ObjectId> parallel = WorkingTree.scan(new StatCache());
+
+        assertEquals(sequential, parallel);
+        assertEquals(new ArrayList<>(sequential.keySet()),
+                     new ArrayList<>(parallel.keySet()));
+        assertEquals(plainFilenamesIn(Repository.CWD),
+                     new ArrayList<>(parallel.keySet()));
+        for (String name : names) {
+            assertEquals(name, ObjectId.of(readContents(join(Repository.CWD,
+                                                             name))),
+                         parallel.get(name));
+        }
+    }
+
+    /** A scan answered from a StatCache must agree with a fresh one. */
+    @Test
+    public void cachedScanEqualsFresh() {
+        writeFiles();
+        StatCache cache = new StatCache();
+        WorkingTree.setParallelism(4);
+        Map<String, ObjectId> first = WorkingTree.scan(cache);
+        Map<String, ObjectId> second = WorkingTree.scan(cache);
+        WorkingTree.setParallelism(1);
+        assertEquals(WorkingTree.scan(new StatCache()), second);
+        assertEquals(first, second);
+    }
+}